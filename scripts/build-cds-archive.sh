@@ -0,0 +1,44 @@
+#!/usr/bin/env bash
+# Builds an AppCDS archive for the application.
+#
+# CDS cannot archive classes loaded from nested jars, so the Spring Boot jar is unpacked into a
+# plain classpath first. The training run uses the H2 profile (no MySQL needed at build time) and
+# -Dspring.context.exit=onRefresh, so it stops as soon as the context has started.
+#
+# Usage: scripts/build-cds-archive.sh target/user-management-1.0.0.jar [target/cds]
+set -euo pipefail
+
+JAR="${1:?path to the Spring Boot jar}"
+OUT="${2:-$(dirname "$JAR")/cds}"
+TRAINING_PROFILE="${CDS_TRAINING_PROFILE:-h2}"
+
+rm -rf "$OUT"
+mkdir -p "$OUT/lib" "$OUT/unpacked"
+
+(cd "$OUT/unpacked" && jar xf "$(cd - >/dev/null && cd "$(dirname "$JAR")" && pwd)/$(basename "$JAR")")
+
+# Application classes must come from a jar too: CDS refuses non-empty directories on the classpath
+jar cf "$OUT/application.jar" -C "$OUT/unpacked/BOOT-INF/classes" .
+cp "$OUT"/unpacked/BOOT-INF/lib/*.jar "$OUT/lib/"
+rm -rf "$OUT/unpacked"
+
+# The run-time classpath must match the training classpath exactly, so it is written down once
+CLASSPATH="$OUT/application.jar"
+for lib in "$OUT"/lib/*.jar; do
+    CLASSPATH="$CLASSPATH:$lib"
+done
+echo "$CLASSPATH" > "$OUT/classpath.txt"
+
+AOT_FLAG=""
+if unzip -l "$JAR" | grep -q '__ApplicationContextInitializer'; then
+    AOT_FLAG="-Dspring.aot.enabled=true"
+fi
+
+java -XX:ArchiveClassesAtExit="$OUT/application.jsa" \
+     -Dspring.context.exit=onRefresh \
+     -Dspring.profiles.active="$TRAINING_PROFILE" \
+     $AOT_FLAG \
+     -cp "$CLASSPATH" com.usermanagement.UserManagementApplication
+
+echo "CDS archive written to $OUT/application.jsa"
+echo "Run with: java -XX:SharedArchiveFile=$OUT/application.jsa $AOT_FLAG -cp \"\$(cat $OUT/classpath.txt)\" com.usermanagement.UserManagementApplication"
@@ -0,0 +1,101 @@
+#!/usr/bin/env bash
+# Starts two instances sharing one H2 database with the user near cache enabled, then measures how
+# long an update made on node A takes to become visible on node B, which has the user cached.
+#
+# Build first:  mvn -DskipTests package
+# Then run:     scripts/cache-cluster-check.sh [rounds]
+#
+# Each round should report a delay below app.cache.users.max-staleness-ms (5000 by default);
+# the script exits non-zero if one does not.
+set -uo pipefail
+
+ROUNDS="${1:-5}"
+PORT_A="${CLUSTER_PORT_A:-18081}"
+PORT_B="${CLUSTER_PORT_B:-18082}"
+BOUND_MS="${CLUSTER_MAX_STALENESS_MS:-5000}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+JAR="$(ls "$ROOT"/target/user-management-*.jar 2>/dev/null | grep -v original | head -n 1)"
+WORK="$(mktemp -d)"
+PIDS=()
+cleanup() {
+    for pid in "${PIDS[@]}"; do
+        kill "$pid" 2>/dev/null
+    done
+    wait 2>/dev/null
+    rm -rf "$WORK"
+}
+trap cleanup EXIT
+
+now_ms() {
+    date +%s%3N
+}
+
+start_node() {
+    local port=$1
+    (cd "$WORK" && java -jar "$JAR" --spring.profiles.active=h2,cluster --server.port="$port" \
+        --app.cache.users.max-staleness-ms="$BOUND_MS" > "$WORK/node-$port.log" 2>&1) &
+    PIDS+=($!)
+    for _ in $(seq 1 600); do
+        if curl -s -o /dev/null -w '%{http_code}' "http://localhost:$port/login" 2>/dev/null | grep -q 200; then
+            return 0
+        fi
+        sleep 0.1
+    done
+    echo "node on port $port did not start, see $WORK/node-$port.log" >&2
+    exit 1
+}
+
+token() {
+    curl -s -X POST "http://localhost:$1/api/auth/login" -H 'Content-Type: application/json' \
+        -d '{"email":"admin@example.com","password":"admin123"}' | sed -E 's/.*"token":"([^"]+)".*/\1/'
+}
+
+if [ -z "$JAR" ]; then
+    echo "no jar under target/, run mvn -DskipTests package first" >&2
+    exit 1
+fi
+
+# Start A first so it creates the schema and the admin user, then B joins through A's H2 server
+start_node "$PORT_A"
+start_node "$PORT_B"
+TOKEN_A="$(token "$PORT_A")"
+TOKEN_B="$(token "$PORT_B")"
+
+USER_ID="$(curl -s -X POST "http://localhost:$PORT_A/api/users" -H "Authorization: Bearer $TOKEN_A" \
+    -H 'Content-Type: application/json' \
+    -d "{\"name\":\"Cache Check\",\"email\":\"cache-check-$$@example.com\",\"password\":\"secret123\"}" \
+    | sed -E 's/.*"id":([0-9]+).*/\1/')"
+echo "user $USER_ID, staleness bound ${BOUND_MS} ms"
+
+failed=0
+for round in $(seq 1 "$ROUNDS"); do
+    name="Cache Check $round"
+    # Warm B's cache with the current value
+    curl -s -o /dev/null "http://localhost:$PORT_B/api/users/$USER_ID" -H "Authorization: Bearer $TOKEN_B"
+    curl -s -o /dev/null -X PUT "http://localhost:$PORT_A/api/users/$USER_ID" -H "Authorization: Bearer $TOKEN_A" \
+        -H 'Content-Type: application/json' \
+        -d "{\"name\":\"$name\",\"email\":\"cache-check-$$@example.com\",\"password\":\"secret123\"}"
+    updated=$(now_ms)
+    seen=""
+    while [ $(( $(now_ms) - updated )) -lt $(( BOUND_MS * 3 )) ]; do
+        if curl -s "http://localhost:$PORT_B/api/users/$USER_ID" -H "Authorization: Bearer $TOKEN_B" | grep -q "\"$name\""; then
+            seen=$(now_ms)
+            break
+        fi
+        sleep 0.05
+    done
+    if [ -z "$seen" ]; then
+        echo "round $round: not visible on B after $(( BOUND_MS * 3 )) ms"
+        failed=1
+    else
+        delay=$(( seen - updated ))
+        verdict="ok"
+        if [ "$delay" -gt "$BOUND_MS" ]; then
+            verdict="OVER BOUND"
+            failed=1
+        fi
+        echo "round $round: visible on B after ${delay} ms ($verdict)"
+    fi
+done
+
+exit "$failed"
@@ -0,0 +1,104 @@
+#!/usr/bin/env bash
+# Measures startup time and time-to-first-request for each startup variant of the application.
+#
+#   startup time           - "Started UserManagementApplication in X seconds" as logged by Spring Boot
+#   time-to-first-request  - wall clock from process launch until GET /login answers 200
+#
+# Build first:  mvn -Pstartup clean package          (AOT classes + target/cds)
+#               mvn -Pnative native:compile          (optional, target/user-management)
+# Then run:     scripts/startup-benchmark.sh [runs]
+#
+# The variants run against the h2 profile so no MySQL is needed; BENCH_PROFILES overrides it
+# (e.g. BENCH_PROFILES=startup to measure against a MySQL schema that already exists).
+set -uo pipefail
+
+RUNS="${1:-5}"
+PORT="${BENCH_PORT:-18080}"
+PROFILES="${BENCH_PROFILES:-h2}"
+TARGET="$(cd "$(dirname "$0")/.." && pwd)/target"
+JAR="$(ls "$TARGET"/user-management-*.jar 2>/dev/null | grep -v original | head -n 1)"
+CDS_DIR="$TARGET/cds"
+NATIVE="$TARGET/user-management"
+MAIN_CLASS="com.usermanagement.UserManagementApplication"
+LOG="$(mktemp)"
+trap 'rm -f "$LOG"' EXIT
+
+now_ms() {
+    date +%s%3N
+}
+
+# Runs one start of the given command and prints "<startup seconds> <first request ms>"
+measure() {
+    local start ready pid startup
+    start=$(now_ms)
+    "$@" --server.port="$PORT" --spring.profiles.active="$PROFILES" > "$LOG" 2>&1 &
+    pid=$!
+    ready=""
+    for _ in $(seq 1 1200); do
+        if curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT/login" 2>/dev/null | grep -q 200; then
+            ready=$(now_ms)
+            break
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            break
+        fi
+        sleep 0.05
+    done
+    kill "$pid" 2>/dev/null
+    wait "$pid" 2>/dev/null
+    startup=$(grep -o 'Started UserManagementApplication in [0-9.]*' "$LOG" | awk '{print $4}')
+    if [ -z "$ready" ]; then
+        echo "failed (see output below)" >&2
+        tail -n 20 "$LOG" >&2
+        echo "- -"
+    else
+        echo "${startup:--} $((ready - start))"
+    fi
+}
+
+run_variant() {
+    local name="$1"
+    shift
+    local total_startup=0 total_ttfr=0 ok=0 result s t
+    for _ in $(seq 1 "$RUNS"); do
+        result=$(measure "$@")
+        s=${result% *}
+        t=${result#* }
+        if [ "$t" != "-" ]; then
+            ok=$((ok + 1))
+            total_ttfr=$((total_ttfr + t))
+            [ "$s" != "-" ] && total_startup=$(echo "$total_startup + $s" | bc)
+        fi
+    done
+    if [ "$ok" -gt 0 ]; then
+        printf "%-28s %14s %22s\n" "$name" \
+            "$(echo "scale=3; $total_startup / $ok" | bc)s" "$((total_ttfr / ok))ms"
+    else
+        printf "%-28s %14s %22s\n" "$name" "failed" "failed"
+    fi
+}
+
+if [ -z "$JAR" ]; then
+    echo "No jar under $TARGET, run 'mvn -Pstartup clean package' first" >&2
+    exit 1
+fi
+
+printf "%-28s %14s %22s\n" "variant" "startup (avg)" "first request (avg)"
+run_variant "jar" java -jar "$JAR"
+run_variant "jar + lazy init" java -Dspring.main.lazy-initialization=true -jar "$JAR"
+
+if unzip -l "$JAR" | grep -q '__ApplicationContextInitializer'; then
+    run_variant "jar + AOT" java -Dspring.aot.enabled=true -jar "$JAR"
+fi
+
+if [ -f "$CDS_DIR/application.jsa" ]; then
+    CP="$(cat "$CDS_DIR/classpath.txt")"
+    run_variant "unpacked, no CDS" java -cp "$CP" "$MAIN_CLASS"
+    run_variant "unpacked + CDS" java -XX:SharedArchiveFile="$CDS_DIR/application.jsa" -cp "$CP" "$MAIN_CLASS"
+    run_variant "unpacked + CDS + AOT" java -XX:SharedArchiveFile="$CDS_DIR/application.jsa" \
+        -Dspring.aot.enabled=true -cp "$CP" "$MAIN_CLASS"
+fi
+
+if [ -x "$NATIVE" ]; then
+    run_variant "native image" "$NATIVE"
+fi
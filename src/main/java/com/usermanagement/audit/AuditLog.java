@@ -0,0 +1,302 @@
+package com.usermanagement.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.usermanagement.entity.AuditEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit trail of logins, registrations and user writes, kept off the request path. record() builds
+ * the event and puts it in a lock-free ring buffer, which costs well under a microsecond; a single
+ * writer thread drains the buffer in batches into audit_events (app.audit.sink=table) or into a
+ * rolling append-only file (app.audit.sink=file).
+ * <p>
+ * When the writer falls behind and the buffer is full, app.audit.overflow decides: block makes the
+ * request wait for room, drop discards the event and counts it in audit.events{outcome=dropped}, and
+ * spill appends it to a file on disk that the writer moves to the sink once it has caught up.
+ * <p>
+ * Events are recorded when the service call returns, before its transaction commits, so a rollback at
+ * commit still leaves the attempt in the trail. Events in the buffer at a crash are lost; a clean
+ * shutdown writes them first.
+ */
+@Component
+public class AuditLog {
+    
+    public enum Overflow {
+        BLOCK,
+        DROP,
+        SPILL
+    }
+    
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+    
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.audit.enabled:true}")
+    private boolean enabled;
+    
+    // table or file
+    @Value("${app.audit.sink:table}")
+    private String sink;
+    
+    // Rounded up to a power of two
+    @Value("${app.audit.buffer-size:65536}")
+    private int bufferSize;
+    
+    @Value("${app.audit.batch-size:500}")
+    private int batchSize;
+    
+    // How long the writer sleeps when the buffer is empty
+    @Value("${app.audit.idle-wait-ms:20}")
+    private long idleWaitMs;
+    
+    @Value("${app.audit.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+    
+    // block, drop or spill
+    @Value("${app.audit.overflow:drop}")
+    private String overflow;
+    
+    @Value("${app.audit.spill-dir:data/audit-spill}")
+    private String spillDir;
+    
+    @Value("${app.audit.file.dir:data/audit}")
+    private String fileDir;
+    
+    @Value("${app.audit.file.max-bytes:104857600}")
+    private long fileMaxBytes;
+    
+    @Value("${app.audit.file.fsync:false}")
+    private boolean fileFsync;
+    
+    @Value("${app.audit.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+    
+    private AuditRingBuffer buffer;
+    private Overflow overflowPolicy;
+    private AuditSink auditSink;
+    private AuditSpill spill;
+    private Thread writer;
+    private volatile boolean running;
+    
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+    
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        buffer = new AuditRingBuffer(bufferSize);
+        overflowPolicy = Overflow.valueOf(overflow.trim().toUpperCase(Locale.ROOT));
+        auditSink = switch (sink.trim().toLowerCase(Locale.ROOT)) {
+            case "table" -> new JdbcAuditSink(jdbcTemplate, new TransactionTemplate(transactionManager));
+            case "file" -> new FileAuditSink(Path.of(fileDir), fileMaxBytes, fileFsync, objectMapper);
+            default -> throw new IllegalArgumentException("app.audit.sink must be table or file: " + sink);
+        };
+        spill = overflowPolicy == Overflow.SPILL ? new AuditSpill(Path.of(spillDir), objectMapper) : null;
+        
+        FunctionCounter.builder("audit.events", written, LongAdder::sum).tag("outcome", "written").register(meterRegistry);
+        FunctionCounter.builder("audit.events", dropped, LongAdder::sum).tag("outcome", "dropped").register(meterRegistry);
+        FunctionCounter.builder("audit.events", spilled, LongAdder::sum).tag("outcome", "spilled").register(meterRegistry);
+        FunctionCounter.builder("audit.overflow.blocked", blocked, LongAdder::sum)
+                .description("Requests that waited for room in the audit buffer")
+                .register(meterRegistry);
+        FunctionCounter.builder("audit.write.failures", failedWrites, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("audit.buffer.size", buffer, AuditRingBuffer::size).register(meterRegistry);
+        
+        running = true;
+        writer = new Thread(this::drain, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("Audit trail to {} with a buffer of {} events, overflow {}", sink, buffer.capacity(),
+                overflowPolicy.name().toLowerCase(Locale.ROOT));
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(shutdownTimeoutMs);
+        if (writer.isAlive()) {
+            logger.warn("Audit writer did not finish within {} ms; {} buffered events may be lost",
+                    shutdownTimeoutMs, buffer.size());
+        }
+    }
+    
+    /**
+     * Records an action of the authenticated caller, or of an anonymous one.
+     */
+    public void record(AuditEvent.Action action, Long userId, String detail) {
+        if (enabled) {
+            record(action, currentActor(), userId, detail);
+        }
+    }
+    
+    /**
+     * Records an action with an explicit actor, for logins and registrations made before the caller
+     * is authenticated.
+     */
+    public void record(AuditEvent.Action action, String actor, Long userId, String detail) {
+        if (!enabled) {
+            return;
+        }
+        AuditEvent event = new AuditEvent(action, actor, userId, detail);
+        if (!buffer.offer(event)) {
+            overflow(event);
+        }
+    }
+    
+    private void overflow(AuditEvent event) {
+        switch (overflowPolicy) {
+            case DROP -> dropped.increment();
+            case BLOCK -> {
+                blocked.increment();
+                LockSupport.unpark(writer);
+                while (!buffer.offer(event)) {
+                    if (!running) {
+                        dropped.increment();
+                        return;
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+            }
+            case SPILL -> {
+                try {
+                    spill.append(event);
+                    spilled.increment();
+                } catch (IOException e) {
+                    dropped.increment();
+                    logger.warn("Could not spill audit event to {}, dropped it", spillDir, e);
+                }
+            }
+        }
+    }
+    
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+    
+    // The writer thread: buffer first, then spilled events once the buffer is empty
+    private void drain() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            if (batch.isEmpty()) {
+                buffer.drainTo(batch, batchSize);
+            }
+            if (!batch.isEmpty()) {
+                // A failed batch stays and is retried, so the buffer fills up and overflow applies
+                if (write(batch)) {
+                    batch.clear();
+                } else {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryBackoffMs));
+                }
+            } else if (spill != null && spill.isPending()) {
+                moveSpilled();
+            } else {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(idleWaitMs));
+            }
+        }
+        
+        // Shutting down: one attempt at whatever is left, including events published while stopping
+        do {
+            if (!batch.isEmpty() && !write(batch)) {
+                dropped.add(batch.size() + buffer.size());
+                logger.error("Could not write audit events at shutdown; {} lost", batch.size() + buffer.size());
+                break;
+            }
+            batch.clear();
+        } while (buffer.drainTo(batch, batchSize) > 0);
+        try {
+            auditSink.close();
+            if (spill != null) {
+                spill.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not close audit files", e);
+        }
+    }
+    
+    private boolean write(List<AuditEvent> batch) {
+        try {
+            auditSink.write(batch);
+            written.add(batch.size());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failedWrites.increment();
+            logger.warn("Writing {} audit events failed, retrying in {} ms", batch.size(), retryBackoffMs, e);
+            return false;
+        }
+    }
+    
+    // A segment is deleted once all its events are written; one that fails part way is written again
+    // from the start, so spilled events are delivered at least once
+    private void moveSpilled() {
+        try {
+            for (Path segment : spill.takeSegments()) {
+                List<AuditEvent> events = spill.read(segment);
+                for (int from = 0; from < events.size(); from += batchSize) {
+                    if (!running) {
+                        spill.retryLater();
+                        return;
+                    }
+                    if (!write(events.subList(from, Math.min(from + batchSize, events.size())))) {
+                        spill.retryLater();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryBackoffMs));
+                        return;
+                    }
+                }
+                spill.delete(segment);
+            }
+        } catch (IOException e) {
+            spill.retryLater();
+            logger.warn("Could not move spilled audit events from {}", spillDir, e);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryBackoffMs));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.usermanagement.audit;
+
+import com.usermanagement.entity.AuditEvent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer queue over a preallocated array. A producer claims a
+ * position with one CAS on the tail, stores the event and publishes it with an ordered write of the
+ * slot's sequence; the consumer takes published slots in order with plain reads and ordered writes.
+ * No locks, and nothing is allocated per event.
+ * <p>
+ * A slot's sequence is the position it can next be claimed for, or that position + 1 once the event
+ * in it is published. The consumer hands the slot to the next lap by setting it to position + capacity.
+ */
+public final class AuditRingBuffer {
+    
+    private final int mask;
+    private final AuditEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    
+    // Written by the consumer only; volatile so size() can be read from other threads
+    private volatile long head;
+    
+    /**
+     * The capacity is rounded up to a power of two.
+     */
+    public AuditRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Audit buffer capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.mask = size - 1;
+        this.slots = new AuditEvent[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    /**
+     * Adds the event unless the buffer is full. Safe to call from any number of threads.
+     */
+    public boolean offer(AuditEvent event) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = event;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds the event from one lap ago
+                return false;
+            } else {
+                // Another producer claimed this position first
+                position = tail.get();
+            }
+        }
+    }
+    
+    /**
+     * Moves up to max published events into the batch, oldest first. Only one thread may drain.
+     */
+    public int drainTo(List<AuditEvent> batch, int max) {
+        long position = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            batch.add(slots[index]);
+            slots[index] = null;
+            sequences.lazySet(index, position + slots.length);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+    
+    // Claimed but not yet drained; includes events still being stored by their producer
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+    
+    public int capacity() {
+        return slots.length;
+    }
+}
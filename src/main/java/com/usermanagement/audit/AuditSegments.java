@@ -0,0 +1,116 @@
+package com.usermanagement.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.usermanagement.entity.AuditEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only files of audit events, one JSON object per line, in numbered segments of a directory.
+ * Numbering continues after the highest segment already there, so segments sort oldest first by name.
+ * Shared by the rolling file sink and the overflow spill. Not thread-safe.
+ */
+final class AuditSegments {
+    
+    private final Path directory;
+    private final String prefix;
+    private final ObjectMapper objectMapper;
+    private final boolean fsync;
+    
+    private long nextSegmentNumber;
+    private Path currentSegment;
+    private FileChannel channel;
+    private long currentBytes;
+    
+    AuditSegments(Path directory, String prefix, ObjectMapper objectMapper, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.objectMapper = objectMapper;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        List<Path> existing = list();
+        nextSegmentNumber = existing.isEmpty() ? 1 : segmentNumber(existing.get(existing.size() - 1)) + 1;
+    }
+    
+    // All segments, oldest first, including the one being appended to
+    List<Path> list() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(this::isSegment).sorted().toList();
+        }
+    }
+    
+    void append(List<AuditEvent> events) throws IOException {
+        StringBuilder lines = new StringBuilder(events.size() * 160);
+        for (AuditEvent event : events) {
+            lines.append(objectMapper.writeValueAsString(event)).append('\n');
+        }
+        if (channel == null) {
+            openNextSegment();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        currentBytes += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+    
+    long getCurrentBytes() {
+        return currentBytes;
+    }
+    
+    // Closes the segment being appended to; the next append starts a new one
+    void closeCurrent() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+            currentSegment = null;
+        }
+    }
+    
+    // A line cut short by a crash is skipped, as are lines that no longer parse
+    List<AuditEvent> read(Path segment) throws IOException {
+        List<AuditEvent> events = new ArrayList<>();
+        // Decoded leniently: a crash can also cut a multi-byte character
+        for (String line : new String(Files.readAllBytes(segment), StandardCharsets.UTF_8).split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                events.add(objectMapper.readValue(line, AuditEvent.class));
+            } catch (IOException e) {
+                // Skipped rather than failing the whole segment on every retry
+            }
+        }
+        return events;
+    }
+    
+    private void openNextSegment() throws IOException {
+        currentSegment = directory.resolve(String.format("%s%012d.log", prefix, nextSegmentNumber++));
+        channel = FileChannel.open(currentSegment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        currentBytes = 0;
+    }
+    
+    private boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(prefix) && name.endsWith(".log")
+                && name.length() == prefix.length() + 12 + 4;
+    }
+    
+    private long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - 4));
+    }
+}
@@ -0,0 +1,18 @@
+package com.usermanagement.audit;
+
+import com.usermanagement.entity.AuditEvent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where the audit writer stores drained events. Only the writer thread calls a sink; a batch that
+ * fails is retried as a whole, so a sink should write it all or nothing where it can.
+ */
+interface AuditSink {
+    
+    void write(List<AuditEvent> batch) throws IOException;
+    
+    default void close() throws IOException {
+    }
+}
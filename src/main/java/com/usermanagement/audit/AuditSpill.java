@@ -0,0 +1,60 @@
+package com.usermanagement.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.usermanagement.entity.AuditEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Overflow for app.audit.overflow=spill: events that find the ring buffer full are appended to
+ * spill-NNNNNNNNNNNN.log on the request thread, under a lock, and the writer moves them to the sink
+ * once it has caught up with the ring. Segments left by a previous run are moved the same way.
+ */
+final class AuditSpill {
+    
+    private final AuditSegments segments;
+    
+    // Set when there may be segments to move; cleared by the writer when it takes them
+    private volatile boolean pending;
+    
+    AuditSpill(Path directory, ObjectMapper objectMapper) throws IOException {
+        this.segments = new AuditSegments(directory, "spill-", objectMapper, false);
+        this.pending = !segments.list().isEmpty();
+    }
+    
+    synchronized void append(AuditEvent event) throws IOException {
+        segments.append(List.of(event));
+        pending = true;
+    }
+    
+    boolean isPending() {
+        return pending;
+    }
+    
+    // Closes the segment being appended to and returns every segment, oldest first
+    synchronized List<Path> takeSegments() throws IOException {
+        pending = false;
+        segments.closeCurrent();
+        return segments.list();
+    }
+    
+    // For segments the writer took but could not move yet
+    void retryLater() {
+        pending = true;
+    }
+    
+    List<AuditEvent> read(Path segment) throws IOException {
+        return segments.read(segment);
+    }
+    
+    void delete(Path segment) throws IOException {
+        Files.deleteIfExists(segment);
+    }
+    
+    synchronized void close() throws IOException {
+        segments.closeCurrent();
+    }
+}
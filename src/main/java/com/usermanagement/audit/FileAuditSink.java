@@ -0,0 +1,37 @@
+package com.usermanagement.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.usermanagement.entity.AuditEvent;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Appends each batch to audit-NNNNNNNNNNNN.log in the audit directory, one JSON event per line, and
+ * rolls over to the next file once the current one reaches maxFileBytes. Files are never rewritten;
+ * shipping and deleting old ones is left to log tooling.
+ */
+final class FileAuditSink implements AuditSink {
+    
+    private final AuditSegments segments;
+    private final long maxFileBytes;
+    
+    FileAuditSink(Path directory, long maxFileBytes, boolean fsync, ObjectMapper objectMapper) throws IOException {
+        this.segments = new AuditSegments(directory, "audit-", objectMapper, fsync);
+        this.maxFileBytes = maxFileBytes;
+    }
+    
+    @Override
+    public void write(List<AuditEvent> batch) throws IOException {
+        segments.append(batch);
+        if (segments.getCurrentBytes() >= maxFileBytes) {
+            segments.closeCurrent();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        segments.closeCurrent();
+    }
+}
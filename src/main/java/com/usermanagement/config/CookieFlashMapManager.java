@@ -0,0 +1,96 @@
+package com.usermanagement.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.servlet.FlashMap;
+import org.springframework.web.servlet.support.AbstractFlashMapManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps redirect flash attributes in a short-lived cookie so the UI never needs an HttpSession
+public class CookieFlashMapManager extends AbstractFlashMapManager {
+    
+    private static final String COOKIE_NAME = "FLASH";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Override
+    protected List<FlashMap> retrieveFlashMaps(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                return decode(cookie.getValue());
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    protected void updateFlashMaps(List<FlashMap> flashMaps, HttpServletRequest request, HttpServletResponse response) {
+        String value = flashMaps.isEmpty() ? "" : encode(flashMaps);
+        ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, value)
+                .httpOnly(true)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(flashMaps.isEmpty() ? Duration.ZERO : Duration.ofSeconds(getFlashMapTimeout()))
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+    
+    private String encode(List<FlashMap> flashMaps) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (FlashMap flashMap : flashMaps) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("path", flashMap.getTargetRequestPath());
+            entry.put("params", flashMap.getTargetRequestParams());
+            entry.put("expires", flashMap.getExpirationTime());
+            entry.put("attributes", new HashMap<>(flashMap));
+            entries.add(entry);
+        }
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(entries));
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not serialize flash attributes", e);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<FlashMap> decode(String value) {
+        try {
+            List<Map<String, Object>> entries = objectMapper.readValue(
+                Base64.getUrlDecoder().decode(value.getBytes(StandardCharsets.US_ASCII)),
+                new TypeReference<List<Map<String, Object>>>() { });
+            List<FlashMap> flashMaps = new ArrayList<>();
+            for (Map<String, Object> entry : entries) {
+                FlashMap flashMap = new FlashMap();
+                flashMap.setTargetRequestPath((String) entry.get("path"));
+                Object params = entry.get("params");
+                if (params instanceof Map) {
+                    flashMap.addTargetRequestParams(new LinkedMultiValueMap<>((Map<String, List<String>>) params));
+                }
+                flashMap.setExpirationTime(((Number) entry.get("expires")).longValue());
+                flashMap.putAll((Map<String, Object>) entry.get("attributes"));
+                flashMaps.add(flashMap);
+            }
+            return flashMaps;
+        } catch (Exception e) {
+            // A tampered or stale cookie only costs the user a flash message
+            return null;
+        }
+    }
+}
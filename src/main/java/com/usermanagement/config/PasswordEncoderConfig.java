@@ -1,5 +1,6 @@
 package com.usermanagement.config;
 
+import com.usermanagement.profiling.ProfiledPasswordEncoder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -10,7 +11,8 @@ public class PasswordEncoderConfig {
     
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        // Wrapped so BCrypt time shows up in Flight Recorder recordings
+        return new ProfiledPasswordEncoder(new BCryptPasswordEncoder());
     }
 }
 
@@ -0,0 +1,12 @@
+package com.usermanagement.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Off in the one-off rebalance command, which must not run the background jobs next to the application
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.rebalance", havingValue = "false", matchIfMissing = true)
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,22 +1,36 @@
 package com.usermanagement.config;
 
+import com.usermanagement.profiling.ProfilingEvents;
+import com.usermanagement.security.ArchiveRestoringAuthenticationProvider;
+import com.usermanagement.security.AuthenticatedUser;
 import com.usermanagement.security.JwtAuthenticationEntryPoint;
 import com.usermanagement.security.JwtAuthenticationFilter;
+import com.usermanagement.security.JwtCookieAuthenticationSuccessHandler;
+import com.usermanagement.security.JwtCookieSupport;
+import com.usermanagement.service.RefreshTokenService;
 import com.usermanagement.service.UserService;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.savedrequest.NullRequestCache;
 
 @Configuration
 @EnableWebSecurity
@@ -26,39 +40,56 @@ public class SecurityConfig {
     private final PasswordEncoder passwordEncoder;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
+    private final RefreshTokenService refreshTokenService;
+    private final JwtCookieSupport jwtCookieSupport;
+    
+    // Web UI authenticates with a JWT cookie instead of HttpSession, so any node can serve any request
+    @Value("${app.security.stateless-web:false}")
+    private boolean statelessWeb;
+    
+    // Not a user account: nothing a user can register, edit or delete reaches it
+    @Value("${app.profiling.operator.username:operator}")
+    private String operatorUsername;
+    
+    // BCrypt hash of the operator password; empty turns the profiling endpoints off
+    @Value("${app.profiling.operator.password-hash:}")
+    private String operatorPasswordHash;
     
     @Autowired
     public SecurityConfig(@Lazy UserService userService, 
                          PasswordEncoder passwordEncoder,
                          JwtAuthenticationFilter jwtAuthenticationFilter,
-                         JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint) {
+                         JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint,
+                         @Lazy RefreshTokenService refreshTokenService,
+                         JwtCookieSupport jwtCookieSupport) {
         this.userService = userService;
         this.passwordEncoder = passwordEncoder;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
         this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
+        this.refreshTokenService = refreshTokenService;
+        this.jwtCookieSupport = jwtCookieSupport;
     }
     
     @Bean
     public UserDetailsService userDetailsService() {
         return username -> {
+            ProfilingEvents.UserLookup event = new ProfilingEvents.UserLookup();
+            event.begin();
             var user = userService.findByEmail(username);
+            event.emailHash = ProfilingEvents.emailHash(username);
+            event.found = user.isPresent();
+            event.commit();
             if (user.isEmpty()) {
                 throw new UsernameNotFoundException("User not found: " + username);
             }
-            return org.springframework.security.core.userdetails.User
-                    .withUsername(user.get().getEmail())
-                    .password(user.get().getPassword())
-                    .roles("USER")
-                    .build();
+            return AuthenticatedUser.of(user.get());
         };
     }
     
+    // Password logins also find users archived for inactivity, and restore them once the password matches
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
-        DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
-        authProvider.setUserDetailsService(userDetailsService());
-        authProvider.setPasswordEncoder(passwordEncoder);
-        return authProvider;
+        return new ArchiveRestoringAuthenticationProvider(userDetailsService(), userService, passwordEncoder);
     }
     
     @Bean
@@ -66,29 +97,66 @@ public class SecurityConfig {
         return authConfig.getAuthenticationManager();
     }
     
+    // Flight Recorder recordings expose the whole process, so they take their own HTTP Basic
+    // credentials and role instead of any JWT or session
+    @Bean
+    @Order(1)
+    public SecurityFilterChain profilingFilterChain(HttpSecurity http) throws Exception {
+        http
+            .securityMatcher("/api/admin/profiling/**")
+            .authorizeHttpRequests(auth -> {
+                if (operatorPasswordHash.isEmpty()) {
+                    auth.anyRequest().denyAll();
+                } else {
+                    auth.anyRequest().hasRole("OPERATOR");
+                }
+            })
+            .httpBasic(basic -> { })
+            .authenticationManager(operatorAuthenticationManager())
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .csrf(csrf -> csrf.disable());
+        return http.build();
+    }
+    
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
             .authorizeHttpRequests(auth -> auth
+                // Async re-dispatch of long-poll/SSE responses was already authorized on the initial request
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 // Web interface - public
                 .requestMatchers("/login", "/css/**", "/js/**", "/images/**", "/error").permitAll()
+                // Public signing keys for offline token verification
+                .requestMatchers("/.well-known/jwks.json").permitAll()
                 // API Auth endpoints - public
-                .requestMatchers("/api/auth/login", "/api/auth/register").permitAll()
+                .requestMatchers("/api/auth/login", "/api/auth/register", "/api/auth/refresh", "/api/auth/logout").permitAll()
                 // All other API endpoints - require authentication
                 .requestMatchers("/api/**").authenticated()
                 // Web pages - require authentication
                 .anyRequest().authenticated()
             )
-            .formLogin(form -> form
-                .loginPage("/login")
-                .defaultSuccessUrl("/users", true)
-                .failureUrl("/login?error=true")
-                .permitAll()
-            )
+            .formLogin(form -> {
+                form.loginPage("/login")
+                    .failureUrl("/login?error=true")
+                    .permitAll();
+                if (statelessWeb) {
+                    form.successHandler(new JwtCookieAuthenticationSuccessHandler(
+                        refreshTokenService, jwtCookieSupport, "/users"));
+                } else {
+                    form.defaultSuccessUrl("/users", true);
+                }
+            })
             .logout(logout -> logout
                 .logoutUrl("/logout")
                 .logoutSuccessUrl("/login?logout=true")
                 .invalidateHttpSession(true)
+                .addLogoutHandler((request, response, authentication) -> {
+                    String refreshToken = jwtCookieSupport.readRefreshToken(request);
+                    if (refreshToken != null) {
+                        refreshTokenService.revoke(refreshToken);
+                    }
+                    jwtCookieSupport.clearTokens(response);
+                })
                 .deleteCookies("JSESSIONID")
                 .permitAll()
             )
@@ -99,7 +167,27 @@ public class SecurityConfig {
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
             .csrf(csrf -> csrf.disable()); // Disable CSRF for REST API (enable in production)
         
+        if (statelessWeb) {
+            http
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .requestCache(cache -> cache.requestCache(new NullRequestCache()));
+        }
+        
         return http.build();
     }
+    
+    private AuthenticationManager operatorAuthenticationManager() {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setPasswordEncoder(passwordEncoder);
+        InMemoryUserDetailsManager operators = new InMemoryUserDetailsManager();
+        if (!operatorPasswordHash.isEmpty()) {
+            operators.createUser(User.withUsername(operatorUsername)
+                .password(operatorPasswordHash)
+                .roles("OPERATOR")
+                .build());
+        }
+        provider.setUserDetailsService(operators);
+        return new ProviderManager(provider);
+    }
 }
 
@@ -0,0 +1,33 @@
+package com.usermanagement.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Configuration
+public class StartupConfig {
+    
+    // With spring.main.lazy-initialization=true a bean is only created on first use, and a bean that is
+    // never created never gets its @Scheduled methods registered (purges, key rotation, revocation sync).
+    // Such beans are kept eager; everything else is created on demand.
+    @Bean
+    public static LazyInitializationExcludeFilter scheduledBeansStayEager() {
+        return (beanName, beanDefinition, beanType) -> hasScheduledMethods(beanType);
+    }
+    
+    private static boolean hasScheduledMethods(Class<?> beanType) {
+        if (beanType == null) {
+            return false;
+        }
+        AtomicBoolean found = new AtomicBoolean();
+        ReflectionUtils.doWithMethods(beanType,
+                method -> found.set(true),
+                method -> !found.get() && AnnotatedElementUtils.hasAnnotation(method, Scheduled.class));
+        return found.get();
+    }
+}
@@ -0,0 +1,18 @@
+package com.usermanagement.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.FlashMapManager;
+
+@Configuration
+@ConditionalOnProperty(name = "app.security.stateless-web", havingValue = "true")
+public class StatelessWebConfig {
+    
+    // Replaces the session-backed default so redirect messages do not create a session
+    @Bean(name = DispatcherServlet.FLASH_MAP_MANAGER_BEAN_NAME)
+    public FlashMapManager flashMapManager() {
+        return new CookieFlashMapManager();
+    }
+}
@@ -1,16 +1,22 @@
 package com.usermanagement.controller;
 
+import com.usermanagement.audit.AuditLog;
+import com.usermanagement.entity.AuditEvent;
 import com.usermanagement.entity.User;
-import com.usermanagement.security.JwtTokenProvider;
+import com.usermanagement.security.AuthenticatedUser;
+import com.usermanagement.service.RefreshTokenService;
+import com.usermanagement.service.TokenPair;
 import com.usermanagement.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -23,11 +29,14 @@ public class AuthController {
     private AuthenticationManager authenticationManager;
     
     @Autowired
-    private JwtTokenProvider tokenProvider;
+    private RefreshTokenService refreshTokenService;
     
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private AuditLog auditLog;
+    
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) {
         try {
@@ -40,25 +49,21 @@ public class AuthController {
             
             SecurityContextHolder.getContext().setAuthentication(authentication);
             
-            String jwt = tokenProvider.generateToken(loginRequest.getEmail());
-            
-            Optional<User> userOptional = userService.findByEmail(loginRequest.getEmail());
+            // The authentication already loaded the profile, no need to read it again
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+            TokenPair tokens = refreshTokenService.issueTokens(user);
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("token", jwt);
-            response.put("type", "Bearer");
-            
-            if (userOptional.isPresent()) {
-                User user = userOptional.get();
-                Map<String, Object> userInfo = new HashMap<>();
-                userInfo.put("id", user.getId());
-                userInfo.put("name", user.getName());
-                userInfo.put("email", user.getEmail());
-                response.put("user", userInfo);
-            }
+            Map<String, Object> response = tokenResponse(tokens);
+            Map<String, Object> userInfo = new HashMap<>();
+            userInfo.put("id", user.getId());
+            userInfo.put("name", user.getName());
+            userInfo.put("email", user.getEmail());
+            response.put("user", userInfo);
+            auditLog.record(AuditEvent.Action.LOGIN, loginRequest.getEmail(), user.getId(), null);
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
+            auditLog.record(AuditEvent.Action.LOGIN_FAILED, loginRequest.getEmail(), null, e.getClass().getSimpleName());
             Map<String, String> error = new HashMap<>();
             error.put("error", "Email hoặc mật khẩu không đúng");
             error.put("message", e.getMessage());
@@ -82,13 +87,12 @@ public class AuthController {
             user.setPassword(registerRequest.getPassword());
             
             User createdUser = userService.createUser(user);
+            auditLog.record(AuditEvent.Action.REGISTER, createdUser.getEmail(), createdUser.getId(), null);
             
             // Generate token for new user
-            String jwt = tokenProvider.generateToken(createdUser.getEmail());
+            TokenPair tokens = refreshTokenService.issueTokens(AuthenticatedUser.of(createdUser));
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("token", jwt);
-            response.put("type", "Bearer");
+            Map<String, Object> response = tokenResponse(tokens);
             Map<String, Object> userInfo = new HashMap<>();
             userInfo.put("id", createdUser.getId());
             userInfo.put("name", createdUser.getName());
@@ -103,8 +107,46 @@ public class AuthController {
         }
     }
     
+    // Exchanges a refresh token for a new access token; the refresh token rotates on every use
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody RefreshRequest refreshRequest) {
+        if (refreshRequest.getRefreshToken() == null || refreshRequest.getRefreshToken().isBlank()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Refresh token không được cung cấp");
+            return ResponseEntity.badRequest().body(error);
+        }
+        try {
+            TokenPair tokens = refreshTokenService.refresh(refreshRequest.getRefreshToken());
+            return ResponseEntity.ok(tokenResponse(tokens));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Refresh token không hợp lệ");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(401).body(error);
+        }
+    }
+    
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                    @RequestBody(required = false) RefreshRequest refreshRequest) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            refreshTokenService.revokeAccessToken(authorization.substring(7));
+        }
+        if (refreshRequest != null && refreshRequest.getRefreshToken() != null) {
+            refreshTokenService.revoke(refreshRequest.getRefreshToken());
+        }
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Đăng xuất thành công");
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/me")
-    public ResponseEntity<?> getCurrentUser() {
+    public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser currentUser) {
+        // The filter already resolved the user for this request, from the token claims or one lookup
+        if (currentUser != null) {
+            return ResponseEntity.ok(userInfo(currentUser.getId(), currentUser.getName(), currentUser.getEmail(),
+                currentUser.getCreatedAt(), currentUser.getUpdatedAt()));
+        }
         try {
             String email = SecurityContextHolder.getContext().getAuthentication().getName();
             Optional<User> userOptional = userService.findByEmail(email);
@@ -116,14 +158,8 @@ public class AuthController {
             }
             
             User user = userOptional.get();
-            Map<String, Object> userInfo = new HashMap<>();
-            userInfo.put("id", user.getId());
-            userInfo.put("name", user.getName());
-            userInfo.put("email", user.getEmail());
-            userInfo.put("createdAt", user.getCreatedAt());
-            userInfo.put("updatedAt", user.getUpdatedAt());
-            
-            return ResponseEntity.ok(userInfo);
+            return ResponseEntity.ok(userInfo(user.getId(), user.getName(), user.getEmail(),
+                user.getCreatedAt(), user.getUpdatedAt()));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Unauthorized");
@@ -131,6 +167,26 @@ public class AuthController {
         }
     }
     
+    private static Map<String, Object> userInfo(Long id, String name, String email,
+                                                LocalDateTime createdAt, LocalDateTime updatedAt) {
+        Map<String, Object> userInfo = new HashMap<>();
+        userInfo.put("id", id);
+        userInfo.put("name", name);
+        userInfo.put("email", email);
+        userInfo.put("createdAt", createdAt);
+        userInfo.put("updatedAt", updatedAt);
+        return userInfo;
+    }
+    
+    private static Map<String, Object> tokenResponse(TokenPair tokens) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", tokens.getAccessToken());
+        response.put("type", "Bearer");
+        response.put("expiresIn", tokens.getExpiresIn());
+        response.put("refreshToken", tokens.getRefreshToken());
+        return response;
+    }
+    
     // Inner classes for request DTOs
     public static class LoginRequest {
         private String email;
@@ -182,5 +238,16 @@ public class AuthController {
             this.password = password;
         }
     }
+    
+    public static class RefreshRequest {
+        private String refreshToken;
+        
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+        
+        public void setRefreshToken(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
+    }
 }
-
@@ -0,0 +1,206 @@
+package com.usermanagement.controller;
+
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.event.UserChangedEvent;
+import com.usermanagement.service.ChangeFeedService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Fans committed outbox rows out to long-poll waiters and SSE subscribers with one shared batched read
+@Component
+public class ChangeFeedBroadcaster {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeedBroadcaster.class);
+    
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Value("${app.change-feed.max-batch-size:1000}")
+    private int batchSize;
+    
+    private final Queue<LongPollWaiter> waiters = new ConcurrentLinkedQueue<>();
+    private final Set<StreamSubscriber> streams = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "change-feed-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public DeferredResult<Map<String, Object>> poll(long cursor, int limit, long waitMs) {
+        List<UserChangeEvent> changes = changeFeedService.getChangesAfter(cursor, limit);
+        if (!changes.isEmpty() || waitMs <= 0) {
+            DeferredResult<Map<String, Object>> result = new DeferredResult<>();
+            result.setResult(toResponse(changes, cursor, limit));
+            return result;
+        }
+        
+        DeferredResult<Map<String, Object>> result =
+            new DeferredResult<>(waitMs, toResponse(List.of(), cursor, limit));
+        LongPollWaiter waiter = new LongPollWaiter(cursor, limit, result);
+        waiters.add(waiter);
+        result.onCompletion(() -> waiters.remove(waiter));
+        // A commit may have landed between the read above and the registration
+        requestDispatch();
+        return result;
+    }
+    
+    public SseEmitter subscribe(long cursor, long timeoutMs) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        StreamSubscriber subscriber = new StreamSubscriber(emitter, cursor);
+        streams.add(subscriber);
+        emitter.onCompletion(() -> streams.remove(subscriber));
+        emitter.onTimeout(() -> streams.remove(subscriber));
+        emitter.onError(e -> streams.remove(subscriber));
+        // Replays the backlog after the cursor, then keeps the stream live
+        requestDispatch();
+        return emitter;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        requestDispatch();
+    }
+    
+    // Other nodes write to the same outbox without notifying us, so poll as well
+    @Scheduled(fixedDelayString = "${app.change-feed.poll-interval-ms:1000}")
+    public void pollForRemoteChanges() {
+        if (!waiters.isEmpty() || !streams.isEmpty()) {
+            requestDispatch();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        streams.forEach(subscriber -> subscriber.emitter.complete());
+    }
+    
+    private void requestDispatch() {
+        if (dispatchPending.compareAndSet(false, true)) {
+            dispatcher.execute(this::dispatch);
+        }
+    }
+    
+    private void dispatch() {
+        dispatchPending.set(false);
+        try {
+            long from = Long.MAX_VALUE;
+            for (LongPollWaiter waiter : waiters) {
+                from = Math.min(from, waiter.cursor);
+            }
+            for (StreamSubscriber subscriber : streams) {
+                from = Math.min(from, subscriber.cursor);
+            }
+            
+            while (from != Long.MAX_VALUE) {
+                List<UserChangeEvent> changes = changeFeedService.getChangesAfter(from, batchSize);
+                if (changes.isEmpty()) {
+                    break;
+                }
+                deliverToWaiters(changes);
+                deliverToStreams(changes);
+                if (changes.size() < batchSize) {
+                    break;
+                }
+                from = changes.get(changes.size() - 1).getSequence();
+            }
+        } catch (Exception e) {
+            logger.error("Change feed dispatch failed", e);
+        }
+    }
+    
+    private void deliverToWaiters(List<UserChangeEvent> changes) {
+        for (LongPollWaiter waiter : waiters) {
+            List<UserChangeEvent> pending = after(changes, waiter.cursor, waiter.limit);
+            if (!pending.isEmpty()) {
+                waiter.result.setResult(toResponse(pending, waiter.cursor, waiter.limit));
+                waiters.remove(waiter);
+            }
+        }
+    }
+    
+    private void deliverToStreams(List<UserChangeEvent> changes) {
+        for (StreamSubscriber subscriber : streams) {
+            List<UserChangeEvent> pending = after(changes, subscriber.cursor, Integer.MAX_VALUE);
+            try {
+                for (UserChangeEvent change : pending) {
+                    subscriber.emitter.send(SseEmitter.event()
+                        .id(String.valueOf(change.getSequence()))
+                        .name("user-change")
+                        .data(change, MediaType.APPLICATION_JSON));
+                    subscriber.cursor = change.getSequence();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; it resumes later with Last-Event-ID
+                streams.remove(subscriber);
+                subscriber.emitter.completeWithError(e);
+            }
+        }
+    }
+    
+    private static List<UserChangeEvent> after(List<UserChangeEvent> changes, long cursor, int limit) {
+        List<UserChangeEvent> result = new ArrayList<>();
+        for (UserChangeEvent change : changes) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (change.getSequence() > cursor) {
+                result.add(change);
+            }
+        }
+        return result;
+    }
+    
+    private static Map<String, Object> toResponse(List<UserChangeEvent> changes, long cursor, int limit) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("changes", changes);
+        response.put("cursor", changes.isEmpty() ? cursor : changes.get(changes.size() - 1).getSequence());
+        response.put("hasMore", changes.size() >= limit);
+        return response;
+    }
+    
+    private static final class LongPollWaiter {
+        private final long cursor;
+        private final int limit;
+        private final DeferredResult<Map<String, Object>> result;
+        
+        private LongPollWaiter(long cursor, int limit, DeferredResult<Map<String, Object>> result) {
+            this.cursor = cursor;
+            this.limit = limit;
+            this.result = result;
+        }
+    }
+    
+    private static final class StreamSubscriber {
+        private final SseEmitter emitter;
+        private volatile long cursor;
+        
+        private StreamSubscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+}
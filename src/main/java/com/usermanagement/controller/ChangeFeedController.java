@@ -0,0 +1,64 @@
+package com.usermanagement.controller;
+
+import com.usermanagement.service.ChangeFeedService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/changes")
+public class ChangeFeedController {
+    
+    private static final long MAX_WAIT_MS = 30_000L;
+    private static final long STREAM_TIMEOUT_MS = 30 * 60 * 1000L;
+    
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Autowired
+    private ChangeFeedBroadcaster broadcaster;
+    
+    // Long-poll: returns immediately when changes exist after the cursor, otherwise waits up to waitMs
+    @GetMapping
+    public DeferredResult<Map<String, Object>> getChanges(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "500") int limit,
+            @RequestParam(defaultValue = "0") long waitMs) {
+        return broadcaster.poll(after, Math.max(1, limit), Math.min(Math.max(0, waitMs), MAX_WAIT_MS));
+    }
+    
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestParam(required = false) Long after,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        long cursor;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                cursor = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Last-Event-ID must be a change feed sequence");
+            }
+        } else if (after != null) {
+            cursor = after;
+        } else {
+            // No cursor: only changes from now on
+            cursor = changeFeedService.getLatestSequence();
+        }
+        return broadcaster.subscribe(cursor, STREAM_TIMEOUT_MS);
+    }
+    
+    @GetMapping("/cursor")
+    public ResponseEntity<Map<String, Object>> getLatestCursor() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("cursor", changeFeedService.getLatestSequence());
+        return ResponseEntity.ok(response);
+    }
+}
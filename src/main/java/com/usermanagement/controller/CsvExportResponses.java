@@ -0,0 +1,65 @@
+package com.usermanagement.controller;
+
+import com.usermanagement.service.ExportCursor;
+import com.usermanagement.service.UserService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Shared by the web and REST export endpoints
+final class CsvExportResponses {
+    
+    static final String CURSOR_HEADER = "X-Export-Cursor";
+    
+    private CsvExportResponses() {
+    }
+    
+    // Every user, with the cursor a delta export continues from
+    static ResponseEntity<?> full(UserService userService) {
+        // Pinned first: whatever changes while the file is written is exported again by the next delta
+        ExportCursor until = userService.getExportHighWaterMark(new ExportCursor(0));
+        // Streamed as the parallel export produces it; a failure part way through ends the download early
+        StreamingResponseBody body = out -> userService.exportUsersToCSV(out);
+        return new ResponseEntity<>(body, headers("users_export.csv", until), HttpStatus.OK);
+    }
+    
+    static ResponseEntity<?> delta(UserService userService, LocalDateTime updatedSince, String cursor) {
+        ExportCursor from;
+        try {
+            from = cursor != null && !cursor.isBlank()
+                ? ExportCursor.parse(cursor.trim())
+                : userService.getExportCursorSince(updatedSince);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        }
+        // The change feed has been purged past this point: a delta would silently miss changes
+        if (from == null || !userService.isExportCursorRetained(from)) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Changes this old are no longer kept; run a full export and continue from its " + CURSOR_HEADER);
+            return ResponseEntity.status(HttpStatus.GONE).body(error);
+        }
+        
+        ExportCursor until = userService.getExportHighWaterMark(from);
+        StreamingResponseBody body = out -> userService.exportChangedUsersToCSV(from, until, out);
+        return new ResponseEntity<>(body, headers("users_delta_export.csv", until), HttpStatus.OK);
+    }
+    
+    private static HttpHeaders headers(String filename, ExportCursor until) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(new MediaType("text", "csv", StandardCharsets.UTF_8));
+        headers.setContentDispositionFormData("attachment", filename);
+        headers.set(CURSOR_HEADER, until.encode());
+        headers.setAccessControlExposeHeaders(List.of(CURSOR_HEADER));
+        return headers;
+    }
+}
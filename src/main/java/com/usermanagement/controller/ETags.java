@@ -0,0 +1,52 @@
+package com.usermanagement.controller;
+
+import com.usermanagement.entity.User;
+
+/**
+ * Users carry strong validators, since If-Match is a strong comparison and a weak tag never
+ * matches. Tomcat leaves responses with a strong ETag uncompressed, which costs nothing for one
+ * user below the compression threshold. Listings only answer If-None-Match and keep weak ones, so
+ * they are still gzip-encoded.
+ */
+final class ETags {
+    
+    private ETags() {
+    }
+    
+    // Views with a deferred edit have no version yet, and no validator
+    static String forUser(User user) {
+        if (user.getVersion() == null) {
+            return null;
+        }
+        return "\"user-" + user.getId() + "-" + user.getVersion() + "\"";
+    }
+    
+    /**
+     * The version of the user an If-Match header names, -1 when it names another user, a weak tag
+     * or something this server never issued.
+     */
+    static long versionFromIfMatch(String ifMatch, Long id) {
+        String tag = ifMatch.trim();
+        String prefix = "\"user-" + id + "-";
+        if (!tag.startsWith(prefix) || !tag.endsWith("\"") || tag.indexOf(',') >= 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(tag, prefix.length(), tag.length() - 1, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    // Every mutation appends to the change feed, so its sequence versions every listing at once
+    static String forListing(long changeSequence, Object... variant) {
+        if (changeSequence < 0) {
+            return null;
+        }
+        StringBuilder etag = new StringBuilder("W/\"users-").append(changeSequence);
+        for (Object part : variant) {
+            etag.append('-').append(Integer.toHexString(String.valueOf(part).hashCode()));
+        }
+        return etag.append('"').toString();
+    }
+}
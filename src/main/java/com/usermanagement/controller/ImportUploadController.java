@@ -0,0 +1,92 @@
+package com.usermanagement.controller;
+
+import com.usermanagement.service.ImportProgress;
+import com.usermanagement.service.ImportUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * CSV import from the raw request body (Content-Type text/csv), read as it arrives instead of being
+ * buffered by the multipart resolver, so the file size is not limited by spring.servlet.multipart.
+ * <p>
+ * POST /stream imports a whole file in one request. For resumable uploads, POST /uploads creates an
+ * upload, then PUT /uploads/{id}?offset=N sends the file from byte N on (any number of times, with
+ * last=true on the final part); GET /uploads/{id} tells where to continue after a failure.
+ */
+@RestController
+@RequestMapping("/api/users/import")
+public class ImportUploadController {
+    
+    @Autowired
+    private ImportUploadService importUploadService;
+    
+    @PostMapping("/stream")
+    public ResponseEntity<?> importStream(HttpServletRequest request, Principal principal) throws IOException {
+        ImportProgress upload = importUploadService.start(principal.getName());
+        return append(upload.getUploadId(), 0, true, request, principal);
+    }
+    
+    @PostMapping("/uploads")
+    public ResponseEntity<ImportProgress> startUpload(Principal principal) {
+        ImportProgress upload = importUploadService.start(principal.getName());
+        return ResponseEntity.created(URI.create("/api/users/import/uploads/" + upload.getUploadId())).body(upload);
+    }
+    
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId, Principal principal) {
+        Optional<ImportProgress> upload = importUploadService.getProgress(uploadId, principal.getName());
+        if (upload.isEmpty()) {
+            return error(HttpStatus.NOT_FOUND, "Upload not found: " + uploadId);
+        }
+        return ResponseEntity.ok(upload.get());
+    }
+    
+    @PutMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> appendUpload(@PathVariable String uploadId,
+                                          @RequestParam long offset,
+                                          @RequestParam(defaultValue = "false") boolean last,
+                                          HttpServletRequest request,
+                                          Principal principal) throws IOException {
+        return append(uploadId, offset, last, request, principal);
+    }
+    
+    private ResponseEntity<?> append(String uploadId, long offset, boolean last,
+                                     HttpServletRequest request, Principal principal) throws IOException {
+        try {
+            return ResponseEntity.ok(importUploadService.append(
+                    uploadId, principal.getName(), offset, last, request.getInputStream()));
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IllegalStateException e) {
+            // Wrong offset or a finished upload: report where the upload stands
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            importUploadService.getProgress(uploadId, principal.getName())
+                    .ifPresent(upload -> error.put("upload", upload));
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            importUploadService.getProgress(uploadId, principal.getName())
+                    .ifPresent(upload -> error.put("upload", upload));
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    private static ResponseEntity<Map<String, String>> error(HttpStatus status, String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return ResponseEntity.status(status).body(error);
+    }
+}
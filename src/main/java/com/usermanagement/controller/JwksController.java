@@ -0,0 +1,30 @@
+package com.usermanagement.controller;
+
+import com.usermanagement.security.SigningKeyRing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Lets downstream services verify our access tokens offline with cached public keys
+@RestController
+public class JwksController {
+    
+    @Autowired
+    private SigningKeyRing keyRing;
+    
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("keys", keyRing.getPublicJwks());
+        // New keys are published ahead of activation, so a few minutes of caching is safe
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+            .body(response);
+    }
+}
@@ -0,0 +1,84 @@
+package com.usermanagement.controller;
+
+import com.usermanagement.profiling.JfrRecordings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Flight Recorder recordings of this node, for the operator account only (see SecurityConfig). Start a
+ * recording, then either wait for its duration and download the file, or stop it early and get the
+ * file in the same response. Open the file in JDK Mission Control; the application's own events are
+ * under "User Management".
+ */
+@RestController
+@RequestMapping("/api/admin/profiling/recordings")
+public class ProfilingController {
+    
+    @Autowired
+    private JfrRecordings recordings;
+    
+    @PostMapping
+    public ResponseEntity<?> start(@RequestParam(defaultValue = "60") long seconds) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(recordings.start(seconds));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT, e.getMessage());
+        } catch (Exception e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Could not start recording: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getStatus(@PathVariable long id) {
+        try {
+            return ResponseEntity.ok(recordings.getStatus(id));
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+    
+    @GetMapping("/{id}/file")
+    public ResponseEntity<?> download(@PathVariable long id) {
+        try {
+            return file(id, recordings.getFile(id));
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+    
+    @PostMapping("/{id}/stop")
+    public ResponseEntity<?> stop(@PathVariable long id) {
+        try {
+            return file(id, recordings.stop(id));
+        } catch (NoSuchElementException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+    
+    private static ResponseEntity<?> file(long id, Path path) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "recording-" + id + ".jfr");
+        return new ResponseEntity<>(new FileSystemResource(path), headers, HttpStatus.OK);
+    }
+    
+    private static ResponseEntity<Map<String, String>> error(HttpStatus status, String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return ResponseEntity.status(status).body(error);
+    }
+}
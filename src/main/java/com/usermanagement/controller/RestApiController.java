@@ -1,19 +1,36 @@
 package com.usermanagement.controller;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.usermanagement.entity.User;
+import com.usermanagement.service.ChangeFeedService;
+import com.usermanagement.service.CountMode;
 import com.usermanagement.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 @RestController
@@ -23,29 +40,56 @@ public class RestApiController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    // Write listings with UserListingJson instead of serializing a map; same bytes, no per-row garbage
+    @Value("${app.listing.streaming-json:true}")
+    private boolean streamingJson;
+    
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllUsers(
+    public ResponseEntity<?> getAllUsers(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(required = false) String keyword) {
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String count,
+            WebRequest webRequest) {
+        
+        CountMode countMode;
+        try {
+            countMode = CountMode.parse(count);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        
+        // Answer 304 before running the page and count queries
+        String etag = ETags.forListing(changeFeedService.getSettledSequence());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<User> userPage;
+        Slice<User> userPage;
         
         if (keyword != null && !keyword.trim().isEmpty()) {
-            userPage = userService.searchUsers(keyword, pageable);
+            userPage = userService.searchUsers(keyword, pageable, countMode);
         } else {
-            userPage = userService.getAllUsers(pageable);
+            userPage = userService.getAllUsers(pageable, countMode);
         }
         
-        Map<String, Object> response = new HashMap<>();
-        response.put("users", userPage.getContent());
-        response.put("currentPage", userPage.getNumber());
-        response.put("totalPages", userPage.getTotalPages());
-        response.put("totalItems", userPage.getTotalElements());
-        response.put("pageSize", userPage.getSize());
-        
-        return ResponseEntity.ok(response);
+        return revalidated(etag).body(listingBody(userPage, countMode, null));
+    }
+    
+    // One user per line, read from a database cursor in id order, for result sets too big for one response object
+    @GetMapping(params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String keyword) {
+        return ndjson(keyword, PageRequest.of(page, size));
     }
     
     @GetMapping("/{id}")
@@ -56,7 +100,8 @@ public class RestApiController {
             error.put("error", "User not found with id: " + id);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
         }
-        return ResponseEntity.ok(user.get());
+        // A matching If-None-Match turns this into a 304 without serializing the body
+        return revalidated(ETags.forUser(user.get())).body(user.get());
     }
     
     @PostMapping
@@ -87,7 +132,8 @@ public class RestApiController {
     @PutMapping("/{id}")
     public ResponseEntity<?> updateUser(@PathVariable Long id, 
                                        @Valid @RequestBody User user,
-                                       BindingResult bindingResult) {
+                                       BindingResult bindingResult,
+                                       @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         if (bindingResult.hasErrors()) {
             Map<String, Object> errors = new HashMap<>();
             bindingResult.getFieldErrors().forEach(error -> 
@@ -95,24 +141,35 @@ public class RestApiController {
             return ResponseEntity.badRequest().body(errors);
         }
         
-        Optional<User> existingUser = userService.getUserById(id);
-        if (existingUser.isEmpty()) {
-            Map<String, String> error = new HashMap<>();
-            error.put("error", "User not found with id: " + id);
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        // Without If-Match the last write wins; "*" only requires the user to exist
+        Long expectedVersion = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            long version = ETags.versionFromIfMatch(ifMatch, id);
+            if (version < 0) {
+                return preconditionFailed(id, "If-Match does not name a version of user " + id);
+            }
+            expectedVersion = version;
         }
         
-        // Check email uniqueness if changed
-        if (!existingUser.get().getEmail().equals(user.getEmail()) &&
-            userService.existsByEmail(user.getEmail())) {
+        // Existence, version and email uniqueness are all decided by the UPDATE itself
+        try {
+            User updatedUser = userService.updateUser(id, user, expectedVersion);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            String etag = ETags.forUser(updatedUser);
+            if (etag != null) {
+                response.eTag(etag);
+            }
+            return response.body(updatedUser);
+        } catch (NoSuchElementException e) {
             Map<String, String> error = new HashMap<>();
-            error.put("error", "Email already exists: " + user.getEmail());
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        } catch (OptimisticLockingFailureException e) {
+            return preconditionFailed(id, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(error);
-        }
-        
-        try {
-            User updatedUser = userService.updateUser(id, user);
-            return ResponseEntity.ok(updatedUser);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
@@ -141,24 +198,108 @@ public class RestApiController {
         }
     }
     
+    // Delta export: users changed after updatedSince (or a previous X-Export-Cursor) plus tombstones;
+    // without either, every user and the cursor to continue from
+    @GetMapping("/export")
+    public ResponseEntity<?> exportChangedUsers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince,
+            @RequestParam(required = false) String cursor) {
+        if (updatedSince == null && (cursor == null || cursor.isBlank())) {
+            return CsvExportResponses.full(userService);
+        }
+        return CsvExportResponses.delta(userService, updatedSince, cursor);
+    }
+    
     @GetMapping("/search")
-    public ResponseEntity<Map<String, Object>> searchUsers(
+    public ResponseEntity<?> searchUsers(
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String count,
+            WebRequest webRequest) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<User> userPage = userService.searchUsers(keyword, pageable);
+        CountMode countMode;
+        try {
+            countMode = CountMode.parse(count);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
         
-        Map<String, Object> response = new HashMap<>();
-        response.put("users", userPage.getContent());
-        response.put("currentPage", userPage.getNumber());
-        response.put("totalPages", userPage.getTotalPages());
-        response.put("totalItems", userPage.getTotalElements());
-        response.put("pageSize", userPage.getSize());
-        response.put("keyword", keyword);
+        String etag = ETags.forListing(changeFeedService.getSettledSequence());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        
+        Pageable pageable = PageRequest.of(page, size);
+        Slice<User> userPage = userService.searchUsers(keyword, pageable, countMode);
         
-        return ResponseEntity.ok(response);
+        return revalidated(etag).body(listingBody(userPage, countMode, keyword));
+    }
+    
+    @GetMapping(value = "/search", params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamSearchUsers(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        return ndjson(keyword, PageRequest.of(page, size));
+    }
+    
+    private Object listingBody(Slice<User> userPage, CountMode countMode, String keyword) {
+        if (streamingJson) {
+            return new UserListing(userPage, countMode, keyword);
+        }
+        return UserListingJson.toMap(userPage, countMode, keyword);
+    }
+    
+    private ResponseEntity<StreamingResponseBody> ndjson(String keyword, Pageable pageable) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                // No separator before a root value, every line ends with a newline instead
+                generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+                UserListingJson json = new UserListingJson(generator);
+                userService.forEachUser(keyword, pageable, user -> {
+                    try {
+                        json.writeUser(user, false);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(UserListingJson.NDJSON))
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .body(body);
+    }
+    
+    private static ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", message);
+        return ResponseEntity.badRequest().body(error);
+    }
+    
+    // 412 with the current ETag, so the client can refetch or retry against the version it now knows
+    private ResponseEntity<Map<String, String>> preconditionFailed(Long id, String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.PRECONDITION_FAILED);
+        String etag = userService.getUserById(id).map(ETags::forUser).orElse(null);
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        return response.body(error);
+    }
+    
+    private static ResponseEntity.BodyBuilder revalidated(String etag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+            .cacheControl(CacheControl.noCache().cachePrivate());
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        return builder;
     }
 }
 
@@ -0,0 +1,32 @@
+package com.usermanagement.controller;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.service.CountMode;
+import org.springframework.data.domain.Slice;
+
+// Response body of the list and search endpoints, written by UserListingHttpMessageConverter
+final class UserListing {
+    
+    private final Slice<User> page;
+    private final CountMode countMode;
+    private final String keyword;
+    
+    UserListing(Slice<User> page, CountMode countMode, String keyword) {
+        this.page = page;
+        this.countMode = countMode;
+        this.keyword = keyword;
+    }
+    
+    Slice<User> getPage() {
+        return page;
+    }
+    
+    CountMode getCountMode() {
+        return countMode;
+    }
+    
+    // Null for the unfiltered listing, which has no keyword key
+    String getKeyword() {
+        return keyword;
+    }
+}
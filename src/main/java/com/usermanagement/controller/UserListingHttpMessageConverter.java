@@ -0,0 +1,51 @@
+package com.usermanagement.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link UserListing} bodies straight to the response with {@link UserListingJson}. Picked up
+ * by Spring Boot as a converter bean, ahead of the Jackson converter, and only for this type.
+ */
+@Component
+class UserListingHttpMessageConverter extends AbstractHttpMessageConverter<UserListing> {
+    
+    private final ObjectMapper objectMapper;
+    
+    UserListingHttpMessageConverter(ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_JSON);
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return UserListing.class.isAssignableFrom(clazz);
+    }
+    
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+    
+    @Override
+    protected UserListing readInternal(Class<? extends UserListing> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("User listings are response bodies only", inputMessage);
+    }
+    
+    @Override
+    protected void writeInternal(UserListing listing, HttpOutputMessage outputMessage) throws IOException {
+        // The mapper's factory, so generator settings match the Jackson converter's output
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputMessage.getBody(), JsonEncoding.UTF8)) {
+            new UserListingJson(generator).writeListing(listing.getPage(), listing.getCountMode(), listing.getKeyword());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.usermanagement.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.usermanagement.entity.User;
+import com.usermanagement.service.CountMode;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes user listings field by field with a Jackson generator, instead of building a map and
+ * letting the ObjectMapper walk it. The output is byte-for-byte what the default ObjectMapper
+ * produces for {@link #toMap}: keys in its insertion order (users last, so the rows stream after
+ * the page metadata), User properties in declaration order and dates in ISO_LOCAL_DATE_TIME.
+ * Dates are formatted into a reused buffer, so a row allocates nothing.
+ * <p>
+ * Not thread-safe: use one instance per response.
+ */
+public final class UserListingJson {
+    
+    public static final String NDJSON = "application/x-ndjson";
+    
+    private final JsonGenerator generator;
+    private final char[] dateBuffer = new char[29];
+    
+    public UserListingJson(JsonGenerator generator) {
+        this.generator = generator;
+    }
+    
+    /**
+     * The listing as a map, for the ObjectMapper path: totalPages/totalItems are approximate for
+     * cached and estimated counts and absent for count=none. Ordered like writeListing writes it,
+     * which is also the order earlier HashMap-built listings had.
+     */
+    public static Map<String, Object> toMap(Slice<User> userPage, CountMode countMode, String keyword) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        if (userPage instanceof Page<User> countedPage) {
+            response.put("totalItems", countedPage.getTotalElements());
+            response.put("totalPages", countedPage.getTotalPages());
+        }
+        response.put("pageSize", userPage.getSize());
+        if (countMode != CountMode.EXACT) {
+            response.put("hasNext", userPage.hasNext());
+        }
+        response.put("currentPage", userPage.getNumber());
+        if (countMode != CountMode.EXACT) {
+            response.put("countMode", countMode.name().toLowerCase(Locale.ROOT));
+        }
+        if (keyword != null) {
+            response.put("keyword", keyword);
+        }
+        response.put("users", userPage.getContent());
+        return response;
+    }
+    
+    public void writeListing(Slice<User> userPage, CountMode countMode, String keyword) throws IOException {
+        generator.writeStartObject();
+        Page<User> countedPage = userPage instanceof Page<User> page ? page : null;
+        if (countedPage != null) {
+            generator.writeNumberField("totalItems", countedPage.getTotalElements());
+            generator.writeNumberField("totalPages", countedPage.getTotalPages());
+        }
+        generator.writeNumberField("pageSize", userPage.getSize());
+        if (countMode != CountMode.EXACT) {
+            generator.writeBooleanField("hasNext", userPage.hasNext());
+        }
+        generator.writeNumberField("currentPage", userPage.getNumber());
+        if (countMode != CountMode.EXACT) {
+            generator.writeStringField("countMode", countMode.name().toLowerCase(Locale.ROOT));
+        }
+        if (keyword != null) {
+            generator.writeStringField("keyword", keyword);
+        }
+        generator.writeArrayFieldStart("users");
+        for (User user : userPage.getContent()) {
+            writeUser(user);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+    
+    // A User as the ObjectMapper writes it
+    public void writeUser(User user) throws IOException {
+        writeUser(user, true);
+    }
+    
+    // Newer surfaces such as NDJSON leave the password hash out
+    public void writeUser(User user, boolean withPassword) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("id");
+        if (user.getId() != null) {
+            generator.writeNumber(user.getId());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeStringField("name", user.getName());
+        generator.writeStringField("email", user.getEmail());
+        if (withPassword) {
+            generator.writeStringField("password", user.getPassword());
+        }
+        writeDateTimeField("createdAt", user.getCreatedAt());
+        writeDateTimeField("updatedAt", user.getUpdatedAt());
+        generator.writeEndObject();
+    }
+    
+    private void writeDateTimeField(String name, LocalDateTime value) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else if (value.getYear() < 0 || value.getYear() > 9999) {
+            // Signed and five-digit years: rare enough to go through the formatter
+            generator.writeString(value.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        } else {
+            generator.writeString(dateBuffer, 0, formatDateTime(value, dateBuffer));
+        }
+    }
+    
+    // ISO_LOCAL_DATE_TIME: seconds always, fraction only when non-zero and without trailing zeros
+    static int formatDateTime(LocalDateTime value, char[] buffer) {
+        digits(buffer, 0, value.getYear(), 4);
+        buffer[4] = '-';
+        digits(buffer, 5, value.getMonthValue(), 2);
+        buffer[7] = '-';
+        digits(buffer, 8, value.getDayOfMonth(), 2);
+        buffer[10] = 'T';
+        digits(buffer, 11, value.getHour(), 2);
+        buffer[13] = ':';
+        digits(buffer, 14, value.getMinute(), 2);
+        buffer[16] = ':';
+        digits(buffer, 17, value.getSecond(), 2);
+        int nano = value.getNano();
+        if (nano == 0) {
+            return 19;
+        }
+        buffer[19] = '.';
+        digits(buffer, 20, nano, 9);
+        int length = 29;
+        while (buffer[length - 1] == '0') {
+            length--;
+        }
+        return length;
+    }
+    
+    private static void digits(char[] buffer, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package com.usermanagement.controller;
 
 import com.usermanagement.entity.User;
+import com.usermanagement.service.ChangeFeedService;
+import com.usermanagement.service.CountMode;
+import com.usermanagement.service.ImportMode;
+import com.usermanagement.service.ImportResult;
 import com.usermanagement.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
+import java.security.Principal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @Controller
 public class WebController {
@@ -22,6 +39,12 @@ public class WebController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Value("${app.version:1.0.0}")
+    private String appVersion;
+    
     @GetMapping("/login")
     public String loginPage(@RequestParam(required = false) String error,
                            @RequestParam(required = false) String logout,
@@ -39,21 +62,57 @@ public class WebController {
     public String listUsers(@RequestParam(defaultValue = "0") int page,
                            @RequestParam(defaultValue = "10") int size,
                            @RequestParam(required = false) String keyword,
-                           Model model) {
+                           @RequestParam(required = false) String count,
+                           Model model,
+                           Principal principal,
+                           HttpServletRequest request,
+                           HttpServletResponse response,
+                           WebRequest webRequest) {
+        // The page embeds flash messages and the signed-in name, so only revalidate when neither varies
+        Map<String, ?> flashAttributes = RequestContextUtils.getInputFlashMap(request);
+        if (flashAttributes == null || flashAttributes.isEmpty()) {
+            String etag = ETags.forListing(changeFeedService.getSettledSequence(),
+                principal != null ? principal.getName() : "anonymous", appVersion);
+            if (etag != null && webRequest.checkNotModified(etag)) {
+                return null;
+            }
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        
+        // The page renders numbered links, so count=none falls back to a cached count here
+        CountMode countMode;
+        try {
+            countMode = CountMode.parse(count);
+        } catch (IllegalArgumentException e) {
+            countMode = CountMode.EXACT;
+        }
+        if (countMode == CountMode.NONE) {
+            countMode = CountMode.CACHED;
+        }
+        if (countMode != CountMode.EXACT) {
+            model.addAttribute("count", countMode.name().toLowerCase(Locale.ROOT));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<User> userPage;
+        Slice<User> userPage;
         
         if (keyword != null && !keyword.trim().isEmpty()) {
-            userPage = userService.searchUsers(keyword, pageable);
+            userPage = userService.searchUsers(keyword, pageable, countMode);
             model.addAttribute("keyword", keyword);
         } else {
-            userPage = userService.getAllUsers(pageable);
+            userPage = userService.getAllUsers(pageable, countMode);
         }
         
         model.addAttribute("users", userPage.getContent());
         model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", userPage.getTotalPages());
-        model.addAttribute("totalItems", userPage.getTotalElements());
+        if (userPage instanceof Page<User> countedPage) {
+            model.addAttribute("totalPages", countedPage.getTotalPages());
+            model.addAttribute("totalItems", countedPage.getTotalElements());
+        } else {
+            // Uncounted: links go as far as the slice proves, plus the next page while there is one
+            model.addAttribute("totalPages", page + (userPage.hasNext() ? 2 : 1));
+            model.addAttribute("totalItems", pageable.getOffset() + userPage.getNumberOfElements());
+        }
         model.addAttribute("pageSize", size);
         
         return "users";
@@ -134,6 +193,7 @@ public class WebController {
     
     @PostMapping("/users/import")
     public String importUsers(@RequestParam("file") MultipartFile file,
+                             @RequestParam(required = false) String mode,
                              RedirectAttributes redirectAttributes) {
         if (file.isEmpty()) {
             redirectAttributes.addFlashAttribute("error", "Vui lòng chọn file CSV!");
@@ -141,9 +201,18 @@ public class WebController {
         }
         
         try {
-            List<User> importedUsers = userService.importUsersFromCSV(file);
-            redirectAttributes.addFlashAttribute("success", 
-                "Import thành công " + importedUsers.size() + " người dùng!");
+            ImportResult result = userService.importUsersFromCSV(file, ImportMode.parse(mode));
+            if (result.getMode() == ImportMode.UPSERT) {
+                redirectAttributes.addFlashAttribute("success", "Import xong: " + result.getInsertedCount()
+                    + " thêm mới, " + result.getUpdatedCount() + " cập nhật, "
+                    + result.getUnchangedCount() + " không đổi.");
+            } else {
+                redirectAttributes.addFlashAttribute("success", 
+                    "Import thành công " + result.getImportedUsers().size() + " người dùng!");
+            }
+            if (!result.getDuplicates().isEmpty()) {
+                redirectAttributes.addFlashAttribute("error", describeDuplicates(result.getDuplicates()));
+            }
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Lỗi import: " + e.getMessage());
         }
@@ -152,18 +221,34 @@ public class WebController {
     }
     
     @GetMapping("/users/export")
-    public org.springframework.http.ResponseEntity<byte[]> exportUsers() {
-        try {
-            byte[] csvData = userService.exportUsersToCSV();
-            org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
-            headers.setContentType(org.springframework.http.MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", "users_export.csv");
-            return new org.springframework.http.ResponseEntity<>(csvData, headers, 
-                org.springframework.http.HttpStatus.OK);
-        } catch (Exception e) {
-            return new org.springframework.http.ResponseEntity<>(
-                org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR);
+    public org.springframework.http.ResponseEntity<?> exportUsers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince,
+            @RequestParam(required = false) String cursor) {
+        if (updatedSince != null || cursor != null) {
+            return CsvExportResponses.delta(userService, updatedSince, cursor);
         }
+        return CsvExportResponses.full(userService);
+    }
+    
+    // Flash attributes travel in a cookie in stateless mode, so only the first rows are listed
+    private static String describeDuplicates(List<ImportResult.Duplicate> duplicates) {
+        StringBuilder message = new StringBuilder("Bỏ qua " + duplicates.size() + " dòng trùng email: ");
+        int shown = Math.min(duplicates.size(), 10);
+        for (int i = 0; i < shown; i++) {
+            ImportResult.Duplicate duplicate = duplicates.get(i);
+            if (i > 0) {
+                message.append("; ");
+            }
+            message.append("dòng ").append(duplicate.getRow()).append(" (").append(duplicate.getEmail()).append(") ");
+            if (duplicate.getReason() == ImportResult.Duplicate.Reason.EXISTING_USER) {
+                message.append("đã tồn tại");
+            } else {
+                message.append("trùng dòng ").append(duplicate.getFirstRow());
+            }
+        }
+        if (duplicates.size() > shown) {
+            message.append("; ...");
+        }
+        return message.toString();
     }
 }
-
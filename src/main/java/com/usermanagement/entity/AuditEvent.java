@@ -0,0 +1,109 @@
+package com.usermanagement.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "audit_events", indexes = {
+    @Index(name = "idx_audit_events_occurred_at", columnList = "occurred_at"),
+    @Index(name = "idx_audit_events_user_id", columnList = "user_id")
+})
+public class AuditEvent {
+    
+    public enum Action {
+        LOGIN,
+        LOGIN_FAILED,
+        REGISTER,
+        CREATE,
+        UPDATE,
+        DELETE,
+        IMPORT
+    }
+    
+    public static final int MAX_ACTOR_LENGTH = 100;
+    public static final int MAX_DETAIL_LENGTH = 255;
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // When the request made the change, not when the audit writer stored it
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Action action;
+    
+    // Email of the authenticated caller, or the email given to a login; null for anonymous requests
+    @Column(length = MAX_ACTOR_LENGTH)
+    private String actor;
+    
+    // The user acted on, when there is one
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(length = MAX_DETAIL_LENGTH)
+    private String detail;
+    
+    // Constructors
+    public AuditEvent() {
+    }
+    
+    public AuditEvent(Action action, String actor, Long userId, String detail) {
+        this.occurredAt = LocalDateTime.now();
+        this.action = action;
+        this.actor = actor;
+        this.userId = userId;
+        this.detail = detail;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+    
+    public void setOccurredAt(LocalDateTime occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+    
+    public Action getAction() {
+        return action;
+    }
+    
+    public void setAction(Action action) {
+        this.action = action;
+    }
+    
+    public String getActor() {
+        return actor;
+    }
+    
+    public void setActor(String actor) {
+        this.actor = actor;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public String getDetail() {
+        return detail;
+    }
+    
+    public void setDetail(String detail) {
+        this.detail = detail;
+    }
+}
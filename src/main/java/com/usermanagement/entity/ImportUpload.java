@@ -0,0 +1,143 @@
+package com.usermanagement.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A resumable streaming import. The file is sent in any number of requests, each continuing at
+ * {@code committedBytes}: the end of the last CSV record whose rows are already saved. Rows and the
+ * new offset are committed together, so a retried request never imports a row twice.
+ */
+@Entity
+@Table(name = "import_uploads", indexes = {
+    @Index(name = "idx_import_uploads_updated_at", columnList = "updated_at")
+})
+public class ImportUpload {
+    
+    public enum Status {
+        OPEN,
+        COMPLETE
+    }
+    
+    // Random UUID, so upload ids cannot be guessed
+    @Id
+    @Column(length = 36)
+    private String id;
+    
+    // Email of the user who started the upload; only they can continue it
+    @Column(nullable = false, length = 100)
+    private String owner;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+    
+    @Column(name = "committed_bytes", nullable = false)
+    private long committedBytes;
+    
+    // CSV record number of the first record after committedBytes, header included
+    @Column(name = "next_record", nullable = false)
+    private int nextRecord;
+    
+    @Column(name = "imported_count", nullable = false)
+    private long importedCount;
+    
+    @Column(name = "duplicate_count", nullable = false)
+    private long duplicateCount;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+    
+    // Constructors
+    public ImportUpload() {
+    }
+    
+    public ImportUpload(String id, String owner) {
+        this.id = id;
+        this.owner = owner;
+        this.status = Status.OPEN;
+        this.nextRecord = 1;
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getOwner() {
+        return owner;
+    }
+    
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public long getCommittedBytes() {
+        return committedBytes;
+    }
+    
+    public void setCommittedBytes(long committedBytes) {
+        this.committedBytes = committedBytes;
+    }
+    
+    public int getNextRecord() {
+        return nextRecord;
+    }
+    
+    public void setNextRecord(int nextRecord) {
+        this.nextRecord = nextRecord;
+    }
+    
+    public long getImportedCount() {
+        return importedCount;
+    }
+    
+    public void setImportedCount(long importedCount) {
+        this.importedCount = importedCount;
+    }
+    
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+    
+    public void setDuplicateCount(long duplicateCount) {
+        this.duplicateCount = duplicateCount;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
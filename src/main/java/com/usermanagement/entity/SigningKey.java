@@ -0,0 +1,107 @@
+package com.usermanagement.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Asymmetric JWT signing keys shared by all nodes; public halves are published through JWKS
+@Entity
+@Table(name = "jwt_signing_keys")
+public class SigningKey {
+    
+    @Id
+    @Column(length = 36)
+    private String kid;
+    
+    @Column(nullable = false, length = 16)
+    private String algorithm;
+    
+    // X.509 encoding, Base64
+    @Column(name = "public_key", nullable = false, length = 1024)
+    private String publicKey;
+    
+    // PKCS#8 encoding, AES-GCM encrypted under a key derived from app.security.master-key
+    @Column(name = "private_key", nullable = false, length = 2048)
+    private String privateKey;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    // Published in JWKS before it signs anything, so cached key sets already know it
+    @Column(name = "activates_at", nullable = false)
+    private LocalDateTime activatesAt;
+    
+    // Verification-only after a newer key activates; dropped once every token it signed has expired
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+    
+    // Constructors
+    public SigningKey() {
+    }
+    
+    public SigningKey(String kid, String algorithm, String publicKey, String privateKey,
+                      LocalDateTime createdAt, LocalDateTime activatesAt) {
+        this.kid = kid;
+        this.algorithm = algorithm;
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+        this.createdAt = createdAt;
+        this.activatesAt = activatesAt;
+    }
+    
+    // Getters and Setters
+    public String getKid() {
+        return kid;
+    }
+    
+    public void setKid(String kid) {
+        this.kid = kid;
+    }
+    
+    public String getAlgorithm() {
+        return algorithm;
+    }
+    
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+    
+    public String getPublicKey() {
+        return publicKey;
+    }
+    
+    public void setPublicKey(String publicKey) {
+        this.publicKey = publicKey;
+    }
+    
+    public String getPrivateKey() {
+        return privateKey;
+    }
+    
+    public void setPrivateKey(String privateKey) {
+        this.privateKey = privateKey;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getActivatesAt() {
+        return activatesAt;
+    }
+    
+    public void setActivatesAt(LocalDateTime activatesAt) {
+        this.activatesAt = activatesAt;
+    }
+    
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,44 @@
+package com.usermanagement.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// One row per signing algorithm: nodes lock it to rotate keys one at a time
+@Entity
+@Table(name = "jwt_signing_key_rotations")
+public class SigningKeyRotation {
+    
+    @Id
+    @Column(length = 16)
+    private String algorithm;
+    
+    // When this algorithm took over signing; HMAC tokens issued before it are accepted for one token lifetime
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+    
+    // Constructors
+    public SigningKeyRotation() {
+    }
+    
+    public SigningKeyRotation(String algorithm, LocalDateTime startedAt) {
+        this.algorithm = algorithm;
+        this.startedAt = startedAt;
+    }
+    
+    // Getters and Setters
+    public String getAlgorithm() {
+        return algorithm;
+    }
+    
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+    
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+}
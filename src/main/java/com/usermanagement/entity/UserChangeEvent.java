@@ -0,0 +1,106 @@
+package com.usermanagement.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "user_change_events", indexes = {
+    @Index(name = "idx_user_change_events_occurred_at", columnList = "occurred_at")
+})
+public class UserChangeEvent {
+    
+    public enum Operation {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+    
+    // Monotonic cursor for consumers of the change feed
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "seq")
+    private Long sequence;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Operation operation;
+    
+    @Column(length = 100)
+    private String name;
+    
+    @Column(length = 100)
+    private String email;
+    
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        if (occurredAt == null) {
+            occurredAt = LocalDateTime.now();
+        }
+    }
+    
+    // Constructors
+    public UserChangeEvent() {
+    }
+    
+    public UserChangeEvent(Operation operation, User user) {
+        this.operation = operation;
+        this.userId = user.getId();
+        this.name = user.getName();
+        this.email = user.getEmail();
+    }
+    
+    // Getters and Setters
+    public Long getSequence() {
+        return sequence;
+    }
+    
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public Operation getOperation() {
+        return operation;
+    }
+    
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public void setEmail(String email) {
+        this.email = email;
+    }
+    
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+    
+    public void setOccurredAt(LocalDateTime occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+}
@@ -0,0 +1,27 @@
+package com.usermanagement.event;
+
+import com.usermanagement.entity.UserChangeEvent;
+import org.springframework.context.ApplicationEvent;
+
+// Published for every outbox row; listeners usually bind to AFTER_COMMIT
+public class UserChangedEvent extends ApplicationEvent {
+    
+    private final UserChangeEvent change;
+    
+    public UserChangedEvent(Object source, UserChangeEvent change) {
+        super(source);
+        this.change = change;
+    }
+    
+    public UserChangeEvent getChange() {
+        return change;
+    }
+    
+    public Long getUserId() {
+        return change.getUserId();
+    }
+    
+    public UserChangeEvent.Operation getOperation() {
+        return change.getOperation();
+    }
+}
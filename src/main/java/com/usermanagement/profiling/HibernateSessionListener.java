@@ -0,0 +1,55 @@
+package com.usermanagement.profiling;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Attached to every Hibernate session through hibernate.session.events.auto. Emits a HibernateFlush
+ * event per flush and a HibernateSession event when the session closes, counting the JDBC statements
+ * and batches executed during each. Sessions are single-threaded, so plain fields are enough.
+ */
+public class HibernateSessionListener extends BaseSessionEventListener {
+    
+    private final ProfilingEvents.HibernateSession session = new ProfilingEvents.HibernateSession();
+    private ProfilingEvents.HibernateFlush flush;
+    private int flushStatements;
+    
+    public HibernateSessionListener() {
+        session.begin();
+    }
+    
+    @Override
+    public void jdbcExecuteStatementStart() {
+        session.statements++;
+        flushStatements++;
+    }
+    
+    @Override
+    public void jdbcExecuteBatchStart() {
+        session.batches++;
+        flushStatements++;
+    }
+    
+    @Override
+    public void flushStart() {
+        session.flushes++;
+        flushStatements = 0;
+        flush = new ProfilingEvents.HibernateFlush();
+        flush.begin();
+    }
+    
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        if (flush != null) {
+            flush.entities = numberOfEntities;
+            flush.collections = numberOfCollections;
+            flush.statements = flushStatements;
+            flush.commit();
+            flush = null;
+        }
+    }
+    
+    @Override
+    public void end() {
+        session.commit();
+    }
+}
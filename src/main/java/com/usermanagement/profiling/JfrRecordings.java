@@ -0,0 +1,166 @@
+package com.usermanagement.profiling;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * On-demand Flight Recorder recordings of this node, one at a time. A recording stops by itself after
+ * its duration, capped at app.profiling.max-duration-seconds, and its file stays available until the
+ * next recording starts.
+ */
+@Component
+public class JfrRecordings {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JfrRecordings.class);
+    
+    // A JDK settings file: "default" (about 1% overhead) or "profile" (more detail, about 2%)
+    @Value("${app.profiling.settings:profile}")
+    private String settings;
+    
+    @Value("${app.profiling.max-duration-seconds:300}")
+    private long maxDurationSeconds;
+    
+    // Guarded by this
+    private Recording current;
+    private Path currentFile;
+    
+    /**
+     * State of one recording, as returned by the profiling endpoints.
+     */
+    public static final class Status {
+        
+        private final long id;
+        private final String state;
+        private final long durationSeconds;
+        private final String settings;
+        
+        private Status(long id, String state, long durationSeconds, String settings) {
+            this.id = id;
+            this.state = state;
+            this.durationSeconds = durationSeconds;
+            this.settings = settings;
+        }
+        
+        public long getId() {
+            return id;
+        }
+        
+        public String getState() {
+            return state;
+        }
+        
+        public long getDurationSeconds() {
+            return durationSeconds;
+        }
+        
+        public String getSettings() {
+            return settings;
+        }
+    }
+    
+    public synchronized Status start(long durationSeconds) throws IOException, ParseException {
+        if (durationSeconds < 1) {
+            throw new IllegalArgumentException("Duration must be at least 1 second: " + durationSeconds);
+        }
+        if (current != null && current.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("Recording " + current.getId() + " is still running");
+        }
+        discardCurrent();
+        
+        Recording recording = new Recording(Configuration.getConfiguration(settings));
+        // The environment, system properties and JVM arguments carry secrets such as jwt.secret
+        recording.disable("jdk.InitialEnvironmentVariable");
+        recording.disable("jdk.InitialSystemProperty");
+        recording.disable("jdk.JVMInformation");
+        Path file = Files.createTempFile("user-management-", ".jfr");
+        recording.setName("user-management-on-demand");
+        recording.setToDisk(true);
+        recording.setDuration(Duration.ofSeconds(Math.min(durationSeconds, maxDurationSeconds)));
+        // Written when the recording stops, whether by duration or by stop()
+        recording.setDestination(file);
+        recording.start();
+        current = recording;
+        currentFile = file;
+        logger.info("Started JFR recording {} for {} s with settings {}", recording.getId(),
+                recording.getDuration().toSeconds(), settings);
+        return status(recording);
+    }
+    
+    public synchronized Status getStatus(long id) {
+        return status(find(id));
+    }
+    
+    /**
+     * Stops the recording if it is still running and returns its file; the file stays valid until
+     * the next recording starts.
+     */
+    public synchronized Path stop(long id) {
+        Recording recording = find(id);
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        return currentFile;
+    }
+    
+    /**
+     * The file of a recording that has finished.
+     */
+    public synchronized Path getFile(long id) {
+        Recording recording = find(id);
+        if (!isFinished(recording)) {
+            throw new IllegalStateException("Recording " + id + " is still running");
+        }
+        return currentFile;
+    }
+    
+    @PreDestroy
+    public synchronized void shutdown() {
+        discardCurrent();
+    }
+    
+    private Recording find(long id) {
+        if (current == null || current.getId() != id) {
+            throw new NoSuchElementException("Recording not found: " + id);
+        }
+        return current;
+    }
+    
+    private void discardCurrent() {
+        if (current == null) {
+            return;
+        }
+        current.close();
+        try {
+            Files.deleteIfExists(currentFile);
+        } catch (IOException e) {
+            logger.warn("Could not delete JFR recording {}", currentFile, e);
+        }
+        current = null;
+        currentFile = null;
+    }
+    
+    // A recording with a destination closes itself once it stops and has written the file
+    private static boolean isFinished(Recording recording) {
+        return recording.getState() == RecordingState.STOPPED || recording.getState() == RecordingState.CLOSED;
+    }
+    
+    private Status status(Recording recording) {
+        Duration duration = recording.getDuration();
+        String state = isFinished(recording) ? "finished" : recording.getState().name().toLowerCase(Locale.ROOT);
+        return new Status(recording.getId(), state, duration != null ? duration.toSeconds() : 0, settings);
+    }
+}
@@ -0,0 +1,41 @@
+package com.usermanagement.profiling;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Wraps the password encoder so every hash and every check shows up as a PasswordHash event.
+ */
+public final class ProfiledPasswordEncoder implements PasswordEncoder {
+    
+    private final PasswordEncoder delegate;
+    
+    public ProfiledPasswordEncoder(PasswordEncoder delegate) {
+        this.delegate = delegate;
+    }
+    
+    @Override
+    public String encode(CharSequence rawPassword) {
+        ProfilingEvents.PasswordHash event = new ProfilingEvents.PasswordHash();
+        event.begin();
+        String encoded = delegate.encode(rawPassword);
+        event.operation = "encode";
+        event.commit();
+        return encoded;
+    }
+    
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        ProfilingEvents.PasswordHash event = new ProfilingEvents.PasswordHash();
+        event.begin();
+        boolean matched = delegate.matches(rawPassword, encodedPassword);
+        event.operation = "matches";
+        event.matched = matched;
+        event.commit();
+        return matched;
+    }
+    
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,129 @@
+package com.usermanagement.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events around the phases a request can spend its time in. With no recording
+ * running an event is never written, and begin()/commit() on a disabled event compile to almost
+ * nothing. Stack traces are off: the event type already says where it came from.
+ * <p>
+ * Emails are recorded as their String hash, enough to tell one user's requests from another's
+ * without putting addresses into a file that gets passed around.
+ */
+public final class ProfilingEvents {
+    
+    private static final String CATEGORY = "User Management";
+    
+    private ProfilingEvents() {
+    }
+    
+    public static int emailHash(String email) {
+        return email != null ? email.hashCode() : 0;
+    }
+    
+    @Name("usermanagement.PasswordHash")
+    @Label("Password Hash")
+    @Description("BCrypt hashing of a new password, or checking one at login")
+    @Category({CATEGORY, "Security"})
+    @StackTrace(false)
+    public static final class PasswordHash extends Event {
+        
+        @Label("Operation")
+        public String operation;
+        
+        @Label("Matched")
+        public boolean matched;
+    }
+    
+    @Name("usermanagement.JwtParse")
+    @Label("JWT Parse")
+    @Description("Signature check and claims parsing of an access token")
+    @Category({CATEGORY, "Security"})
+    @StackTrace(false)
+    public static final class JwtParse extends Event {
+        
+        @Label("Token Length")
+        public int tokenLength;
+        
+        @Label("Valid")
+        public boolean valid;
+        
+        @Label("Failure")
+        public String failure;
+    }
+    
+    @Name("usermanagement.UserLookup")
+    @Label("User Lookup")
+    @Description("UserDetailsService load of the user behind a login or a token")
+    @Category({CATEGORY, "Security"})
+    @StackTrace(false)
+    public static final class UserLookup extends Event {
+        
+        @Label("Email Hash")
+        public int emailHash;
+        
+        @Label("Found")
+        public boolean found;
+    }
+    
+    @Name("usermanagement.HibernateFlush")
+    @Label("Hibernate Flush")
+    @Description("A flush of the persistence context and the statements it executed")
+    @Category({CATEGORY, "Database"})
+    @StackTrace(false)
+    public static final class HibernateFlush extends Event {
+        
+        @Label("Entities")
+        public int entities;
+        
+        @Label("Collections")
+        public int collections;
+        
+        @Label("Statements")
+        public int statements;
+    }
+    
+    @Name("usermanagement.HibernateSession")
+    @Label("Hibernate Session")
+    @Description("A Hibernate session from open to close, with every statement and flush it ran")
+    @Category({CATEGORY, "Database"})
+    @StackTrace(false)
+    public static final class HibernateSession extends Event {
+        
+        @Label("Statements")
+        public int statements;
+        
+        @Label("Batches")
+        public int batches;
+        
+        @Label("Flushes")
+        public int flushes;
+    }
+    
+    @Name("usermanagement.CsvParse")
+    @Label("CSV Parse")
+    @Description("Parsing of an uploaded CSV file into records")
+    @Category({CATEGORY, "Import"})
+    @StackTrace(false)
+    public static final class CsvParse extends Event {
+        
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+        
+        @Label("Ranges")
+        public int ranges;
+        
+        @Label("Records")
+        public long records;
+        
+        @Label("Threads")
+        public int threads;
+    }
+}
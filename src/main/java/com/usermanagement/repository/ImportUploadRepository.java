@@ -0,0 +1,29 @@
+package com.usermanagement.repository;
+
+import com.usermanagement.entity.ImportUpload;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ImportUploadRepository extends JpaRepository<ImportUpload, String> {
+    
+    // Conditional on the offset the batch was parsed from, so two requests cannot both append the same bytes
+    @Modifying
+    @Query("UPDATE ImportUpload u SET u.committedBytes = :committedBytes, u.nextRecord = :nextRecord, "
+            + "u.importedCount = u.importedCount + :imported, u.duplicateCount = u.duplicateCount + :duplicates, "
+            + "u.status = :status, u.updatedAt = :now "
+            + "WHERE u.id = :id AND u.committedBytes = :expectedBytes AND u.status = com.usermanagement.entity.ImportUpload.Status.OPEN")
+    int advance(@Param("id") String id, @Param("expectedBytes") long expectedBytes,
+                @Param("committedBytes") long committedBytes, @Param("nextRecord") int nextRecord,
+                @Param("imported") long imported, @Param("duplicates") long duplicates,
+                @Param("status") ImportUpload.Status status, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("DELETE FROM ImportUpload u WHERE u.updatedAt < :cutoff")
+    int deleteUpdatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,204 @@
+package com.usermanagement.repository;
+
+import com.usermanagement.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Unsharded deployments: everything goes to the JPA repository on the primary datasource
+@Component
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class JpaUserStore implements UserStore {
+    
+    private static final String ARCHIVE_COLUMNS = "id, name, email, password, created_at, updated_at, version, last_login_at";
+    
+    // Users that never logged in are judged by when they were created; soft-deleted ones wait for the purger
+    private static final String INACTIVE_CONDITION =
+            "(last_login_at < ? OR (last_login_at IS NULL AND created_at < ?)) AND deleted_at IS NULL";
+    
+    private static final RowMapper<User> ARCHIVE_ROW_MAPPER = (rs, rowNum) -> {
+        User user = new User(rs.getString("name"), rs.getString("email"), rs.getString("password"));
+        user.setId(rs.getLong("id"));
+        user.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        user.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        user.setVersion(rs.getLong("version"));
+        user.setLastLoginAt(rs.getObject("last_login_at", LocalDateTime.class));
+        return user;
+    };
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public Optional<User> findById(Long id) {
+        return userRepository.findById(id);
+    }
+    
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return userRepository.findByEmail(email);
+    }
+    
+    @Override
+    public boolean existsByEmail(String email) {
+        return userRepository.existsByEmail(email);
+    }
+    
+    @Override
+    public User save(User user) {
+        return userRepository.save(user);
+    }
+    
+    @Override
+    public boolean updateIfVersion(User user, Long expectedVersion) {
+        return userRepository.updateIfVersion(user.getId(), expectedVersion, user.getName(), user.getEmail(),
+                user.getPassword(), user.getUpdatedAt()) > 0;
+    }
+    
+    @Override
+    public void delete(User user) {
+        userRepository.delete(user);
+    }
+    
+    // JDBC, not JPQL: deleted_at is not updatable through the entity
+    @Override
+    public boolean softDelete(Long id, LocalDateTime deletedAt) {
+        return jdbcTemplate.update("UPDATE users SET deleted_at = ? WHERE id = ? AND deleted_at IS NULL", deletedAt, id) > 0;
+    }
+    
+    @Override
+    public int purgeDeleted(int limit) {
+        List<Object[]> ids = jdbcTemplate.query("SELECT id FROM users WHERE deleted_at IS NOT NULL LIMIT ?",
+                (rs, rowNum) -> new Object[] {rs.getLong("id")}, limit);
+        if (!ids.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM users WHERE id = ? AND deleted_at IS NOT NULL", ids);
+        }
+        return ids.size();
+    }
+    
+    @Override
+    public int purgeDeleted(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", Collections.nCopies(emails.size(), "?"));
+        return jdbcTemplate.update("DELETE FROM users WHERE deleted_at IS NOT NULL AND email IN (" + placeholders + ")",
+                emails.toArray());
+    }
+    
+    @Override
+    public long count() {
+        return userRepository.count();
+    }
+    
+    @Override
+    public List<User> findAll() {
+        return userRepository.findAll();
+    }
+    
+    @Override
+    public Page<User> findAll(Pageable pageable) {
+        return userRepository.findAll(pageable);
+    }
+    
+    @Override
+    public Slice<User> findAllBy(Pageable pageable) {
+        return userRepository.findAllBy(pageable);
+    }
+    
+    @Override
+    public Page<User> searchUsers(String keyword, Pageable pageable) {
+        return userRepository.searchUsers(keyword, pageable);
+    }
+    
+    @Override
+    public Slice<User> searchUsersSlice(String keyword, Pageable pageable) {
+        return userRepository.searchUsersSlice(keyword, pageable);
+    }
+    
+    @Override
+    public long countSearchUsers(String keyword) {
+        return userRepository.countSearchUsers(keyword);
+    }
+    
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        return userRepository.findAllById(ids);
+    }
+    
+    @Override
+    public void recordLastLogins(Map<Long, LocalDateTime> lastLogins, Duration resolution) {
+        List<Object[]> rows = new ArrayList<>(lastLogins.size());
+        lastLogins.forEach((id, at) -> rows.add(new Object[] {at, id, at.minus(resolution)}));
+        jdbcTemplate.batchUpdate("UPDATE users SET last_login_at = ? WHERE id = ? "
+                + "AND (last_login_at IS NULL OR last_login_at < ?)", rows);
+    }
+    
+    // Plain JDBC in the caller's transaction: the selected rows stay locked until they are deleted
+    @Override
+    public List<User> archiveInactive(LocalDateTime cutoff, int limit) {
+        List<User> users = jdbcTemplate.query("SELECT " + ARCHIVE_COLUMNS + " FROM users WHERE " + INACTIVE_CONDITION
+                + " ORDER BY id LIMIT ? FOR UPDATE", ARCHIVE_ROW_MAPPER, cutoff, cutoff, limit);
+        if (users.isEmpty()) {
+            return users;
+        }
+        LocalDateTime archivedAt = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(users.size());
+        List<Object[]> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            rows.add(new Object[] {user.getId(), user.getName(), user.getEmail(), user.getPassword(),
+                    user.getCreatedAt(), user.getUpdatedAt(), user.getVersion(), user.getLastLoginAt(), archivedAt});
+            ids.add(new Object[] {user.getId()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users_archive (" + ARCHIVE_COLUMNS + ", archived_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        jdbcTemplate.batchUpdate("DELETE FROM users WHERE id = ?", ids);
+        return users;
+    }
+    
+    @Override
+    public Optional<User> findArchived(String email) {
+        return jdbcTemplate.query("SELECT " + ARCHIVE_COLUMNS + " FROM users_archive WHERE email = ? "
+                + "ORDER BY archived_at DESC LIMIT 1", ARCHIVE_ROW_MAPPER, email).stream().findFirst();
+    }
+    
+    @Override
+    public Optional<User> restoreArchived(String email) {
+        Optional<User> archived = jdbcTemplate.query("SELECT " + ARCHIVE_COLUMNS + " FROM users_archive WHERE email = ? "
+                + "ORDER BY archived_at DESC LIMIT 1 FOR UPDATE", ARCHIVE_ROW_MAPPER, email).stream().findFirst();
+        archived.ifPresent(user -> {
+            LocalDateTime now = LocalDateTime.now();
+            user.setLastLoginAt(now);
+            // A new version, so ETags and token claims issued before the archival no longer match
+            user.setUpdatedAt(now);
+            user.setVersion(user.getVersion() + 1);
+            jdbcTemplate.update("INSERT INTO users (" + ARCHIVE_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    user.getId(), user.getName(), user.getEmail(), user.getPassword(), user.getCreatedAt(),
+                    user.getUpdatedAt(), user.getVersion(), user.getLastLoginAt());
+            jdbcTemplate.update("DELETE FROM users_archive WHERE id = ?", user.getId());
+        });
+        return archived;
+    }
+    
+    @Override
+    public List<JdbcTemplate> getUserTables() {
+        return List.of(jdbcTemplate);
+    }
+}
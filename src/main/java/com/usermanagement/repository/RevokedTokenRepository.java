@@ -0,0 +1,23 @@
+package com.usermanagement.repository;
+
+import com.usermanagement.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Long> {
+    
+    List<RevokedToken> findByRevokedAtGreaterThanEqualAndExpiresAtGreaterThan(LocalDateTime revokedAt, Long expiresAt);
+    
+    boolean existsByJti(String jti);
+    
+    @Modifying
+    @Query("DELETE FROM RevokedToken t WHERE t.expiresAt < :now")
+    int deleteExpired(@Param("now") Long now);
+}
@@ -0,0 +1,28 @@
+package com.usermanagement.repository;
+
+import com.usermanagement.entity.SigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SigningKeyRepository extends JpaRepository<SigningKey, String> {
+    
+    List<SigningKey> findByAlgorithmOrderByActivatesAtAsc(String algorithm);
+    
+    @Modifying
+    @Query("UPDATE SigningKey k SET k.expiresAt = :expiresAt " +
+           "WHERE k.algorithm = :algorithm AND k.activatesAt < :activatedBefore AND k.expiresAt IS NULL")
+    int retireOlderThan(@Param("algorithm") String algorithm,
+                        @Param("activatedBefore") LocalDateTime activatedBefore,
+                        @Param("expiresAt") LocalDateTime expiresAt);
+    
+    @Modifying
+    @Query("DELETE FROM SigningKey k WHERE k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,19 @@
+package com.usermanagement.repository;
+
+import com.usermanagement.entity.SigningKeyRotation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SigningKeyRotationRepository extends JpaRepository<SigningKeyRotation, String> {
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM SigningKeyRotation r WHERE r.algorithm = :algorithm")
+    Optional<SigningKeyRotation> findForUpdate(@Param("algorithm") String algorithm);
+}
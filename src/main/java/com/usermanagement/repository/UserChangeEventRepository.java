@@ -0,0 +1,38 @@
+package com.usermanagement.repository;
+
+import com.usermanagement.entity.UserChangeEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserChangeEventRepository extends JpaRepository<UserChangeEvent, Long> {
+    
+    List<UserChangeEvent> findBySequenceGreaterThanOrderBySequenceAsc(Long sequence, Pageable pageable);
+    
+    List<UserChangeEvent> findBySequenceBetweenOrderBySequenceAsc(Long from, Long to, Pageable pageable);
+    
+    Optional<UserChangeEvent> findFirstByOrderBySequenceDesc();
+    
+    Optional<UserChangeEvent> findFirstByOccurredAtGreaterThanEqualOrderBySequenceAsc(LocalDateTime since);
+    
+    @Query("SELECT COALESCE(MAX(e.sequence), 0) FROM UserChangeEvent e")
+    long findLatestSequence();
+    
+    @Query("SELECT MIN(e.sequence) FROM UserChangeEvent e")
+    Long findOldestSequence();
+    
+    @Query("SELECT MAX(e.sequence) FROM UserChangeEvent e WHERE e.occurredAt < :cutoff")
+    Long findLastSequenceBefore(@Param("cutoff") LocalDateTime cutoff);
+    
+    @Modifying
+    @Query("DELETE FROM UserChangeEvent e WHERE e.sequence <= :sequence")
+    int deleteUpTo(@Param("sequence") long sequence);
+}
@@ -3,11 +3,14 @@ package com.usermanagement.repository;
 import com.usermanagement.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -17,9 +20,34 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     boolean existsByEmail(String email);
     
-    @Query("SELECT u FROM User u WHERE " +
+    // Bypasses the persistence context, which is cleared afterwards so no stale copy of the row survives
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.name = :name, u.email = :email, u.password = COALESCE(:password, u.password), " +
+           "u.updatedAt = :updatedAt, u.version = u.version + 1 " +
+           "WHERE u.id = :id AND u.deletedAt IS NULL AND (:version IS NULL OR u.version = :version)")
+    int updateIfVersion(@Param("id") Long id,
+                        @Param("version") Long version,
+                        @Param("name") String name,
+                        @Param("email") String email,
+                        @Param("password") String password,
+                        @Param("updatedAt") LocalDateTime updatedAt);
+    
+    String SEARCH_QUERY = "SELECT u FROM User u WHERE " +
            "LOWER(u.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-           "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%'))")
+           "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%'))";
+    
+    @Query(SEARCH_QUERY)
     Page<User> searchUsers(@Param("keyword") String keyword, Pageable pageable);
+    
+    // Slice variants fetch one extra row to answer hasNext instead of running a count query
+    @Query(SEARCH_QUERY)
+    Slice<User> searchUsersSlice(@Param("keyword") String keyword, Pageable pageable);
+    
+    Slice<User> findAllBy(Pageable pageable);
+    
+    @Query("SELECT COUNT(u) FROM User u WHERE " +
+           "LOWER(u.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%'))")
+    long countSearchUsers(@Param("keyword") String keyword);
 }
 
@@ -0,0 +1,112 @@
+package com.usermanagement.repository;
+
+import com.usermanagement.entity.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The users table as the services see it: the single JPA table by default, or the users tables
+ * of all shards when app.sharding.enabled is set. Method contracts follow {@link UserRepository}.
+ */
+public interface UserStore {
+    
+    Optional<User> findById(Long id);
+    
+    Optional<User> findByEmail(String email);
+    
+    boolean existsByEmail(String email);
+    
+    User save(User user);
+    
+    /**
+     * One conditional UPDATE of the user's name, email and updated_at, and of its password when not
+     * null, that also bumps the version. Returns false, without writing, when the row is gone or its
+     * version is not expectedVersion (null accepts any). A taken email surfaces as the unique
+     * constraint's DataIntegrityViolationException.
+     */
+    boolean updateIfVersion(User user, Long expectedVersion);
+    
+    void delete(User user);
+    
+    /**
+     * Marks the user deleted with one UPDATE; from then on no query returns it. Returns false when
+     * the row is gone or already deleted. The row is removed later by {@link #purgeDeleted(int)}.
+     */
+    boolean softDelete(Long id, LocalDateTime deletedAt);
+    
+    // Removes up to limit soft-deleted rows (per shard when sharded) and returns how many
+    int purgeDeleted(int limit);
+    
+    // Removes soft-deleted rows holding any of these emails, which would otherwise keep them taken
+    int purgeDeleted(Collection<String> emails);
+    
+    long count();
+    
+    List<User> findAll();
+    
+    Page<User> findAll(Pageable pageable);
+    
+    Slice<User> findAllBy(Pageable pageable);
+    
+    Page<User> searchUsers(String keyword, Pageable pageable);
+    
+    Slice<User> searchUsersSlice(String keyword, Pageable pageable);
+    
+    long countSearchUsers(String keyword);
+    
+    // The live users among these ids, in no particular order; unknown and deleted ids are left out
+    List<User> findAllById(Collection<Long> ids);
+    
+    /**
+     * Sets last_login_at of each user in one batched UPDATE per database. A row whose last_login_at
+     * is already within resolution of the new time is not written, and unknown ids are skipped.
+     */
+    void recordLastLogins(Map<Long, LocalDateTime> lastLogins, Duration resolution);
+    
+    /**
+     * Moves up to limit users (per shard when sharded) whose last login, or creation when they never
+     * logged in, is before cutoff from users to users_archive, and returns them. Needs a transaction.
+     */
+    List<User> archiveInactive(LocalDateTime cutoff, int limit);
+    
+    // The most recently archived user with this email, left in users_archive
+    Optional<User> findArchived(String email);
+    
+    /**
+     * Moves the most recently archived user with this email back to users, with last_login_at and
+     * updated_at set to now and the version bumped; empty when no archived user has it. An email
+     * taken again since the archival surfaces as a DataIntegrityViolationException. Needs a
+     * transaction.
+     */
+    Optional<User> restoreArchived(String email);
+    
+    // Every database holding a users table, for callers that run their own SQL against it
+    List<JdbcTemplate> getUserTables();
+    
+    /**
+     * Condition to append to a raw query on getUserTables().get(table), so that it reads only the
+     * rows that table owns: while a bucket moves, its rows are on two shards. Starts with " AND",
+     * or is empty. Take it per query, it changes with every bucket move.
+     */
+    default String ownedRowsCondition(int table) {
+        return "";
+    }
+    
+    /**
+     * True when every write here also writes its change feed row, in the same transaction as the
+     * user row, so ChangeFeedService#record must not write another. False when the caller's
+     * transaction on the primary covers both.
+     */
+    default boolean recordsChanges() {
+        return false;
+    }
+}
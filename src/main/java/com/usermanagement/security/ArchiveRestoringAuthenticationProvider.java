@@ -0,0 +1,52 @@
+package com.usermanagement.security;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.service.UserService;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Password login that also accepts users archived for inactivity. The archived row is only read
+ * while the password is checked, and moved back to users after the check passed, so a wrong
+ * password leaves it archived. Token authentication keeps using the plain UserDetailsService and
+ * never sees archived users.
+ */
+public class ArchiveRestoringAuthenticationProvider extends DaoAuthenticationProvider {
+    
+    private final UserService userService;
+    
+    public ArchiveRestoringAuthenticationProvider(UserDetailsService activeUsers, UserService userService,
+                                                  PasswordEncoder passwordEncoder) {
+        super(passwordEncoder);
+        this.userService = userService;
+        setUserDetailsService(username -> {
+            try {
+                return activeUsers.loadUserByUsername(username);
+            } catch (UsernameNotFoundException e) {
+                return userService.findArchivedUser(username)
+                        .map(AuthenticatedUser::archived)
+                        .orElseThrow(() -> e);
+            }
+        });
+    }
+    
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                         UserDetails user) {
+        if (user instanceof AuthenticatedUser candidate && candidate.isArchived()) {
+            // A concurrent login may have restored it first; empty when the email was registered again
+            User restored = userService.restoreArchivedUser(candidate.getUsername())
+                    .or(() -> userService.findByEmail(candidate.getUsername()))
+                    .filter(row -> row.getId().equals(candidate.getId()))
+                    .orElseThrow(() -> new BadCredentialsException("Bad credentials"));
+            user = AuthenticatedUser.of(restored);
+            principal = user;
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+}
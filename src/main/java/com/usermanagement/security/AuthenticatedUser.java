@@ -0,0 +1,180 @@
+package com.usermanagement.security;
+
+import com.usermanagement.entity.User;
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Principal for both login flows, carrying the profile fields that go into access token claims.
+ * The version changes whenever the profile does, so a token's claims can be checked for staleness.
+ */
+public class AuthenticatedUser implements UserDetails, CredentialsContainer {
+    
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_NAME = "name";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_VERSION = "ver";
+    public static final String CLAIM_CREATED_AT = "cat";
+    public static final String CLAIM_UPDATED_AT = "uat";
+    
+    private static final List<String> DEFAULT_ROLES = List.of("USER");
+    
+    private final Long id;
+    private final String name;
+    private final String email;
+    private String password;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final long version;
+    private final List<String> roles;
+    private final boolean archived;
+    
+    private AuthenticatedUser(Long id, String name, String email, String password, LocalDateTime createdAt,
+                              LocalDateTime updatedAt, long version, List<String> roles, boolean archived) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.password = password;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.version = version;
+        this.roles = roles;
+        this.archived = archived;
+    }
+    
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getName(), user.getEmail(), user.getPassword(),
+                user.getCreatedAt(), user.getUpdatedAt(), versionOf(user), DEFAULT_ROLES, false);
+    }
+    
+    // A login candidate still in users_archive, restored only once its password matched
+    static AuthenticatedUser archived(User user) {
+        return new AuthenticatedUser(user.getId(), user.getName(), user.getEmail(), user.getPassword(),
+                user.getCreatedAt(), user.getUpdatedAt(), versionOf(user), DEFAULT_ROLES, true);
+    }
+    
+    // Only for tokens issued with identity claims, see hasIdentityClaims
+    @SuppressWarnings("unchecked")
+    public static AuthenticatedUser fromClaims(Claims claims) {
+        List<String> roles = claims.get(CLAIM_ROLES, List.class);
+        return new AuthenticatedUser(
+                claims.get(CLAIM_USER_ID, Long.class),
+                claims.get(CLAIM_NAME, String.class),
+                claims.getSubject(),
+                null,
+                parseTime(claims.get(CLAIM_CREATED_AT, String.class)),
+                parseTime(claims.get(CLAIM_UPDATED_AT, String.class)),
+                claims.get(CLAIM_VERSION, Long.class),
+                roles != null ? List.copyOf(roles) : DEFAULT_ROLES,
+                false);
+    }
+    
+    // Tokens issued before identity claims existed only carry the email
+    public static boolean hasIdentityClaims(Claims claims) {
+        return claims.get(CLAIM_USER_ID) != null && claims.get(CLAIM_VERSION) != null;
+    }
+    
+    public static long tokenVersion(Claims claims) {
+        Long version = claims.get(CLAIM_VERSION, Long.class);
+        return version != null ? version : -1;
+    }
+    
+    // Derived from updatedAt, which every profile change touches
+    public static long versionOf(User user) {
+        LocalDateTime updatedAt = user.getUpdatedAt();
+        if (updatedAt == null) {
+            return 0;
+        }
+        return updatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + updatedAt.getNano() / 1_000;
+    }
+    
+    private static LocalDateTime parseTime(String value) {
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public List<String> getRoles() {
+        return roles;
+    }
+    
+    boolean isArchived() {
+        return archived;
+    }
+    
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (String role : roles) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+        }
+        return Collections.unmodifiableList(authorities);
+    }
+    
+    @Override
+    public String getPassword() {
+        return password;
+    }
+    
+    @Override
+    public String getUsername() {
+        return email;
+    }
+    
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+    
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+    
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+    
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+}
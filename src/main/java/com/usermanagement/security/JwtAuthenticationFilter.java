@@ -1,11 +1,16 @@
 package com.usermanagement.security;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.usermanagement.service.RefreshTokenService;
+import com.usermanagement.service.TokenPair;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -22,6 +27,8 @@ import java.util.Map;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
+    public static final String STALE_TOKEN_HEADER = "X-Token-Stale";
+    
     @Autowired
     private JwtTokenProvider tokenProvider;
     
@@ -29,6 +36,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Lazy
     private UserDetailsService userDetailsService;
     
+    @Autowired
+    private JwtCookieSupport cookieSupport;
+    
+    @Autowired
+    private TokenRevocationIndex revocationIndex;
+    
+    @Autowired
+    @Lazy
+    private RefreshTokenService refreshTokenService;
+    
+    @Autowired
+    private ProfileChangeTracker profileChangeTracker;
+    
+    @Autowired
+    private LastLoginTracker lastLoginTracker;
+    
+    // Build the principal from token claims instead of loading the user, unless the profile changed since
+    @Value("${app.security.jwt.trust-claims:false}")
+    private boolean trustTokenClaims;
+    
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
                                     HttpServletResponse response, 
@@ -52,26 +79,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             }
             
             try {
-                String email = tokenProvider.getEmailFromToken(jwt);
+                Claims claims = tokenProvider.parseClaims(jwt);
+                String email = claims.getSubject();
                 
                 if (email == null) {
                     sendErrorResponse(response, "Token không hợp lệ: Không thể lấy thông tin từ token.", 401);
                     return;
                 }
                 
-                if (!tokenProvider.validateToken(jwt, email)) {
-                    sendErrorResponse(response, "Token không hợp lệ hoặc đã hết hạn.", 401);
+                if (revocationIndex.isRevoked(claims.getId())) {
+                    sendErrorResponse(response, "Token đã bị thu hồi. Vui lòng đăng nhập lại.", 401);
                     return;
                 }
                 
                 // Token is valid, set authentication
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                UsernamePasswordAuthenticationToken authentication = 
-                    new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                AuthenticatedUser principal = authenticate(claims, request);
+                if (AuthenticatedUser.tokenVersion(claims) != principal.getVersion()) {
+                    // Claims describe an older profile: tell the client to refresh its token
+                    response.setHeader(STALE_TOKEN_HEADER, "true");
+                }
                 
             } catch (io.jsonwebtoken.ExpiredJwtException e) {
                 sendErrorResponse(response, "Token đã hết hạn. Vui lòng đăng nhập lại.", 401);
@@ -87,14 +113,78 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 sendErrorResponse(response, "Lỗi xác thực token: " + e.getMessage(), 401);
                 return;
             }
+        } else {
+            // Web UI in stateless mode: the JWT travels in an HttpOnly cookie
+            String jwt = cookieSupport.readToken(request);
+            if (jwt != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                authenticateFromCookie(jwt, request, response);
+            }
         }
         
         filterChain.doFilter(request, response);
     }
     
+    private void authenticateFromCookie(String jwt, HttpServletRequest request, HttpServletResponse response) {
+        try {
+            Claims claims = tokenProvider.parseClaims(jwt);
+            if (claims.getSubject() != null && !revocationIndex.isRevoked(claims.getId())) {
+                authenticate(claims, request);
+                return;
+            }
+        } catch (ExpiredJwtException e) {
+            // Short-lived access cookie ran out: rotate silently with the refresh cookie
+            String refreshToken = cookieSupport.readRefreshToken(request);
+            if (refreshToken != null) {
+                try {
+                    TokenPair tokens = refreshTokenService.refresh(refreshToken);
+                    cookieSupport.writeTokens(response, tokens);
+                    authenticate(tokens.getEmail(), request);
+                    return;
+                } catch (Exception refreshFailure) {
+                    logger.debug("JWT refresh cookie rejected", refreshFailure);
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("JWT cookie rejected", e);
+        }
+        // Expired or invalid: drop the cookies and let the request continue unauthenticated
+        cookieSupport.clearTokens(response);
+    }
+    
+    private AuthenticatedUser authenticate(Claims claims, HttpServletRequest request) {
+        if (trustTokenClaims && AuthenticatedUser.hasIdentityClaims(claims)) {
+            AuthenticatedUser fromToken = AuthenticatedUser.fromClaims(claims);
+            if (!profileChangeTracker.changedSince(fromToken.getId(), claims.getIssuedAt())) {
+                setAuthentication(fromToken, request);
+                return fromToken;
+            }
+        }
+        return authenticate(claims.getSubject(), request);
+    }
+    
+    private AuthenticatedUser authenticate(String email, HttpServletRequest request) {
+        AuthenticatedUser principal = (AuthenticatedUser) userDetailsService.loadUserByUsername(email);
+        setAuthentication(principal, request);
+        return principal;
+    }
+    
+    private void setAuthentication(UserDetails userDetails, HttpServletRequest request) {
+        UsernamePasswordAuthenticationToken authentication = 
+            new UsernamePasswordAuthenticationToken(
+                userDetails, null, userDetails.getAuthorities());
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        if (userDetails instanceof AuthenticatedUser user) {
+            lastLoginTracker.touch(user.getId());
+        }
+    }
+    
     private boolean isPublicEndpoint(String path) {
         return path.equals("/api/auth/login") || 
                path.equals("/api/auth/register") ||
+               path.equals("/api/auth/refresh") ||
+               path.equals("/api/auth/logout") ||
+               path.equals("/.well-known/jwks.json") ||
                path.startsWith("/login") ||
                path.startsWith("/css/") ||
                path.startsWith("/js/") ||
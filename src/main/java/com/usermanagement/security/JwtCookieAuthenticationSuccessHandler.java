@@ -0,0 +1,34 @@
+package com.usermanagement.security;
+
+import com.usermanagement.service.RefreshTokenService;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
+
+import java.io.IOException;
+
+// Form login in stateless mode: hand the browser a JWT cookie instead of a JSESSIONID
+public class JwtCookieAuthenticationSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
+    
+    private final RefreshTokenService refreshTokenService;
+    private final JwtCookieSupport cookieSupport;
+    
+    public JwtCookieAuthenticationSuccessHandler(RefreshTokenService refreshTokenService,
+                                                 JwtCookieSupport cookieSupport,
+                                                 String defaultTargetUrl) {
+        super(defaultTargetUrl);
+        setAlwaysUseDefaultTargetUrl(true);
+        this.refreshTokenService = refreshTokenService;
+        this.cookieSupport = cookieSupport;
+    }
+    
+    @Override
+    public void onAuthenticationSuccess(HttpServletRequest request,
+                                        HttpServletResponse response,
+                                        Authentication authentication) throws IOException, ServletException {
+        cookieSupport.writeTokens(response, refreshTokenService.issueTokens((AuthenticatedUser) authentication.getPrincipal()));
+        super.onAuthenticationSuccess(request, response, authentication);
+    }
+}
@@ -0,0 +1,77 @@
+package com.usermanagement.security;
+
+import com.usermanagement.service.TokenPair;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// HttpOnly cookie carrying the JWT for the Thymeleaf UI in stateless mode
+@Component
+public class JwtCookieSupport {
+    
+    @Value("${app.security.jwt-cookie.name:AUTH_TOKEN}")
+    private String cookieName;
+    
+    @Value("${app.security.jwt-cookie.refresh-name:AUTH_REFRESH}")
+    private String refreshCookieName;
+    
+    @Value("${app.security.jwt-cookie.secure:false}")
+    private boolean secure;
+    
+    @Value("${jwt.refresh-expiration:2592000000}")
+    private Long refreshExpiration;
+    
+    public String getCookieName() {
+        return cookieName;
+    }
+    
+    public String readToken(HttpServletRequest request) {
+        return readCookie(request, cookieName);
+    }
+    
+    public String readRefreshToken(HttpServletRequest request) {
+        return readCookie(request, refreshCookieName);
+    }
+    
+    private String readCookie(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (name.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+    
+    public void writeTokens(HttpServletResponse response, TokenPair tokens) {
+        // The access cookie outlives its JWT so an expired token can still be swapped using the refresh cookie
+        response.addHeader(HttpHeaders.SET_COOKIE,
+            buildCookie(cookieName, tokens.getAccessToken(), Duration.ofMillis(refreshExpiration)).toString());
+        response.addHeader(HttpHeaders.SET_COOKIE,
+            buildCookie(refreshCookieName, tokens.getRefreshToken(), Duration.ofMillis(refreshExpiration)).toString());
+    }
+    
+    public void clearTokens(HttpServletResponse response) {
+        response.addHeader(HttpHeaders.SET_COOKIE, buildCookie(cookieName, "", Duration.ZERO).toString());
+        response.addHeader(HttpHeaders.SET_COOKIE, buildCookie(refreshCookieName, "", Duration.ZERO).toString());
+    }
+    
+    private ResponseCookie buildCookie(String name, String value, Duration maxAge) {
+        return ResponseCookie.from(name, value)
+                .httpOnly(true)
+                .secure(secure)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
+    }
+}
@@ -1,30 +1,38 @@
 package com.usermanagement.security;
 
+import com.usermanagement.profiling.ProfilingEvents;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtTokenProvider {
     
-    @Value("${jwt.secret:mySecretKey123456789012345678901234567890}")
-    private String secret;
+    @Autowired
+    private SigningKeyRing keyRing;
     
-    @Value("${jwt.expiration:86400000}") // 24 hours default
+    @Value("${jwt.expiration:900000}") // 15 minutes default; clients renew with a refresh token
     private Long expiration;
     
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // Parsers are immutable and thread-safe; keys are resolved per token through the key ring
+    private JwtParser parser;
+    
+    @PostConstruct
+    public void init() {
+        parser = Jwts.parser()
+                .keyLocator(keyRing)
+                .build();
     }
     
     public String generateToken(String email) {
@@ -32,16 +40,39 @@ public class JwtTokenProvider {
         return createToken(claims, email);
     }
     
+    // Identity claims let /api/auth/me and the filter work without loading the user again
+    public String generateToken(AuthenticatedUser user) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(AuthenticatedUser.CLAIM_USER_ID, user.getId());
+        claims.put(AuthenticatedUser.CLAIM_NAME, user.getName());
+        claims.put(AuthenticatedUser.CLAIM_ROLES, user.getRoles());
+        claims.put(AuthenticatedUser.CLAIM_VERSION, user.getVersion());
+        if (user.getCreatedAt() != null) {
+            claims.put(AuthenticatedUser.CLAIM_CREATED_AT, user.getCreatedAt().toString());
+        }
+        if (user.getUpdatedAt() != null) {
+            claims.put(AuthenticatedUser.CLAIM_UPDATED_AT, user.getUpdatedAt().toString());
+        }
+        return createToken(claims, user.getEmail());
+    }
+    
     private String createToken(Map<String, Object> claims, String subject) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration);
         
-        return Jwts.builder()
+        SigningKeyRing.ActiveKey signingKey = keyRing.getActiveKey();
+        JwtBuilder builder = Jwts.builder();
+        if (signingKey.getKeyId() != null) {
+            builder.header().keyId(signingKey.getKeyId()).and();
+        }
+        // The algorithm follows from the key: HS256 for the secret, ES256 or EdDSA for ring keys
+        return builder
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey.getKey())
                 .compact();
     }
     
@@ -58,12 +89,29 @@ public class JwtTokenProvider {
         return claimsResolver.apply(claims);
     }
     
+    public long getExpiration() {
+        return expiration;
+    }
+    
+    // Verifies signature and expiry in a single parse
+    public Claims parseClaims(String token) {
+        return getAllClaimsFromToken(token);
+    }
+    
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        ProfilingEvents.JwtParse event = new ProfilingEvents.JwtParse();
+        event.begin();
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            event.valid = true;
+            return claims;
+        } catch (RuntimeException e) {
+            event.failure = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            event.tokenLength = token != null ? token.length() : 0;
+            event.commit();
+        }
     }
     
     public Boolean isTokenExpired(String token) {
@@ -76,4 +124,3 @@ public class JwtTokenProvider {
         return (tokenEmail.equals(email) && !isTokenExpired(token));
     }
 }
-
@@ -0,0 +1,102 @@
+package com.usermanagement.security;
+
+import com.usermanagement.repository.UserStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last activity of each user, kept in memory and written to users.last_login_at in batches. A login
+ * or a request authenticated by token only updates the user's entry here; each flush writes what
+ * changed since the previous one, one batched UPDATE per database, and skips rows already within
+ * app.activity.resolution-ms. A crash loses at most one flush interval of activity, which only
+ * makes users look a little older to the archival job.
+ */
+@Component
+public class LastLoginTracker {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LastLoginTracker.class);
+    
+    @Autowired
+    private UserStore userStore;
+    
+    @Value("${app.activity.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.activity.resolution-ms:60000}")
+    private long resolutionMs;
+    
+    @Value("${app.activity.batch-size:1000}")
+    private int batchSize;
+    
+    // Epoch millis of the latest activity not yet written, by user id
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+    
+    public void touch(Long userId) {
+        if (enabled && userId != null) {
+            pending.put(userId, System.currentTimeMillis());
+        }
+    }
+    
+    @EventListener
+    public void onAuthenticationSuccess(AuthenticationSuccessEvent event) {
+        if (event.getAuthentication().getPrincipal() instanceof AuthenticatedUser user) {
+            touch(user.getId());
+        }
+    }
+    
+    // Also called by the archival job, so it judges users by their latest activity
+    @Scheduled(fixedDelayString = "${app.activity.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> batch = new HashMap<>();
+        for (Long userId : pending.keySet()) {
+            Long at = pending.remove(userId);
+            if (at == null) {
+                continue;
+            }
+            batch.put(userId, at);
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+    
+    private void write(Map<Long, Long> batch) {
+        Map<Long, LocalDateTime> lastLogins = new HashMap<>(batch.size() * 2);
+        batch.forEach((userId, at) -> lastLogins.put(userId,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(at), ZoneId.systemDefault())));
+        try {
+            userStore.recordLastLogins(lastLogins, Duration.ofMillis(resolutionMs));
+        } catch (RuntimeException e) {
+            // Put the batch back for the next flush, under any activity recorded since
+            logger.warn("Could not write last activity of {} users, retrying on the next flush", batch.size(), e);
+            batch.forEach((userId, at) -> pending.merge(userId, at, Math::max));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.usermanagement.security;
+
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.event.UserChangedEvent;
+import com.usermanagement.repository.UserChangeEventRepository;
+import com.usermanagement.service.ChangeFeedService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * When each user's profile last changed, for as long as an access token issued before the change
+ * can still be valid. Lets the filter trust token claims unless the profile changed after the token
+ * was issued. Local changes are seen on commit, other nodes' through the change feed poll.
+ */
+@Component
+public class ProfileChangeTracker {
+    
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Autowired
+    private UserChangeEventRepository changeEventRepository;
+    
+    @Value("${app.security.jwt.trust-claims:false}")
+    private boolean enabled;
+    
+    @Value("${jwt.expiration:900000}")
+    private long tokenLifetimeMs;
+    
+    // Tolerance for clock differences between the node that issued a token and the one that wrote a change
+    @Value("${app.security.jwt.claims-clock-skew-ms:1000}")
+    private long clockSkewMs;
+    
+    private final Map<Long, Long> changedAt = new ConcurrentHashMap<>();
+    private volatile long cursor;
+    
+    // Start from the oldest change a still-valid token could predate, so a restart does not forget it
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime since = LocalDateTime.now().minusNanos((tokenLifetimeMs + clockSkewMs) * 1_000_000L);
+        cursor = changeEventRepository.findFirstByOccurredAtGreaterThanEqualOrderBySequenceAsc(since)
+                .map(change -> change.getSequence() - 1)
+                .orElseGet(changeFeedService::getLatestSequence);
+        poll();
+    }
+    
+    public boolean changedSince(Long userId, Date issuedAt) {
+        if (userId == null || issuedAt == null) {
+            return true;
+        }
+        Long changed = changedAt.get(userId);
+        // iat is truncated to whole seconds, which only errs on the side of reloading
+        return changed != null && changed + clockSkewMs >= issuedAt.getTime();
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (enabled) {
+            changedAt.merge(event.getUserId(), System.currentTimeMillis(), Math::max);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.security.jwt.claims-sync-interval-ms:1000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        while (true) {
+            List<UserChangeEvent> changes = changeFeedService.getChangesAfter(cursor, 1000);
+            for (UserChangeEvent change : changes) {
+                long occurredAt = change.getOccurredAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                changedAt.merge(change.getUserId(), occurredAt, Math::max);
+                cursor = change.getSequence();
+            }
+            if (changes.size() < 1000) {
+                break;
+            }
+        }
+        long horizon = System.currentTimeMillis() - tokenLifetimeMs - clockSkewMs;
+        changedAt.values().removeIf(changed -> changed < horizon);
+    }
+}
@@ -0,0 +1,100 @@
+package com.usermanagement.security;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Keys the server keeps to itself, derived from app.security.master-key with one key per purpose,
+ * so a key leaked from one feature says nothing about another. Every node must share the master
+ * key. Until one is configured jwt.secret stands in for it, with a warning at startup.
+ */
+@Component
+public class ServerSecrets {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ServerSecrets.class);
+    private static final int GCM_IV_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
+    
+    private final SecureRandom secureRandom = new SecureRandom();
+    
+    // Base64, at least 32 bytes
+    @Value("${app.security.master-key:}")
+    private String masterKey;
+    
+    @Value("${jwt.secret:mySecretKey123456789012345678901234567890}")
+    private String jwtSecret;
+    
+    private byte[] master;
+    
+    @PostConstruct
+    public void init() {
+        if (masterKey == null || masterKey.isBlank()) {
+            logger.warn("app.security.master-key is not set, deriving server keys from jwt.secret; configure a random 32-byte key");
+            master = jwtSecret.getBytes(StandardCharsets.UTF_8);
+            return;
+        }
+        master = Base64.getDecoder().decode(masterKey.trim());
+        if (master.length < 32) {
+            throw new IllegalStateException("app.security.master-key must hold at least 32 bytes, got " + master.length);
+        }
+    }
+    
+    // 32-byte key for one purpose; the same purpose gives the same key on every node
+    public byte[] derive(String purpose) {
+        return hmacSha256(master, purpose.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * AES-GCM under the key for the purpose, as IV followed by ciphertext. The associated data is
+     * authenticated but not stored, so a sealed value only opens in the context it was sealed for.
+     */
+    public byte[] seal(String purpose, byte[] plaintext, byte[] associatedData) {
+        byte[] iv = new byte[GCM_IV_BYTES];
+        secureRandom.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(derive(purpose), "AES"), new GCMParameterSpec(GCM_TAG_BITS, iv));
+            cipher.updateAAD(associatedData);
+            byte[] ciphertext = cipher.doFinal(plaintext);
+            return ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt " + purpose, e);
+        }
+    }
+    
+    public byte[] open(String purpose, byte[] sealed, byte[] associatedData) {
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(derive(purpose), "AES"),
+                    new GCMParameterSpec(GCM_TAG_BITS, sealed, 0, GCM_IV_BYTES));
+            cipher.updateAAD(associatedData);
+            return cipher.doFinal(sealed, GCM_IV_BYTES, sealed.length - GCM_IV_BYTES);
+        } catch (GeneralSecurityException e) {
+            // Wrong master key on this node, or the value was tampered with
+            throw new IllegalStateException("Could not decrypt " + purpose, e);
+        }
+    }
+    
+    public static byte[] hmacSha256(byte[] key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
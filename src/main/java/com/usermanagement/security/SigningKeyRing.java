@@ -0,0 +1,364 @@
+package com.usermanagement.security;
+
+import com.usermanagement.entity.SigningKey;
+import com.usermanagement.entity.SigningKeyRotation;
+import com.usermanagement.repository.SigningKeyRepository;
+import com.usermanagement.repository.SigningKeyRotationRepository;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.SecretKey;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Signing and verification keys for JWTs: the HMAC secret, or a rotating ring of EdDSA/ES256 keys indexed by kid
+@Component
+public class SigningKeyRing extends LocatorAdapter<Key> {
+    
+    public static final String HS256 = "HS256";
+    public static final String ES256 = "ES256";
+    public static final String EDDSA = "EdDSA";
+    
+    private static final Logger logger = LoggerFactory.getLogger(SigningKeyRing.class);
+    private static final long UNKNOWN_KID_RELOAD_INTERVAL_MS = 10_000L;
+    // Private keys are stored AES-GCM encrypted under a key derived from the master key, bound to their kid
+    private static final String SEALED_PREFIX = "sealed:";
+    private static final String PRIVATE_KEY_PURPOSE = "jwt-signing-private-key";
+    
+    @Autowired
+    private SigningKeyRepository signingKeyRepository;
+    
+    @Autowired
+    private SigningKeyRotationRepository rotationRepository;
+    
+    @Autowired
+    private ServerSecrets serverSecrets;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${jwt.secret:mySecretKey123456789012345678901234567890}")
+    private String secret;
+    
+    @Value("${jwt.signing.algorithm:HS256}")
+    private String algorithm;
+    
+    // Keeps tokens issued before a switch from HMAC verifiable until they expire, one token lifetime
+    // after the switch and never longer, since anyone holding jwt.secret could still mint them
+    @Value("${jwt.signing.accept-legacy-hmac:true}")
+    private boolean acceptLegacyHmac;
+    
+    @Value("${jwt.signing.rotation-interval-ms:604800000}") // 7 days
+    private long rotationIntervalMs;
+    
+    @Value("${jwt.signing.publish-ahead-ms:600000}") // 10 minutes
+    private long publishAheadMs;
+    
+    @Value("${jwt.expiration:900000}")
+    private long tokenLifetimeMs;
+    
+    private SecretKey hmacKey;
+    private TransactionTemplate transactionTemplate;
+    private volatile Map<String, LoadedKey> keys = Map.of();
+    private volatile LoadedKey activeKey;
+    private volatile LocalDateTime legacyHmacUntil;
+    private volatile long lastReload;
+    
+    @PostConstruct
+    public void init() {
+        hmacKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        if (!isAsymmetric()) {
+            return;
+        }
+        if (!ES256.equals(algorithm) && !EDDSA.equals(algorithm)) {
+            throw new IllegalStateException("Unsupported jwt.signing.algorithm: " + algorithm);
+        }
+        rotate(LocalDateTime.now());
+    }
+    
+    public boolean isAsymmetric() {
+        return !HS256.equals(algorithm);
+    }
+    
+    public String getAlgorithm() {
+        return algorithm;
+    }
+    
+    // Key id and key are read from one snapshot so a concurrent rotation cannot mismatch them
+    public ActiveKey getActiveKey() {
+        if (!isAsymmetric()) {
+            return new ActiveKey(null, hmacKey);
+        }
+        LoadedKey current = activeKey;
+        return new ActiveKey(current.kid, current.privateKey);
+    }
+    
+    @Override
+    protected Key locate(JwsHeader header) {
+        String kid = header.getKeyId();
+        if (kid == null) {
+            if (!isAsymmetric()) {
+                return hmacKey;
+            }
+            LocalDateTime until = legacyHmacUntil;
+            return acceptLegacyHmac && until != null && LocalDateTime.now().isBefore(until) ? hmacKey : null;
+        }
+        LoadedKey key = keys.get(kid);
+        if (key == null && System.currentTimeMillis() - lastReload > UNKNOWN_KID_RELOAD_INTERVAL_MS) {
+            // Another node may have just rotated
+            reload();
+            key = keys.get(kid);
+        }
+        return key != null ? key.publicKey : null;
+    }
+    
+    // Public halves of every key that may sign or has signed a still-valid token
+    public List<Map<String, Object>> getPublicJwks() {
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        for (LoadedKey key : keys.values()) {
+            jwks.add(key.jwk);
+        }
+        return jwks;
+    }
+    
+    @Scheduled(fixedDelayString = "${jwt.signing.reload-interval-ms:60000}")
+    public void rotateIfDue() {
+        if (!isAsymmetric()) {
+            return;
+        }
+        rotate(LocalDateTime.now());
+    }
+    
+    // Decided under the rotation row lock, so nodes that find a key due at the same time generate only one
+    private void rotate(LocalDateTime now) {
+        createRotationRow(now);
+        transactionTemplate.executeWithoutResult(status -> {
+            rotationRepository.findForUpdate(algorithm)
+                    .orElseThrow(() -> new IllegalStateException("Missing signing key rotation row for " + algorithm));
+            SigningKey newestActive = null;
+            boolean pending = false;
+            for (SigningKey entity : signingKeyRepository.findByAlgorithmOrderByActivatesAtAsc(algorithm)) {
+                if (entity.getExpiresAt() != null && entity.getExpiresAt().isBefore(now)) {
+                    continue;
+                }
+                if (entity.getActivatesAt().isAfter(now)) {
+                    pending = true;
+                } else {
+                    newestActive = entity;
+                }
+                if (!entity.getPrivateKey().startsWith(SEALED_PREFIX)) {
+                    // Stored before private keys were encrypted; written back on commit
+                    entity.setPrivateKey(sealPrivateKey(entity.getKid(), Base64.getDecoder().decode(entity.getPrivateKey())));
+                }
+            }
+            if (newestActive == null) {
+                generateKey(now);
+            } else if (!pending && newestActive.getActivatesAt().plus(Duration.ofMillis(rotationIntervalMs)).isBefore(now)) {
+                generateKey(now.plus(Duration.ofMillis(publishAheadMs)));
+            }
+            signingKeyRepository.deleteExpired(now);
+        });
+        reload();
+    }
+    
+    private void createRotationRow(LocalDateTime now) {
+        if (rotationRepository.existsById(algorithm)) {
+            return;
+        }
+        // Keys from before the row existed date the switch from HMAC
+        LocalDateTime startedAt = signingKeyRepository.findByAlgorithmOrderByActivatesAtAsc(algorithm).stream()
+                .map(SigningKey::getCreatedAt)
+                .min(Comparator.naturalOrder())
+                .orElse(now);
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                rotationRepository.save(new SigningKeyRotation(algorithm, startedAt)));
+        } catch (DataIntegrityViolationException e) {
+            // Another node created it first
+        }
+    }
+    
+    private synchronized void reload() {
+        lastReload = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        legacyHmacUntil = rotationRepository.findById(algorithm)
+                .map(rotation -> rotation.getStartedAt().plus(Duration.ofMillis(tokenLifetimeMs)).plusMinutes(5))
+                .orElse(null);
+        Map<String, LoadedKey> loaded = new HashMap<>();
+        LoadedKey newestActive = null;
+        for (SigningKey entity : signingKeyRepository.findByAlgorithmOrderByActivatesAtAsc(algorithm)) {
+            if (entity.getExpiresAt() != null && entity.getExpiresAt().isBefore(now)) {
+                continue;
+            }
+            LoadedKey key = LoadedKey.from(entity, openPrivateKey(entity));
+            loaded.put(key.kid, key);
+            if (!key.activatesAt.isAfter(now)) {
+                newestActive = key;
+            }
+        }
+        keys = Map.copyOf(loaded);
+        if (newestActive != null) {
+            activeKey = newestActive;
+        }
+    }
+    
+    // Runs inside the rotation transaction
+    private void generateKey(LocalDateTime activatesAt) {
+        KeyPair keyPair = newKeyPair(algorithm);
+        String kid = UUID.randomUUID().toString();
+        SigningKey entity = new SigningKey(kid, algorithm,
+            Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()),
+            sealPrivateKey(kid, keyPair.getPrivate().getEncoded()),
+            LocalDateTime.now(), activatesAt);
+        // Older keys stop signing when this one activates and stay verifiable for one token lifetime more
+        LocalDateTime retiredExpiry = activatesAt.plus(Duration.ofMillis(tokenLifetimeMs)).plusMinutes(5);
+        signingKeyRepository.save(entity);
+        signingKeyRepository.retireOlderThan(algorithm, activatesAt, retiredExpiry);
+        logger.info("Generated {} JWT signing key {} (active from {})", algorithm, kid, activatesAt);
+    }
+    
+    private String sealPrivateKey(String kid, byte[] pkcs8) {
+        byte[] sealed = serverSecrets.seal(PRIVATE_KEY_PURPOSE, pkcs8, kid.getBytes(StandardCharsets.UTF_8));
+        return SEALED_PREFIX + Base64.getEncoder().encodeToString(sealed);
+    }
+    
+    private byte[] openPrivateKey(SigningKey entity) {
+        String stored = entity.getPrivateKey();
+        if (!stored.startsWith(SEALED_PREFIX)) {
+            return Base64.getDecoder().decode(stored);
+        }
+        byte[] sealed = Base64.getDecoder().decode(stored.substring(SEALED_PREFIX.length()));
+        return serverSecrets.open(PRIVATE_KEY_PURPOSE, sealed, entity.getKid().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    static KeyPair newKeyPair(String algorithm) {
+        try {
+            if (EDDSA.equals(algorithm)) {
+                return KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+            }
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not generate " + algorithm + " key pair", e);
+        }
+    }
+    
+    public static final class ActiveKey {
+        private final String keyId;
+        private final Key key;
+        
+        private ActiveKey(String keyId, Key key) {
+            this.keyId = keyId;
+            this.key = key;
+        }
+        
+        // Null for HMAC tokens, which carry no kid
+        public String getKeyId() {
+            return keyId;
+        }
+        
+        public Key getKey() {
+            return key;
+        }
+    }
+    
+    private static final class LoadedKey {
+        private final String kid;
+        private final LocalDateTime activatesAt;
+        private final PublicKey publicKey;
+        private final PrivateKey privateKey;
+        private final Map<String, Object> jwk;
+        
+        private LoadedKey(String kid, LocalDateTime activatesAt, PublicKey publicKey,
+                          PrivateKey privateKey, Map<String, Object> jwk) {
+            this.kid = kid;
+            this.activatesAt = activatesAt;
+            this.publicKey = publicKey;
+            this.privateKey = privateKey;
+            this.jwk = jwk;
+        }
+        
+        private static LoadedKey from(SigningKey entity, byte[] pkcs8) {
+            try {
+                String jcaName = EDDSA.equals(entity.getAlgorithm()) ? "Ed25519" : "EC";
+                KeyFactory keyFactory = KeyFactory.getInstance(jcaName);
+                PublicKey publicKey = keyFactory.generatePublic(
+                    new X509EncodedKeySpec(Base64.getDecoder().decode(entity.getPublicKey())));
+                PrivateKey privateKey = keyFactory.generatePrivate(
+                    new PKCS8EncodedKeySpec(pkcs8));
+                return new LoadedKey(entity.getKid(), entity.getActivatesAt(), publicKey, privateKey,
+                    toJwk(entity.getKid(), entity.getAlgorithm(), publicKey));
+            } catch (Exception e) {
+                throw new IllegalStateException("Unreadable JWT signing key " + entity.getKid(), e);
+            }
+        }
+        
+        private static Map<String, Object> toJwk(String kid, String algorithm, PublicKey publicKey) {
+            Base64.Encoder base64Url = Base64.getUrlEncoder().withoutPadding();
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            jwk.put("kid", kid);
+            jwk.put("use", "sig");
+            jwk.put("alg", algorithm);
+            if (EDDSA.equals(algorithm)) {
+                // The X.509 encoding of an Ed25519 key ends with the raw 32-byte public key
+                byte[] encoded = publicKey.getEncoded();
+                jwk.put("kty", "OKP");
+                jwk.put("crv", "Ed25519");
+                jwk.put("x", base64Url.encodeToString(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length)));
+            } else {
+                ECPublicKey ecKey = (ECPublicKey) publicKey;
+                jwk.put("kty", "EC");
+                jwk.put("crv", "P-256");
+                jwk.put("x", base64Url.encodeToString(toFixedLength(ecKey.getW().getAffineX(), 32)));
+                jwk.put("y", base64Url.encodeToString(toFixedLength(ecKey.getW().getAffineY(), 32)));
+            }
+            return Collections.unmodifiableMap(jwk);
+        }
+        
+        private static byte[] toFixedLength(BigInteger value, int length) {
+            byte[] bytes = value.toByteArray();
+            if (bytes.length == length) {
+                return bytes;
+            }
+            byte[] fixed = new byte[length];
+            int copy = Math.min(bytes.length, length);
+            System.arraycopy(bytes, bytes.length - copy, fixed, length - copy, copy);
+            return fixed;
+        }
+    }
+}
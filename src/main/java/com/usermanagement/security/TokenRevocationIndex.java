@@ -0,0 +1,72 @@
+package com.usermanagement.security;
+
+import com.usermanagement.entity.RevokedToken;
+import com.usermanagement.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory expiring set of revoked access token ids, kept in sync across nodes through revoked_tokens
+@Component
+public class TokenRevocationIndex {
+    
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+    
+    // Re-read a little history on every sync to absorb clock skew and late commits between nodes
+    @Value("${app.security.revocation.sync-overlap-ms:5000}")
+    private long syncOverlapMs;
+    
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastSync = LocalDateTime.of(1970, 1, 1, 0, 0);
+    
+    @PostConstruct
+    public void load() {
+        sync();
+    }
+    
+    public boolean isRevoked(String jti) {
+        return jti != null && revoked.containsKey(jti);
+    }
+    
+    @Transactional
+    public void revoke(String jti, long expiresAt) {
+        if (jti == null || expiresAt < System.currentTimeMillis()) {
+            return;
+        }
+        if (revoked.putIfAbsent(jti, expiresAt) == null && !revokedTokenRepository.existsByJti(jti)) {
+            revokedTokenRepository.save(new RevokedToken(jti, expiresAt));
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.security.revocation.sync-interval-ms:2000}")
+    public void sync() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long now = System.currentTimeMillis();
+        LocalDateTime since = lastSync.minusNanos(syncOverlapMs * 1_000_000L);
+        for (RevokedToken token : revokedTokenRepository
+                .findByRevokedAtGreaterThanEqualAndExpiresAtGreaterThan(since, now)) {
+            revoked.put(token.getJti(), token.getExpiresAt());
+        }
+        lastSync = startedAt;
+        // Expired tokens fail signature-time validation anyway
+        revoked.values().removeIf(expiresAt -> expiresAt < now);
+    }
+    
+    @Transactional
+    @Scheduled(cron = "${app.security.revocation.purge-cron:0 15 * * * *}")
+    public void purgeExpired() {
+        revokedTokenRepository.deleteExpired(System.currentTimeMillis());
+    }
+    
+    public int size() {
+        return revoked.size();
+    }
+}
@@ -0,0 +1,30 @@
+package com.usermanagement.service;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ChangeFeedService {
+    
+    void record(UserChangeEvent.Operation operation, User user);
+    
+    List<UserChangeEvent> getChangesAfter(long cursor, int limit);
+    
+    long getLatestSequence();
+    
+    // Latest sequence once no younger transaction can still commit below it, or -1 while that is possible
+    long getSettledSequence();
+    
+    // Highest sequence with no open gap below it: every change up to it can be read and no more will commit there
+    long getCommittedSequence();
+    
+    // Sequence just before the first change at or after since, or -1 when changes that old are no longer kept
+    long getSequenceBefore(LocalDateTime since);
+    
+    // Whether the outbox still holds every change after this sequence
+    boolean isRetainedAfter(long sequence);
+    
+    int purgeExpiredChanges();
+}
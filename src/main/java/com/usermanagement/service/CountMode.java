@@ -0,0 +1,31 @@
+package com.usermanagement.service;
+
+import java.util.Locale;
+
+// How a listing computes its total, chosen per request with ?count=
+public enum CountMode {
+    
+    // COUNT(*) on every request (default)
+    EXACT,
+    
+    // Exact count reused for a few seconds; the unfiltered total follows local writes in between
+    CACHED,
+    
+    // Table statistics once the table is past app.listing.estimate-threshold; searches use CACHED
+    ESTIMATED,
+    
+    // No total at all, only whether another page follows
+    NONE;
+    
+    public static CountMode parse(String value) {
+        if (value == null || value.isBlank()) {
+            return EXACT;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown count mode: " + value
+                    + " (expected exact, cached, estimated or none)");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.usermanagement.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Position in the change feed up to which a delta export has delivered every change
+public final class ExportCursor {
+    
+    private final long sequence;
+    
+    public ExportCursor(long sequence) {
+        if (sequence < 0) {
+            throw new IllegalArgumentException("Export cursor sequence must not be negative: " + sequence);
+        }
+        this.sequence = sequence;
+    }
+    
+    public static ExportCursor parse(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            return new ExportCursor(Long.parseLong(decoded));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid export cursor: " + token, e);
+        }
+    }
+    
+    public String encode() {
+        String raw = Long.toString(sequence);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public long getSequence() {
+        return sequence;
+    }
+}
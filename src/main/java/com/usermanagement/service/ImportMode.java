@@ -0,0 +1,28 @@
+package com.usermanagement.service;
+
+import java.util.Locale;
+
+// What an import does with a row whose email already belongs to a user, chosen per import with ?mode=
+public enum ImportMode {
+    
+    // Leave the user alone and report the row as a duplicate (default)
+    SKIP,
+    
+    // Update the user's name, and its password when the row has one
+    UPSERT,
+    
+    // Import nothing when any row is a duplicate
+    FAIL_FAST;
+    
+    public static ImportMode parse(String value) {
+        if (value == null || value.isBlank()) {
+            return SKIP;
+        }
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown import mode: " + value
+                    + " (expected skip, upsert or fail-fast)");
+        }
+    }
+}
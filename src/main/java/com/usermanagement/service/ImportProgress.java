@@ -0,0 +1,56 @@
+package com.usermanagement.service;
+
+import java.util.List;
+
+// State of a streaming import after a request, as returned to the client
+public class ImportProgress {
+    
+    private final String uploadId;
+    private final long offset;
+    private final int nextRecord;
+    private final long importedCount;
+    private final long duplicateCount;
+    private final boolean complete;
+    private final List<ImportResult.Duplicate> duplicates;
+    
+    public ImportProgress(String uploadId, long offset, int nextRecord, long importedCount, long duplicateCount,
+                          boolean complete, List<ImportResult.Duplicate> duplicates) {
+        this.uploadId = uploadId;
+        this.offset = offset;
+        this.nextRecord = nextRecord;
+        this.importedCount = importedCount;
+        this.duplicateCount = duplicateCount;
+        this.complete = complete;
+        this.duplicates = duplicates;
+    }
+    
+    public String getUploadId() {
+        return uploadId;
+    }
+    
+    // Byte offset the next request must start at: the end of the last saved CSV record
+    public long getOffset() {
+        return offset;
+    }
+    
+    public int getNextRecord() {
+        return nextRecord;
+    }
+    
+    public long getImportedCount() {
+        return importedCount;
+    }
+    
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+    
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    // Duplicates found by the last request only, at most the first hundred
+    public List<ImportResult.Duplicate> getDuplicates() {
+        return duplicates;
+    }
+}
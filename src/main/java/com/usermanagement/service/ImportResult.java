@@ -0,0 +1,96 @@
+package com.usermanagement.service;
+
+import com.usermanagement.entity.User;
+
+import java.util.List;
+
+public class ImportResult {
+    
+    private final ImportMode mode;
+    private final List<User> importedUsers;
+    private final List<Duplicate> duplicates;
+    private final long insertedCount;
+    private final long updatedCount;
+    private final long unchangedCount;
+    
+    public ImportResult(List<User> importedUsers, List<Duplicate> duplicates) {
+        this(ImportMode.SKIP, importedUsers, duplicates, importedUsers.size(), 0, 0);
+    }
+    
+    public ImportResult(ImportMode mode, List<User> importedUsers, List<Duplicate> duplicates,
+                        long insertedCount, long updatedCount, long unchangedCount) {
+        this.mode = mode;
+        this.importedUsers = importedUsers;
+        this.duplicates = duplicates;
+        this.insertedCount = insertedCount;
+        this.updatedCount = updatedCount;
+        this.unchangedCount = unchangedCount;
+    }
+    
+    public ImportMode getMode() {
+        return mode;
+    }
+    
+    // Users the import created
+    public List<User> getImportedUsers() {
+        return importedUsers;
+    }
+    
+    // Rows that were not imported because their email is taken, in file order. Upserts only report
+    // rows repeating an earlier row's email
+    public List<Duplicate> getDuplicates() {
+        return duplicates;
+    }
+    
+    public long getInsertedCount() {
+        return insertedCount;
+    }
+    
+    // Existing users whose name or password the import changed (upserts only)
+    public long getUpdatedCount() {
+        return updatedCount;
+    }
+    
+    // Rows matching an existing user that already had the same name, and no password to set (upserts only)
+    public long getUnchangedCount() {
+        return unchangedCount;
+    }
+    
+    public static class Duplicate {
+        
+        public enum Reason {
+            EXISTING_USER,
+            EARLIER_ROW
+        }
+        
+        private final int row;
+        private final String email;
+        private final Reason reason;
+        private final int firstRow;
+        
+        public Duplicate(int row, String email, Reason reason, int firstRow) {
+            this.row = row;
+            this.email = email;
+            this.reason = reason;
+            this.firstRow = firstRow;
+        }
+        
+        // 1-based CSV record number, header included
+        public int getRow() {
+            return row;
+        }
+        
+        public String getEmail() {
+            return email;
+        }
+        
+        public Reason getReason() {
+            return reason;
+        }
+        
+        // Row that first used the email when the reason is EARLIER_ROW, otherwise 0
+        public int getFirstRow() {
+            return firstRow;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.usermanagement.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Imports CSV files of any size from the request body as it arrives, in resumable uploads.
+ */
+public interface ImportUploadService {
+    
+    ImportProgress start(String owner);
+    
+    Optional<ImportProgress> getProgress(String uploadId, String owner);
+    
+    /**
+     * Imports the records in {@code body}, which holds the file from byte {@code offset} on and must
+     * start where the upload stopped. Records are saved in batches as the body is read; a trailing
+     * partial record is left for the next request unless {@code last} is set.
+     *
+     * @throws java.util.NoSuchElementException if the upload does not exist or belongs to someone else
+     * @throws IllegalStateException if the upload is complete or continues at another offset
+     * @throws IllegalArgumentException if the CSV is malformed or a record exceeds the batch buffer
+     */
+    ImportProgress append(String uploadId, String owner, long offset, boolean last, InputStream body) throws IOException;
+}
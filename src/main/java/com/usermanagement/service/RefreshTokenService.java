@@ -0,0 +1,17 @@
+package com.usermanagement.service;
+
+import com.usermanagement.security.AuthenticatedUser;
+
+public interface RefreshTokenService {
+    
+    // For a user the caller has just authenticated or created, so it is not read again
+    TokenPair issueTokens(AuthenticatedUser user);
+    
+    TokenPair refresh(String refreshToken);
+    
+    void revoke(String refreshToken);
+    
+    void revokeAccessToken(String accessToken);
+    
+    int purgeExpiredTokens();
+}
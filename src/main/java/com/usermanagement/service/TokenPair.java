@@ -0,0 +1,33 @@
+package com.usermanagement.service;
+
+public class TokenPair {
+    
+    private final String email;
+    private final String accessToken;
+    private final String refreshToken;
+    private final long expiresIn;
+    
+    public TokenPair(String email, String accessToken, String refreshToken, long expiresIn) {
+        this.email = email;
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public String getAccessToken() {
+        return accessToken;
+    }
+    
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+    
+    // Access token lifetime in seconds
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+}
@@ -3,10 +3,14 @@ package com.usermanagement.service;
 import com.usermanagement.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserService {
     
@@ -14,22 +18,62 @@ public interface UserService {
     
     Page<User> searchUsers(String keyword, Pageable pageable);
     
+    // A Page for counted modes, a plain Slice for CountMode.NONE
+    Slice<User> getAllUsers(Pageable pageable, CountMode countMode);
+    
+    Slice<User> searchUsers(String keyword, Pageable pageable, CountMode countMode);
+    
+    // One page in id order, read from a database cursor; the User passed to the action is reused for every row
+    void forEachUser(String keyword, Pageable pageable, Consumer<User> action);
+    
     Optional<User> getUserById(Long id);
     
     User createUser(User user);
     
     User updateUser(Long id, User user);
     
+    /**
+     * Writes the update only if the user is still at expectedVersion (any version when null), in one
+     * conditional UPDATE. Throws NoSuchElementException for an unknown id,
+     * OptimisticLockingFailureException when the version moved on and IllegalArgumentException when
+     * the email belongs to another user.
+     */
+    User updateUser(Long id, User user, Long expectedVersion);
+    
     void deleteUser(Long id);
     
     boolean existsByEmail(String email);
     
     Optional<User> findByEmail(String email);
     
-    List<User> importUsersFromCSV(MultipartFile file);
+    // The user archived under this email, without restoring it: a login checks the password first
+    Optional<User> findArchivedUser(String email);
+    
+    /**
+     * Moves the user archived under this email back to the users table, once a login matched its
+     * password. Empty when there is none, or when the email was registered again meanwhile.
+     */
+    Optional<User> restoreArchivedUser(String email);
+    
+    ImportResult importUsersFromCSV(MultipartFile file);
+    
+    ImportResult importUsersFromCSV(MultipartFile file, ImportMode mode);
     
     byte[] exportUsersToCSV();
     
+    // Every user, in id order, read in parallel ranges and written as they complete
+    void exportUsersToCSV(OutputStream out);
+    
+    // Start of a delta export of the changes from since on; null when they are no longer all kept
+    ExportCursor getExportCursorSince(LocalDateTime since);
+    
+    // Whether a delta export from this cursor would still see every change after it
+    boolean isExportCursorRetained(ExportCursor cursor);
+    
+    ExportCursor getExportHighWaterMark(ExportCursor from);
+    
+    void exportChangedUsersToCSV(ExportCursor from, ExportCursor until, OutputStream out);
+    
     List<User> getAllUsers();
 }
 
@@ -0,0 +1,166 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.event.UserChangedEvent;
+import com.usermanagement.repository.UserChangeEventRepository;
+import com.usermanagement.repository.UserStore;
+import com.usermanagement.service.ChangeFeedService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Transactional
+public class ChangeFeedServiceImpl implements ChangeFeedService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeedServiceImpl.class);
+    
+    @Autowired
+    private UserChangeEventRepository changeEventRepository;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private UserStore userStore;
+    
+    @Value("${app.change-feed.max-batch-size:1000}")
+    private int maxBatchSize;
+    
+    // How long a hole in the sequence may stay open, counted from when this node first saw it, before
+    // we treat it as a rolled back insert; must exceed the longest transaction that writes users
+    @Value("${app.change-feed.gap-timeout-ms:2000}")
+    private long gapTimeoutMs;
+    
+    @Value("${app.change-feed.retention-days:7}")
+    private int retentionDays;
+    
+    // Holes in the sequence by their first missing value, with when this node first saw them open
+    private final Map<Long, Long> openGaps = new ConcurrentHashMap<>();
+    
+    // Follows the feed like any consumer; the latest sequence is settled once it has caught up to it
+    private OutboxFollower settledFollower;
+    private volatile long settledCursor = -1;
+    
+    @Override
+    public void record(UserChangeEvent.Operation operation, User user) {
+        UserChangeEvent change = new UserChangeEvent(operation, user);
+        if (!userStore.recordsChanges()) {
+            // Joins the caller's transaction so the outbox row commits or rolls back with the user row
+            change = changeEventRepository.save(change);
+        }
+        eventPublisher.publishEvent(new UserChangedEvent(this, change));
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserChangeEvent> getChangesAfter(long cursor, int limit) {
+        int batchSize = Math.max(1, Math.min(limit, maxBatchSize));
+        List<UserChangeEvent> batch = changeEventRepository
+                .findBySequenceGreaterThanOrderBySequenceAsc(cursor, PageRequest.of(0, batchSize));
+        
+        // Identity values are assigned at insert time but become visible at commit time, so a
+        // younger transaction can commit before an older one. Stop in front of a gap and let the
+        // consumer pick the rest up on its next pull; only a gap that has stayed open for the gap
+        // timeout is skipped. The age of the rows after it says nothing about the transaction
+        // holding it, which may have inserted its outbox row long before committing.
+        long now = System.currentTimeMillis();
+        List<UserChangeEvent> visible = new ArrayList<>(batch.size());
+        long expected = cursor + 1;
+        for (UserChangeEvent change : batch) {
+            if (change.getSequence() != expected) {
+                long openFor = now - openGaps.computeIfAbsent(expected, sequence -> now);
+                if (openFor < gapTimeoutMs) {
+                    break;
+                }
+                logger.info("Change feed sequences {} to {} stayed missing for {} ms, treating them as rolled back",
+                        expected, change.getSequence() - 1, openFor);
+            }
+            visible.add(change);
+            expected = change.getSequence() + 1;
+        }
+        return visible;
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public long getLatestSequence() {
+        return changeEventRepository.findLatestSequence();
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public long getSettledSequence() {
+        long latest = changeEventRepository.findLatestSequence();
+        return settledCursor >= latest ? latest : -1L;
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public long getCommittedSequence() {
+        if (settledCursor < 0) {
+            advanceSettledSequence();
+        }
+        return settledCursor;
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public long getSequenceBefore(LocalDateTime since) {
+        if (since.isBefore(LocalDateTime.now().minusDays(retentionDays))) {
+            return -1L;
+        }
+        long committed = getCommittedSequence();
+        return changeEventRepository.findFirstByOccurredAtGreaterThanEqualOrderBySequenceAsc(since)
+                .map(change -> Math.min(change.getSequence() - 1, committed))
+                .orElse(committed);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public boolean isRetainedAfter(long sequence) {
+        // The purge removes a prefix of the sequence and keeps the latest row, so nothing after the
+        // sequence is gone while the oldest row left is at most one past it
+        Long oldest = changeEventRepository.findOldestSequence();
+        return oldest == null || oldest <= sequence + 1 || sequence >= changeEventRepository.findLatestSequence();
+    }
+    
+    // Advances the settled cursor through getChangesAfter, so it stops in front of open gaps too
+    @Scheduled(fixedDelayString = "${app.change-feed.poll-interval-ms:1000}")
+    @Transactional(readOnly = true)
+    public synchronized void advanceSettledSequence() {
+        if (settledFollower == null) {
+            settledFollower = new OutboxFollower(this, maxBatchSize);
+            settledFollower.start(changeEventRepository, gapTimeoutMs);
+        }
+        settledFollower.poll(change -> { });
+        settledCursor = settledFollower.getCursor();
+        // Every consumer that reaches a gap again starts its timer over, which only delays it
+        long forgetBefore = System.currentTimeMillis() - Math.max(gapTimeoutMs * 10, 60_000L);
+        openGaps.values().removeIf(seenAt -> seenAt < forgetBefore);
+    }
+    
+    @Override
+    @Scheduled(cron = "${app.change-feed.purge-cron:0 30 3 * * *}")
+    public int purgeExpiredChanges() {
+        Long expired = changeEventRepository.findLastSequenceBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (expired == null) {
+            return 0;
+        }
+        // A prefix of the sequence, and never the latest row, so isRetainedAfter can tell what is gone
+        return changeEventRepository.deleteUpTo(Math.min(expired, changeEventRepository.findLatestSequence() - 1));
+    }
+}
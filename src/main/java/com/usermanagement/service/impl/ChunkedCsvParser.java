@@ -0,0 +1,231 @@
+package com.usermanagement.service.impl;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+import com.usermanagement.profiling.ProfilingEvents;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses a CSV file on several threads. The file is memory-mapped and cut into ranges of about
+ * chunkBytes that end on a record boundary; each range is then read by its own OpenCSV reader.
+ * <p>
+ * Boundaries come from one sequential byte scan that tracks quoting the way OpenCSV does (doubled
+ * quotes and backslash escapes), so a newline inside a quoted field never splits a record and the
+ * records, and their numbers, are the ones a single CSVReader over the whole file would return. If
+ * the scan ever disagreed with the reader, a range would end inside a quoted field and its reader
+ * would fail the import rather than return different rows.
+ */
+public final class ChunkedCsvParser implements AutoCloseable {
+    
+    // The boundary scan maps the file a window at a time; ranges are mapped separately for parsing
+    private static final long SCAN_WINDOW_BYTES = 64L << 20;
+    
+    private final long chunkBytes;
+    private final int threads;
+    private final ExecutorService pool;
+    
+    public ChunkedCsvParser(int threads, long chunkBytes) {
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("chunkBytes must be positive: " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+        this.threads = Math.max(1, threads);
+        if (threads > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "csv-parse-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.pool = null;
+        }
+    }
+    
+    /**
+     * Consecutive records of the file, numbered from 1 across the whole file; blank lines count as
+     * records, as in CSVReader.
+     */
+    public static final class Batch {
+        
+        private final int firstRecordNumber;
+        private final List<String[]> records;
+        
+        private Batch(int firstRecordNumber, List<String[]> records) {
+            this.firstRecordNumber = firstRecordNumber;
+            this.records = records;
+        }
+        
+        public int getFirstRecordNumber() {
+            return firstRecordNumber;
+        }
+        
+        public List<String[]> getRecords() {
+            return records;
+        }
+        
+        public int recordNumber(int index) {
+            return firstRecordNumber + index;
+        }
+    }
+    
+    /**
+     * All records of the file in order, one batch per range; empty for an empty file.
+     */
+    public List<Batch> parse(Path file) throws IOException, CsvException {
+        ProfilingEvents.CsvParse event = new ProfilingEvents.CsvParse();
+        event.begin();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            event.bytes = channel.size();
+            List<long[]> ranges = split(channel);
+            List<List<String[]>> parsed = new ArrayList<>(ranges.size());
+            if (pool == null || ranges.size() == 1) {
+                for (long[] range : ranges) {
+                    parsed.add(parseRange(channel, range[0], range[1]));
+                }
+            } else {
+                List<Future<List<String[]>>> futures = new ArrayList<>(ranges.size());
+                for (long[] range : ranges) {
+                    futures.add(pool.submit(() -> parseRange(channel, range[0], range[1])));
+                }
+                for (Future<List<String[]>> future : futures) {
+                    parsed.add(await(future, futures));
+                }
+            }
+            
+            List<Batch> batches = new ArrayList<>(parsed.size());
+            int next = 1;
+            for (List<String[]> records : parsed) {
+                batches.add(new Batch(next, records));
+                next += records.size();
+            }
+            event.ranges = ranges.size();
+            event.records = next - 1;
+            event.threads = pool == null ? 1 : Math.min(threads, ranges.size());
+            return batches;
+        } finally {
+            event.commit();
+        }
+    }
+    
+    // [start, end) byte ranges covering the file, each ending just after an unquoted newline (or at the end)
+    private List<long[]> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<long[]> ranges = new ArrayList<>();
+        long start = 0;
+        long target = chunkBytes;
+        CsvQuoteTracker quotes = new CsvQuoteTracker();
+        for (long windowStart = 0; windowStart < size && target < size; windowStart += SCAN_WINDOW_BYTES) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(SCAN_WINDOW_BYTES, size - windowStart));
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                if (quotes.endsRecord(window.get(i)) && windowStart + i + 1 >= target) {
+                    long end = windowStart + i + 1;
+                    ranges.add(new long[] {start, end});
+                    start = end;
+                    target = end + chunkBytes;
+                }
+            }
+        }
+        if (start < size) {
+            ranges.add(new long[] {start, size});
+        }
+        return ranges;
+    }
+    
+    private static List<String[]> parseRange(FileChannel channel, long start, long end) throws IOException, CsvException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("CSV record starting after byte " + start + " is larger than 2 GB");
+        }
+        MappedByteBuffer range = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        List<String[]> records = new ArrayList<>();
+        // Ranges start and end on a newline byte, which is never part of a multi-byte UTF-8 sequence
+        try (CSVReader reader = new CSVReader(
+                new InputStreamReader(new ByteBufferInputStream(range), StandardCharsets.UTF_8))) {
+            String[] record;
+            while ((record = reader.readNext()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+    
+    private static List<String[]> await(Future<List<String[]>> future, List<Future<List<String[]>>> all)
+            throws IOException, CsvException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            all.forEach(pending -> pending.cancel(true));
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof CsvException csv) {
+                throw csv;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("CSV parsing failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            all.forEach(pending -> pending.cancel(true));
+            throw new IllegalStateException("Interrupted while parsing CSV", e);
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+    
+    private static final class ByteBufferInputStream extends InputStream {
+        
+        private final ByteBuffer buffer;
+        
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+        
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+        
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
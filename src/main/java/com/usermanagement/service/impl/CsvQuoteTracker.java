@@ -0,0 +1,26 @@
+package com.usermanagement.service.impl;
+
+/**
+ * Follows CSV quoting over a byte stream to tell which newlines end a record. Quotes toggle the
+ * quoted state, so doubled quotes cancel out; a backslash escapes the next byte, as in OpenCSV's
+ * default parser. Skipping an escaped newline only loses a possible boundary.
+ */
+final class CsvQuoteTracker {
+    
+    private boolean quoted;
+    private boolean escaped;
+    
+    // Feed every byte in order; true when this byte is a newline that ends a record
+    boolean endsRecord(byte b) {
+        if (escaped) {
+            escaped = false;
+        } else if (b == '\\') {
+            escaped = true;
+        } else if (b == '"') {
+            quoted = !quoted;
+        } else if (b == '\n') {
+            return !quoted;
+        }
+        return false;
+    }
+}
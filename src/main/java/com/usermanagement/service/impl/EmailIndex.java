@@ -0,0 +1,141 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.repository.UserStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Sorted array of 64-bit hashes of normalized (trimmed, lower-cased) emails.
+ * <p>
+ * Eight bytes per user, so 10M existing users take 80MB and a lookup is a binary search. Two
+ * different emails share a hash with probability about n / 2^64; such a row would be reported as
+ * a duplicate instead of imported, and the unique constraint on users.email stays the final check.
+ */
+final class EmailIndex {
+    
+    private final long[] hashes;
+    private final int size;
+    
+    private EmailIndex(long[] hashes, int size) {
+        Arrays.sort(hashes, 0, size);
+        this.hashes = hashes;
+        this.size = size;
+    }
+    
+    // For checks that only care about earlier rows of the same file
+    static EmailIndex empty() {
+        return new EmailIndex(new long[0], 0);
+    }
+    
+    boolean contains(long hash) {
+        return Arrays.binarySearch(hashes, 0, size, hash) >= 0;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    // FNV-1a over the UTF-8 bytes of the normalized email, finished with the MurmurHash3 mixer
+    static long hash(String email) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : normalize(email).getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    /**
+     * Loads every email in the users tables, reading each in id order one page at a time.
+     * Returns null when the tables do not fit into {@code maxBytes}.
+     */
+    static EmailIndex loadAll(UserStore userStore, long maxBytes, int pageSize) {
+        List<JdbcTemplate> userTables = userStore.getUserTables();
+        int maxEntries = (int) Math.min(Integer.MAX_VALUE - 8, maxBytes / Long.BYTES);
+        long count = 0;
+        for (int table = 0; table < userTables.size(); table++) {
+            Long tableCount = userTables.get(table).queryForObject("SELECT COUNT(*) FROM users WHERE deleted_at IS NULL"
+                    + userStore.ownedRowsCondition(table), Long.class);
+            count += tableCount != null ? tableCount : 0;
+        }
+        if (count > maxEntries) {
+            return null;
+        }
+        
+        // Rows inserted while loading only need a little headroom
+        long[] hashes = new long[(int) Math.min(maxEntries, count + count / 16 + 16)];
+        int size = 0;
+        for (int table = 0; table < userTables.size(); table++) {
+            JdbcTemplate jdbcTemplate = userTables.get(table);
+            long lastId = 0;
+            while (true) {
+                List<Object[]> page = jdbcTemplate.query(
+                        "SELECT id, email FROM users WHERE id > ? AND deleted_at IS NULL"
+                                + userStore.ownedRowsCondition(table) + " ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> new Object[] {rs.getLong(1), rs.getString(2)},
+                        lastId, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                if (size + page.size() > hashes.length) {
+                    if (size + page.size() > maxEntries) {
+                        return null;
+                    }
+                    hashes = Arrays.copyOf(hashes, Math.min(maxEntries, Math.max(size + page.size(), hashes.length * 2)));
+                }
+                for (Object[] row : page) {
+                    hashes[size++] = hash((String) row[1]);
+                }
+                lastId = (Long) page.get(page.size() - 1)[0];
+            }
+        }
+        return new EmailIndex(hashes, size);
+    }
+    
+    /**
+     * Looks up only the given emails, for tables too large for the memory budget or imports much
+     * smaller than the table. Matching relies on the column collation; MySQL's default utf8mb4
+     * collations compare case-insensitively, so both the raw and the normalized spelling are sent.
+     */
+    static EmailIndex loadMatching(UserStore userStore, List<String> emails, int batchSize) {
+        List<JdbcTemplate> userTables = userStore.getUserTables();
+        List<Long> found = new ArrayList<>();
+        for (int from = 0; from < emails.size(); from += batchSize) {
+            List<String> batch = emails.subList(from, Math.min(emails.size(), from + batchSize));
+            List<String> spellings = new ArrayList<>(batch.size() * 2);
+            for (String email : batch) {
+                spellings.add(email.trim());
+                spellings.add(normalize(email));
+            }
+            String placeholders = String.join(",", Collections.nCopies(spellings.size(), "?"));
+            for (int table = 0; table < userTables.size(); table++) {
+                userTables.get(table).query("SELECT email FROM users WHERE email IN (" + placeholders + ") AND deleted_at IS NULL"
+                                + userStore.ownedRowsCondition(table),
+                        rs -> {
+                            found.add(hash(rs.getString(1)));
+                        },
+                        spellings.toArray());
+            }
+        }
+        long[] hashes = new long[found.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = found.get(i);
+        }
+        return new EmailIndex(hashes, hashes.length);
+    }
+}
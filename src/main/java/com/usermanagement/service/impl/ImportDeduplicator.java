@@ -0,0 +1,52 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.service.ImportResult;
+
+/**
+ * Single pass duplicate check for the rows of one import, against existing users and earlier rows.
+ * Earlier rows are tracked in an open-addressing table of email hash to row number, two primitive
+ * arrays sized for the file, so there is no per-row object.
+ */
+final class ImportDeduplicator {
+    
+    private final EmailIndex existing;
+    private final long[] keys;
+    private final int[] firstRows;
+    private final int mask;
+    
+    ImportDeduplicator(EmailIndex existing, int expectedRows) {
+        this.existing = existing;
+        int capacity = Integer.highestOneBit(Math.max(16, expectedRows * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.firstRows = new int[capacity];
+        this.mask = capacity - 1;
+    }
+    
+    // Returns null when the row may be imported
+    ImportResult.Duplicate check(int row, String email) {
+        long hash = EmailIndex.hash(email);
+        int firstRow = putIfAbsent(hash, row);
+        if (existing.contains(hash)) {
+            return new ImportResult.Duplicate(row, email, ImportResult.Duplicate.Reason.EXISTING_USER, 0);
+        }
+        if (firstRow != 0) {
+            return new ImportResult.Duplicate(row, email, ImportResult.Duplicate.Reason.EARLIER_ROW, firstRow);
+        }
+        return null;
+    }
+    
+    // Records the row for the hash and returns the row recorded before it, or 0
+    private int putIfAbsent(long hash, int row) {
+        // Row numbers start at 1, so 0 marks a free slot
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (firstRows[slot] != 0) {
+            if (keys[slot] == hash) {
+                return firstRows[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = hash;
+        firstRows[slot] = row;
+        return 0;
+    }
+}
@@ -0,0 +1,68 @@
+package com.usermanagement.service.impl;
+
+/**
+ * One user row of an import file (format: Name,Email[,Password]) with its CSV record number.
+ */
+final class ImportRow {
+    
+    final int number;
+    final String name;
+    final String email;
+    final String password;
+    
+    private ImportRow(int number, String name, String email, String password) {
+        this.number = number;
+        this.name = name;
+        this.email = email;
+        this.password = password;
+    }
+    
+    // Check if first row is header (contains "name", "email", "password" keywords)
+    static boolean isHeader(String[] record) {
+        if (record.length == 0) {
+            return false;
+        }
+        String firstCell = record[0].toLowerCase().trim();
+        return firstCell.contains("name") || firstCell.contains("email") || 
+               firstCell.contains("password") || firstCell.contains("id");
+    }
+    
+    static final String DEFAULT_PASSWORD = "default123";
+    
+    // Null for empty or incomplete rows, which are skipped
+    static ImportRow of(int number, String[] record) {
+        // Expected format: Name,Email,Password (3 columns)
+        if (record.length >= 3) {
+            String name = record[0].trim();
+            String email = record[1].trim();
+            String password = record[2].trim();
+            
+            if (!name.isEmpty() && !email.isEmpty() && !password.isEmpty()) {
+                return new ImportRow(number, name, email, password);
+            }
+        } else if (record.length == 2) {
+            // Try format: Name,Email (without password - will use default)
+            String name = record[0].trim();
+            String email = record[1].trim();
+            
+            if (!name.isEmpty() && !email.isEmpty()) {
+                return new ImportRow(number, name, email, DEFAULT_PASSWORD);
+            }
+        }
+        return null;
+    }
+    
+    // For upserts the password is optional: null (missing or blank) keeps an existing user's password
+    static ImportRow forUpsert(int number, String[] record) {
+        if (record.length < 2) {
+            return null;
+        }
+        String name = record[0].trim();
+        String email = record[1].trim();
+        String password = record.length >= 3 ? record[2].trim() : "";
+        if (name.isEmpty() || email.isEmpty()) {
+            return null;
+        }
+        return new ImportRow(number, name, email, password.isEmpty() ? null : password);
+    }
+}
@@ -0,0 +1,292 @@
+package com.usermanagement.service.impl;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+import com.usermanagement.audit.AuditLog;
+import com.usermanagement.entity.AuditEvent;
+import com.usermanagement.entity.ImportUpload;
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.ImportUploadRepository;
+import com.usermanagement.repository.UserStore;
+import com.usermanagement.service.ChangeFeedService;
+import com.usermanagement.service.ImportProgress;
+import com.usermanagement.service.ImportResult;
+import com.usermanagement.service.ImportUploadService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Reads the request body into a fixed buffer, cuts it after the last complete CSV record and saves
+ * those rows in one transaction together with the upload's new offset, then carries on with the
+ * rest of the buffer. Memory stays at one buffer whatever the file size.
+ * <p>
+ * Duplicates are checked per batch against the users table, which already holds the rows of earlier
+ * batches; those are reported as existing users rather than by their row number. An email taken by
+ * a concurrent upload or registration between the check and the insert fails the batch on the
+ * unique constraint, and the batch is checked and written again, reporting that row as a duplicate.
+ * <p>
+ * With sharding the users are committed on their shards as they are written, not with the upload's
+ * offset. If the offset transaction then fails, the rows already written stay, and the batch sent
+ * again reports them as existing users: no user is lost or doubled, but the counts are off.
+ */
+@Service
+public class ImportUploadServiceImpl implements ImportUploadService {
+    
+    private static final int MAX_REPORTED_DUPLICATES = 100;
+    
+    @Autowired
+    private ImportUploadRepository uploadRepository;
+    
+    @Autowired
+    private UserStore userStore;
+    
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Autowired
+    private UserDirectory userDirectory;
+    
+    @Autowired
+    private AuditLog auditLog;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    // Rows of one batch are read from this many bytes; also the largest record accepted
+    @Value("${app.import.stream.batch-bytes:1048576}")
+    private int batchBytes;
+    
+    @Value("${app.import.stream.upload-ttl-hours:24}")
+    private long uploadTtlHours;
+    
+    @Value("${app.users.soft-delete.enabled:false}")
+    private boolean softDelete;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @Override
+    public ImportProgress start(String owner) {
+        ImportUpload upload = uploadRepository.save(new ImportUpload(UUID.randomUUID().toString(), owner));
+        return progress(upload, List.of());
+    }
+    
+    @Override
+    public Optional<ImportProgress> getProgress(String uploadId, String owner) {
+        return find(uploadId, owner).map(upload -> progress(upload, List.of()));
+    }
+    
+    @Override
+    public ImportProgress append(String uploadId, String owner, long offset, boolean last, InputStream body) throws IOException {
+        ImportUpload upload = find(uploadId, owner)
+                .orElseThrow(() -> new NoSuchElementException("Upload not found: " + uploadId));
+        if (upload.getStatus() == ImportUpload.Status.COMPLETE) {
+            throw new IllegalStateException("Upload " + uploadId + " is already complete");
+        }
+        if (upload.getCommittedBytes() != offset) {
+            throw new IllegalStateException("Upload " + uploadId + " continues at byte " + upload.getCommittedBytes()
+                    + ", not " + offset);
+        }
+        
+        Cursor cursor = new Cursor(upload);
+        long importedBefore = cursor.importedCount;
+        long duplicatesBefore = cursor.duplicateCount;
+        List<ImportResult.Duplicate> reported = new ArrayList<>();
+        byte[] buffer = new byte[batchBytes];
+        int filled = 0;
+        // End of the last complete record in the buffer
+        int boundary = 0;
+        CsvQuoteTracker quotes = new CsvQuoteTracker();
+        int read;
+        while ((read = body.read(buffer, filled, buffer.length - filled)) >= 0) {
+            for (int i = filled; i < filled + read; i++) {
+                if (quotes.endsRecord(buffer[i])) {
+                    boundary = i + 1;
+                }
+            }
+            filled += read;
+            if (filled == buffer.length) {
+                if (boundary == 0) {
+                    throw new IllegalArgumentException("CSV record at byte " + cursor.committedBytes
+                            + " is larger than " + buffer.length + " bytes");
+                }
+                commit(uploadId, buffer, boundary, false, cursor, reported);
+                System.arraycopy(buffer, boundary, buffer, 0, filled - boundary);
+                filled -= boundary;
+                boundary = 0;
+            }
+        }
+        if (last) {
+            // The final record may lack its newline
+            commit(uploadId, buffer, filled, true, cursor, reported);
+        } else if (boundary > 0) {
+            commit(uploadId, buffer, boundary, false, cursor, reported);
+        }
+        auditLog.record(AuditEvent.Action.IMPORT, null, "upload=" + uploadId
+                + " imported=" + (cursor.importedCount - importedBefore)
+                + " duplicates=" + (cursor.duplicateCount - duplicatesBefore) + (cursor.complete ? " complete" : ""));
+        return new ImportProgress(uploadId, cursor.committedBytes, cursor.nextRecord, cursor.importedCount,
+                cursor.duplicateCount, cursor.complete, reported);
+    }
+    
+    // Abandoned uploads keep nothing but their row; the users they imported stay
+    @Scheduled(fixedDelayString = "${app.import.stream.purge-interval-ms:3600000}")
+    public void purgeAbandonedUploads() {
+        transactionTemplate.executeWithoutResult(status ->
+                uploadRepository.deleteUpdatedBefore(LocalDateTime.now().minusHours(uploadTtlHours)));
+    }
+    
+    private void commit(String uploadId, byte[] buffer, int length, boolean complete,
+                        Cursor cursor, List<ImportResult.Duplicate> reported) throws IOException {
+        List<String[]> records = parse(buffer, length);
+        List<ImportRow> rows = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            int number = cursor.nextRecord + i;
+            if (number == 1 && ImportRow.isHeader(records.get(i))) {
+                continue; // Skip header row
+            }
+            ImportRow row = ImportRow.of(number, records.get(i));
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        
+        List<String> emails = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            emails.add(row.email);
+        }
+        if (softDelete) {
+            UserServiceImpl.releaseDeletedEmails(userStore, emails);
+        }
+        
+        int nextRecord = cursor.nextRecord + records.size();
+        Map<Integer, String> hashedPasswords = new HashMap<>();
+        List<ImportResult.Duplicate> duplicates = new ArrayList<>();
+        List<User> users = new ArrayList<>(rows.size());
+        DataIntegrityViolationException failure = null;
+        while (true) {
+            int duplicatesBefore = duplicates.size();
+            duplicates.clear();
+            users.clear();
+            ImportDeduplicator deduplicator = new ImportDeduplicator(
+                    EmailIndex.loadMatching(userStore, emails, 500), rows.size());
+            for (ImportRow row : rows) {
+                ImportResult.Duplicate duplicate = deduplicator.check(row.number, row.email);
+                if (duplicate != null) {
+                    duplicates.add(duplicate);
+                } else {
+                    // Hashed before the transaction opens, once per row: BCrypt is most of the cost of a row
+                    String password = hashedPasswords.computeIfAbsent(row.number, number -> passwordEncoder.encode(row.password));
+                    users.add(new User(row.name, row.email, password));
+                }
+            }
+            if (failure != null && duplicates.size() == duplicatesBefore) {
+                // No email was taken meanwhile, so the violation is not a duplicate
+                throw failure;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // Taken first, so the upload row stays locked while the users are written
+                    int advanced = uploadRepository.advance(uploadId, cursor.committedBytes, cursor.committedBytes + length,
+                            nextRecord, users.size(), duplicates.size(),
+                            complete ? ImportUpload.Status.COMPLETE : ImportUpload.Status.OPEN, LocalDateTime.now());
+                    if (advanced == 0) {
+                        throw new IllegalStateException("Upload " + uploadId + " was continued by another request");
+                    }
+                    for (User user : users) {
+                        User savedUser = userStore.save(user);
+                        changeFeedService.record(UserChangeEvent.Operation.CREATED, savedUser);
+                        userDirectory.saved(savedUser);
+                    }
+                });
+                break;
+            } catch (DataIntegrityViolationException e) {
+                // The email taken concurrently has been committed, so checking again finds it
+                failure = e;
+            }
+        }
+        
+        cursor.committedBytes += length;
+        cursor.nextRecord = nextRecord;
+        cursor.importedCount += users.size();
+        cursor.duplicateCount += duplicates.size();
+        cursor.complete = complete;
+        for (ImportResult.Duplicate duplicate : duplicates) {
+            if (reported.size() == MAX_REPORTED_DUPLICATES) {
+                break;
+            }
+            reported.add(duplicate);
+        }
+    }
+    
+    // The slice ends on a record boundary, so it is valid CSV on its own
+    private static List<String[]> parse(byte[] buffer, int length) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new InputStreamReader(
+                new ByteArrayInputStream(buffer, 0, length), StandardCharsets.UTF_8))) {
+            String[] record;
+            while ((record = reader.readNext()) != null) {
+                records.add(record);
+            }
+        } catch (CsvException e) {
+            throw new IllegalArgumentException("Invalid CSV: " + e.getMessage(), e);
+        }
+        return records;
+    }
+    
+    private Optional<ImportUpload> find(String uploadId, String owner) {
+        return uploadRepository.findById(uploadId).filter(upload -> upload.getOwner().equals(owner));
+    }
+    
+    private static ImportProgress progress(ImportUpload upload, List<ImportResult.Duplicate> duplicates) {
+        return new ImportProgress(upload.getId(), upload.getCommittedBytes(), upload.getNextRecord(),
+                upload.getImportedCount(), upload.getDuplicateCount(),
+                upload.getStatus() == ImportUpload.Status.COMPLETE, duplicates);
+    }
+    
+    // Where the upload stands after the batches this request has committed
+    private static final class Cursor {
+        
+        private long committedBytes;
+        private int nextRecord;
+        private long importedCount;
+        private long duplicateCount;
+        private boolean complete;
+        
+        private Cursor(ImportUpload upload) {
+            this.committedBytes = upload.getCommittedBytes();
+            this.nextRecord = upload.getNextRecord();
+            this.importedCount = upload.getImportedCount();
+            this.duplicateCount = upload.getDuplicateCount();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.JpaUserStore;
+import com.usermanagement.repository.UserStore;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes import rows keyed on the unique email column with the database's batched upsert: INSERT
+ * ... ON DUPLICATE KEY UPDATE on MySQL, MERGE on H2. Each batch first reads the users it touches
+ * with one IN query, which is what lets a row be counted as inserted, updated or unchanged.
+ * Unchanged rows are not written, and a password is only hashed for rows that bring one or create
+ * a user. Sharded stores, which allocate ids themselves, get the same decisions written row by row
+ * through the {@link UserStore}.
+ * <p>
+ * Not thread-safe: one instance per import.
+ */
+final class ImportUpserter {
+    
+    private static final String MYSQL_UPSERT_SQL =
+            "INSERT INTO users (name, email, password, created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, 0)"
+                    + " ON DUPLICATE KEY UPDATE name = VALUES(name), password = IF(?, VALUES(password), password),"
+                    + " updated_at = VALUES(updated_at), version = version + 1";
+    
+    private static final String H2_UPSERT_SQL =
+            "MERGE INTO users t USING (SELECT CAST(? AS VARCHAR(100)) AS name, CAST(? AS VARCHAR(100)) AS email,"
+                    + " CAST(? AS VARCHAR(255)) AS password, CAST(? AS BOOLEAN) AS replace_password,"
+                    + " CAST(? AS TIMESTAMP(6)) AS changed_at) s ON t.email = s.email"
+                    + " WHEN MATCHED THEN UPDATE SET name = s.name,"
+                    + " password = CASE WHEN s.replace_password THEN s.password ELSE t.password END,"
+                    + " updated_at = s.changed_at, version = t.version + 1"
+                    + " WHEN NOT MATCHED THEN INSERT (name, email, password, created_at, updated_at, version)"
+                    + " VALUES (s.name, s.email, s.password, s.changed_at, s.changed_at, 0)";
+    
+    private static final String COLUMNS = "id, name, email, password, created_at, updated_at, version";
+    
+    private static final RowMapper<User> USER_ROW_MAPPER = (rs, rowNum) -> {
+        User user = new User(rs.getString("name"), rs.getString("email"), rs.getString("password"));
+        user.setId(rs.getLong("id"));
+        user.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        user.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        user.setVersion(rs.getLong("version"));
+        return user;
+    };
+    
+    private final UserStore userStore;
+    private final PasswordEncoder passwordEncoder;
+    private final int batchSize;
+    // Null when the store has no single users table or the database has no known upsert
+    private final String upsertSql;
+    private final boolean mysql;
+    
+    private long insertedCount;
+    private long updatedCount;
+    private long unchangedCount;
+    
+    ImportUpserter(UserStore userStore, PasswordEncoder passwordEncoder, int batchSize) {
+        this.userStore = userStore;
+        this.passwordEncoder = passwordEncoder;
+        this.batchSize = batchSize;
+        String product = null;
+        if (userStore instanceof JpaUserStore) {
+            product = userStore.getUserTables().get(0).execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        }
+        this.mysql = "MySQL".equalsIgnoreCase(product);
+        this.upsertSql = mysql ? MYSQL_UPSERT_SQL : "H2".equalsIgnoreCase(product) ? H2_UPSERT_SQL : null;
+    }
+    
+    /**
+     * Upserts the rows in batches, calling {@code written} with every user created or updated, as
+     * read back after its batch was written. Rows must have distinct emails.
+     */
+    void upsert(List<ImportRow> rows, BiConsumer<UserChangeEvent.Operation, User> written) {
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<ImportRow> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+            Map<String, User> existing = currentUsers(batch);
+            LocalDateTime now = LocalDateTime.now();
+            List<User> changes = new ArrayList<>(batch.size());
+            Map<String, UserChangeEvent.Operation> operations = new HashMap<>();
+            for (ImportRow row : batch) {
+                User current = existing.get(EmailIndex.normalize(row.email));
+                User change;
+                if (current == null) {
+                    change = new User(row.name, row.email, passwordEncoder.encode(
+                            row.password != null ? row.password : ImportRow.DEFAULT_PASSWORD));
+                    insertedCount++;
+                } else if (row.password == null && row.name.equals(current.getName())) {
+                    unchangedCount++;
+                    continue;
+                } else {
+                    // The stored spelling of the email, so the key matches on case-sensitive databases too;
+                    // a null password keeps the stored one
+                    change = new User(row.name, current.getEmail(),
+                            row.password != null ? passwordEncoder.encode(row.password) : null);
+                    change.setId(current.getId());
+                    updatedCount++;
+                }
+                change.setUpdatedAt(now);
+                changes.add(change);
+                operations.put(EmailIndex.normalize(change.getEmail()),
+                        current == null ? UserChangeEvent.Operation.CREATED : UserChangeEvent.Operation.UPDATED);
+            }
+            if (changes.isEmpty()) {
+                continue;
+            }
+            
+            if (upsertSql != null) {
+                write(changes, existing);
+                for (User user : readBack(changes)) {
+                    written.accept(operations.get(EmailIndex.normalize(user.getEmail())), user);
+                }
+            } else {
+                for (User change : changes) {
+                    written.accept(operations.get(EmailIndex.normalize(change.getEmail())), writeThroughStore(change));
+                }
+            }
+        }
+    }
+    
+    long getInsertedCount() {
+        return insertedCount;
+    }
+    
+    long getUpdatedCount() {
+        return updatedCount;
+    }
+    
+    long getUnchangedCount() {
+        return unchangedCount;
+    }
+    
+    private void write(List<User> changes, Map<String, User> existing) {
+        List<Object[]> args = new ArrayList<>(changes.size());
+        for (User change : changes) {
+            boolean replacePassword = change.getPassword() != null;
+            // Should the user be deleted meanwhile, the insert half brings it back with its old password
+            String password = replacePassword ? change.getPassword()
+                    : existing.get(EmailIndex.normalize(change.getEmail())).getPassword();
+            if (mysql) {
+                args.add(new Object[] {change.getName(), change.getEmail(), password,
+                        change.getUpdatedAt(), change.getUpdatedAt(), replacePassword});
+            } else {
+                args.add(new Object[] {change.getName(), change.getEmail(), password, replacePassword,
+                        change.getUpdatedAt()});
+            }
+        }
+        userStore.getUserTables().get(0).batchUpdate(upsertSql, args);
+    }
+    
+    private User writeThroughStore(User change) {
+        if (change.getId() == null) {
+            return userStore.save(change);
+        }
+        userStore.updateIfVersion(change, null);
+        return userStore.findById(change.getId()).orElse(change);
+    }
+    
+    // Current users for the rows' emails, by normalized email; both spellings are sent as in EmailIndex
+    private Map<String, User> currentUsers(List<ImportRow> rows) {
+        List<String> emails = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            emails.add(row.email);
+        }
+        Map<String, User> found = new HashMap<>();
+        for (User user : query(emails)) {
+            found.put(EmailIndex.normalize(user.getEmail()), user);
+        }
+        return found;
+    }
+    
+    private List<User> readBack(List<User> users) {
+        List<String> emails = new ArrayList<>();
+        for (User user : users) {
+            emails.add(user.getEmail());
+        }
+        return query(emails);
+    }
+    
+    private List<User> query(List<String> emails) {
+        List<String> spellings = new ArrayList<>(emails.size() * 2);
+        for (String email : emails) {
+            spellings.add(email.trim());
+            spellings.add(EmailIndex.normalize(email));
+        }
+        String placeholders = String.join(",", Collections.nCopies(spellings.size(), "?"));
+        List<User> users = new ArrayList<>();
+        List<JdbcTemplate> userTables = userStore.getUserTables();
+        for (int table = 0; table < userTables.size(); table++) {
+            users.addAll(userTables.get(table).query("SELECT " + COLUMNS + " FROM users WHERE email IN (" + placeholders + ")"
+                    + " AND deleted_at IS NULL" + userStore.ownedRowsCondition(table), USER_ROW_MAPPER, spellings.toArray()));
+        }
+        return users;
+    }
+}
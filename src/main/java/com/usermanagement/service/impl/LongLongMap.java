@@ -0,0 +1,117 @@
+package com.usermanagement.service.impl;
+
+/**
+ * Open-addressing hash map from long to non-negative long, two primitive arrays and no per-entry
+ * objects. Linear probing with backward-shift deletion; key 0 is reserved for empty slots.
+ */
+final class LongLongMap {
+    
+    static final long ABSENT = -1L;
+    
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    
+    LongLongMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) Math.min(1 << 30, expectedSize * 2L)) - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+    
+    long get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            if (keys[slot] == 0) {
+                return ABSENT;
+            }
+        }
+    }
+    
+    void put(long key, long value) {
+        if (size + 1 > (mask + 1) * 2 / 3) {
+            grow();
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+    
+    long remove(long key) {
+        int slot = slot(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return ABSENT;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long removed = values[slot];
+        // Shift later entries of the probe chain back so lookups never stop at the hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = 0;
+        size--;
+        return removed;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    long footprintBytes() {
+        return (long) keys.length * Long.BYTES * 2;
+    }
+    
+    // Visits every entry; the map must not change during the visit
+    void forEach(EntryVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                visitor.visit(keys[slot], values[slot]);
+            }
+        }
+    }
+    
+    interface EntryVisitor {
+        void visit(long key, long value);
+    }
+    
+    private int slot(long key) {
+        // MurmurHash3 finalizer, so sequential ids spread over the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+    
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
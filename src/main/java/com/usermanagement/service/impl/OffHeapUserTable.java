@@ -0,0 +1,331 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Users stored as packed records in direct (off-heap) byte buffers, indexed by id and by email hash
+ * with primitive open-addressing maps. Millions of users cost a few hundred buffer chunks and four
+ * long arrays on the heap instead of millions of User, String and LocalDateTime objects for the
+ * collector to trace; lookups decode a fresh, short-lived User.
+ * <p>
+ * Records are appended; an update writes a new record and the old one becomes garbage until
+ * {@link #compact()}. Direct memory counts against -XX:MaxDirectMemorySize, which defaults to the
+ * maximum heap size.
+ * <p>
+ * Record layout: length (int), id, created_at, updated_at (long, epoch microseconds or
+ * Long.MIN_VALUE for null), version (long, Long.MIN_VALUE for null), then name, email and password as UTF-8 with an unsigned short length
+ * (0xFFFF for null).
+ */
+public final class OffHeapUserTable {
+    
+    private static final long NULL_TIME = Long.MIN_VALUE;
+    private static final long NULL_VERSION = Long.MIN_VALUE;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int HEADER_BYTES = Integer.BYTES + 4 * Long.BYTES;
+    
+    private final int chunkBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Guarded by lock
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    private int tailPosition;
+    private LongLongMap byId;
+    private LongLongMap byEmail;
+    private long usedBytes;
+    private long liveBytes;
+    
+    public OffHeapUserTable(int chunkBytes, int expectedUsers) {
+        this.chunkBytes = chunkBytes;
+        this.byId = new LongLongMap(expectedUsers);
+        this.byEmail = new LongLongMap(expectedUsers);
+    }
+    
+    /**
+     * Inserts or replaces the user. A version older than the stored one (by updated_at) is ignored,
+     * so a reload that read the row before a newer write cannot undo it. Returns whether it was stored.
+     */
+    public boolean put(User user) {
+        byte[] name = encode(user.getName());
+        byte[] email = encode(user.getEmail());
+        byte[] password = encode(user.getPassword());
+        int length = HEADER_BYTES + 3 * Short.BYTES + sizeOf(name) + sizeOf(email) + sizeOf(password);
+        long updatedAt = toMicros(user.getUpdatedAt());
+        
+        lock.writeLock().lock();
+        try {
+            long previous = byId.get(user.getId());
+            if (previous != LongLongMap.ABSENT) {
+                if (updatedAt < buffer(previous).getLong(position(previous) + Integer.BYTES + 2 * Long.BYTES)) {
+                    return false;
+                }
+                dropEmailKey(previous);
+                liveBytes -= buffer(previous).getInt(position(previous));
+            }
+            long offset = append(length, user.getId(), toMicros(user.getCreatedAt()), updatedAt,
+                    user.getVersion() != null ? user.getVersion() : NULL_VERSION, name, email, password);
+            byId.put(user.getId(), offset);
+            if (user.getEmail() != null) {
+                byEmail.put(emailKey(user.getEmail()), offset);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            long offset = byId.remove(id);
+            if (offset == LongLongMap.ABSENT) {
+                return false;
+            }
+            dropEmailKey(offset);
+            liveBytes -= buffer(offset).getInt(position(offset));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Null when there is no user with this id
+    public User get(long id) {
+        lock.readLock().lock();
+        try {
+            long offset = byId.get(id);
+            return offset == LongLongMap.ABSENT ? null : decode(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Null when no user has exactly this email
+    public User getByEmail(String email) {
+        lock.readLock().lock();
+        try {
+            long offset = byEmail.get(emailKey(email));
+            if (offset == LongLongMap.ABSENT) {
+                return null;
+            }
+            User user = decode(offset);
+            // Another email with the same hash, or one differing only in case
+            return email.equals(user.getEmail()) ? user : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) chunks.size() * chunkBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public long indexBytes() {
+        lock.readLock().lock();
+        try {
+            return byId.footprintBytes() + byEmail.footprintBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Worth compacting once more than half of what was written is superseded
+    public boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            return usedBytes > chunkBytes && liveBytes < usedBytes / 2;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Copies the live records into fresh chunks and rebuilds both indexes. Lookups wait for it,
+     * which takes roughly a millisecond per megabyte of live data.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            List<ByteBuffer> oldChunks = chunks;
+            LongLongMap oldIds = byId;
+            chunks = new ArrayList<>();
+            tailPosition = 0;
+            usedBytes = 0;
+            liveBytes = 0;
+            byId = new LongLongMap(oldIds.size());
+            byEmail = new LongLongMap(oldIds.size());
+            oldIds.forEach((id, offset) -> {
+                ByteBuffer source = oldChunks.get((int) (offset / chunkBytes));
+                int position = (int) (offset % chunkBytes);
+                int length = source.getInt(position);
+                byte[] record = new byte[length];
+                source.get(position, record);
+                long copied = reserve(length);
+                buffer(copied).put(position(copied), record);
+                byId.put(id, copied);
+                String email = readEmail(copied);
+                if (email != null) {
+                    byEmail.put(emailKey(email), copied);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private long append(int length, long id, long createdAt, long updatedAt, long version,
+                        byte[] name, byte[] email, byte[] password) {
+        long offset = reserve(length);
+        ByteBuffer buffer = buffer(offset);
+        int position = position(offset);
+        buffer.putInt(position, length);
+        buffer.putLong(position + Integer.BYTES, id);
+        buffer.putLong(position + Integer.BYTES + Long.BYTES, createdAt);
+        buffer.putLong(position + Integer.BYTES + 2 * Long.BYTES, updatedAt);
+        buffer.putLong(position + Integer.BYTES + 3 * Long.BYTES, version);
+        position += HEADER_BYTES;
+        position = putString(buffer, position, name);
+        position = putString(buffer, position, email);
+        putString(buffer, position, password);
+        return offset;
+    }
+    
+    private long reserve(int length) {
+        if (length > chunkBytes) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit a chunk of " + chunkBytes);
+        }
+        if (chunks.isEmpty() || tailPosition + length > chunkBytes) {
+            // Records never span chunks; the tail of the previous chunk stays unused
+            chunks.add(ByteBuffer.allocateDirect(chunkBytes));
+            tailPosition = 0;
+        }
+        long offset = (long) (chunks.size() - 1) * chunkBytes + tailPosition;
+        tailPosition += length;
+        usedBytes += length;
+        liveBytes += length;
+        return offset;
+    }
+    
+    private User decode(long offset) {
+        ByteBuffer buffer = buffer(offset);
+        int position = position(offset) + Integer.BYTES;
+        long id = buffer.getLong(position);
+        LocalDateTime createdAt = fromMicros(buffer.getLong(position + Long.BYTES));
+        LocalDateTime updatedAt = fromMicros(buffer.getLong(position + 2 * Long.BYTES));
+        long version = buffer.getLong(position + 3 * Long.BYTES);
+        position += 4 * Long.BYTES;
+        String[] strings = new String[3];
+        for (int i = 0; i < strings.length; i++) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            position += Short.BYTES;
+            if (length != NULL_STRING) {
+                byte[] bytes = new byte[length];
+                buffer.get(position, bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                position += length;
+            }
+        }
+        User user = new User(strings[0], strings[1], strings[2]);
+        user.setId(id);
+        user.setCreatedAt(createdAt);
+        user.setUpdatedAt(updatedAt);
+        user.setVersion(version != NULL_VERSION ? version : null);
+        return user;
+    }
+    
+    private String readEmail(long offset) {
+        ByteBuffer buffer = buffer(offset);
+        int position = position(offset) + HEADER_BYTES;
+        int nameLength = buffer.getShort(position) & 0xFFFF;
+        position += Short.BYTES + (nameLength == NULL_STRING ? 0 : nameLength);
+        int length = buffer.getShort(position) & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // Only removes the email entry if it still points at this record
+    private void dropEmailKey(long offset) {
+        String email = readEmail(offset);
+        if (email != null && byEmail.get(emailKey(email)) == offset) {
+            byEmail.remove(emailKey(email));
+        }
+    }
+    
+    private ByteBuffer buffer(long offset) {
+        return chunks.get((int) (offset / chunkBytes));
+    }
+    
+    private int position(long offset) {
+        return (int) (offset % chunkBytes);
+    }
+    
+    private static long emailKey(String email) {
+        long hash = EmailIndex.hash(email);
+        return hash == 0 ? 1 : hash;
+    }
+    
+    private static int putString(ByteBuffer buffer, int position, byte[] bytes) {
+        buffer.putShort(position, (short) (bytes == null ? NULL_STRING : bytes.length));
+        position += Short.BYTES;
+        if (bytes != null) {
+            buffer.put(position, bytes);
+            position += bytes.length;
+        }
+        return position;
+    }
+    
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("Value of " + bytes.length + " bytes is too long for the directory");
+        }
+        return bytes;
+    }
+    
+    private static int sizeOf(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+    
+    private static long toMicros(LocalDateTime time) {
+        if (time == null) {
+            return NULL_TIME;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+    
+    private static LocalDateTime fromMicros(long micros) {
+        if (micros == NULL_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,72 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.UserChangeEventRepository;
+import com.usermanagement.service.ChangeFeedService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Follows the change feed outbox from the current end, for in-memory copies of user rows that must
+ * notice writes made by other nodes. Tracks when it last caught up, which bounds how stale the copy
+ * can be.
+ */
+final class OutboxFollower {
+    
+    private final ChangeFeedService changeFeedService;
+    private final int batchSize;
+    
+    private volatile long cursor;
+    // Start time of the last poll that reached the end of the outbox, 0 before start()
+    private volatile long syncedAt;
+    
+    OutboxFollower(ChangeFeedService changeFeedService, int batchSize) {
+        this.changeFeedService = changeFeedService;
+        this.batchSize = batchSize;
+    }
+    
+    // Re-reads the last gap timeout of changes: a transaction still open now may commit below the latest sequence
+    void start(UserChangeEventRepository changeEventRepository, long gapTimeoutMs) {
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime since = LocalDateTime.now().minusNanos(gapTimeoutMs * 1_000_000L);
+        cursor = changeEventRepository.findFirstByOccurredAtGreaterThanEqualOrderBySequenceAsc(since)
+                .map(change -> change.getSequence() - 1)
+                .orElseGet(changeFeedService::getLatestSequence);
+        syncedAt = startedAt;
+    }
+    
+    // Hands every change committed since the previous call to the consumer, in sequence order
+    void poll(Consumer<UserChangeEvent> consumer) {
+        long startedAt = System.currentTimeMillis();
+        long latest = changeFeedService.getLatestSequence();
+        while (true) {
+            List<UserChangeEvent> changes = changeFeedService.getChangesAfter(cursor, batchSize);
+            for (UserChangeEvent change : changes) {
+                consumer.accept(change);
+                cursor = change.getSequence();
+            }
+            if (changes.size() < batchSize) {
+                break;
+            }
+        }
+        // Stopped in front of a gap that may still fill: not caught up yet
+        if (cursor >= latest) {
+            syncedAt = startedAt;
+        }
+    }
+    
+    long getCursor() {
+        return cursor;
+    }
+    
+    boolean isSyncedWithin(long maxStalenessMs) {
+        long synced = syncedAt;
+        return synced > 0 && System.currentTimeMillis() - synced <= maxStalenessMs;
+    }
+    
+    long getStalenessMs() {
+        return System.currentTimeMillis() - syncedAt;
+    }
+}
@@ -0,0 +1,220 @@
+package com.usermanagement.service.impl;
+
+import com.opencsv.CSVWriter;
+import com.usermanagement.repository.UserStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full CSV export read in parallel. The id space is cut into ranges of about
+ * app.export.parallel.rows-per-range users; each range is read with its own query, on its own pooled
+ * connection, and encoded to CSV on a worker thread. The caller writes the encoded ranges in id
+ * order, with at most app.export.parallel.max-buffered-ranges read ahead, so memory stays bounded
+ * however large the table is.
+ * <p>
+ * The workers are shared by all exports and capped at app.export.parallel.pool-share of the
+ * connection pool, so concurrent exports queue behind each other instead of taking the connections
+ * request traffic needs. Each range is read at a different moment: a user changed during the export
+ * shows up in the state its range saw.
+ */
+@Component
+class ParallelUserExporter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ParallelUserExporter.class);
+    
+    private static final String RANGE_SQL =
+            "SELECT id, name, email, created_at, updated_at FROM users WHERE id BETWEEN ? AND ? AND deleted_at IS NULL";
+    
+    @Autowired
+    private UserStore userStore;
+    
+    @Value("${app.export.parallel.workers:4}")
+    private int workers;
+    
+    @Value("${app.export.parallel.pool-share:0.5}")
+    private double poolShare;
+    
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int primaryPoolSize;
+    
+    // Sharded, a worker reads every shard in turn, so each shard's pool is the one to share
+    @Value("${app.sharding.enabled:false}")
+    private boolean sharded;
+    
+    @Value("${app.sharding.pool-size:10}")
+    private int shardPoolSize;
+    
+    @Value("${app.export.parallel.rows-per-range:10000}")
+    private long rowsPerRange;
+    
+    // 0: twice the number of workers
+    @Value("${app.export.parallel.max-buffered-ranges:0}")
+    private int maxBufferedRanges;
+    
+    private ExecutorService pool;
+    private int threads;
+    
+    @PostConstruct
+    public void init() {
+        int poolSize = sharded ? shardPoolSize : primaryPoolSize;
+        threads = Math.max(1, Math.min(workers, (int) (poolSize * poolShare)));
+        if (maxBufferedRanges <= 0) {
+            maxBufferedRanges = threads * 2;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "export-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Parallel export uses {} workers out of a pool of {} connections", threads, poolSize);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+    
+    void export(OutputStream out) throws IOException {
+        out.write(encode(writer -> writer.writeNext(new String[]{"Name", "Email", "Created At", "Updated At"})));
+        
+        List<JdbcTemplate> tables = userStore.getUserTables();
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        long count = 0;
+        for (int table = 0; table < tables.size(); table++) {
+            JdbcTemplate jdbcTemplate = tables.get(table);
+            String owned = userStore.ownedRowsCondition(table);
+            Long tableMin = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users WHERE deleted_at IS NULL" + owned, Long.class);
+            Long tableMax = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users WHERE deleted_at IS NULL" + owned, Long.class);
+            Long tableCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE deleted_at IS NULL" + owned, Long.class);
+            if (tableMin != null && tableMax != null) {
+                minId = Math.min(minId, tableMin);
+                maxId = Math.max(maxId, tableMax);
+                count += tableCount != null ? tableCount : 0;
+            }
+        }
+        if (count == 0) {
+            out.flush();
+            return;
+        }
+        
+        // Ranges of equal id span, sized for rowsPerRange at the table's average density
+        long ranges = Math.max(threads, (count + rowsPerRange - 1) / rowsPerRange);
+        long span = Math.max(1, (maxId - minId) / ranges + 1);
+        
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        long next = minId;
+        try {
+            while (next <= maxId || !inFlight.isEmpty()) {
+                while (next <= maxId && inFlight.size() < maxBufferedRanges) {
+                    long from = next;
+                    long to = maxId - from < span ? maxId : from + span - 1;
+                    inFlight.add(pool.submit(() -> encodeRange(tables, from, to)));
+                    next = to + 1;
+                }
+                out.write(await(inFlight.poll()));
+            }
+            out.flush();
+        } finally {
+            // The client went away or a range failed: stop the reads still queued or running
+            for (Future<byte[]> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+    
+    private byte[] encodeRange(List<JdbcTemplate> tables, long from, long to) throws IOException {
+        if (tables.size() == 1) {
+            return encode(writer -> tables.get(0).query(RANGE_SQL + " ORDER BY id", rs -> {
+                writer.writeNext(row(rs));
+            }, from, to));
+        }
+        // One id range of every shard, each read as far as the shard owns it, merged by id. A bucket
+        // move that switches owner between two of these reads can still show a row twice: written once
+        List<Object[]> rows = new ArrayList<>();
+        for (int table = 0; table < tables.size(); table++) {
+            tables.get(table).query(RANGE_SQL + userStore.ownedRowsCondition(table) + " ORDER BY id", rs -> {
+                rows.add(new Object[] {rs.getLong("id"), row(rs)});
+            }, from, to);
+        }
+        rows.sort(Comparator.comparingLong(row -> (Long) row[0]));
+        return encode(writer -> {
+            long previousId = Long.MIN_VALUE;
+            for (Object[] row : rows) {
+                long id = (Long) row[0];
+                if (id != previousId) {
+                    writer.writeNext((String[]) row[1]);
+                    previousId = id;
+                }
+            }
+        });
+    }
+    
+    private static String[] row(ResultSet rs) throws SQLException {
+        LocalDateTime createdAt = rs.getObject("created_at", LocalDateTime.class);
+        LocalDateTime updatedAt = rs.getObject("updated_at", LocalDateTime.class);
+        return new String[]{
+            rs.getString("name"),
+            rs.getString("email"),
+            createdAt != null ? createdAt.toString() : "",
+            updatedAt != null ? updatedAt.toString() : ""
+        };
+    }
+    
+    private interface CsvBody {
+        void write(CSVWriter writer);
+    }
+    
+    private static byte[] encode(CsvBody body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CSVWriter writer = new CSVWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            body.write(writer);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static byte[] await(Future<byte[]> range) throws IOException {
+        try {
+            return range.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Export of a range failed", cause);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.RefreshToken;
+import com.usermanagement.repository.RefreshTokenRepository;
+import com.usermanagement.security.AuthenticatedUser;
+import com.usermanagement.security.JwtTokenProvider;
+import com.usermanagement.security.ServerSecrets;
+import com.usermanagement.security.TokenRevocationIndex;
+import com.usermanagement.service.RefreshTokenService;
+import com.usermanagement.service.TokenPair;
+import com.usermanagement.service.UserService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@Transactional
+public class RefreshTokenServiceImpl implements RefreshTokenService {
+    
+    private final SecureRandom secureRandom = new SecureRandom();
+    
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+    
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+    
+    @Autowired
+    private TokenRevocationIndex revocationIndex;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private ServerSecrets serverSecrets;
+    
+    @Value("${jwt.refresh-expiration:2592000000}") // 30 days default
+    private Long refreshExpiration;
+    
+    // How long a rotated token still gets its successor back, for concurrent refreshes and retries
+    @Value("${jwt.refresh-reuse-grace-ms:10000}")
+    private long reuseGraceMs;
+    
+    private byte[] successorKey;
+    
+    @PostConstruct
+    public void init() {
+        successorKey = serverSecrets.derive("refresh-token-successor");
+    }
+    
+    @Override
+    public TokenPair issueTokens(AuthenticatedUser user) {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        return issueTokens(user, UUID.randomUUID().toString(), Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+    }
+    
+    // Reuse detection must survive the exception, so the family revocation is not rolled back
+    @Override
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public TokenPair refresh(String refreshToken) {
+        RefreshToken current = refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .orElseThrow(() -> new BadCredentialsException("Refresh token không hợp lệ"));
+        
+        LocalDateTime now = LocalDateTime.now();
+        if (current.isExpired()) {
+            throw new BadCredentialsException("Refresh token đã hết hạn");
+        }
+        // The successor is derived from the token, so a second refresh of it can be given the same one
+        String successor = successorOf(refreshToken);
+        if (current.isRevoked() || refreshTokenRepository.markRevoked(current.getId(), now) == 0) {
+            // Two tabs, or a retry after a lost response, presenting the token just rotated. The locking
+            // read waits for a concurrent rotation to commit and sees its successor.
+            Optional<RefreshToken> issued = refreshTokenRepository.findForShareByTokenHash(hash(successor));
+            if (issued.isPresent() && !issued.get().isRevoked()
+                    && issued.get().getCreatedAt().isAfter(now.minusNanos(reuseGraceMs * 1_000_000L))) {
+                return tokenPair(loadUser(current.getEmail()), successor);
+            }
+            // An already rotated token came back: assume it leaked and end the whole login
+            refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+            throw new BadCredentialsException("Refresh token đã bị thu hồi");
+        }
+        return issueTokens(loadUser(current.getEmail()), current.getFamilyId(), successor);
+    }
+    
+    @Override
+    public void revoke(String refreshToken) {
+        refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId(), LocalDateTime.now()));
+    }
+    
+    @Override
+    public void revokeAccessToken(String accessToken) {
+        try {
+            Claims claims = tokenProvider.parseClaims(accessToken);
+            revocationIndex.revoke(claims.getId(), claims.getExpiration().getTime());
+        } catch (JwtException e) {
+            // Expired or invalid tokens are already unusable
+        }
+    }
+    
+    @Override
+    @Scheduled(cron = "${jwt.refresh-purge-cron:0 45 3 * * *}")
+    public int purgeExpiredTokens() {
+        return refreshTokenRepository.deleteExpired(LocalDateTime.now());
+    }
+    
+    private TokenPair issueTokens(AuthenticatedUser user, String familyId, String rawToken) {
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofMillis(refreshExpiration));
+        refreshTokenRepository.save(new RefreshToken(hash(rawToken), user.getEmail(), familyId, expiresAt));
+        return tokenPair(user, rawToken);
+    }
+    
+    private TokenPair tokenPair(AuthenticatedUser user, String rawToken) {
+        return new TokenPair(user.getEmail(), tokenProvider.generateToken(user), rawToken,
+            tokenProvider.getExpiration() / 1000);
+    }
+    
+    // Claims are taken from the current profile, so every refresh also brings them up to date
+    private AuthenticatedUser loadUser(String email) {
+        return userService.findByEmail(email)
+                .map(AuthenticatedUser::of)
+                .orElseThrow(() -> new BadCredentialsException("User not found: " + email));
+    }
+    
+    // Only the server can compute it, so an old token alone does not reveal the live one
+    private String successorOf(String rawToken) {
+        byte[] successor = ServerSecrets.hmacSha256(successorKey, rawToken.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(successor);
+    }
+    
+    private static String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
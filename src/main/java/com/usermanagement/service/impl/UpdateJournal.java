@@ -0,0 +1,132 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of accepted profile updates, split into numbered segments.
+ * One line per update: {@code id|updatedAt|base64url(name)|base64url(email)}.
+ * A segment is rotated out on every flush and deleted once its updates are in the database.
+ */
+final class UpdateJournal {
+    
+    private static final String SEGMENT_PREFIX = "updates-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    
+    private final Path directory;
+    private final boolean fsync;
+    private final List<Path> recoveredSegments;
+    
+    private long nextSegmentNumber;
+    private Path currentSegment;
+    private FileChannel channel;
+    
+    private UpdateJournal(Path directory, boolean fsync, List<Path> recoveredSegments) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.recoveredSegments = recoveredSegments;
+    }
+    
+    static UpdateJournal open(Path directory, boolean fsync) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> existing;
+        try (Stream<Path> files = Files.list(directory)) {
+            existing = files.filter(UpdateJournal::isSegment).sorted().toList();
+        }
+        UpdateJournal journal = new UpdateJournal(directory, fsync, existing);
+        journal.nextSegmentNumber = existing.isEmpty() ? 1 : segmentNumber(existing.get(existing.size() - 1)) + 1;
+        journal.openNextSegment();
+        return journal;
+    }
+    
+    // Segments left behind by a previous run, oldest first
+    List<Path> getRecoveredSegments() {
+        return recoveredSegments;
+    }
+    
+    void append(User update) throws IOException {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String line = update.getId() + "|" + update.getUpdatedAt() + "|"
+                + encoder.encodeToString(update.getName().getBytes(StandardCharsets.UTF_8)) + "|"
+                + encoder.encodeToString(update.getEmail().getBytes(StandardCharsets.UTF_8)) + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+    
+    // Closes the current segment and starts a new one; returns the closed segment
+    Path rotate() throws IOException {
+        Path closed = currentSegment;
+        channel.force(false);
+        channel.close();
+        openNextSegment();
+        return closed;
+    }
+    
+    void delete(Collection<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+    
+    void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+    
+    static List<User> read(Path segment) throws IOException {
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        List<User> updates = new ArrayList<>();
+        for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\\|", -1);
+            if (fields.length != 4) {
+                // Torn write at the tail of a segment from a crash mid-append
+                continue;
+            }
+            try {
+                User update = new User();
+                update.setId(Long.parseLong(fields[0]));
+                update.setUpdatedAt(LocalDateTime.parse(fields[1]));
+                update.setName(new String(decoder.decode(fields[2]), StandardCharsets.UTF_8));
+                update.setEmail(new String(decoder.decode(fields[3]), StandardCharsets.UTF_8));
+                updates.add(update);
+            } catch (RuntimeException e) {
+                continue;
+            }
+        }
+        return updates;
+    }
+    
+    private void openNextSegment() throws IOException {
+        currentSegment = directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, nextSegmentNumber++, SEGMENT_SUFFIX));
+        channel = FileChannel.open(currentSegment,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+    
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,136 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.UserStore;
+import com.usermanagement.security.LastLoginTracker;
+import com.usermanagement.service.ChangeFeedService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves users that have not been active for app.archive.inactive-days from users to users_archive,
+ * so the table and its indexes only hold users that still log in. Runs in chunks of
+ * app.archive.batch-size, each in its own short transaction, with a pause between chunks to leave
+ * the database to request traffic. The work runs on its own thread, not the shared scheduler thread
+ * that the flush jobs need. Readers see archival as a deletion; the next login restores the
+ * user, see UserService#restoreArchivedUser.
+ */
+@Component
+class UserArchiver {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserArchiver.class);
+    
+    @Autowired
+    private UserStore userStore;
+    
+    @Autowired
+    private LastLoginTracker lastLoginTracker;
+    
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Autowired
+    private UserDirectory userDirectory;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${app.archive.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.archive.inactive-days:365}")
+    private long inactiveDays;
+    
+    @Value("${app.archive.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${app.archive.pause-ms:200}")
+    private long pauseMs;
+    
+    // Caps one run, so a first run over a large backlog is spread over several intervals
+    @Value("${app.archive.max-per-run:100000}")
+    private int maxPerRun;
+    
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService worker;
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-archiver");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+    
+    @Scheduled(fixedDelayString = "${app.archive.interval-ms:3600000}", initialDelayString = "${app.archive.initial-delay-ms:300000}")
+    public void schedule() {
+        // A run still going when the next one is due just continues
+        if (enabled && running.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                try {
+                    archiveInactiveUsers();
+                } catch (RuntimeException e) {
+                    logger.error("Archival of inactive users failed, retrying on the next run", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+    }
+    
+    void archiveInactiveUsers() {
+        // Activity still in memory would otherwise make a user that just logged in look inactive
+        lastLoginTracker.flush();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(inactiveDays);
+        long started = System.currentTimeMillis();
+        int archived = 0;
+        while (archived < maxPerRun) {
+            List<User> chunk = transactionTemplate.execute(status -> {
+                List<User> users = userStore.archiveInactive(cutoff, batchSize);
+                for (User user : users) {
+                    changeFeedService.record(UserChangeEvent.Operation.DELETED, user);
+                    userDirectory.deleted(user.getId());
+                }
+                return users;
+            });
+            if (chunk.isEmpty()) {
+                break;
+            }
+            archived += chunk.size();
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (archived > 0) {
+            logger.info("Archived {} users inactive since {} in {} ms", archived, cutoff,
+                    System.currentTimeMillis() - started);
+        }
+    }
+}
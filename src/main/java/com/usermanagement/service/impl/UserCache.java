@@ -0,0 +1,227 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.event.UserChangedEvent;
+import com.usermanagement.repository.UserChangeEventRepository;
+import com.usermanagement.service.ChangeFeedService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Near cache of users by id and by email, in front of the lookups every authenticated request makes.
+ * <p>
+ * Invalidation: local writes evict on commit; writes on other nodes are picked up by polling the
+ * change feed outbox, which every user write already goes through. Staleness is bounded by
+ * app.cache.users.max-staleness-ms: entries are only served while the last poll that caught up
+ * with the outbox started less than that long ago, otherwise reads go to the database until the
+ * poller catches up again. Entries also expire after app.cache.users.ttl-ms regardless.
+ */
+@Component
+class UserCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+    
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Autowired
+    private UserChangeEventRepository changeEventRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.cache.users.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.cache.users.max-entries:10000}")
+    private int maxEntries;
+    
+    @Value("${app.cache.users.ttl-ms:60000}")
+    private long ttlMs;
+    
+    @Value("${app.cache.users.max-staleness-ms:5000}")
+    private long maxStalenessMs;
+    
+    @Value("${app.cache.users.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+    
+    @Value("${app.cache.users.poll-batch-size:1000}")
+    private int pollBatchSize;
+    
+    @Value("${app.change-feed.gap-timeout-ms:2000}")
+    private long gapTimeoutMs;
+    
+    // Guarded by entries
+    private final Map<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> idsByEmail = new HashMap<>();
+    private long invalidations;
+    
+    private OutboxFollower outbox;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder localEvictions = new LongAdder();
+    private final LongAdder clusterEvictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        FunctionCounter.builder("users.cache.gets", hits, LongAdder::sum).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("users.cache.gets", misses, LongAdder::sum).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("users.cache.gets", bypassed, LongAdder::sum).tag("result", "bypass").register(meterRegistry);
+        FunctionCounter.builder("users.cache.evictions", localEvictions, LongAdder::sum).tag("cause", "local-write").register(meterRegistry);
+        FunctionCounter.builder("users.cache.evictions", clusterEvictions, LongAdder::sum).tag("cause", "cluster-write").register(meterRegistry);
+        FunctionCounter.builder("users.cache.evictions", expirations, LongAdder::sum).tag("cause", "expired").register(meterRegistry);
+        Gauge.builder("users.cache.size", this, UserCache::size).register(meterRegistry);
+        Gauge.builder("users.cache.staleness", this, cache -> cache.outbox.getStalenessMs())
+                .baseUnit("milliseconds")
+                .description("Upper bound on how old a served entry can be; entries are bypassed above max-staleness-ms")
+                .register(meterRegistry);
+        
+        if (maxStalenessMs <= pollIntervalMs + gapTimeoutMs) {
+            logger.warn("app.cache.users.max-staleness-ms ({}) should exceed the poll interval plus the change feed "
+                    + "gap timeout ({} ms), or the cache will often be bypassed", maxStalenessMs, pollIntervalMs + gapTimeoutMs);
+        }
+        outbox = new OutboxFollower(changeFeedService, pollBatchSize);
+        outbox.start(changeEventRepository, gapTimeoutMs);
+    }
+    
+    Optional<User> getById(Long id, Supplier<Optional<User>> loader) {
+        if (!isUsable()) {
+            bypassed.increment();
+            return loader.get();
+        }
+        long generation;
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null && isFresh(entry)) {
+                hits.increment();
+                return Optional.of(new User(entry.user));
+            }
+            generation = invalidations;
+        }
+        return load(loader, generation);
+    }
+    
+    Optional<User> getByEmail(String email, Supplier<Optional<User>> loader) {
+        if (!isUsable()) {
+            bypassed.increment();
+            return loader.get();
+        }
+        long generation;
+        synchronized (entries) {
+            Long id = idsByEmail.get(email);
+            Entry entry = id != null ? entries.get(id) : null;
+            if (entry != null && isFresh(entry) && entry.user.getEmail().equals(email)) {
+                hits.increment();
+                return Optional.of(new User(entry.user));
+            }
+            generation = invalidations;
+        }
+        return load(loader, generation);
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (enabled) {
+            invalidate(event.getUserId(), localEvictions);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.cache.users.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        outbox.poll(change -> invalidate(change.getUserId(), clusterEvictions));
+    }
+    
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    private Optional<User> load(Supplier<Optional<User>> loader, long generation) {
+        misses.increment();
+        Optional<User> loaded = loader.get();
+        loaded.ifPresent(user -> {
+            synchronized (entries) {
+                // Any invalidation during the load may concern this row, so the result is not cached
+                if (invalidations != generation) {
+                    return;
+                }
+                Entry previous = entries.put(user.getId(), new Entry(new User(user), System.currentTimeMillis()));
+                if (previous != null && !previous.user.getEmail().equals(user.getEmail())) {
+                    idsByEmail.remove(previous.user.getEmail(), user.getId());
+                }
+                idsByEmail.put(user.getEmail(), user.getId());
+                if (entries.size() > maxEntries) {
+                    Iterator<Entry> eldest = entries.values().iterator();
+                    User evicted = eldest.next().user;
+                    idsByEmail.remove(evicted.getEmail(), evicted.getId());
+                    eldest.remove();
+                }
+            }
+        });
+        return loaded;
+    }
+    
+    private void invalidate(Long userId, LongAdder cause) {
+        synchronized (entries) {
+            invalidations++;
+            Entry entry = entries.remove(userId);
+            if (entry != null) {
+                idsByEmail.remove(entry.user.getEmail(), userId);
+                cause.increment();
+            }
+        }
+    }
+    
+    private boolean isUsable() {
+        return enabled && outbox.isSyncedWithin(maxStalenessMs);
+    }
+    
+    // Called with the lock held
+    private boolean isFresh(Entry entry) {
+        if (System.currentTimeMillis() - entry.loadedAt < ttlMs) {
+            return true;
+        }
+        entries.remove(entry.user.getId());
+        idsByEmail.remove(entry.user.getEmail(), entry.user.getId());
+        expirations.increment();
+        return false;
+    }
+    
+    private static final class Entry {
+        
+        private final User user;
+        private final long loadedAt;
+        
+        private Entry(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
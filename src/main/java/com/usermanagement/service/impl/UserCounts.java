@@ -0,0 +1,158 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.event.UserChangedEvent;
+import com.usermanagement.repository.UserStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Totals for paginated listings that do not need a COUNT(*) per request.
+ * <p>
+ * Cached counts live for app.listing.count-cache-ttl-ms. The unfiltered total is adjusted by the
+ * creates and deletes committed on this node; writes on other nodes show up when it expires.
+ * Keyword counts are dropped on any local write, since an update can change what a keyword matches.
+ */
+@Component
+class UserCounts {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserCounts.class);
+    
+    private static final String MYSQL_ESTIMATE_SQL =
+            "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'users'";
+    private static final String H2_ESTIMATE_SQL =
+            "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND TABLE_NAME = 'USERS'";
+    
+    @Autowired
+    private UserStore userStore;
+    
+    @Value("${app.listing.count-cache-ttl-ms:5000}")
+    private long cacheTtlMs;
+    
+    // Below this many rows an exact count is cheap enough and estimates are too coarse to be useful
+    @Value("${app.listing.estimate-threshold:100000}")
+    private long estimateThreshold;
+    
+    @Value("${app.listing.keyword-count-cache-size:256}")
+    private int keywordCacheSize;
+    
+    private final AtomicReference<CachedCount> total = new AtomicReference<>();
+    private final AtomicReference<CachedCount> estimate = new AtomicReference<>();
+    private final Map<String, CachedCount> keywordCounts = new LinkedHashMap<>(16, 0.75f, true);
+    
+    // Resolved on first use; null when the database has no statistics we know how to read
+    private volatile String estimateSql;
+    private volatile boolean estimateSqlResolved;
+    
+    long countAll() {
+        CachedCount cached = total.get();
+        if (isFresh(cached)) {
+            return cached.value;
+        }
+        long count = userStore.count();
+        total.set(new CachedCount(count, System.currentTimeMillis()));
+        return count;
+    }
+    
+    long estimateAll() {
+        CachedCount cached = estimate.get();
+        if (!isFresh(cached)) {
+            Long rows = readTableStatistics();
+            if (rows == null) {
+                return countAll();
+            }
+            cached = new CachedCount(rows, System.currentTimeMillis());
+            estimate.set(cached);
+        }
+        return cached.value < estimateThreshold ? countAll() : cached.value;
+    }
+    
+    long countMatching(String keyword, LongSupplier exactCount) {
+        String key = keyword.trim().toLowerCase(Locale.ROOT);
+        synchronized (keywordCounts) {
+            CachedCount cached = keywordCounts.get(key);
+            if (isFresh(cached)) {
+                return cached.value;
+            }
+        }
+        long count = exactCount.getAsLong();
+        synchronized (keywordCounts) {
+            keywordCounts.put(key, new CachedCount(count, System.currentTimeMillis()));
+            if (keywordCounts.size() > keywordCacheSize) {
+                keywordCounts.remove(keywordCounts.keySet().iterator().next());
+            }
+        }
+        return count;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getOperation() == UserChangeEvent.Operation.CREATED) {
+            total.updateAndGet(cached -> cached == null ? null : new CachedCount(cached.value + 1, cached.loadedAt));
+        } else if (event.getOperation() == UserChangeEvent.Operation.DELETED) {
+            total.updateAndGet(cached -> cached == null ? null : new CachedCount(cached.value - 1, cached.loadedAt));
+        }
+        synchronized (keywordCounts) {
+            keywordCounts.clear();
+        }
+    }
+    
+    private boolean isFresh(CachedCount cached) {
+        return cached != null && System.currentTimeMillis() - cached.loadedAt < cacheTtlMs;
+    }
+    
+    // Summed over every users table, so a sharded store is estimated as a whole
+    private Long readTableStatistics() {
+        List<JdbcTemplate> userTables = userStore.getUserTables();
+        if (!estimateSqlResolved) {
+            String product = userTables.get(0).execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            if ("MySQL".equalsIgnoreCase(product)) {
+                estimateSql = MYSQL_ESTIMATE_SQL;
+            } else if ("H2".equalsIgnoreCase(product)) {
+                estimateSql = H2_ESTIMATE_SQL;
+            }
+            estimateSqlResolved = true;
+        }
+        if (estimateSql == null) {
+            return null;
+        }
+        try {
+            long rows = 0;
+            for (JdbcTemplate jdbcTemplate : userTables) {
+                Long tableRows = jdbcTemplate.queryForObject(estimateSql, Long.class);
+                rows += tableRows != null ? tableRows : 0;
+            }
+            return rows;
+        } catch (DataAccessException e) {
+            logger.warn("Could not read table statistics for users, falling back to cached counts", e);
+            estimateSql = null;
+            return null;
+        }
+    }
+    
+    private static final class CachedCount {
+        
+        private final long value;
+        private final long loadedAt;
+        
+        private CachedCount(long value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
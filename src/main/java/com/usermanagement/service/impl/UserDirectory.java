@@ -0,0 +1,310 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.UserChangeEventRepository;
+import com.usermanagement.repository.UserStore;
+import com.usermanagement.service.ChangeFeedService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-optimized copy of the whole users table in an {@link OffHeapUserTable}, answering
+ * getUserById and findByEmail without a query or long-lived heap objects.
+ * <p>
+ * Built from the database in the background after startup; until then, and whenever the copy may
+ * be more than app.directory.max-staleness-ms behind, lookups go to the database. Writes made
+ * through the service patch it on commit; every change in the outbox (other nodes, write-behind
+ * flushes) is re-read from the database by a poller, so it converges on the table. Writes that
+ * bypass the outbox are caught by a rebuild every app.directory.reconcile-interval-ms, and a
+ * lookup the directory misses is asked of the database rather than answered as absent.
+ */
+@Component
+class UserDirectory {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectory.class);
+    
+    // Deletes are remembered for this long, so a reload that read the row just before cannot bring it back
+    private static final long TOMBSTONE_MS = 60_000L;
+    
+    @Autowired
+    private UserStore userStore;
+    
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Autowired
+    private UserChangeEventRepository changeEventRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.directory.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.directory.chunk-bytes:67108864}")
+    private int chunkBytes;
+    
+    @Value("${app.directory.max-staleness-ms:5000}")
+    private long maxStalenessMs;
+    
+    @Value("${app.directory.build-page-size:10000}")
+    private int buildPageSize;
+    
+    @Value("${app.directory.poll-batch-size:1000}")
+    private int pollBatchSize;
+    
+    @Value("${app.change-feed.gap-timeout-ms:2000}")
+    private long gapTimeoutMs;
+    
+    // Null until the first build has finished
+    private volatile OffHeapUserTable table;
+    private OutboxFollower outbox;
+    private final Map<Long, Long> deletedAt = new ConcurrentHashMap<>();
+    private final AtomicBoolean building = new AtomicBoolean();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        FunctionCounter.builder("users.directory.lookups", hits, LongAdder::sum).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("users.directory.lookups", fallbacks, LongAdder::sum).tag("result", "database").register(meterRegistry);
+        Gauge.builder("users.directory.size", this, directory -> directory.table != null ? directory.table.size() : 0)
+                .register(meterRegistry);
+        Gauge.builder("users.directory.off-heap", this, directory -> directory.table != null ? directory.table.offHeapBytes() : 0)
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("users.directory.index", this, directory -> directory.table != null ? directory.table.indexBytes() : 0)
+                .baseUnit("bytes").register(meterRegistry);
+        
+        startBuild();
+    }
+    
+    /**
+     * The user with this id, or null when the database must be asked. A miss is not an answer: the
+     * row may have been written by a path the directory has not seen yet.
+     */
+    Optional<User> findById(Long id) {
+        OffHeapUserTable current = usableTable();
+        User user = current != null ? current.get(id) : null;
+        if (user == null) {
+            if (current != null) {
+                fallbacks.increment();
+            }
+            return null;
+        }
+        hits.increment();
+        return Optional.of(user);
+    }
+    
+    /**
+     * The user with exactly this email, or null when the database must be asked. A miss is not an
+     * answer: the column collation may match an email that differs in case.
+     */
+    Optional<User> findByEmail(String email) {
+        OffHeapUserTable current = usableTable();
+        User user = current != null ? current.getByEmail(email) : null;
+        if (user == null) {
+            if (current != null) {
+                fallbacks.increment();
+            }
+            return null;
+        }
+        hits.increment();
+        return Optional.of(user);
+    }
+    
+    // Called by the service write paths with the saved entity; its final state is copied once committed
+    void saved(User user) {
+        if (enabled) {
+            afterCommit(() -> {
+                OffHeapUserTable current = table;
+                if (current != null && !deletedAt.containsKey(user.getId())) {
+                    current.put(user);
+                }
+            });
+        }
+    }
+    
+    // A restored user comes back with the id it was deleted under, so its tombstone goes
+    void restored(User user) {
+        if (enabled) {
+            afterCommit(() -> {
+                deletedAt.remove(user.getId());
+                OffHeapUserTable current = table;
+                if (current != null) {
+                    current.put(user);
+                }
+            });
+        }
+    }
+    
+    void deleted(Long id) {
+        if (enabled) {
+            afterCommit(() -> remove(id));
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.directory.poll-interval-ms:1000}")
+    public synchronized void poll() {
+        OffHeapUserTable current = table;
+        if (current == null) {
+            return;
+        }
+        outbox.poll(change -> {
+            if (change.getOperation() == UserChangeEvent.Operation.DELETED) {
+                remove(change.getUserId());
+            } else {
+                // Only a delete committed after this read makes the row it returns outdated
+                long readAt = System.currentTimeMillis();
+                Optional<User> row = userStore.findById(change.getUserId());
+                Long deleted = deletedAt.get(change.getUserId());
+                if (row.isEmpty()) {
+                    remove(change.getUserId());
+                } else if (deleted == null || deleted < readAt) {
+                    deletedAt.remove(change.getUserId());
+                    current.put(row.get());
+                }
+            }
+        });
+        long expired = System.currentTimeMillis() - TOMBSTONE_MS;
+        deletedAt.values().removeIf(at -> at < expired);
+        if (current.needsCompaction()) {
+            long started = System.currentTimeMillis();
+            current.compact();
+            logger.info("Compacted user directory: {} users, {} MB off-heap, {} ms",
+                    current.size(), current.offHeapBytes() >> 20, System.currentTimeMillis() - started);
+        }
+    }
+    
+    // A fresh copy replaces the current one, which keeps answering until then
+    @Scheduled(fixedDelayString = "${app.directory.reconcile-interval-ms:3600000}",
+            initialDelayString = "${app.directory.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        if (enabled && table != null) {
+            startBuild();
+        }
+    }
+    
+    private void startBuild() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        Thread builder = new Thread(() -> {
+            try {
+                build();
+            } finally {
+                building.set(false);
+            }
+        }, "user-directory-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+    
+    private void build() {
+        long started = System.currentTimeMillis();
+        try {
+            // Follow the outbox from before the scan, so rows changed while scanning are re-read afterwards
+            OutboxFollower follower = new OutboxFollower(changeFeedService, pollBatchSize);
+            follower.start(changeEventRepository, gapTimeoutMs);
+            
+            List<JdbcTemplate> userTables = userStore.getUserTables();
+            long expected = 0;
+            for (int table = 0; table < userTables.size(); table++) {
+                Long count = userTables.get(table).queryForObject("SELECT COUNT(*) FROM users WHERE deleted_at IS NULL"
+                        + userStore.ownedRowsCondition(table), Long.class);
+                expected += count != null ? count : 0;
+            }
+            OffHeapUserTable built = new OffHeapUserTable(chunkBytes, (int) Math.min(Integer.MAX_VALUE / 2, expected + expected / 8));
+            // Rows of a bucket being moved are read from the shard that owns them only
+            for (int table = 0; table < userTables.size(); table++) {
+                JdbcTemplate jdbcTemplate = userTables.get(table);
+                long lastId = 0;
+                while (true) {
+                    List<User> page = jdbcTemplate.query(
+                            "SELECT id, name, email, password, created_at, updated_at, version FROM users WHERE id > ? AND deleted_at IS NULL"
+                                    + userStore.ownedRowsCondition(table) + " ORDER BY id LIMIT ?",
+                            (rs, rowNum) -> {
+                                User user = new User(rs.getString(2), rs.getString(3), rs.getString(4));
+                                user.setId(rs.getLong(1));
+                                user.setCreatedAt(rs.getObject(5, LocalDateTime.class));
+                                user.setUpdatedAt(rs.getObject(6, LocalDateTime.class));
+                                user.setVersion(rs.getLong(7));
+                                return user;
+                            },
+                            lastId, buildPageSize);
+                    if (page.isEmpty()) {
+                        break;
+                    }
+                    page.forEach(built::put);
+                    lastId = page.get(page.size() - 1).getId();
+                }
+            }
+            synchronized (this) {
+                outbox = follower;
+                table = built;
+            }
+            poll();
+            logger.info("User directory built: {} users, {} MB off-heap, {} MB of indexes, {} ms", built.size(),
+                    built.offHeapBytes() >> 20, built.indexBytes() >> 20, System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            logger.error("Could not build the user directory, lookups keep using the current copy or the database", e);
+        }
+    }
+    
+    private OffHeapUserTable usableTable() {
+        if (!enabled) {
+            return null;
+        }
+        OffHeapUserTable current = table;
+        if (current == null || !outbox.isSyncedWithin(maxStalenessMs)) {
+            fallbacks.increment();
+            return null;
+        }
+        return current;
+    }
+    
+    private void remove(Long id) {
+        deletedAt.put(id, System.currentTimeMillis());
+        OffHeapUserTable current = table;
+        if (current != null) {
+            current.remove(id);
+        }
+    }
+    
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.repository.UserStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Physically removes users that deleteUser soft-deleted. Works through them in batches of
+ * app.users.purge.batch-size, each row deleted by primary key in its own auto-committed statement so
+ * no lock is held for long, with a pause between batches, on a low-priority thread of its own. The
+ * change feed already had the deletion when the row was marked, so a purge publishes nothing.
+ */
+@Component
+class UserPurger {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserPurger.class);
+    
+    @Autowired
+    private UserStore userStore;
+    
+    @Value("${app.users.soft-delete.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.users.purge.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${app.users.purge.pause-ms:50}")
+    private long pauseMs;
+    
+    private ExecutorService worker;
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    @PostConstruct
+    public void init() {
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-purger");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+    
+    @Scheduled(fixedDelayString = "${app.users.purge.interval-ms:60000}")
+    public void schedule() {
+        if (enabled && running.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                try {
+                    purgeDeletedUsers();
+                } catch (RuntimeException e) {
+                    logger.error("Purge of deleted users failed, retrying on the next run", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+    }
+    
+    void purgeDeletedUsers() {
+        long started = System.currentTimeMillis();
+        long purged = 0;
+        while (true) {
+            int batch = userStore.purgeDeleted(batchSize);
+            if (batch == 0) {
+                break;
+            }
+            purged += batch;
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (purged > 0) {
+            logger.info("Purged {} deleted users in {} ms", purged, System.currentTimeMillis() - started);
+        }
+    }
+}
@@ -1,38 +1,137 @@
 package com.usermanagement.service.impl;
 
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.opencsv.exceptions.CsvException;
+import com.usermanagement.audit.AuditLog;
+import com.usermanagement.entity.AuditEvent;
 import com.usermanagement.entity.User;
-import com.usermanagement.repository.UserRepository;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.UserChangeEventRepository;
+import com.usermanagement.repository.UserStore;
+import com.usermanagement.service.ChangeFeedService;
+import com.usermanagement.service.CountMode;
+import com.usermanagement.service.ExportCursor;
+import com.usermanagement.service.ImportMode;
+import com.usermanagement.service.ImportResult;
 import com.usermanagement.service.UserService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @Transactional
 public class UserServiceImpl implements UserService {
     
     @Autowired
-    private UserRepository userRepository;
+    private UserStore userStore;
     
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Autowired
+    private UserChangeEventRepository changeEventRepository;
+    
+    @Autowired
+    private UserWriteCoalescer writeCoalescer;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private UserCounts userCounts;
+    
+    @Autowired
+    private UserCache userCache;
+    
+    @Autowired
+    private UserDirectory userDirectory;
+    
+    @Autowired
+    private AuditLog auditLog;
+    
+    @Autowired
+    private ParallelUserExporter parallelUserExporter;
+    
+    @Value("${app.export.batch-size:1000}")
+    private int exportBatchSize;
+    
+    // 8 bytes per existing user: the default covers 16M users
+    @Value("${app.import.email-index.max-bytes:134217728}")
+    private long emailIndexMaxBytes;
+    
+    @Value("${app.import.email-index.page-size:10000}")
+    private int emailIndexPageSize;
+    
+    // 0 uses one thread per core
+    @Value("${app.import.parse-threads:0}")
+    private int parseThreads;
+    
+    @Value("${app.import.parse-chunk-bytes:8388608}")
+    private long parseChunkBytes;
+    
+    // Rows per upsert statement batch, and per IN query that classifies them
+    @Value("${app.import.upsert-batch-size:1000}")
+    private int upsertBatchSize;
+    
+    @Value("${app.listing.stream-fetch-size:1000}")
+    private int streamFetchSize;
+    
+    // deleteUser marks the row with one UPDATE and UserPurger removes it later
+    @Value("${app.users.soft-delete.enabled:false}")
+    private boolean softDelete;
+    
+    private ChunkedCsvParser csvParser;
+    
+    @PostConstruct
+    public void init() {
+        csvParser = new ChunkedCsvParser(
+                parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors(), parseChunkBytes);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        csvParser.close();
+    }
+    
     @Override
     public Page<User> getAllUsers(Pageable pageable) {
-        return userRepository.findAll(pageable);
+        return userStore.findAll(pageable);
     }
     
     @Override
@@ -40,149 +139,496 @@ public class UserServiceImpl implements UserService {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getAllUsers(pageable);
         }
-        return userRepository.searchUsers(keyword.trim(), pageable);
+        return userStore.searchUsers(keyword.trim(), pageable);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<User> getAllUsers(Pageable pageable, CountMode countMode) {
+        switch (countMode) {
+            case EXACT:
+                return getAllUsers(pageable);
+            case NONE:
+                return userStore.findAllBy(pageable);
+            default:
+                Slice<User> slice = userStore.findAllBy(pageable);
+                long total = countMode == CountMode.ESTIMATED ? userCounts.estimateAll() : userCounts.countAll();
+                return withTotal(slice, total);
+        }
     }
     
     @Override
+    @Transactional(readOnly = true)
+    public Slice<User> searchUsers(String keyword, Pageable pageable, CountMode countMode) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return getAllUsers(pageable, countMode);
+        }
+        String trimmed = keyword.trim();
+        switch (countMode) {
+            case EXACT:
+                return userStore.searchUsers(trimmed, pageable);
+            case NONE:
+                return userStore.searchUsersSlice(trimmed, pageable);
+            default:
+                // Table statistics cannot estimate a LIKE filter, so ESTIMATED uses the cached count here
+                Slice<User> slice = userStore.searchUsersSlice(trimmed, pageable);
+                return withTotal(slice, userCounts.countMatching(trimmed,
+                        () -> userStore.countSearchUsers(trimmed)));
+        }
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachUser(String keyword, Pageable pageable, Consumer<User> action) {
+        String trimmed = keyword != null && !keyword.trim().isEmpty() ? keyword.trim() : null;
+        List<JdbcTemplate> userTables = userStore.getUserTables();
+        if (userTables.size() > 1) {
+            // Sharded: the store merges the shards in id order, so the page is materialized
+            Slice<User> page = trimmed == null ? userStore.findAllBy(pageable) : userStore.searchUsersSlice(trimmed, pageable);
+            page.getContent().forEach(action);
+            return;
+        }
+        
+        String sql = "SELECT id, name, email, password, created_at, updated_at FROM users WHERE deleted_at IS NULL"
+                + (trimmed != null ? " AND (LOWER(name) LIKE LOWER(CONCAT('%', ?, '%'))"
+                        + " OR LOWER(email) LIKE LOWER(CONCAT('%', ?, '%')))" : "")
+                + " ORDER BY id LIMIT ? OFFSET ?";
+        User row = new User();
+        userTables.get(0).query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            // A positive fetch size streams on H2; MySQL also needs useCursorFetch=true in the URL
+            statement.setFetchSize(streamFetchSize);
+            int index = 1;
+            if (trimmed != null) {
+                statement.setString(index++, trimmed);
+                statement.setString(index++, trimmed);
+            }
+            statement.setInt(index++, pageable.getPageSize());
+            statement.setLong(index, pageable.getOffset());
+            return statement;
+        }, (ResultSet rs) -> {
+            row.setId(rs.getLong(1));
+            row.setName(rs.getString(2));
+            row.setEmail(rs.getString(3));
+            row.setPassword(rs.getString(4));
+            row.setCreatedAt(rs.getObject(5, LocalDateTime.class));
+            row.setUpdatedAt(rs.getObject(6, LocalDateTime.class));
+            action.accept(row);
+        });
+    }
+    
+    // Approximate totals are clamped to what the slice proves, so hasNext and totalPages never disagree
+    private static Page<User> withTotal(Slice<User> slice, long approximateTotal) {
+        long seen = slice.getPageable().getOffset() + slice.getNumberOfElements();
+        long total;
+        if (slice.hasNext()) {
+            total = Math.max(approximateTotal, seen + 1);
+        } else if (slice.hasContent()) {
+            total = seen;
+        } else {
+            // Past the end: all we know is that there are at most offset rows
+            total = Math.min(approximateTotal, seen);
+        }
+        return new PageImpl<>(slice.getContent(), slice.getPageable(), total);
+    }
+    
+    // No surrounding transaction, so a cache hit does not check out a connection
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<User> getUserById(Long id) {
-        return userRepository.findById(id);
+        // Read-your-writes for profile edits that are still waiting for the write-behind flush
+        Optional<User> pendingView = writeCoalescer.getPendingView(id);
+        if (pendingView.isPresent()) {
+            return pendingView;
+        }
+        Optional<User> fromDirectory = userDirectory.findById(id);
+        if (fromDirectory != null) {
+            return fromDirectory.map(writeCoalescer::overlay);
+        }
+        return userCache.getById(id, () -> userStore.findById(id)).map(writeCoalescer::overlay);
     }
     
     @Override
     public User createUser(User user) {
         // Encode password before saving
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        releaseDeletedEmail(user.getEmail());
+        User savedUser = userStore.save(user);
+        changeFeedService.record(UserChangeEvent.Operation.CREATED, savedUser);
+        userDirectory.saved(savedUser);
+        auditLog.record(AuditEvent.Action.CREATE, savedUser.getId(), null);
+        return savedUser;
     }
     
     @Override
     public User updateUser(Long id, User user) {
-        User existingUser = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
-        
-        // Check if email is being changed and if it's already taken
-        if (!existingUser.getEmail().equals(user.getEmail()) && 
-            userRepository.existsByEmail(user.getEmail())) {
-            throw new RuntimeException("Email already exists: " + user.getEmail());
+        return updateUser(id, user, null);
+    }
+    
+    @Override
+    public User updateUser(Long id, User user, Long expectedVersion) {
+        // A burst of profile edits to the same user only needs the lookup for the first one. An edit
+        // made against a version is checked when the row is written, so it is never deferred
+        if (expectedVersion == null && writeCoalescer.accepts(user)) {
+            Optional<User> pendingView = writeCoalescer.getPendingView(id);
+            if (pendingView.isPresent() && writeCoalescer.canCoalesce(pendingView.get(), user)) {
+                auditLog.record(AuditEvent.Action.UPDATE, id, "coalesced");
+                return writeCoalescer.submit(pendingView.get(), user.getName());
+            }
+            User existingUser = userStore.findById(id)
+                    .orElseThrow(() -> new NoSuchElementException("User not found with id: " + id));
+            if (writeCoalescer.canCoalesce(existingUser, user)) {
+                auditLog.record(AuditEvent.Action.UPDATE, id, "coalesced");
+                return writeCoalescer.submit(existingUser, user.getName());
+            }
         }
         
-        existingUser.setName(user.getName());
-        existingUser.setEmail(user.getEmail());
+        if (expectedVersion == null) {
+            // Email and password changes are written synchronously and supersede a pending profile edit
+            writeCoalescer.discard(id);
+        } else if (!writeCoalescer.flushPending(id)) {
+            // Dropping an acknowledged edit would lose it, writing over it would skip the version check
+            throw new OptimisticLockingFailureException("User " + id + " has a profile edit that is not written yet");
+        }
         
+        User update = new User(user.getName(), user.getEmail(), null);
+        update.setId(id);
+        update.setUpdatedAt(LocalDateTime.now());
         // Only update password if a new one is provided
         if (user.getPassword() != null && !user.getPassword().isEmpty()) {
-            existingUser.setPassword(passwordEncoder.encode(user.getPassword()));
+            update.setPassword(passwordEncoder.encode(user.getPassword()));
         }
         
-        return userRepository.save(existingUser);
+        releaseDeletedEmail(update.getEmail());
+        // No existence or email check first: the version and the unique constraint decide in the UPDATE
+        boolean updated;
+        try {
+            updated = userStore.updateIfVersion(update, expectedVersion);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("Email already exists: " + user.getEmail(), e);
+        }
+        User savedUser = userStore.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("User not found with id: " + id));
+        if (!updated) {
+            throw new OptimisticLockingFailureException("User " + id + " is at version " + savedUser.getVersion()
+                    + ", not " + expectedVersion);
+        }
+        changeFeedService.record(UserChangeEvent.Operation.UPDATED, savedUser);
+        userDirectory.saved(savedUser);
+        auditLog.record(AuditEvent.Action.UPDATE, id, update.getPassword() != null ? "password changed" : null);
+        return savedUser;
     }
     
     @Override
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
+        if (softDelete) {
+            softDeleteUser(id);
+            return;
+        }
+        // Load instead of existsById so the tombstone carries the email
+        User existingUser = userStore.findById(id)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+        writeCoalescer.discard(id);
+        userStore.delete(existingUser);
+        changeFeedService.record(UserChangeEvent.Operation.DELETED, existingUser);
+        userDirectory.deleted(id);
+        auditLog.record(AuditEvent.Action.DELETE, id, existingUser.getEmail());
+    }
+    
+    // One UPDATE; the tombstone's copy of the user comes from the directory or cache when they have it
+    private void softDeleteUser(Long id) {
+        User existingUser = getUserById(id)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+        writeCoalescer.discard(id);
+        if (!userStore.softDelete(id, LocalDateTime.now())) {
             throw new RuntimeException("User not found with id: " + id);
         }
-        userRepository.deleteById(id);
+        changeFeedService.record(UserChangeEvent.Operation.DELETED, existingUser);
+        userDirectory.deleted(id);
+        auditLog.record(AuditEvent.Action.DELETE, id, existingUser.getEmail());
+    }
+    
+    // A soft-deleted user holds its email until purged: free it before the email is written again
+    private void releaseDeletedEmail(String email) {
+        if (softDelete && email != null) {
+            releaseDeletedEmails(userStore, List.of(email));
+        }
+    }
+    
+    // Both spellings, as MySQL's default collations match emails case-insensitively
+    static void releaseDeletedEmails(UserStore userStore, List<String> emails) {
+        for (int from = 0; from < emails.size(); from += 500) {
+            List<String> spellings = new ArrayList<>();
+            for (String email : emails.subList(from, Math.min(emails.size(), from + 500))) {
+                spellings.add(email.trim());
+                spellings.add(EmailIndex.normalize(email));
+            }
+            userStore.purgeDeleted(spellings);
+        }
     }
     
     @Override
     public boolean existsByEmail(String email) {
-        return userRepository.existsByEmail(email);
+        return userStore.existsByEmail(email);
     }
     
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<User> findByEmail(String email) {
-        return userRepository.findByEmail(email);
+        Optional<User> fromDirectory = userDirectory.findByEmail(email);
+        if (fromDirectory != null) {
+            return fromDirectory.map(writeCoalescer::overlay);
+        }
+        return userCache.getByEmail(email, () -> userStore.findByEmail(email)).map(writeCoalescer::overlay);
     }
     
     @Override
-    public List<User> importUsersFromCSV(MultipartFile file) {
-        List<User> importedUsers = new ArrayList<>();
+    @Transactional(readOnly = true)
+    public Optional<User> findArchivedUser(String email) {
+        return userStore.findArchived(email);
+    }
+    
+    @Override
+    public Optional<User> restoreArchivedUser(String email) {
+        releaseDeletedEmail(email);
+        Optional<User> restored;
+        try {
+            restored = userStore.restoreArchived(email);
+        } catch (DataIntegrityViolationException e) {
+            // A new account holds the email now; the archived one stays archived
+            return Optional.empty();
+        }
+        restored.ifPresent(user -> {
+            changeFeedService.record(UserChangeEvent.Operation.CREATED, user);
+            userDirectory.restored(user);
+        });
+        return restored;
+    }
+    
+    @Override
+    public ImportResult importUsersFromCSV(MultipartFile file) {
+        return importUsersFromCSV(file, ImportMode.SKIP);
+    }
+    
+    @Override
+    public ImportResult importUsersFromCSV(MultipartFile file, ImportMode mode) {
+        List<ImportRow> rows = new ArrayList<>();
         
-        try (CSVReader reader = new CSVReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+        Path spooled = null;
+        try {
+            // Spool the upload to disk so it can be memory-mapped and parsed in parallel ranges
+            spooled = Files.createTempFile("users-import-", ".csv");
+            file.transferTo(spooled);
+            List<ChunkedCsvParser.Batch> batches = csvParser.parse(spooled);
             
-            List<String[]> records = reader.readAll();
-            
-            if (records.isEmpty()) {
+            if (batches.isEmpty()) {
                 throw new RuntimeException("File CSV rỗng!");
             }
             
-            int startIndex = 0;
-            // Check if first row is header (contains "name", "email", "password" keywords)
-            String[] firstRow = records.get(0);
-            if (firstRow.length > 0) {
-                String firstCell = firstRow[0].toLowerCase().trim();
-                if (firstCell.contains("name") || firstCell.contains("email") || 
-                    firstCell.contains("password") || firstCell.contains("id")) {
-                    startIndex = 1; // Skip header row
-                }
-            }
+            boolean skipFirst = ImportRow.isHeader(batches.get(0).getRecords().get(0));
             
             // Process data rows (format: Name,Email,Password)
-            for (int i = startIndex; i < records.size(); i++) {
-                String[] record = records.get(i);
-                
-                // Skip empty rows
-                if (record.length == 0 || (record.length == 1 && record[0].trim().isEmpty())) {
-                    continue;
-                }
-                
-                // Expected format: Name,Email,Password (3 columns)
-                if (record.length >= 3) {
-                    String name = record[0].trim();
-                    String email = record[1].trim();
-                    String password = record[2].trim();
-                    
-                    // Validate and create user
-                    if (!name.isEmpty() && !email.isEmpty() && !password.isEmpty()) {
-                        // Check if email already exists
-                        if (!userRepository.existsByEmail(email)) {
-                            User user = new User(name, email, password);
-                            user.setPassword(passwordEncoder.encode(password));
-                            importedUsers.add(userRepository.save(user));
-                        }
+            for (ChunkedCsvParser.Batch batch : batches) {
+                List<String[]> records = batch.getRecords();
+                for (int i = 0; i < records.size(); i++) {
+                    int number = batch.recordNumber(i);
+                    if (skipFirst && number == 1) {
+                        continue; // Skip header row
                     }
-                } else if (record.length == 2) {
-                    // Try format: Name,Email (without password - will use default)
-                    String name = record[0].trim();
-                    String email = record[1].trim();
-                    
-                    if (!name.isEmpty() && !email.isEmpty() && !userRepository.existsByEmail(email)) {
-                        User user = new User(name, email, "default123"); // Default password
-                        user.setPassword(passwordEncoder.encode("default123"));
-                        importedUsers.add(userRepository.save(user));
+                    ImportRow row = mode == ImportMode.UPSERT
+                            ? ImportRow.forUpsert(number, records.get(i)) : ImportRow.of(number, records.get(i));
+                    if (row != null) {
+                        rows.add(row);
                     }
                 }
             }
         } catch (IOException | CsvException e) {
             throw new RuntimeException("Error importing CSV file: " + e.getMessage(), e);
+        } finally {
+            deleteSpooled(spooled);
+        }
+        
+        if (softDelete) {
+            List<String> emails = new ArrayList<>(rows.size());
+            for (ImportRow row : rows) {
+                emails.add(row.email);
+            }
+            releaseDeletedEmails(userStore, emails);
         }
         
-        return importedUsers;
+        // Find every duplicate, against existing users and earlier rows, before the first write.
+        // Upserts update existing users, so only a repeated email within the file is a duplicate
+        ImportDeduplicator deduplicator = new ImportDeduplicator(
+                mode == ImportMode.UPSERT ? EmailIndex.empty() : loadEmailIndex(rows), rows.size());
+        List<ImportResult.Duplicate> duplicates = new ArrayList<>();
+        List<ImportRow> accepted = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            ImportResult.Duplicate duplicate = deduplicator.check(row.number, row.email);
+            if (duplicate != null) {
+                duplicates.add(duplicate);
+            } else {
+                accepted.add(row);
+            }
+        }
+        
+        if (mode == ImportMode.FAIL_FAST && !duplicates.isEmpty()) {
+            ImportResult.Duplicate first = duplicates.get(0);
+            throw new IllegalStateException("Import cancelled: " + duplicates.size()
+                    + " rows have an email that is already used, first at row " + first.getRow()
+                    + " (" + first.getEmail() + ")");
+        }
+        
+        if (mode == ImportMode.UPSERT) {
+            List<User> insertedUsers = new ArrayList<>();
+            ImportUpserter upserter = new ImportUpserter(userStore, passwordEncoder, upsertBatchSize);
+            upserter.upsert(accepted, (operation, user) -> {
+                changeFeedService.record(operation, user);
+                userDirectory.saved(user);
+                if (operation == UserChangeEvent.Operation.CREATED) {
+                    insertedUsers.add(user);
+                }
+            });
+            auditLog.record(AuditEvent.Action.IMPORT, null, "mode=upsert inserted=" + upserter.getInsertedCount()
+                    + " updated=" + upserter.getUpdatedCount() + " unchanged=" + upserter.getUnchangedCount()
+                    + " duplicates=" + duplicates.size());
+            return new ImportResult(mode, insertedUsers, duplicates, upserter.getInsertedCount(),
+                    upserter.getUpdatedCount(), upserter.getUnchangedCount());
+        }
+        
+        List<User> importedUsers = new ArrayList<>(accepted.size());
+        for (ImportRow row : accepted) {
+            User user = new User(row.name, row.email, row.password);
+            user.setPassword(passwordEncoder.encode(row.password));
+            User savedUser = userStore.save(user);
+            changeFeedService.record(UserChangeEvent.Operation.CREATED, savedUser);
+            userDirectory.saved(savedUser);
+            importedUsers.add(savedUser);
+        }
+        
+        auditLog.record(AuditEvent.Action.IMPORT, null, "mode=" + mode.name().toLowerCase(Locale.ROOT)
+                + " imported=" + importedUsers.size() + " duplicates=" + duplicates.size());
+        return new ImportResult(mode, importedUsers, duplicates, importedUsers.size(), 0, 0);
+    }
+    
+    private static void deleteSpooled(Path spooled) {
+        if (spooled != null) {
+            try {
+                Files.deleteIfExists(spooled);
+            } catch (IOException e) {
+                spooled.toFile().deleteOnExit();
+            }
+        }
+    }
+    
+    // Whole-table index when it fits the budget and the file is not tiny next to the table,
+    // otherwise a lookup of just the file's emails
+    private EmailIndex loadEmailIndex(List<ImportRow> rows) {
+        EmailIndex index = null;
+        if (rows.size() * 10L >= userStore.count()) {
+            index = EmailIndex.loadAll(userStore, emailIndexMaxBytes, emailIndexPageSize);
+        }
+        if (index == null) {
+            List<String> emails = new ArrayList<>(rows.size());
+            for (ImportRow row : rows) {
+                emails.add(row.email);
+            }
+            index = EmailIndex.loadMatching(userStore, emails, 500);
+        }
+        return index;
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public byte[] exportUsersToCSV() {
-        List<User> users = userRepository.findAll();
-        
-        try (StringWriter stringWriter = new StringWriter();
-             CSVWriter writer = new CSVWriter(stringWriter)) {
-            
-            // Write header (without ID)
-            writer.writeNext(new String[]{"Name", "Email", "Created At", "Updated At"});
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        exportUsersToCSV(bytes);
+        return bytes.toByteArray();
+    }
+    
+    // No transaction: the export workers read on their own connections, this thread needs none
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportUsersToCSV(OutputStream out) {
+        try {
+            parallelUserExporter.export(out);
+        } catch (IOException e) {
+            throw new RuntimeException("Error exporting CSV file: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public ExportCursor getExportCursorSince(LocalDateTime since) {
+        long sequence = changeFeedService.getSequenceBefore(since);
+        return sequence < 0 ? null : new ExportCursor(sequence);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public boolean isExportCursorRetained(ExportCursor cursor) {
+        return changeFeedService.isRetainedAfter(cursor.getSequence());
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public ExportCursor getExportHighWaterMark(ExportCursor from) {
+        // Pin the upper bound before streaming so the returned cursor matches exactly what was exported.
+        // No transaction can still commit a change below it, however late it commits.
+        return new ExportCursor(Math.max(from.getSequence(), changeFeedService.getCommittedSequence()));
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public void exportChangedUsersToCSV(ExportCursor from, ExportCursor until, OutputStream out) {
+        try {
+            CSVWriter writer = new CSVWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+            writer.writeNext(new String[]{"Change", "Id", "Name", "Email", "Created At", "Updated At"});
             
-            // Write data (without ID)
-            for (User user : users) {
-                writer.writeNext(new String[]{
-                    user.getName(),
-                    user.getEmail(),
-                    user.getCreatedAt() != null ? user.getCreatedAt().toString() : "",
-                    user.getUpdatedAt() != null ? user.getUpdatedAt().toString() : ""
-                });
+            // Users changed in (from, until] of the change feed, a page of changes at a time: the current
+            // row of each, or a tombstone when it is gone. A user changed again after until is written as
+            // it is now, and once more by the next export.
+            long position = from.getSequence();
+            while (position < until.getSequence()) {
+                List<UserChangeEvent> changes = changeEventRepository.findBySequenceBetweenOrderBySequenceAsc(
+                        position + 1, until.getSequence(), PageRequest.of(0, exportBatchSize));
+                if (changes.isEmpty()) {
+                    break;
+                }
+                Map<Long, UserChangeEvent> lastChanges = new LinkedHashMap<>();
+                for (UserChangeEvent change : changes) {
+                    lastChanges.remove(change.getUserId());
+                    lastChanges.put(change.getUserId(), change);
+                }
+                Map<Long, User> current = new HashMap<>();
+                for (User user : userStore.findAllById(lastChanges.keySet())) {
+                    current.put(user.getId(), user);
+                }
+                for (UserChangeEvent change : lastChanges.values()) {
+                    User user = current.get(change.getUserId());
+                    if (user != null) {
+                        writer.writeNext(new String[]{
+                            "UPSERT",
+                            String.valueOf(user.getId()),
+                            user.getName(),
+                            user.getEmail(),
+                            user.getCreatedAt() != null ? user.getCreatedAt().toString() : "",
+                            user.getUpdatedAt() != null ? user.getUpdatedAt().toString() : ""
+                        });
+                    } else {
+                        writer.writeNext(new String[]{
+                            "DELETE",
+                            String.valueOf(change.getUserId()),
+                            change.getName(),
+                            change.getEmail(),
+                            "",
+                            change.getOccurredAt().toString()
+                        });
+                    }
+                }
+                writer.flush();
+                entityManager.clear();
+                position = changes.get(changes.size() - 1).getSequence();
             }
-            
-            return stringWriter.toString().getBytes(StandardCharsets.UTF_8);
         } catch (IOException e) {
             throw new RuntimeException("Error exporting CSV file: " + e.getMessage(), e);
         }
@@ -190,7 +636,6 @@ public class UserServiceImpl implements UserService {
     
     @Override
     public List<User> getAllUsers() {
-        return userRepository.findAll();
+        return userStore.findAll();
     }
 }
-
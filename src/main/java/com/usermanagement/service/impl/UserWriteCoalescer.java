@@ -0,0 +1,285 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.service.ChangeFeedService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Write-behind for profile edits (name changes with the same email and no new password).
+ * <p>
+ * Updates to the same user merge in memory and are written as one batched UPDATE per window.
+ * An update is acknowledged once it is appended to the local journal, and the journal is replayed
+ * on the next start if the process dies before the flush.
+ * <p>
+ * Consistency: on the accepting node {@code getUserById}, {@code findByEmail} and further updates
+ * see pending edits immediately. Listings, search, exports, the change feed and other nodes see them
+ * after the flush, at most one window plus the flush time later. Each update carries the time it was
+ * accepted and is only applied over an older row, so a synchronous write (email or password change,
+ * delete) always wins over an edit accepted before it, including one replayed from the journal.
+ */
+@Component
+class UserWriteCoalescer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserWriteCoalescer.class);
+    
+    private static final String UPDATE_SQL =
+            "UPDATE users SET name = ?, updated_at = ?, version = version + 1 WHERE id = ? AND (updated_at IS NULL OR updated_at < ?)"
+                    + " AND deleted_at IS NULL";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @Value("${app.write-coalescing.enabled:false}")
+    private boolean enabled;
+    
+    // Must be on a persistent volume, a journal on an ephemeral pod disk is lost with the pod
+    @Value("${app.write-coalescing.journal-dir:data/write-journal}")
+    private String journalDir;
+    
+    @Value("${app.write-coalescing.journal-fsync:true}")
+    private boolean journalFsync;
+    
+    @Value("${app.write-coalescing.max-batch-size:500}")
+    private int maxBatchSize;
+    
+    private final Object lock = new Object();
+    
+    // Guarded by lock
+    private Map<Long, User> pending = new LinkedHashMap<>();
+    private Map<Long, User> inFlight = Map.of();
+    private final List<Path> unflushedSegments = new ArrayList<>();
+    
+    private UpdateJournal journal;
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // A flush requested from inside a service transaction must not roll back with it
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        journal = UpdateJournal.open(Paths.get(journalDir), journalFsync);
+    }
+    
+    // Replayed once the application is up, so the schema exists and new updates merge on top
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayJournal() {
+        if (!enabled || journal.getRecoveredSegments().isEmpty()) {
+            return;
+        }
+        Map<Long, User> replayed = new LinkedHashMap<>();
+        try {
+            for (Path segment : journal.getRecoveredSegments()) {
+                for (User update : UpdateJournal.read(segment)) {
+                    replayed.put(update.getId(), update);
+                }
+            }
+        } catch (IOException e) {
+            // Leave the segments in place for the next start rather than dropping updates
+            logger.error("Could not read write journal in {}", journalDir, e);
+            return;
+        }
+        logger.info("Replaying {} journaled profile updates", replayed.size());
+        synchronized (lock) {
+            replayed.putAll(pending);
+            pending = replayed;
+            unflushedSegments.addAll(journal.getRecoveredSegments());
+        }
+        flush();
+    }
+    
+    // Whether the update could be deferred at all, before looking up the user it applies to
+    boolean accepts(User update) {
+        return enabled
+                && update.getName() != null
+                && (update.getPassword() == null || update.getPassword().isEmpty());
+    }
+    
+    boolean canCoalesce(User current, User update) {
+        return accepts(update) && Objects.equals(current.getEmail(), update.getEmail());
+    }
+    
+    // Latest accepted but not yet written state of a user, as a detached copy. Entries replayed from
+    // the journal only carry the edited fields and are not returned here, see overlay()
+    Optional<User> getPendingView(Long id) {
+        return findPending(id)
+                .filter(view -> view.getPassword() != null)
+                .map(User::new);
+    }
+    
+    // Applies a pending edit to a row read from the database
+    User overlay(User user) {
+        Optional<User> edit = findPending(user.getId());
+        if (edit.isEmpty()) {
+            return user;
+        }
+        User view = new User(user);
+        view.setName(edit.get().getName());
+        view.setUpdatedAt(edit.get().getUpdatedAt());
+        // Not known until the edit is written
+        view.setVersion(null);
+        return view;
+    }
+    
+    User submit(User current, String name) {
+        User view = new User(current);
+        view.setName(name);
+        view.setUpdatedAt(LocalDateTime.now());
+        view.setVersion(null);
+        synchronized (lock) {
+            try {
+                journal.append(view);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not journal update for user " + view.getId(), e);
+            }
+            pending.put(view.getId(), view);
+        }
+        return new User(view);
+    }
+    
+    // Called before a synchronous write to the same user; the journaled copy is outdated by updated_at
+    void discard(Long id) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            pending.remove(id);
+        }
+    }
+    
+    /**
+     * Writes the pending edit to a user, if there is one, before a write that is checked against the
+     * user's version: the edit was acknowledged, so it moves the version first. False when it is
+     * still pending afterwards because the flush failed.
+     */
+    boolean flushPending(Long id) {
+        if (findPending(id).isEmpty()) {
+            return true;
+        }
+        flush();
+        return findPending(id).isEmpty();
+    }
+    
+    @Scheduled(fixedDelayString = "${app.write-coalescing.window-ms:200}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+        Map<Long, User> batch;
+        List<Path> segments;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                unflushedSegments.add(journal.rotate());
+            } catch (IOException e) {
+                logger.error("Could not rotate write journal, retrying on the next flush", e);
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            inFlight = batch;
+            segments = new ArrayList<>(unflushedSegments);
+        }
+        
+        try {
+            write(new ArrayList<>(batch.values()));
+        } catch (RuntimeException e) {
+            logger.warn("Flushing {} coalesced updates failed, retrying on the next flush", batch.size(), e);
+            synchronized (lock) {
+                // Updates accepted during the attempt are newer and win
+                batch.putAll(pending);
+                pending = batch;
+                inFlight = Map.of();
+            }
+            return;
+        }
+        
+        synchronized (lock) {
+            inFlight = Map.of();
+            unflushedSegments.removeAll(segments);
+        }
+        try {
+            journal.delete(segments);
+        } catch (IOException e) {
+            // Harmless: replaying an applied update is a no-op because of the updated_at guard
+            logger.warn("Could not delete flushed journal segments", e);
+        }
+    }
+    
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        journal.close();
+    }
+    
+    private void write(List<User> updates) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, updates, maxBatchSize, (ps, update) -> {
+                ps.setString(1, update.getName());
+                ps.setObject(2, update.getUpdatedAt());
+                ps.setLong(3, update.getId());
+                ps.setObject(4, update.getUpdatedAt());
+            });
+            // One outbox row per user that actually changed, in the same transaction as the UPDATE
+            int index = 0;
+            for (int[] chunk : counts) {
+                for (int count : chunk) {
+                    User update = updates.get(index++);
+                    if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                        changeFeedService.record(UserChangeEvent.Operation.UPDATED, update);
+                    }
+                }
+            }
+        });
+    }
+    
+    private Optional<User> findPending(Long id) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        synchronized (lock) {
+            User edit = pending.get(id);
+            return Optional.ofNullable(edit != null ? edit : inFlight.get(id));
+        }
+    }
+}
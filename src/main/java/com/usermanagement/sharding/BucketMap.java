@@ -0,0 +1,173 @@
+package com.usermanagement.sharding;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which shard owns each bucket, cached from the shard_buckets catalog on shard 0.
+ * <p>
+ * While a bucket moves, its rows exist on both shards. The owner serves it until the switch, and
+ * scatter queries skip the other copy: the target's rows while copying, the source's while they
+ * are drained. Every node reloads the map each app.sharding.bucket-map-reload-ms; the rebalancer
+ * waits that long after each state change so all nodes agree before it takes the next step.
+ */
+@Component
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+class BucketMap {
+    
+    enum State {
+        ACTIVE,
+        // Rows are being copied to other_shard; writes still go to the owner
+        COPYING,
+        // Final catch-up copy to other_shard; writes to the bucket are rejected
+        FROZEN,
+        // Owner switched; leftover rows on other_shard are being deleted
+        DRAINING
+    }
+    
+    private static final Logger logger = LoggerFactory.getLogger(BucketMap.class);
+    
+    @Autowired
+    private ShardSet shards;
+    
+    @Value("${app.sharding.bucket-map-reload-ms:5000}")
+    private long reloadIntervalMs;
+    
+    private volatile Snapshot snapshot;
+    
+    @PostConstruct
+    public void init() {
+        JdbcTemplate catalog = shards.catalog().getJdbcTemplate();
+        Integer assigned = catalog.queryForObject("SELECT COUNT(*) FROM shard_buckets", Integer.class);
+        if (assigned == null || assigned == 0) {
+            // First start: spread the buckets round-robin over the configured shards
+            try {
+                shards.catalog().getTransactionTemplate().executeWithoutResult(status -> {
+                    List<Object[]> rows = new ArrayList<>(ShardRouting.BUCKETS);
+                    for (int bucket = 0; bucket < ShardRouting.BUCKETS; bucket++) {
+                        rows.add(new Object[] {bucket, bucket % shards.size(), State.ACTIVE.name()});
+                    }
+                    catalog.batchUpdate(
+                            "INSERT INTO shard_buckets (bucket, owner_shard, other_shard, state) VALUES (?, ?, NULL, ?)", rows);
+                });
+                logger.info("Assigned {} buckets to {} shards", ShardRouting.BUCKETS, shards.size());
+            } catch (DuplicateKeyException e) {
+                logger.debug("Bucket map was initialized concurrently by another node");
+            }
+        }
+        reload();
+    }
+    
+    @Scheduled(fixedDelayString = "${app.sharding.bucket-map-reload-ms:5000}")
+    public void reload() {
+        int[] owners = new int[ShardRouting.BUCKETS];
+        int[] others = new int[ShardRouting.BUCKETS];
+        State[] states = new State[ShardRouting.BUCKETS];
+        int[] loaded = {0};
+        shards.catalog().getJdbcTemplate().query(
+                "SELECT bucket, owner_shard, other_shard, state FROM shard_buckets",
+                rs -> {
+                    int bucket = rs.getInt(1);
+                    owners[bucket] = rs.getInt(2);
+                    int other = rs.getInt(3);
+                    others[bucket] = rs.wasNull() ? -1 : other;
+                    states[bucket] = State.valueOf(rs.getString(4));
+                    loaded[0]++;
+                });
+        if (loaded[0] != ShardRouting.BUCKETS) {
+            throw new IllegalStateException("shard_buckets has " + loaded[0] + " rows, expected " + ShardRouting.BUCKETS);
+        }
+        for (int bucket = 0; bucket < ShardRouting.BUCKETS; bucket++) {
+            if (owners[bucket] >= shards.size() || others[bucket] >= shards.size()) {
+                throw new IllegalStateException("Bucket " + bucket + " is assigned to a shard beyond the "
+                        + shards.size() + " configured in app.sharding.urls");
+            }
+        }
+        snapshot = new Snapshot(owners, others, states, shards.size());
+    }
+    
+    Shard ownerOf(int bucket) {
+        return shards.get(snapshot.owners[bucket]);
+    }
+    
+    int ownerIndexOf(int bucket) {
+        return snapshot.owners[bucket];
+    }
+    
+    int otherIndexOf(int bucket) {
+        return snapshot.others[bucket];
+    }
+    
+    State stateOf(int bucket) {
+        return snapshot.states[bucket];
+    }
+    
+    /**
+     * Buckets whose rows on the given shard must be ignored by scatter queries, as a SQL condition
+     * on the bucket column ("" when there are none, which is almost always).
+     */
+    String ownedRowsCondition(int shard) {
+        return snapshot.conditions[shard];
+    }
+    
+    long getReloadIntervalMs() {
+        return reloadIntervalMs;
+    }
+    
+    void update(int bucket, int owner, int other, State state) {
+        shards.catalog().getJdbcTemplate().update(
+                "UPDATE shard_buckets SET owner_shard = ?, other_shard = ?, state = ? WHERE bucket = ?",
+                owner, other < 0 ? null : other, state.name(), bucket);
+        reload();
+    }
+    
+    private static final class Snapshot {
+        
+        private final int[] owners;
+        private final int[] others;
+        private final State[] states;
+        private final String[] conditions;
+        
+        private Snapshot(int[] owners, int[] others, State[] states, int shardCount) {
+            this.owners = owners;
+            this.others = others;
+            this.states = states;
+            List<List<Integer>> foreign = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                foreign.add(new ArrayList<>());
+            }
+            for (int bucket = 0; bucket < owners.length; bucket++) {
+                if (states[bucket] != State.ACTIVE && others[bucket] >= 0) {
+                    foreign.get(others[bucket]).add(bucket);
+                }
+            }
+            this.conditions = new String[shardCount];
+            for (int shard = 0; shard < shardCount; shard++) {
+                List<Integer> buckets = foreign.get(shard);
+                conditions[shard] = buckets.isEmpty() ? "" : " AND bucket NOT IN (" + joined(buckets) + ")";
+            }
+        }
+        
+        private static String joined(List<Integer> buckets) {
+            StringBuilder sb = new StringBuilder();
+            for (Integer bucket : buckets) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(bucket);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.usermanagement.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// One database holding a users table; shard 0 also holds the catalog tables
+final class Shard {
+    
+    private final int index;
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    Shard(int index, HikariDataSource dataSource) {
+        this.index = index;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+    
+    int getIndex() {
+        return index;
+    }
+    
+    JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+    
+    TransactionTemplate getTransactionTemplate() {
+        return transactionTemplate;
+    }
+    
+    void close() {
+        dataSource.close();
+    }
+    
+    @Override
+    public String toString() {
+        return "shard " + index + " (" + dataSource.getJdbcUrl() + ")";
+    }
+}
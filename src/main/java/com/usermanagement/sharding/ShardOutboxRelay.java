@@ -0,0 +1,88 @@
+package com.usermanagement.sharding;
+
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.UserChangeEventRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves the change feed rows each shard writes with its user rows into user_change_events on the
+ * primary, where every consumer of the feed reads them.
+ * <p>
+ * A batch is locked on its shard, committed on the primary, then deleted from the shard. Nodes
+ * relaying the same shard take turns on the lock. A failure between the two commits relays the
+ * batch again, so a change can appear twice in the feed; the cache, the user directory and the
+ * delta export apply a repeated change harmlessly.
+ */
+@Component
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+class ShardOutboxRelay {
+    
+    @Autowired
+    private ShardSet shards;
+    
+    @Autowired
+    private UserChangeEventRepository changeEventRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${app.sharding.outbox.batch-size:500}")
+    private int batchSize;
+    
+    private TransactionTemplate primaryTransaction;
+    
+    @PostConstruct
+    public void init() {
+        primaryTransaction = new TransactionTemplate(transactionManager);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.sharding.outbox.relay-interval-ms:200}")
+    public void relayAll() {
+        shards.fanOut(this::relay);
+    }
+    
+    // Relays every row the shard holds now and returns how many
+    int relay(Shard shard) {
+        JdbcTemplate jdbcTemplate = shard.getJdbcTemplate();
+        int total = 0;
+        while (true) {
+            Integer relayed = shard.getTransactionTemplate().execute(status -> {
+                List<UserChangeEvent> changes = new ArrayList<>();
+                List<Object[]> ids = new ArrayList<>();
+                jdbcTemplate.query("SELECT id, user_id, operation, name, email, occurred_at FROM user_change_outbox "
+                        + "ORDER BY id LIMIT ? FOR UPDATE", rs -> {
+                    UserChangeEvent change = new UserChangeEvent();
+                    change.setUserId(rs.getLong("user_id"));
+                    change.setOperation(UserChangeEvent.Operation.valueOf(rs.getString("operation")));
+                    change.setName(rs.getString("name"));
+                    change.setEmail(rs.getString("email"));
+                    change.setOccurredAt(rs.getObject("occurred_at", LocalDateTime.class));
+                    changes.add(change);
+                    ids.add(new Object[] {rs.getLong("id")});
+                }, batchSize);
+                if (changes.isEmpty()) {
+                    return 0;
+                }
+                primaryTransaction.executeWithoutResult(primary -> changeEventRepository.saveAll(changes));
+                jdbcTemplate.batchUpdate("DELETE FROM user_change_outbox WHERE id = ?", ids);
+                return changes.size();
+            });
+            total += relayed;
+            if (relayed < batchSize) {
+                return total;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.usermanagement.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebalancing as a one-off command, next to the running application:
+ * <pre>
+ * java -jar user-management.jar --spring.main.web-application-type=none \
+ *     --app.sharding.enabled=true --app.sharding.rebalance=true [--app.sharding.rebalance.bucket=17 --app.sharding.rebalance.target=2]
+ * </pre>
+ * Without a bucket it evens out the number of buckets per shard, e.g. after adding a shard to app.sharding.urls.
+ * Scheduled jobs stay off in this process (see SchedulingConfig); the running nodes keep doing them.
+ */
+@Component
+@ConditionalOnProperty(name = {"app.sharding.enabled", "app.sharding.rebalance"}, havingValue = "true")
+class ShardRebalanceRunner implements ApplicationRunner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalanceRunner.class);
+    
+    @Autowired
+    private ShardRebalancer rebalancer;
+    
+    @Autowired
+    private ApplicationContext context;
+    
+    @Value("${app.sharding.rebalance.bucket:-1}")
+    private int bucket;
+    
+    @Value("${app.sharding.rebalance.target:-1}")
+    private int target;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode = 0;
+        try {
+            if (bucket >= 0) {
+                rebalancer.resumeInterrupted();
+                rebalancer.moveBucket(bucket, target);
+            } else {
+                logger.info("Rebalance finished with {} bucket moves", rebalancer.rebalance());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Rebalance failed", e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
@@ -0,0 +1,267 @@
+package com.usermanagement.sharding;
+
+import com.usermanagement.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Moves buckets of users between shards, one bucket at a time, while the application keeps serving.
+ * <p>
+ * A move copies the bucket to the target while writes continue on the source, then freezes writes
+ * to that bucket, relays the source's pending change feed rows and compares every row of the bucket
+ * on both shards to copy the ones changed meanwhile, switches the owner and deletes the source
+ * rows. Writes to a frozen bucket fail and can be retried. Every step is recorded in shard_buckets,
+ * so an interrupted move is finished by the next run.
+ */
+@Component
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+class ShardRebalancer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalancer.class);
+    
+    @Autowired
+    private ShardSet shards;
+    
+    @Autowired
+    private BucketMap bucketMap;
+    
+    @Autowired
+    private ShardOutboxRelay outboxRelay;
+    
+    @Value("${app.sharding.rebalance.batch-size:1000}")
+    private int batchSize;
+    
+    // Margin for writes in flight when the map changes, on top of the map reload interval
+    @Value("${app.sharding.rebalance.settle-ms:2000}")
+    private long settleMs;
+    
+    /**
+     * Finishes interrupted moves, then moves buckets from the fullest shards to the emptiest until
+     * every shard owns the same number of buckets, give or take one. Returns the number of moves.
+     */
+    int rebalance() {
+        resumeInterrupted();
+        
+        List<List<Integer>> owned = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            owned.add(new ArrayList<>());
+        }
+        for (int bucket = 0; bucket < ShardRouting.BUCKETS; bucket++) {
+            owned.get(bucketMap.ownerIndexOf(bucket)).add(bucket);
+        }
+        
+        int moves = 0;
+        while (true) {
+            int fullest = 0;
+            int emptiest = 0;
+            for (int shard = 1; shard < owned.size(); shard++) {
+                if (owned.get(shard).size() > owned.get(fullest).size()) {
+                    fullest = shard;
+                }
+                if (owned.get(shard).size() < owned.get(emptiest).size()) {
+                    emptiest = shard;
+                }
+            }
+            if (owned.get(fullest).size() - owned.get(emptiest).size() <= 1) {
+                return moves;
+            }
+            List<Integer> source = owned.get(fullest);
+            int bucket = source.remove(source.size() - 1);
+            moveBucket(bucket, emptiest);
+            owned.get(emptiest).add(bucket);
+            moves++;
+        }
+    }
+    
+    void resumeInterrupted() {
+        for (int bucket = 0; bucket < ShardRouting.BUCKETS; bucket++) {
+            BucketMap.State state = bucketMap.stateOf(bucket);
+            if (state == BucketMap.State.COPYING || state == BucketMap.State.FROZEN) {
+                logger.info("Resuming move of bucket {} to shard {}", bucket, bucketMap.otherIndexOf(bucket));
+                moveBucket(bucket, bucketMap.otherIndexOf(bucket));
+            } else if (state == BucketMap.State.DRAINING) {
+                logger.info("Resuming drain of bucket {} from shard {}", bucket, bucketMap.otherIndexOf(bucket));
+                drain(bucket, bucketMap.ownerIndexOf(bucket), bucketMap.otherIndexOf(bucket));
+            }
+        }
+    }
+    
+    void moveBucket(int bucket, int target) {
+        if (bucket < 0 || bucket >= ShardRouting.BUCKETS || target < 0 || target >= shards.size()) {
+            throw new IllegalArgumentException("Cannot move bucket " + bucket + " to shard " + target
+                    + ": there are " + ShardRouting.BUCKETS + " buckets and " + shards.size() + " shards");
+        }
+        int source = bucketMap.ownerIndexOf(bucket);
+        if (source == target) {
+            return;
+        }
+        if (bucketMap.stateOf(bucket) == BucketMap.State.DRAINING) {
+            throw new IllegalStateException("Bucket " + bucket + " is still being drained from shard " + bucketMap.otherIndexOf(bucket));
+        }
+        JdbcTemplate from = shards.get(source).getJdbcTemplate();
+        Shard to = shards.get(target);
+        long started = System.currentTimeMillis();
+        
+        // Every node must hide the target's partial copy from scatter queries before it appears
+        bucketMap.update(bucket, source, target, BucketMap.State.COPYING);
+        awaitOtherNodes();
+        int copied = copy(from, to, bucket);
+        
+        bucketMap.update(bucket, source, target, BucketMap.State.FROZEN);
+        awaitOtherNodes();
+        // Changes of the bucket reach the feed before the target's, which follow the switch
+        outboxRelay.relay(shards.get(source));
+        int caughtUp = catchUp(from, to, bucket);
+        int removed = removeDeleted(from, to.getJdbcTemplate(), bucket);
+        
+        bucketMap.update(bucket, target, source, BucketMap.State.DRAINING);
+        awaitOtherNodes();
+        drain(bucket, target, source);
+        
+        logger.info("Moved bucket {} from shard {} to shard {}: {} rows copied, {} caught up, {} deletions, {} ms",
+                bucket, source, target, copied, caughtUp, removed, System.currentTimeMillis() - started);
+    }
+    
+    private int copy(JdbcTemplate from, Shard to, int bucket) {
+        int copied = 0;
+        long lastId = -1;
+        while (true) {
+            List<User> batch = sourceRows(from, bucket, lastId);
+            if (batch.isEmpty()) {
+                return copied;
+            }
+            replace(to, batch, bucket);
+            copied += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+    
+    /**
+     * With writes frozen, makes every live row of the bucket on the target equal to the source's and
+     * returns how many it had to copy. Compares whole rows, since not every write moves updated_at
+     * (last logins do not).
+     */
+    private int catchUp(JdbcTemplate from, Shard to, int bucket) {
+        int changed = 0;
+        long lastId = -1;
+        while (true) {
+            List<User> batch = sourceRows(from, bucket, lastId);
+            if (batch.isEmpty()) {
+                return changed;
+            }
+            long upTo = batch.get(batch.size() - 1).getId();
+            Map<Long, User> copies = new HashMap<>();
+            for (User copy : to.getJdbcTemplate().query(
+                    "SELECT " + ShardedUserRepository.COLUMNS + " FROM users WHERE bucket = ? AND id > ? AND id <= ?",
+                    ShardedUserRepository.USER_ROW_MAPPER, bucket, lastId, upTo)) {
+                copies.put(copy.getId(), copy);
+            }
+            List<User> stale = new ArrayList<>();
+            for (User user : batch) {
+                if (!sameRow(user, copies.get(user.getId()))) {
+                    stale.add(user);
+                }
+            }
+            if (!stale.isEmpty()) {
+                replace(to, stale, bucket);
+            }
+            changed += stale.size();
+            lastId = upTo;
+        }
+    }
+    
+    private List<User> sourceRows(JdbcTemplate from, int bucket, long afterId) {
+        return from.query(
+                "SELECT " + ShardedUserRepository.COLUMNS + " FROM users WHERE bucket = ? AND id > ? AND deleted_at IS NULL"
+                        + " ORDER BY id LIMIT ?",
+                ShardedUserRepository.USER_ROW_MAPPER, bucket, afterId, batchSize);
+    }
+    
+    private static boolean sameRow(User user, User copy) {
+        return copy != null
+                && Objects.equals(user.getName(), copy.getName())
+                && Objects.equals(user.getEmail(), copy.getEmail())
+                && Objects.equals(user.getPassword(), copy.getPassword())
+                && Objects.equals(user.getCreatedAt(), copy.getCreatedAt())
+                && Objects.equals(user.getUpdatedAt(), copy.getUpdatedAt())
+                && Objects.equals(user.getVersion(), copy.getVersion())
+                && Objects.equals(user.getLastLoginAt(), copy.getLastLoginAt());
+    }
+    
+    // Delete and insert in one transaction: the portable upsert for H2 and MySQL
+    private static void replace(Shard to, List<User> batch, int bucket) {
+        List<Object[]> ids = new ArrayList<>(batch.size());
+        List<Object[]> emails = new ArrayList<>(batch.size());
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (User user : batch) {
+            ids.add(new Object[] {user.getId()});
+            emails.add(new Object[] {bucket, user.getEmail()});
+            rows.add(new Object[] {user.getId(), user.getName(), user.getEmail(), user.getPassword(),
+                    user.getCreatedAt(), user.getUpdatedAt(), user.getVersion(), user.getLastLoginAt(), bucket});
+        }
+        to.getTransactionTemplate().executeWithoutResult(status -> {
+            to.getJdbcTemplate().batchUpdate("DELETE FROM users WHERE id = ?", ids);
+            // An outdated copy of another user of the bucket may still hold the email, one that changed
+            // it or was deleted since; the target owns none of the bucket's rows yet, and the user is
+            // copied again when reached, or removed with the deleted ones
+            to.getJdbcTemplate().batchUpdate("DELETE FROM users WHERE bucket = ? AND email = ?", emails);
+            to.getJdbcTemplate().batchUpdate(
+                    "INSERT INTO users (" + ShardedUserRepository.COLUMNS + ", bucket) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        });
+    }
+    
+    // Users deleted from the source during the bulk copy
+    private static int removeDeleted(JdbcTemplate from, JdbcTemplate to, int bucket) {
+        Set<Long> remaining = new HashSet<>(
+                from.queryForList("SELECT id FROM users WHERE bucket = ? AND deleted_at IS NULL", Long.class, bucket));
+        List<Object[]> deleted = new ArrayList<>();
+        for (Long id : to.queryForList("SELECT id FROM users WHERE bucket = ?", Long.class, bucket)) {
+            if (!remaining.contains(id)) {
+                deleted.add(new Object[] {id});
+            }
+        }
+        if (!deleted.isEmpty()) {
+            to.batchUpdate("DELETE FROM users WHERE id = ?", deleted);
+        }
+        return deleted.size();
+    }
+    
+    private void drain(int bucket, int owner, int previousOwner) {
+        JdbcTemplate from = shards.get(previousOwner).getJdbcTemplate();
+        while (true) {
+            List<Long> ids = from.queryForList(
+                    "SELECT id FROM users WHERE bucket = ? ORDER BY id LIMIT ?", Long.class, bucket, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Object[]> batch = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                batch.add(new Object[] {id});
+            }
+            from.batchUpdate("DELETE FROM users WHERE id = ?", batch);
+        }
+        bucketMap.update(bucket, owner, -1, BucketMap.State.ACTIVE);
+    }
+    
+    private void awaitOtherNodes() {
+        try {
+            Thread.sleep(bucketMap.getReloadIntervalMs() + settleMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while moving a bucket; the next rebalance run resumes it", e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.usermanagement.sharding;
+
+import java.util.Locale;
+
+/**
+ * Placement of users on shards.
+ * <p>
+ * A user belongs to one of 1024 buckets, chosen from the hash of the email at creation and kept in
+ * the low 10 bits of the id, so lookups by id go straight to the right shard. Buckets are assigned
+ * to shards in the shard_buckets catalog and move between shards as a whole. The bucket count is
+ * part of every id and cannot change once users exist.
+ */
+final class ShardRouting {
+    
+    static final int BUCKET_BITS = 10;
+    static final int BUCKETS = 1 << BUCKET_BITS;
+    
+    private ShardRouting() {
+    }
+    
+    static int bucketOfEmail(String email) {
+        int h = email.trim().toLowerCase(Locale.ROOT).hashCode();
+        // MurmurHash3 finalizer: String.hashCode alone puts similar emails in neighbouring buckets
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & (BUCKETS - 1);
+    }
+    
+    static int bucketOfId(long id) {
+        return (int) (id & (BUCKETS - 1));
+    }
+    
+    static long composeId(long sequence, int bucket) {
+        return (sequence << BUCKET_BITS) | bucket;
+    }
+}
@@ -0,0 +1,86 @@
+package com.usermanagement.sharding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The configured shards and the pool that runs scatter-gather queries against them.
+ * The data sources are not Spring beans, so the primary datasource auto-configuration is unaffected.
+ */
+final class ShardSet {
+    
+    private final List<Shard> shards;
+    private final ExecutorService fanOutPool;
+    
+    ShardSet(List<Shard> shards, int fanOutThreads) {
+        this.shards = List.copyOf(shards);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fanOutPool = Executors.newFixedThreadPool(fanOutThreads, runnable -> {
+            Thread thread = new Thread(runnable, "shard-fan-out-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    int size() {
+        return shards.size();
+    }
+    
+    Shard get(int index) {
+        return shards.get(index);
+    }
+    
+    List<Shard> all() {
+        return shards;
+    }
+    
+    // Shard 0 holds the bucket map and the id allocator
+    Shard catalog() {
+        return shards.get(0);
+    }
+    
+    /**
+     * Runs the query on every shard in parallel and returns the results in shard order.
+     * The first failure is rethrown once all shards have answered.
+     */
+    <T> List<T> fanOut(Function<Shard, T> query) {
+        if (shards.size() == 1) {
+            return List.of(query.apply(shards.get(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            futures.add(fanOutPool.submit(() -> query.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        RuntimeException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtime
+                            ? runtime : new IllegalStateException("Shard query failed", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting for shards", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+    
+    void close() {
+        fanOutPool.shutdownNow();
+        shards.forEach(Shard::close);
+    }
+}
@@ -0,0 +1,583 @@
+package com.usermanagement.sharding;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.UserStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Users spread over the shards in {@link ShardSet}.
+ * <p>
+ * Lookups by id go to the shard owning the id's bucket. Lookups by email try the shard of the
+ * email's bucket first and fan out to the others on a miss, since a user who changed email keeps
+ * the bucket of the original one. Listings, search and export ask every shard for its first
+ * offset + size rows and merge them in id order, so deep pages cost more than on a single table.
+ * <p>
+ * Each shard enforces email uniqueness only for its own rows. Across shards a user first claims
+ * the email in user_emails on shard 0; a claim whose holder no longer has the email, once older
+ * than app.sharding.email-claim-timeout-ms, is taken over. Users written before claims existed
+ * hold none, so the service's existsByEmail check still guards them.
+ * <p>
+ * Every write also inserts its change feed row into the shard's user_change_outbox in the same
+ * shard transaction, and {@link ShardOutboxRelay} moves those rows to the primary.
+ * <p>
+ * Soft-deleted rows are left out of every query here until {@link #purgeDeleted(int)} removes them.
+ * <p>
+ * Archived users stay in the users_archive table of the shard they were archived from, whichever
+ * shard owns their bucket by the time they are restored.
+ */
+@Component
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+class ShardedUserRepository implements UserStore {
+    
+    static final String COLUMNS = "id, name, email, password, created_at, updated_at, version, last_login_at";
+    
+    static final RowMapper<User> USER_ROW_MAPPER = (rs, rowNum) -> {
+        User user = new User(rs.getString("name"), rs.getString("email"), rs.getString("password"));
+        user.setId(rs.getLong("id"));
+        user.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        user.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        user.setVersion(rs.getLong("version"));
+        user.setLastLoginAt(rs.getObject("last_login_at", LocalDateTime.class));
+        return user;
+    };
+    
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+    
+    private static final String LIVE = " AND deleted_at IS NULL";
+    private static final String SEARCH_CONDITION = "(LOWER(name) LIKE ? OR LOWER(email) LIKE ?)";
+    private static final String INACTIVE_CONDITION = "(last_login_at < ? OR (last_login_at IS NULL AND created_at < ?))";
+    
+    @Autowired
+    private ShardSet shards;
+    
+    @Autowired
+    private BucketMap bucketMap;
+    
+    @Autowired
+    private ShardIdAllocator idAllocator;
+    
+    // Longer than any write between claiming an email and committing the user row
+    @Value("${app.sharding.email-claim-timeout-ms:60000}")
+    private long emailClaimTimeoutMs;
+    
+    @Override
+    public Optional<User> findById(Long id) {
+        return queryOne(bucketMap.ownerOf(ShardRouting.bucketOfId(id)),
+                "SELECT " + COLUMNS + " FROM users WHERE id = ?" + LIVE, id);
+    }
+    
+    @Override
+    public Optional<User> findByEmail(String email) {
+        Shard home = bucketMap.ownerOf(ShardRouting.bucketOfEmail(email));
+        Optional<User> user = queryOne(home, "SELECT " + COLUMNS + " FROM users WHERE email = ?" + LIVE, email);
+        if (user.isPresent()) {
+            return user;
+        }
+        return shards.fanOut(shard -> shard == home ? Optional.<User>empty() : queryOne(shard,
+                        "SELECT " + COLUMNS + " FROM users WHERE email = ?" + LIVE
+                                + bucketMap.ownedRowsCondition(shard.getIndex()), email))
+                .stream()
+                .flatMap(Optional::stream)
+                .findFirst();
+    }
+    
+    @Override
+    public boolean existsByEmail(String email) {
+        return findByEmail(email).isPresent();
+    }
+    
+    @Override
+    public User save(User user) {
+        LocalDateTime now = LocalDateTime.now();
+        if (user.getId() == null) {
+            int bucket = ShardRouting.bucketOfEmail(user.getEmail());
+            checkWritable(bucket);
+            user.setId(idAllocator.nextId(bucket));
+            user.setCreatedAt(now);
+            user.setUpdatedAt(now);
+            user.setVersion(0L);
+            insert(bucketMap.ownerOf(bucket), user, bucket);
+        } else {
+            user.setUpdatedAt(now);
+            boolean updated = update(user,
+                    "UPDATE users SET name = ?, email = ?, password = ?, updated_at = ?, version = version + 1 WHERE id = ?" + LIVE,
+                    user.getName(), user.getEmail(), user.getPassword(), user.getUpdatedAt(), user.getId());
+            if (updated && user.getVersion() != null) {
+                user.setVersion(user.getVersion() + 1);
+            }
+        }
+        return user;
+    }
+    
+    @Override
+    public boolean updateIfVersion(User user, Long expectedVersion) {
+        Optional<User> holder = findByEmail(user.getEmail());
+        if (holder.isPresent() && !holder.get().getId().equals(user.getId())) {
+            throw new DuplicateKeyException("Email already exists: " + user.getEmail());
+        }
+        String sql = "UPDATE users SET name = ?, email = ?, password = COALESCE(?, password), updated_at = ?,"
+                + " version = version + 1 WHERE id = ?" + LIVE;
+        List<Object> args = new ArrayList<>(Arrays.asList(
+                user.getName(), user.getEmail(), user.getPassword(), user.getUpdatedAt(), user.getId()));
+        if (expectedVersion != null) {
+            sql += " AND version = ?";
+            args.add(expectedVersion);
+        }
+        return update(user, sql, args.toArray());
+    }
+    
+    @Override
+    public void delete(User user) {
+        int bucket = ShardRouting.bucketOfId(user.getId());
+        checkWritable(bucket);
+        Shard shard = bucketMap.ownerOf(bucket);
+        shard.getTransactionTemplate().executeWithoutResult(status -> {
+            recordChange(shard.getJdbcTemplate(), UserChangeEvent.Operation.DELETED, user.getId());
+            shard.getJdbcTemplate().update("DELETE FROM users WHERE id = ?", user.getId());
+        });
+        releaseEmails(List.<Object[]>of(new Object[] {user.getEmail(), user.getId()}));
+    }
+    
+    // The row keeps its email claim until it is purged, as it keeps the unique email on its shard
+    @Override
+    public boolean softDelete(Long id, LocalDateTime deletedAt) {
+        int bucket = ShardRouting.bucketOfId(id);
+        checkWritable(bucket);
+        Shard shard = bucketMap.ownerOf(bucket);
+        return Boolean.TRUE.equals(shard.getTransactionTemplate().execute(status -> {
+            if (shard.getJdbcTemplate().update("UPDATE users SET deleted_at = ? WHERE id = ?" + LIVE, deletedAt, id) == 0) {
+                return false;
+            }
+            recordChange(shard.getJdbcTemplate(), UserChangeEvent.Operation.DELETED, id);
+            return true;
+        }));
+    }
+    
+    // Every copy of a row goes, owned or not: a bucket move never copies soft-deleted rows
+    @Override
+    public int purgeDeleted(int limit) {
+        return (int) sum(shards.fanOut(shard -> (long) purge(shard,
+                "SELECT id, email FROM users WHERE deleted_at IS NOT NULL LIMIT ?", limit)));
+    }
+    
+    @Override
+    public int purgeDeleted(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", Collections.nCopies(emails.size(), "?"));
+        return (int) sum(shards.fanOut(shard -> (long) purge(shard,
+                "SELECT id, email FROM users WHERE deleted_at IS NOT NULL AND email IN (" + placeholders + ")", emails.toArray())));
+    }
+    
+    @Override
+    public long count() {
+        return sum(shards.fanOut(shard -> shard.getJdbcTemplate().queryForObject(
+                "SELECT COUNT(*) FROM users WHERE 1 = 1" + LIVE + bucketMap.ownedRowsCondition(shard.getIndex()),
+                Long.class)));
+    }
+    
+    @Override
+    public List<User> findAll() {
+        return merge(shards.fanOut(shard -> shard.getJdbcTemplate().query(
+                "SELECT " + COLUMNS + " FROM users WHERE 1 = 1" + LIVE + bucketMap.ownedRowsCondition(shard.getIndex())
+                        + " ORDER BY id", USER_ROW_MAPPER)), BY_ID, 0, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public Page<User> findAll(Pageable pageable) {
+        List<User> content = firstRows("1 = 1", new Object[0], pageable, 0);
+        return new PageImpl<>(content, pageable, count());
+    }
+    
+    @Override
+    public Slice<User> findAllBy(Pageable pageable) {
+        return slice(firstRows("1 = 1", new Object[0], pageable, 1), pageable);
+    }
+    
+    @Override
+    public Page<User> searchUsers(String keyword, Pageable pageable) {
+        List<User> content = firstRows(SEARCH_CONDITION, searchArgs(keyword), pageable, 0);
+        return new PageImpl<>(content, pageable, countSearchUsers(keyword));
+    }
+    
+    @Override
+    public Slice<User> searchUsersSlice(String keyword, Pageable pageable) {
+        return slice(firstRows(SEARCH_CONDITION, searchArgs(keyword), pageable, 1), pageable);
+    }
+    
+    @Override
+    public long countSearchUsers(String keyword) {
+        return sum(shards.fanOut(shard -> shard.getJdbcTemplate().queryForObject(
+                "SELECT COUNT(*) FROM users WHERE " + SEARCH_CONDITION + LIVE
+                        + bucketMap.ownedRowsCondition(shard.getIndex()),
+                Long.class, searchArgs(keyword))));
+    }
+    
+    // One IN query per shard, each id asked of the shard owning its bucket
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        Map<Shard, List<Long>> idsByShard = new HashMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(bucketMap.ownerOf(ShardRouting.bucketOfId(id)), shard -> new ArrayList<>()).add(id);
+        }
+        List<User> users = new ArrayList<>(ids.size());
+        idsByShard.forEach((shard, shardIds) -> users.addAll(shard.getJdbcTemplate().query(
+                "SELECT " + COLUMNS + " FROM users WHERE id IN ("
+                        + String.join(",", Collections.nCopies(shardIds.size(), "?")) + ")" + LIVE,
+                USER_ROW_MAPPER, shardIds.toArray())));
+        return users;
+    }
+    
+    // Skips frozen buckets: the time is kept again by the user's next login
+    @Override
+    public void recordLastLogins(Map<Long, LocalDateTime> lastLogins, Duration resolution) {
+        Map<Shard, List<Object[]>> rowsByShard = new HashMap<>();
+        lastLogins.forEach((id, at) -> {
+            int bucket = ShardRouting.bucketOfId(id);
+            if (bucketMap.stateOf(bucket) != BucketMap.State.FROZEN) {
+                rowsByShard.computeIfAbsent(bucketMap.ownerOf(bucket), shard -> new ArrayList<>())
+                        .add(new Object[] {at, id, at.minus(resolution)});
+            }
+        });
+        rowsByShard.forEach((shard, rows) -> shard.getJdbcTemplate().batchUpdate(
+                "UPDATE users SET last_login_at = ? WHERE id = ? AND (last_login_at IS NULL OR last_login_at < ?)", rows));
+    }
+    
+    // Each shard in its own transaction; buckets being moved are left for the next run
+    @Override
+    public List<User> archiveInactive(LocalDateTime cutoff, int limit) {
+        List<User> archived = new ArrayList<>();
+        for (List<User> users : shards.fanOut(shard -> shard.getTransactionTemplate().execute(
+                status -> archiveInactive(shard, cutoff, limit)))) {
+            archived.addAll(users);
+        }
+        List<Object[]> claims = new ArrayList<>(archived.size());
+        for (User user : archived) {
+            claims.add(new Object[] {user.getEmail(), user.getId()});
+        }
+        releaseEmails(claims);
+        return archived;
+    }
+    
+    @Override
+    public Optional<User> findArchived(String email) {
+        return findArchivedRow(email).map(row -> row.user);
+    }
+    
+    @Override
+    public Optional<User> restoreArchived(String email) {
+        Optional<ArchivedRow> found = findArchivedRow(email);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        ArchivedRow row = found.get();
+        User user = row.user;
+        if (findByEmail(email).isPresent()) {
+            throw new DuplicateKeyException("Email already exists: " + email);
+        }
+        checkWritable(row.bucket);
+        LocalDateTime now = LocalDateTime.now();
+        user.setLastLoginAt(now);
+        // A new version, so ETags and token claims issued before the archival no longer match
+        user.setUpdatedAt(now);
+        user.setVersion(user.getVersion() + 1);
+        insert(bucketMap.ownerOf(row.bucket), user, row.bucket);
+        // A concurrent restore of the same user fails on the primary key above, before this
+        row.shard.getJdbcTemplate().update("DELETE FROM users_archive WHERE id = ?", user.getId());
+        return Optional.of(user);
+    }
+    
+    @Override
+    public boolean recordsChanges() {
+        return true;
+    }
+    
+    @Override
+    public List<JdbcTemplate> getUserTables() {
+        List<JdbcTemplate> tables = new ArrayList<>(shards.size());
+        for (Shard shard : shards.all()) {
+            tables.add(shard.getJdbcTemplate());
+        }
+        return tables;
+    }
+    
+    @Override
+    public String ownedRowsCondition(int table) {
+        return bucketMap.ownedRowsCondition(table);
+    }
+    
+    // Claims the email, then writes the row and its change in one shard transaction
+    private void insert(Shard shard, User user, int bucket) {
+        claimEmail(user.getEmail(), user.getId());
+        try {
+            shard.getTransactionTemplate().executeWithoutResult(status -> {
+                shard.getJdbcTemplate().update(
+                        "INSERT INTO users (" + COLUMNS + ", bucket) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                        user.getId(), user.getName(), user.getEmail(), user.getPassword(), user.getCreatedAt(),
+                        user.getUpdatedAt(), user.getVersion(), user.getLastLoginAt(), bucket);
+                recordChange(shard.getJdbcTemplate(), UserChangeEvent.Operation.CREATED, user.getId());
+            });
+        } catch (RuntimeException e) {
+            releaseEmails(List.<Object[]>of(new Object[] {user.getEmail(), user.getId()}));
+            throw e;
+        }
+    }
+    
+    /**
+     * Runs an UPDATE of the user's row to user's email and its change in one shard transaction. A new
+     * email is claimed first and the old claim released after the commit.
+     */
+    private boolean update(User user, String sql, Object... args) {
+        int bucket = ShardRouting.bucketOfId(user.getId());
+        checkWritable(bucket);
+        Shard shard = bucketMap.ownerOf(bucket);
+        JdbcTemplate jdbcTemplate = shard.getJdbcTemplate();
+        String[] previousEmail = new String[1];
+        boolean updated = Boolean.TRUE.equals(shard.getTransactionTemplate().execute(status -> {
+            List<String> current = jdbcTemplate.queryForList(
+                    "SELECT email FROM users WHERE id = ?" + LIVE + " FOR UPDATE", String.class, user.getId());
+            if (current.isEmpty()) {
+                return false;
+            }
+            // Case-only changes keep the claim, as both spellings are the same key in a case-insensitive collation
+            if (!current.get(0).equalsIgnoreCase(user.getEmail())) {
+                claimEmail(user.getEmail(), user.getId());
+                previousEmail[0] = current.get(0);
+            }
+            if (jdbcTemplate.update(sql, args) == 0) {
+                return false;
+            }
+            recordChange(jdbcTemplate, UserChangeEvent.Operation.UPDATED, user.getId());
+            return true;
+        }));
+        if (previousEmail[0] != null) {
+            // The old email when updated, the unused new one when not
+            String released = updated ? previousEmail[0] : user.getEmail();
+            releaseEmails(List.<Object[]>of(new Object[] {released, user.getId()}));
+        }
+        return updated;
+    }
+    
+    // Deletes soft-deleted rows found by the query, which selects id and email, and releases their emails
+    private int purge(Shard shard, String sql, Object... args) {
+        JdbcTemplate jdbcTemplate = shard.getJdbcTemplate();
+        List<Object[]> rows = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new Object[] {rs.getString("email"), rs.getLong("id")}, args);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> ids = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            ids.add(new Object[] {row[1]});
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM users WHERE id = ? AND deleted_at IS NOT NULL", ids);
+        releaseEmails(rows);
+        return rows.size();
+    }
+    
+    // The change feed row for the user as it is now, to commit with the write that changed it
+    private static void recordChange(JdbcTemplate jdbcTemplate, UserChangeEvent.Operation operation, long id) {
+        jdbcTemplate.update("INSERT INTO user_change_outbox (user_id, bucket, operation, name, email, occurred_at) "
+                + "SELECT id, bucket, ?, name, email, ? FROM users WHERE id = ?", operation.name(), LocalDateTime.now(), id);
+    }
+    
+    private void claimEmail(String email, long userId) {
+        JdbcTemplate catalog = shards.catalog().getJdbcTemplate();
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                catalog.update("INSERT INTO user_emails (email, user_id, claimed_at) VALUES (?, ?, ?)", email, userId, now);
+                return;
+            } catch (DuplicateKeyException e) {
+                // Claimed already, possibly by a user that no longer has the email
+            }
+            List<Object[]> claims = catalog.query("SELECT user_id, claimed_at FROM user_emails WHERE email = ?",
+                    (rs, rowNum) -> new Object[] {rs.getLong("user_id"), rs.getObject("claimed_at", LocalDateTime.class)}, email);
+            if (claims.isEmpty()) {
+                // Released in between
+                continue;
+            }
+            long holder = (Long) claims.get(0)[0];
+            LocalDateTime claimedAt = (LocalDateTime) claims.get(0)[1];
+            if (holder == userId) {
+                return;
+            }
+            // A young claim may belong to a write that has not committed its row yet
+            boolean stale = claimedAt.isBefore(now.minusNanos(emailClaimTimeoutMs * 1_000_000L)) && !holdsEmail(holder, email);
+            if (!stale || catalog.update("UPDATE user_emails SET user_id = ?, claimed_at = ? WHERE email = ? AND user_id = ?",
+                    userId, now, email, holder) == 0) {
+                throw new DuplicateKeyException("Email already exists: " + email);
+            }
+            return;
+        }
+    }
+    
+    // Soft-deleted rows count: they keep their email until purged
+    private boolean holdsEmail(long userId, String email) {
+        return !bucketMap.ownerOf(ShardRouting.bucketOfId(userId)).getJdbcTemplate().queryForList(
+                "SELECT id FROM users WHERE id = ? AND email = ?", Long.class, userId, email).isEmpty();
+    }
+    
+    // Rows of email and user id; a claim taken over by another user meanwhile is left alone
+    private void releaseEmails(List<Object[]> claims) {
+        if (!claims.isEmpty()) {
+            shards.catalog().getJdbcTemplate().batchUpdate("DELETE FROM user_emails WHERE email = ? AND user_id = ?", claims);
+        }
+    }
+    
+    private void checkWritable(int bucket) {
+        if (bucketMap.stateOf(bucket) == BucketMap.State.FROZEN) {
+            throw new IllegalStateException("Users in bucket " + bucket + " are being moved to another shard, retry shortly");
+        }
+    }
+    
+    private Optional<ArchivedRow> findArchivedRow(String email) {
+        return shards.fanOut(shard -> shard.getJdbcTemplate().query(
+                        "SELECT " + COLUMNS + ", bucket, archived_at FROM users_archive WHERE email = ? "
+                                + "ORDER BY archived_at DESC LIMIT 1",
+                        (rs, rowNum) -> new ArchivedRow(shard, USER_ROW_MAPPER.mapRow(rs, rowNum), rs.getInt("bucket"),
+                                rs.getObject("archived_at", LocalDateTime.class)), email).stream().findFirst())
+                .stream()
+                .flatMap(Optional::stream)
+                .max(Comparator.comparing((ArchivedRow row) -> row.archivedAt));
+    }
+    
+    private List<User> archiveInactive(Shard shard, LocalDateTime cutoff, int limit) {
+        LocalDateTime archivedAt = LocalDateTime.now();
+        List<User> users = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> ids = new ArrayList<>();
+        JdbcTemplate jdbcTemplate = shard.getJdbcTemplate();
+        RowCallbackHandler collect = rs -> {
+            int bucket = rs.getInt("bucket");
+            if (bucketMap.stateOf(bucket) != BucketMap.State.ACTIVE) {
+                return;
+            }
+            User user = USER_ROW_MAPPER.mapRow(rs, users.size());
+            users.add(user);
+            rows.add(new Object[] {user.getId(), user.getName(), user.getEmail(), user.getPassword(), user.getCreatedAt(),
+                    user.getUpdatedAt(), user.getVersion(), user.getLastLoginAt(), bucket, archivedAt});
+            ids.add(new Object[] {user.getId()});
+        };
+        jdbcTemplate.query("SELECT " + COLUMNS + ", bucket FROM users WHERE " + INACTIVE_CONDITION + LIVE
+                + bucketMap.ownedRowsCondition(shard.getIndex()) + " ORDER BY id LIMIT ? FOR UPDATE",
+                collect, cutoff, cutoff, limit);
+        if (!users.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO users_archive (" + COLUMNS + ", bucket, archived_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+            List<Object[]> changes = new ArrayList<>(ids.size());
+            for (Object[] id : ids) {
+                changes.add(new Object[] {UserChangeEvent.Operation.DELETED.name(), archivedAt, id[0]});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO user_change_outbox (user_id, bucket, operation, name, email, occurred_at) "
+                    + "SELECT id, bucket, ?, name, email, ? FROM users WHERE id = ?", changes);
+            jdbcTemplate.batchUpdate("DELETE FROM users WHERE id = ?", ids);
+        }
+        return users;
+    }
+    
+    private static final class ArchivedRow {
+        
+        final Shard shard;
+        final User user;
+        final int bucket;
+        final LocalDateTime archivedAt;
+        
+        ArchivedRow(Shard shard, User user, int bucket, LocalDateTime archivedAt) {
+            this.shard = shard;
+            this.user = user;
+            this.bucket = bucket;
+            this.archivedAt = archivedAt;
+        }
+    }
+    
+    // The page plus `extra` look-ahead rows: no shard can contribute more than offset + size + extra of them
+    private List<User> firstRows(String condition, Object[] args, Pageable pageable, int extra) {
+        long offset = pageable.getOffset();
+        long perShard = offset + pageable.getPageSize() + extra;
+        Object[] queryArgs = new Object[args.length + 1];
+        System.arraycopy(args, 0, queryArgs, 0, args.length);
+        queryArgs[args.length] = perShard;
+        List<List<User>> runs = shards.fanOut(shard -> shard.getJdbcTemplate().query(
+                "SELECT " + COLUMNS + " FROM users WHERE " + condition + LIVE
+                        + bucketMap.ownedRowsCondition(shard.getIndex()) + " ORDER BY id LIMIT ?",
+                USER_ROW_MAPPER, queryArgs));
+        return merge(runs, BY_ID, offset, pageable.getPageSize() + extra);
+    }
+    
+    private static Slice<User> slice(List<User> rows, Pageable pageable) {
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+    
+    private static Object[] searchArgs(String keyword) {
+        String pattern = "%" + keyword.toLowerCase(Locale.ROOT) + "%";
+        return new Object[] {pattern, pattern};
+    }
+    
+    private static Optional<User> queryOne(Shard shard, String sql, Object... args) {
+        return shard.getJdbcTemplate().query(sql, USER_ROW_MAPPER, args).stream().findFirst();
+    }
+    
+    private static long sum(List<Long> counts) {
+        long total = 0;
+        for (Long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+    
+    // k-way merge of per-shard runs that are already sorted by the comparator
+    static List<User> merge(List<List<User>> runs, Comparator<User> order, long skip, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+                (a, b) -> order.compare(runs.get(a[0]).get(a[1]), runs.get(b[0]).get(b[1])));
+        for (int run = 0; run < runs.size(); run++) {
+            if (!runs.get(run).isEmpty()) {
+                heads.add(new int[] {run, 0});
+            }
+        }
+        List<User> merged = new ArrayList<>();
+        long skipped = 0;
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<User> run = runs.get(head[0]);
+            if (skipped < skip) {
+                skipped++;
+            } else {
+                merged.add(run.get(head[1]));
+            }
+            if (head[1] + 1 < run.size()) {
+                heads.add(new int[] {head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+}
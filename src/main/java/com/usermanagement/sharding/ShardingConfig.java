@@ -0,0 +1,67 @@
+package com.usermanagement.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Users spread over several databases. The primary datasource keeps everything else (change feed,
+ * tokens, signing keys); each shard holds a users table and an outbox relayed to the change feed,
+ * and shard 0 also holds the bucket map, the id allocator and the email claims.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+    
+    @Bean(destroyMethod = "close")
+    ShardSet shardSet(@Value("${app.sharding.urls}") String[] urls,
+                      @Value("${app.sharding.username:}") String username,
+                      @Value("${app.sharding.password:}") String password,
+                      @Value("${app.sharding.pool-size:10}") int poolSize,
+                      @Value("${app.sharding.fan-out-threads:16}") int fanOutThreads,
+                      @Value("${app.sharding.schema-init:true}") boolean schemaInit,
+                      @Value("${app.write-coalescing.enabled:false}") boolean writeCoalescing) {
+        // The write-behind flush updates the primary users table directly
+        if (writeCoalescing) {
+            throw new IllegalStateException("app.write-coalescing.enabled cannot be combined with app.sharding.enabled");
+        }
+        if (urls.length == 0) {
+            throw new IllegalStateException("app.sharding.urls must list at least one shard");
+        }
+        
+        List<Shard> shards = new ArrayList<>(urls.length);
+        for (String url : urls) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            dataSource.setPoolName("shard-" + shards.size());
+            dataSource.setMaximumPoolSize(poolSize);
+            Shard shard = new Shard(shards.size(), dataSource);
+            if (schemaInit) {
+                createSchema(shard);
+            }
+            shards.add(shard);
+        }
+        return new ShardSet(shards, fanOutThreads);
+    }
+    
+    private static void createSchema(Shard shard) {
+        String product = shard.getJdbcTemplate().execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        String dialect = "MySQL".equalsIgnoreCase(product) ? "mysql" : "h2";
+        new ResourceDatabasePopulator(new ClassPathResource("sharding/schema-" + dialect + ".sql"))
+                .execute(shard.getJdbcTemplate().getDataSource());
+    }
+}
@@ -0,0 +1,62 @@
+-- Users table of one shard. bucket repeats the low 10 bits of id so a bucket can be copied by index.
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT NOT NULL PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    email VARCHAR(100) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6),
+    version BIGINT DEFAULT 0 NOT NULL,
+    last_login_at TIMESTAMP(6),
+    deleted_at TIMESTAMP(6),
+    bucket INT NOT NULL,
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+CREATE INDEX IF NOT EXISTS idx_users_bucket_id ON users (bucket, id);
+CREATE INDEX IF NOT EXISTS idx_users_last_login_at ON users (last_login_at, created_at);
+CREATE INDEX IF NOT EXISTS idx_users_deleted_at ON users (deleted_at);
+
+-- Users moved out by the archival job, on the shard they were archived from
+CREATE TABLE IF NOT EXISTS users_archive (
+    id BIGINT NOT NULL PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    email VARCHAR(100) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6),
+    version BIGINT DEFAULT 0 NOT NULL,
+    last_login_at TIMESTAMP(6),
+    bucket INT NOT NULL,
+    archived_at TIMESTAMP(6) NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_users_archive_email ON users_archive (email);
+CREATE INDEX IF NOT EXISTS idx_users_archive_archived_at ON users_archive (archived_at);
+
+-- Change feed rows written in the same transaction as the user rows, relayed to the primary's user_change_events
+CREATE TABLE IF NOT EXISTS user_change_outbox (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    bucket INT NOT NULL,
+    operation VARCHAR(16) NOT NULL,
+    name VARCHAR(100),
+    email VARCHAR(100),
+    occurred_at TIMESTAMP(6) NOT NULL
+);
+
+-- Catalog, only read and written on shard 0
+CREATE TABLE IF NOT EXISTS shard_buckets (
+    bucket INT NOT NULL PRIMARY KEY,
+    owner_shard INT NOT NULL,
+    other_shard INT,
+    state VARCHAR(16) NOT NULL
+);
+CREATE TABLE IF NOT EXISTS shard_id_blocks (
+    id INT NOT NULL PRIMARY KEY,
+    next_block BIGINT NOT NULL
+);
+-- One row per email in use on any shard, for uniqueness across shards
+CREATE TABLE IF NOT EXISTS user_emails (
+    email VARCHAR(100) NOT NULL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    claimed_at TIMESTAMP(6) NOT NULL
+);
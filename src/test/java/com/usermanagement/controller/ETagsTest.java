@@ -0,0 +1,53 @@
+package com.usermanagement.controller;
+
+import com.usermanagement.entity.User;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ETagsTest {
+    
+    @Test
+    void usersGetAStrongTagWithTheirVersion() {
+        User user = new User("Nguyễn Văn A", "a@example.com", "hash");
+        user.setId(1L);
+        user.setVersion(7L);
+        
+        assertThat(ETags.forUser(user)).isEqualTo("\"user-1-7\"");
+    }
+    
+    @Test
+    void aViewWithADeferredEditHasNoTag() {
+        User user = new User("Nguyễn Văn A", "a@example.com", "hash");
+        user.setId(1L);
+        
+        assertThat(ETags.forUser(user)).isNull();
+    }
+    
+    @Test
+    void ifMatchNamesTheVersionOfAStrongTag() {
+        assertThat(ETags.versionFromIfMatch("\"user-1-7\"", 1L)).isEqualTo(7);
+        assertThat(ETags.versionFromIfMatch("  \"user-12-0\" ", 12L)).isZero();
+    }
+    
+    @Test
+    void weakTagsNeverMatch() {
+        assertThat(ETags.versionFromIfMatch("W/\"user-1-7\"", 1L)).isEqualTo(-1);
+    }
+    
+    @Test
+    void tagsOfOtherUsersListsAndGarbageNeverMatch() {
+        assertThat(ETags.versionFromIfMatch("\"user-2-7\"", 1L)).isEqualTo(-1);
+        assertThat(ETags.versionFromIfMatch("\"user-1-7\", \"user-1-8\"", 1L)).isEqualTo(-1);
+        assertThat(ETags.versionFromIfMatch("\"user-1-x\"", 1L)).isEqualTo(-1);
+        assertThat(ETags.versionFromIfMatch("\"user-1-\"", 1L)).isEqualTo(-1);
+        assertThat(ETags.versionFromIfMatch("user-1-7", 1L)).isEqualTo(-1);
+        assertThat(ETags.versionFromIfMatch("W/\"users-42\"", 1L)).isEqualTo(-1);
+    }
+    
+    @Test
+    void listingTagsAreWeakAndAbsentBeforeTheFeedSettles() {
+        assertThat(ETags.forListing(42, "page", 0)).startsWith("W/\"users-42-");
+        assertThat(ETags.forListing(-1)).isNull();
+    }
+}
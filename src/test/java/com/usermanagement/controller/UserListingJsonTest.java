@@ -0,0 +1,109 @@
+package com.usermanagement.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.usermanagement.entity.User;
+import com.usermanagement.service.CountMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserListingJsonTest {
+    
+    // Configured as Spring Boot configures the one that serializes response bodies
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    
+    @Test
+    void writeListingMatchesTheObjectMapperForEveryCountMode() throws IOException {
+        for (CountMode countMode : CountMode.values()) {
+            for (String keyword : new String[] {null, "nguyễn \"a\"\t</script>"}) {
+                Slice<User> page = page(25, countMode);
+                String expected = objectMapper.writeValueAsString(UserListingJson.toMap(page, countMode, keyword));
+                
+                String actual = write(json -> json.writeListing(page, countMode, keyword));
+                
+                assertThat(actual).as("count=%s keyword=%s", countMode, keyword).isEqualTo(expected);
+            }
+        }
+    }
+    
+    @Test
+    void usersComeAfterThePageMetadata() throws IOException {
+        Slice<User> page = page(3, CountMode.CACHED);
+        
+        List<String> keys = new ArrayList<>();
+        objectMapper.readTree(write(json -> json.writeListing(page, CountMode.CACHED, "a"))).fieldNames().forEachRemaining(keys::add);
+        
+        assertThat(keys).containsExactly("totalItems", "totalPages", "pageSize", "hasNext", "currentPage", "countMode",
+                "keyword", "users");
+    }
+    
+    @Test
+    void writeUserWithoutPasswordOmitsTheHash() throws IOException {
+        User user = page(1, CountMode.EXACT).getContent().get(0);
+        
+        JsonNode node = objectMapper.readTree(write(json -> json.writeUser(user, false)));
+        
+        assertThat(node.has("password")).isFalse();
+        assertThat(node.path("email").asText()).isEqualTo(user.getEmail());
+        assertThat(write(json -> json.writeUser(user))).isEqualTo(objectMapper.writeValueAsString(user));
+    }
+    
+    @Test
+    void formatDateTimeMatchesIsoLocalDateTime() {
+        LocalDateTime base = LocalDateTime.of(2024, 2, 29, 23, 59, 59);
+        char[] buffer = new char[29];
+        for (int nanos : new int[] {0, 1, 10, 999, 1_000, 120_000, 1_000_000, 100_000_000, 999_999_999}) {
+            for (LocalDateTime value : new LocalDateTime[] {base.withNano(nanos), LocalDateTime.of(1, 1, 1, 0, 0).withNano(nanos)}) {
+                int length = UserListingJson.formatDateTime(value, buffer);
+                
+                assertThat(new String(buffer, 0, length)).isEqualTo(value.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            }
+        }
+    }
+    
+    private String write(Writer writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            writer.write(new UserListingJson(generator));
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+    
+    private static Slice<User> page(int size, CountMode countMode) {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 10, 0);
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            User user = new User(i % 7 == 0 ? "Trần \"Bé\" " + i + "\t" : "Nguyễn Văn " + i, "user" + i + "@example.com",
+                    "$2a$10$abcdefghijklmnopqrstuvwxyz0123456789ABCDEFGHIJKLMNOPQ");
+            user.setId((long) i + 1);
+            user.setCreatedAt(base.plusSeconds(i));
+            user.setUpdatedAt(i % 5 == 0 ? null : base.plusSeconds(i).plusNanos(i * 1_000L));
+            users.add(user);
+        }
+        PageRequest pageable = PageRequest.of(1, size);
+        return countMode == CountMode.NONE
+                ? new SliceImpl<>(users, pageable, true)
+                : new PageImpl<>(users, pageable, 10L * size);
+    }
+    
+    @FunctionalInterface
+    private interface Writer {
+        void write(UserListingJson json) throws IOException;
+    }
+}
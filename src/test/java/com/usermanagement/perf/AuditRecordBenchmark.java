@@ -0,0 +1,120 @@
+package com.usermanagement.perf;
+
+import com.usermanagement.audit.AuditRingBuffer;
+import com.usermanagement.entity.AuditEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Request-path cost of recording an audit event: building the event and handing it to the writer,
+ * with the given number of request threads and one thread draining in batches, as the audit writer
+ * does. Compares the lock-free ring buffer with an ArrayBlockingQueue of the same capacity:
+ *
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.AuditRecordBenchmark -Dexec.args="8 10"
+ *
+ * Reports throughput and per-call latency percentiles; every 64th call is timed on its own.
+ */
+public class AuditRecordBenchmark {
+    
+    private static final int CAPACITY = 65536;
+    private static final int SAMPLE_EVERY = 64;
+    
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        
+        AuditRingBuffer ring = new AuditRingBuffer(CAPACITY);
+        run("ring", threads, seconds, ring::offer, batch -> ring.drainTo(batch, 500));
+        
+        BlockingQueue<AuditEvent> queue = new ArrayBlockingQueue<>(CAPACITY);
+        run("blocking", threads, seconds, queue::offer, batch -> queue.drainTo(batch, 500));
+    }
+    
+    private interface Offer {
+        boolean offer(AuditEvent event);
+    }
+    
+    private interface Drain {
+        int drain(List<AuditEvent> batch);
+    }
+    
+    private static void run(String name, int threads, int seconds, Offer offer, Drain drain) throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread consumer = new Thread(() -> {
+            List<AuditEvent> batch = new ArrayList<>(500);
+            while (!stop.get()) {
+                if (drain.drain(batch) == 0) {
+                    Thread.onSpinWait();
+                }
+                batch.clear();
+            }
+        });
+        consumer.start();
+        
+        long[][] samples = new long[threads][];
+        long[] counts = new long[threads];
+        long[] full = new long[threads];
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                long[] latencies = new long[1 << 20];
+                int sampled = 0;
+                long count = 0;
+                long rejected = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 1024; i++) {
+                        boolean timed = (count & (SAMPLE_EVERY - 1)) == 0 && sampled < latencies.length;
+                        long start = timed ? System.nanoTime() : 0;
+                        AuditEvent event = new AuditEvent(AuditEvent.Action.UPDATE, "user@example.com", count, null);
+                        if (!offer.offer(event)) {
+                            rejected++;
+                        }
+                        if (timed) {
+                            latencies[sampled++] = System.nanoTime() - start;
+                        }
+                        count++;
+                    }
+                }
+                samples[thread] = Arrays.copyOf(latencies, sampled);
+                counts[thread] = count;
+                full[thread] = rejected;
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        stop.set(true);
+        consumer.join();
+        
+        long total = 0;
+        long rejected = 0;
+        int sampleCount = 0;
+        for (int t = 0; t < threads; t++) {
+            total += counts[t];
+            rejected += full[t];
+            sampleCount += samples[t].length;
+        }
+        long[] all = new long[sampleCount];
+        int offset = 0;
+        for (long[] threadSamples : samples) {
+            System.arraycopy(threadSamples, 0, all, offset, threadSamples.length);
+            offset += threadSamples.length;
+        }
+        Arrays.sort(all);
+        System.out.printf("%-8s threads=%d records=%,d/s full=%d p50=%d ns p99=%d ns p99.9=%d ns max=%d ns%n",
+                name, threads, total / seconds, rejected, percentile(all, 0.50), percentile(all, 0.99),
+                percentile(all, 0.999), all.length > 0 ? all[all.length - 1] : 0);
+    }
+    
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+}
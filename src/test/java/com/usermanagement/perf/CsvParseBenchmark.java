@@ -0,0 +1,108 @@
+package com.usermanagement.perf;
+
+import com.opencsv.CSVReader;
+import com.usermanagement.service.impl.ChunkedCsvParser;
+
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Import parsing throughput: one OpenCSV reader over the upload, as the import used to do, versus
+ * ChunkedCsvParser with an increasing number of threads. Every tenth name is quoted and contains a
+ * comma, a doubled quote or a newline, so chunk boundaries land next to quoted fields; each run is
+ * checked to return exactly the single-threaded records.
+ *
+ * Run with:
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.CsvParseBenchmark -Dexec.args="2000000"
+ */
+public class CsvParseBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        long chunkBytes = args.length > 1 ? Long.parseLong(args[1]) : 8L << 20;
+        
+        Path file = Files.createTempFile("csv-parse-benchmark-", ".csv");
+        try {
+            write(file, rows);
+            System.out.printf("%d rows, %d MB, %d cores%n", rows, Files.size(file) >> 20,
+                    Runtime.getRuntime().availableProcessors());
+            System.out.printf("%-14s %10s %12s%n", "parser", "ms", "MB/s");
+            
+            List<String[]> expected = null;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                List<String[]> records;
+                try (CSVReader reader = new CSVReader(
+                        new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+                    records = reader.readAll();
+                }
+                expected = records;
+                report("opencsv", start, file);
+            }
+            
+            List<Integer> threadCounts = new ArrayList<>();
+            for (int threads = 1; threads < Runtime.getRuntime().availableProcessors(); threads *= 2) {
+                threadCounts.add(threads);
+            }
+            threadCounts.add(Runtime.getRuntime().availableProcessors());
+            for (int threads : threadCounts) {
+                try (ChunkedCsvParser parser = new ChunkedCsvParser(threads, chunkBytes)) {
+                    for (int round = 0; round < 3; round++) {
+                        long start = System.nanoTime();
+                        List<ChunkedCsvParser.Batch> batches = parser.parse(file);
+                        report("chunked x" + threads, start, file);
+                        verify(expected, batches);
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    private static void write(Path file, int rows) throws Exception {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("Name,Email,Password\n");
+            for (int i = 0; i < rows; i++) {
+                String name = switch (i % 30) {
+                    case 0 -> "\"Nguyễn, Văn " + i + "\"";
+                    case 10 -> "\"Trần \"\"Bé\"\" " + i + "\"";
+                    case 20 -> "\"Lê Thị\n" + i + "\"";
+                    default -> "Phạm Minh " + i;
+                };
+                writer.write(name + ",user" + i + "@example.com,password" + i + "\n");
+            }
+        }
+    }
+    
+    private static void report(String name, long start, Path file) throws Exception {
+        double ms = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-14s %10.0f %12.1f%n", name, ms, Files.size(file) / 1048576.0 / (ms / 1000));
+    }
+    
+    private static void verify(List<String[]> expected, List<ChunkedCsvParser.Batch> batches) {
+        List<String[]> actual = new ArrayList<>(expected.size());
+        for (ChunkedCsvParser.Batch batch : batches) {
+            if (batch.getFirstRecordNumber() != actual.size() + 1) {
+                throw new IllegalStateException("Batch starts at record " + batch.getFirstRecordNumber()
+                        + ", expected " + (actual.size() + 1));
+            }
+            actual.addAll(batch.getRecords());
+        }
+        if (actual.size() != expected.size()) {
+            throw new IllegalStateException(actual.size() + " records, expected " + expected.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!Arrays.equals(expected.get(i), actual.get(i))) {
+                throw new IllegalStateException("Record " + (i + 1) + " differs: " + Arrays.toString(actual.get(i)));
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.usermanagement.perf;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Sign and verify cost per JWT algorithm, using the same claims shape as JwtTokenProvider.
+ *
+ * Run with:
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.JwtSigningBenchmark -Dexec.args="20000"
+ */
+public class JwtSigningBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        
+        Key hmac = Keys.hmacShaKeyFor("mySecretKey123456789012345678901234567890".getBytes(StandardCharsets.UTF_8));
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair es256 = ec.generateKeyPair();
+        KeyPair ed25519 = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        
+        System.out.printf("%-8s %12s %12s %12s %12s%n", "alg", "sign us/op", "sign ops/s", "verify us/op", "verify ops/s");
+        run("HS256", hmac, hmac, iterations);
+        run("ES256", es256.getPrivate(), es256.getPublic(), iterations);
+        run("EdDSA", ed25519.getPrivate(), ed25519.getPublic(), iterations);
+    }
+    
+    private static void run(String name, Key signingKey, Key verificationKey, int iterations) {
+        JwtParser parser = Jwts.parser().keyLocator(header -> verificationKey).build();
+        
+        // Warm up the JIT before measuring
+        String[] tokens = new String[iterations];
+        for (int i = 0; i < Math.min(iterations, 5_000); i++) {
+            parser.parseSignedClaims(sign(signingKey));
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            tokens[i] = sign(signingKey);
+        }
+        long signNanos = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += parser.parseSignedClaims(tokens[i]).getPayload().getSubject().length();
+        }
+        long verifyNanos = System.nanoTime() - start;
+        
+        System.out.printf("%-8s %12.2f %12.0f %12.2f %12.0f   (token %d bytes, checksum %d)%n",
+            name,
+            signNanos / 1_000.0 / iterations, iterations * 1e9 / signNanos,
+            verifyNanos / 1_000.0 / iterations, iterations * 1e9 / verifyNanos,
+            tokens[0].length(), checksum);
+    }
+    
+    private static String sign(Key key) {
+        Date now = new Date();
+        return Jwts.builder()
+                .header().keyId("bench").and()
+                .id(UUID.randomUUID().toString())
+                .subject("admin@example.com")
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + 900_000))
+                .signWith(key)
+                .compact();
+    }
+}
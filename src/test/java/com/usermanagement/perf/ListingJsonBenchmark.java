@@ -0,0 +1,112 @@
+package com.usermanagement.perf;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.usermanagement.controller.UserListingJson;
+import com.usermanagement.entity.User;
+import com.usermanagement.service.CountMode;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Allocation and latency of writing a user listing: UserListingJson.toMap serialized by the ObjectMapper
+ * (configured as Spring Boot configures it) versus UserListingJson. Checks first that both produce
+ * the same bytes for every count mode, with and without keyword, null dates and escaped names.
+ *
+ * Run with:
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.ListingJsonBenchmark -Dexec.args="2000"
+ */
+public class ListingJsonBenchmark {
+    
+    private static final int[] PAGE_SIZES = {10, 100, 1_000, 10_000};
+    
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        
+        for (CountMode countMode : CountMode.values()) {
+            for (String keyword : new String[] {null, "nguyễn \"a\""}) {
+                Slice<User> page = page(25, countMode);
+                byte[] expected = objectMapper.writeValueAsBytes(UserListingJson.toMap(page, countMode, keyword));
+                ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                write(objectMapper, page, countMode, keyword, actual);
+                if (!Arrays.equals(expected, actual.toByteArray())) {
+                    throw new IllegalStateException("Output differs for count=" + countMode + " keyword=" + keyword
+                            + "\n" + new String(expected) + "\n" + actual);
+                }
+            }
+        }
+        System.out.println("Output identical for all count modes");
+        
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        OutputStream sink = OutputStream.nullOutputStream();
+        System.out.printf("%-10s %8s %14s %14s %10s %10s%n", "writer", "size", "bytes/request", "bytes/row", "p50 us", "p99 us");
+        for (int size : PAGE_SIZES) {
+            Slice<User> page = page(size, CountMode.EXACT);
+            int rounds = Math.max(20, iterations * 10 / size);
+            for (String writer : new String[] {"mapper", "streaming"}) {
+                long[] latencies = new long[rounds];
+                // Warm up, then measure
+                for (int i = 0; i < rounds; i++) {
+                    run(writer, objectMapper, page, sink);
+                }
+                long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < rounds; i++) {
+                    long start = System.nanoTime();
+                    run(writer, objectMapper, page, sink);
+                    latencies[i] = System.nanoTime() - start;
+                }
+                long allocated = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / rounds;
+                Arrays.sort(latencies);
+                System.out.printf("%-10s %8d %14d %14d %10.1f %10.1f%n", writer, size, allocated, allocated / size,
+                        latencies[rounds / 2] / 1000.0, latencies[(int) (rounds * 0.99)] / 1000.0);
+            }
+        }
+    }
+    
+    private static void run(String writer, ObjectMapper objectMapper, Slice<User> page, OutputStream out) throws IOException {
+        if (writer.equals("mapper")) {
+            objectMapper.writeValue(out, UserListingJson.toMap(page, CountMode.EXACT, null));
+        } else {
+            write(objectMapper, page, CountMode.EXACT, null, out);
+        }
+    }
+    
+    private static void write(ObjectMapper objectMapper, Slice<User> page, CountMode countMode, String keyword,
+                              OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            new UserListingJson(generator).writeListing(page, countMode, keyword);
+        }
+    }
+    
+    private static Slice<User> page(int size, CountMode countMode) {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 10, 0);
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            User user = new User(i % 7 == 0 ? "Trần \"Bé\" " + i + "\t" : "Nguyễn Văn " + i, "user" + i + "@example.com",
+                    "$2a$10$abcdefghijklmnopqrstuvwxyz0123456789ABCDEFGHIJKLMNOPQ");
+            user.setId((long) i + 1);
+            user.setCreatedAt(base.plusSeconds(i));
+            user.setUpdatedAt(i % 5 == 0 ? null : base.plusSeconds(i).plusNanos(i * 1_000L));
+            users.add(user);
+        }
+        PageRequest pageable = PageRequest.of(1, size);
+        return countMode == CountMode.NONE
+                ? new SliceImpl<>(users, pageable, true)
+                : new PageImpl<>(users, pageable, 10L * size);
+    }
+}
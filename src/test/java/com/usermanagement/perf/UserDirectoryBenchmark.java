@@ -0,0 +1,165 @@
+package com.usermanagement.perf;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.service.impl.OffHeapUserTable;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Heap footprint and GC cost of keeping every user in memory, as User objects in hash maps versus
+ * the off-heap directory. Each layout runs in its own JVM so the numbers do not mix:
+ *
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-Xmx4g -XX:MaxDirectMemorySize=4g -cp %classpath com.usermanagement.perf.UserDirectoryBenchmark heap 2000000 30"
+ * (then the same with "offheap" instead of "heap")
+ *
+ * Reports the retained heap after loading, then runs lookups plus request-like garbage for the
+ * given number of seconds and reports collections, total pause time and lookup throughput.
+ */
+public class UserDirectoryBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        String layout = args.length > 0 ? args[0] : "offheap";
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        
+        long heapBefore = usedHeapAfterGc();
+        Directory directory = "heap".equals(layout) ? new HeapDirectory(users) : new OffHeapDirectory(users);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 1; i <= users; i++) {
+            User user = new User("User " + i, "user" + i + "@example.com",
+                    "$2a$10$abcdefghijklmnopqrstuv" + Integer.toHexString(i) + "wxyz0123456789ABCDEFGHIJ");
+            user.setId((long) i);
+            user.setCreatedAt(base.plusSeconds(i));
+            user.setUpdatedAt(base.plusSeconds(i).plusNanos(123_000));
+            directory.put(user);
+        }
+        long retained = usedHeapAfterGc() - heapBefore;
+        System.out.printf("%-8s users=%d retained heap=%d MB off-heap=%d MB%n",
+                layout, users, retained >> 20, directory.offHeapBytes() >> 20);
+        
+        long gcCountBefore = 0;
+        long gcTimeBefore = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCountBefore += gc.getCollectionCount();
+            gcTimeBefore += gc.getCollectionTime();
+        }
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long lookups = 0;
+        long checksum = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 10_000; i++) {
+                int id = 1 + random.nextInt(users);
+                User user = (i & 1) == 0 ? directory.get(id) : directory.getByEmail("user" + id + "@example.com");
+                checksum += user.getName().length();
+                // Garbage a request would leave behind: a response body and a few strings
+                byte[] body = new byte[512];
+                checksum += body.length + user.getEmail().concat("/").length();
+                lookups++;
+            }
+            // Updates: the heap layout replaces objects, the off-heap one appends records
+            for (int i = 0; i < 100; i++) {
+                int id = 1 + random.nextInt(users);
+                User user = directory.get(id);
+                user.setName("User " + id + " v" + random.nextInt(1000));
+                user.setUpdatedAt(user.getUpdatedAt().plusSeconds(1));
+                directory.put(user);
+            }
+        }
+        long gcCount = -gcCountBefore;
+        long gcTime = -gcTimeBefore;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += gc.getCollectionCount();
+            gcTime += gc.getCollectionTime();
+        }
+        System.out.printf("%-8s lookups/s=%d collections=%d gc time=%d ms (%.2f%% of run) checksum=%d%n",
+                layout, lookups / seconds, gcCount, gcTime, gcTime * 100.0 / (seconds * 1000.0), checksum);
+    }
+    
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    private interface Directory {
+        void put(User user);
+        
+        User get(long id);
+        
+        User getByEmail(String email);
+        
+        long offHeapBytes();
+    }
+    
+    private static final class HeapDirectory implements Directory {
+        
+        private final Map<Long, User> byId;
+        private final Map<String, User> byEmail;
+        
+        private HeapDirectory(int users) {
+            byId = new HashMap<>(users * 2);
+            byEmail = new HashMap<>(users * 2);
+        }
+        
+        @Override
+        public void put(User user) {
+            User copy = new User(user);
+            byId.put(copy.getId(), copy);
+            byEmail.put(copy.getEmail(), copy);
+        }
+        
+        @Override
+        public User get(long id) {
+            return new User(byId.get(id));
+        }
+        
+        @Override
+        public User getByEmail(String email) {
+            return new User(byEmail.get(email));
+        }
+        
+        @Override
+        public long offHeapBytes() {
+            return 0;
+        }
+    }
+    
+    private static final class OffHeapDirectory implements Directory {
+        
+        private final OffHeapUserTable table;
+        
+        private OffHeapDirectory(int users) {
+            table = new OffHeapUserTable(64 << 20, users);
+        }
+        
+        @Override
+        public void put(User user) {
+            table.put(user);
+        }
+        
+        @Override
+        public User get(long id) {
+            return table.get(id);
+        }
+        
+        @Override
+        public User getByEmail(String email) {
+            return table.getByEmail(email);
+        }
+        
+        @Override
+        public long offHeapBytes() {
+            return table.offHeapBytes();
+        }
+    }
+}
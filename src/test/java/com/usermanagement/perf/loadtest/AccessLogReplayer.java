@@ -0,0 +1,121 @@
+package com.usermanagement.perf.loadtest;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Replays a captured access log against a target, keeping the original inter-arrival times
+ * (scaled by --speed) and recording HDR latency histograms per endpoint.
+ * <p>
+ * The log format is the one produced by server.tomcat.accesslog.pattern in application.properties:
+ * {@code <epoch millis> <method> <path+query> <status> ...}. Request bodies are not captured, so
+ * logins use generated users and writes use the same synthetic bodies as {@link LoadGenerator};
+ * with --remap-ids (default) user ids are replaced by ids that exist on the target.
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.loadtest.AccessLogReplayer \
+ *     -Dexec.args="--log=access_log.2024-01-01.log --base-url=http://localhost:8080 --speed=2"
+ * </pre>
+ */
+public class AccessLogReplayer {
+    
+    private static final Pattern USER_ID = Pattern.compile("^/api/users/\\d+$");
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+    
+    private AccessLogReplayer() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        double speed = options.getDouble("speed", 1.0);
+        boolean remapIds = Boolean.parseBoolean(options.get("remap-ids", "true"));
+        
+        ApiClient client = new ApiClient(options.get("base-url", "http://localhost:8080"),
+                options.get("email", "admin@example.com"), options.get("password", "admin123"),
+                options.getInt("threads", 16));
+        client.authenticate();
+        Workload workload = new Workload(client, options.getLong("seed", 42),
+                options.getLong("synthetic-users", 0), null);
+        workload.loadKnownIds(options.getInt("known-ids", 100_000));
+        
+        LatencyRecorder recorder = new LatencyRecorder();
+        RequestScheduler scheduler = new RequestScheduler(recorder, options.getInt("max-in-flight", 1000));
+        
+        long replayed = 0;
+        long skipped = 0;
+        long firstTimestamp = -1;
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(options.require("log")), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 3 || !fields[0].chars().allMatch(Character::isDigit)) {
+                    skipped++;
+                    continue;
+                }
+                long timestamp = Long.parseLong(fields[0]);
+                if (firstTimestamp < 0) {
+                    firstTimestamp = timestamp;
+                }
+                String method = fields[1];
+                String target = fields[2];
+                Supplier<CompletableFuture<Integer>> request = toRequest(workload, method, target, remapIds);
+                if (request == null) {
+                    skipped++;
+                    continue;
+                }
+                long intended = start + (long) (TimeUnit.MILLISECONDS.toNanos(timestamp - firstTimestamp) / speed);
+                scheduler.submit(intended, method + " " + endpoint(target), request);
+                replayed++;
+            }
+        }
+        scheduler.awaitCompletion(60, TimeUnit.SECONDS);
+        
+        System.out.printf("Replayed %d requests in %.1fs, skipped %d lines%n",
+                replayed, (System.nanoTime() - start) / 1e9, skipped);
+        recorder.printSummary(System.out);
+        recorder.writeHistograms(Paths.get(options.get("out", "target/loadtest/replay-histograms")));
+        System.exit(0);
+    }
+    
+    private static Supplier<CompletableFuture<Integer>> toRequest(Workload workload, String method, String target,
+                                                                  boolean remapIds) {
+        String path = target.contains("?") ? target.substring(0, target.indexOf('?')) : target;
+        switch (method) {
+            case "GET":
+                if (path.equals("/api/auth/me")) {
+                    return () -> workload.execute(Workload.Operation.ME);
+                }
+                if (remapIds && USER_ID.matcher(path).matches()) {
+                    return () -> workload.execute(Workload.Operation.GET);
+                }
+                return () -> workload.replayGet(target);
+            case "POST":
+                if (path.equals("/api/auth/login")) {
+                    return () -> workload.execute(Workload.Operation.LOGIN);
+                }
+                if (path.equals("/api/users")) {
+                    return () -> workload.execute(Workload.Operation.CREATE);
+                }
+                return null;
+            case "PUT":
+                return USER_ID.matcher(path).matches() ? () -> workload.execute(Workload.Operation.UPDATE) : null;
+            case "DELETE":
+                return USER_ID.matcher(path).matches() ? () -> workload.execute(Workload.Operation.DELETE) : null;
+            default:
+                return null;
+        }
+    }
+    
+    // Groups /api/users/17 and /api/users/42 under one histogram
+    private static String endpoint(String target) {
+        String path = target.contains("?") ? target.substring(0, target.indexOf('?')) : target;
+        return NUMERIC_SEGMENT.matcher(path).replaceAll("/{id}");
+    }
+}
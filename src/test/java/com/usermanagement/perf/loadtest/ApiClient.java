@@ -0,0 +1,119 @@
+package com.usermanagement.perf.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+
+// Async JSON client for the REST API; logs in once and again whenever the access token is rejected
+final class ApiClient {
+    
+    private final HttpClient http;
+    private final String baseUrl;
+    private final String email;
+    private final String password;
+    private final ObjectMapper json = new ObjectMapper();
+    private volatile String token;
+    // The login in flight, shared by every request rejected with the same token; guarded by this
+    private CompletableFuture<Void> reauthentication;
+    
+    ApiClient(String baseUrl, String email, String password, int threads) {
+        this.http = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(threads))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.email = email;
+        this.password = password;
+    }
+    
+    // Blocking, for the main thread before the run starts
+    void authenticate() {
+        try {
+            reauthenticate(null).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+    
+    CompletableFuture<HttpResponse<String>> loginAsConfiguredUser() {
+        return login(email, password);
+    }
+    
+    CompletableFuture<HttpResponse<String>> login(String loginEmail, String loginPassword) {
+        return send("POST", "/api/auth/login", Map.of("email", loginEmail, "password", loginPassword), Map.of(), false);
+    }
+    
+    CompletableFuture<HttpResponse<String>> send(String method, String path, Object body) {
+        return send(method, path, body, Map.of());
+    }
+    
+    CompletableFuture<HttpResponse<String>> send(String method, String path, Object body, Map<String, String> headers) {
+        String usedToken = token;
+        return send(method, path, body, headers, true).thenCompose(response -> {
+            if (response.statusCode() != 401) {
+                return CompletableFuture.completedFuture(response);
+            }
+            // Access tokens are short-lived; refresh once per expiry, not once per failed request
+            return reauthenticate(usedToken).thenCompose(ignored -> send(method, path, body, headers, true));
+        });
+    }
+    
+    JsonNode parse(String body) {
+        try {
+            return json.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Never blocks: HttpClient executor threads only chain onto the shared login
+    private synchronized CompletableFuture<Void> reauthenticate(String staleToken) {
+        if (reauthentication != null && !reauthentication.isDone()) {
+            return reauthentication;
+        }
+        if (staleToken != null && !staleToken.equals(token)) {
+            // Another request already logged in again
+            return CompletableFuture.completedFuture(null);
+        }
+        reauthentication = login(email, password).thenAccept(response -> {
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Login as " + email + " failed: " + response.statusCode() + " " + response.body());
+            }
+            token = parse(response.body()).path("token").asText();
+        });
+        return reauthentication;
+    }
+    
+    private CompletableFuture<HttpResponse<String>> send(String method, String path, Object body,
+                                                         Map<String, String> headers, boolean authenticated) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Accept", "application/json");
+        headers.forEach(request::header);
+        if (authenticated && token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        if (body != null) {
+            try {
+                request.header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(body)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return http.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
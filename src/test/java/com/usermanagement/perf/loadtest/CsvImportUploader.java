@@ -0,0 +1,111 @@
+package com.usermanagement.perf.loadtest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Feeds a generated file through the web import (POST /users/import, i.e. importUsersFromCSV),
+ * split into chunks that fit the multipart size limit.
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.loadtest.CsvImportUploader \
+ *     -Dexec.args="--file=target/loadtest/users.csv --chunk-rows=100000"
+ * </pre>
+ */
+public class CsvImportUploader {
+    
+    private CsvImportUploader() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        String baseUrl = options.get("base-url", "http://localhost:8080");
+        Path file = Paths.get(options.require("file"));
+        int chunkRows = options.getInt("chunk-rows", 100_000);
+        
+        HttpClient http = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        login(http, baseUrl, options.get("email", "admin@example.com"), options.get("password", "admin123"));
+        
+        Path chunk = Files.createTempFile("users-chunk", ".csv");
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            int chunkNumber = 0;
+            long totalRows = 0;
+            long started = System.nanoTime();
+            while (true) {
+                int rows = 0;
+                try (BufferedWriter writer = Files.newBufferedWriter(chunk, StandardCharsets.UTF_8)) {
+                    writer.write(header);
+                    writer.write('\n');
+                    String line;
+                    while (rows < chunkRows && (line = reader.readLine()) != null) {
+                        writer.write(line);
+                        writer.write('\n');
+                        rows++;
+                    }
+                }
+                if (rows == 0) {
+                    break;
+                }
+                long chunkStart = System.nanoTime();
+                int status = upload(http, baseUrl, chunk);
+                totalRows += rows;
+                System.out.printf("chunk %d: %d rows, HTTP %d, %d ms%n",
+                        ++chunkNumber, rows, status, (System.nanoTime() - chunkStart) / 1_000_000);
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Uploaded %,d rows in %.1fs (%.0f rows/s)%n", totalRows, seconds, totalRows / seconds);
+        } finally {
+            Files.deleteIfExists(chunk);
+        }
+    }
+    
+    private static void login(HttpClient http, String baseUrl, String email, String password) throws Exception {
+        String form = "username=" + URLEncoder.encode(email, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8);
+        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || location.contains("error")) {
+            throw new IllegalStateException("Form login as " + email + " failed");
+        }
+    }
+    
+    // The import redirects back to /users with the outcome as a flash message
+    private static int upload(HttpClient http, String baseUrl, Path chunk) throws IOException, InterruptedException {
+        String boundary = "----loadtest" + UUID.randomUUID();
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"users.csv\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/users/import"))
+                .timeout(Duration.ofMinutes(30))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString(head),
+                        HttpRequest.BodyPublishers.ofFile(chunk),
+                        HttpRequest.BodyPublishers.ofString(tail)))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
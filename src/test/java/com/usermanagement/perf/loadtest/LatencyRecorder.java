@@ -0,0 +1,95 @@
+package com.usermanagement.perf.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HDR latency histograms per endpoint, in microseconds up to one minute.
+ * Latency is measured from the time a request was scheduled to be sent, not when it was sent,
+ * so a stalled server shows up in the percentiles instead of just lowering the request rate.
+ */
+final class LatencyRecorder {
+    
+    private static final long HIGHEST_TRACKABLE_MICROS = 60_000_000L;
+    
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> totals = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    
+    void record(String endpoint, long intendedStartNanos, int status) {
+        long micros = Math.max(1, (System.nanoTime() - intendedStartNanos) / 1_000);
+        recorders.computeIfAbsent(endpoint, key -> new Recorder(HIGHEST_TRACKABLE_MICROS, 3))
+                .recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+        if (status < 200 || status >= 400) {
+            errors.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+        }
+    }
+    
+    // Requests that were due but not sent because the in-flight limit was reached
+    void recordDropped() {
+        dropped.increment();
+    }
+    
+    // Folds everything recorded since the last call into the totals and returns that interval
+    Map<String, Histogram> sampleInterval() {
+        Map<String, Histogram> interval = new TreeMap<>();
+        recorders.forEach((endpoint, recorder) -> {
+            Histogram histogram = recorder.getIntervalHistogram();
+            totals.computeIfAbsent(endpoint, key -> new Histogram(HIGHEST_TRACKABLE_MICROS, 3)).add(histogram);
+            interval.put(endpoint, histogram);
+        });
+        return interval;
+    }
+    
+    void printInterval(PrintStream out, double seconds) {
+        Map<String, Histogram> interval = sampleInterval();
+        long requests = 0;
+        for (Histogram histogram : interval.values()) {
+            requests += histogram.getTotalCount();
+        }
+        out.printf("%6.0f req/s%n", requests / seconds);
+    }
+    
+    void printSummary(PrintStream out) {
+        sampleInterval();
+        out.printf("%-26s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(totals).entrySet()) {
+            Histogram histogram = entry.getValue();
+            LongAdder failed = errors.get(entry.getKey());
+            out.printf("%-26s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(),
+                    histogram.getTotalCount(),
+                    failed != null ? failed.sum() : 0,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(90) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+        }
+        if (dropped.sum() > 0) {
+            out.printf("dropped (client in-flight limit reached): %d%n", dropped.sum());
+        }
+    }
+    
+    // One .hgrm file per endpoint, plottable with the HdrHistogram percentile plotter
+    void writeHistograms(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<String, Histogram> entry : totals.entrySet()) {
+            String fileName = entry.getKey().replaceAll("[^A-Za-z0-9]+", "_") + ".hgrm";
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(fileName)))) {
+                entry.getValue().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.usermanagement.perf.loadtest;
+
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixed-workload driver for the REST API at a fixed request rate, with HDR latency histograms
+ * per endpoint.
+ * <p>
+ * Start a target first, either {@link LoadTestServer} (embedded H2) or the application on MySQL,
+ * optionally import a file from {@link SyntheticUsers} with {@link CsvImportUploader}, then:
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.loadtest.LoadGenerator \
+ *     -Dexec.args="--base-url=http://localhost:8080 --rate=500 --duration=120 --synthetic-users=1000000"
+ * </pre>
+ * Options: --rate (requests/s), --duration and --warmup (seconds), --max-in-flight, --threads,
+ * --email/--password (API account), --synthetic-users/--seed (users logins are drawn from),
+ * --count (count mode for listings), --out (directory for .hgrm files) and one
+ * --weight.OPERATION=n per operation to change the mix, e.g. --weight.LOGIN=0.
+ */
+public class LoadGenerator {
+    
+    private LoadGenerator() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        double rate = options.getDouble("rate", 200);
+        int durationSeconds = options.getInt("duration", 60);
+        int warmupSeconds = options.getInt("warmup", 10);
+        
+        ApiClient client = new ApiClient(options.get("base-url", "http://localhost:8080"),
+                options.get("email", "admin@example.com"), options.get("password", "admin123"),
+                options.getInt("threads", 16));
+        client.authenticate();
+        Workload workload = new Workload(client, options.getLong("seed", 42),
+                options.getLong("synthetic-users", 0), options.get("count", null));
+        workload.loadKnownIds(options.getInt("known-ids", 100_000));
+        
+        Map<Workload.Operation, Integer> weights = new EnumMap<>(Workload.Operation.class);
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            weights.put(operation, options.getInt("weight." + operation.name(), operation.getDefaultWeight()));
+        }
+        Workload.Operation[] mix = expand(weights);
+        
+        System.out.printf("Target %.0f req/s for %ds (+%ds warm-up), %d known users, mix %s%n",
+                rate, durationSeconds, warmupSeconds, workload.knownIdCount(), weights);
+        
+        // Warm-up traffic is sent but not kept
+        LatencyRecorder warmup = new LatencyRecorder();
+        run(workload, mix, rate, warmupSeconds, new RequestScheduler(warmup, options.getInt("max-in-flight", 1000)));
+        
+        LatencyRecorder recorder = new LatencyRecorder();
+        RequestScheduler scheduler = new RequestScheduler(recorder, options.getInt("max-in-flight", 1000));
+        Thread progress = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(5_000);
+                    recorder.printInterval(System.out, 5.0);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        progress.setDaemon(true);
+        progress.start();
+        
+        run(workload, mix, rate, durationSeconds, scheduler);
+        scheduler.awaitCompletion(60, TimeUnit.SECONDS);
+        progress.interrupt();
+        
+        recorder.printSummary(System.out);
+        recorder.writeHistograms(Paths.get(options.get("out", "target/loadtest/histograms")));
+        System.exit(0);
+    }
+    
+    private static void run(Workload workload, Workload.Operation[] mix, double rate, int seconds,
+                            RequestScheduler scheduler) {
+        if (seconds <= 0) {
+            return;
+        }
+        long intervalNanos = (long) (1_000_000_000L / rate);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (long next = start; next < end; next += intervalNanos) {
+            Workload.Operation operation = mix[ThreadLocalRandom.current().nextInt(mix.length)];
+            scheduler.submit(next, operation.getEndpoint(), () -> workload.execute(operation));
+        }
+    }
+    
+    // One slot per unit of weight, so picking a uniform slot follows the mix
+    private static Workload.Operation[] expand(Map<Workload.Operation, Integer> weights) {
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one operation needs a positive weight");
+        }
+        Workload.Operation[] mix = new Workload.Operation[total];
+        int index = 0;
+        for (Map.Entry<Workload.Operation, Integer> entry : weights.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                mix[index++] = entry.getKey();
+            }
+        }
+        return mix;
+    }
+}
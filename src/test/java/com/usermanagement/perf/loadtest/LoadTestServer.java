@@ -0,0 +1,27 @@
+package com.usermanagement.perf.loadtest;
+
+import com.usermanagement.UserManagementApplication;
+import org.springframework.boot.SpringApplication;
+
+import java.util.Arrays;
+
+/**
+ * Starts the application on a file-backed embedded H2 database (target/loadtest) with the
+ * loadtest profile, as a local target for {@link LoadGenerator} and {@link AccessLogReplayer}.
+ * Extra arguments are passed through, e.g. --server.port=8081.
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.loadtest.LoadTestServer
+ * </pre>
+ */
+public class LoadTestServer {
+    
+    private LoadTestServer() {
+    }
+    
+    public static void main(String[] args) {
+        String[] arguments = Arrays.copyOf(args, args.length + 1);
+        arguments[args.length] = "--spring.profiles.active=h2,loadtest";
+        SpringApplication.run(UserManagementApplication.class, arguments);
+    }
+}
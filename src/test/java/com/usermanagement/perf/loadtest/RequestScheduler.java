@@ -0,0 +1,51 @@
+package com.usermanagement.perf.loadtest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Open-loop sending: requests go out at their scheduled time whether or not earlier ones have answered
+final class RequestScheduler {
+    
+    private final LatencyRecorder recorder;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    
+    RequestScheduler(LatencyRecorder recorder, int maxInFlight) {
+        this.recorder = recorder;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+    }
+    
+    void submit(long intendedStartNanos, String endpoint, Supplier<CompletableFuture<Integer>> request) {
+        long wait = intendedStartNanos - System.nanoTime();
+        while (wait > 0) {
+            LockSupport.parkNanos(wait);
+            wait = intendedStartNanos - System.nanoTime();
+        }
+        if (!inFlight.tryAcquire()) {
+            recorder.recordDropped();
+            return;
+        }
+        CompletableFuture<Integer> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            recorder.record(endpoint, intendedStartNanos, 0);
+            return;
+        }
+        response.whenComplete((status, error) -> {
+            recorder.record(endpoint, intendedStartNanos, error != null || status == null ? 0 : status);
+            inFlight.release();
+        });
+    }
+    
+    void awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        if (inFlight.tryAcquire(maxInFlight, timeout, unit)) {
+            inFlight.release(maxInFlight);
+        }
+    }
+}
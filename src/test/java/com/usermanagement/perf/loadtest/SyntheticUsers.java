@@ -0,0 +1,111 @@
+package com.usermanagement.perf.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Generates an import file (Name,Email,Password) with any number of realistic users.
+ * Row i is a pure function of (seed, i), so the load generator can log in as any generated user
+ * without reading the file back.
+ *
+ * Run with:
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.loadtest.SyntheticUsers \
+ *     -Dexec.args="--out=target/loadtest/users.csv --count=1000000 --seed=42"
+ */
+public class SyntheticUsers {
+    
+    private static final String[] FAMILY_NAMES = {
+            "Nguyễn", "Trần", "Lê", "Phạm", "Hoàng", "Huỳnh", "Phan", "Vũ", "Võ", "Đặng", "Bùi", "Đỗ",
+            "Hồ", "Ngô", "Dương", "Lý", "Smith", "Johnson", "Brown", "Garcia", "Miller", "Davis", "Wilson"
+    };
+    private static final String[] MIDDLE_NAMES = {
+            "Văn", "Thị", "Minh", "Ngọc", "Thanh", "Đức", "Hữu", "Quang", "Gia", "Bảo", ""
+    };
+    private static final String[] GIVEN_NAMES = {
+            "An", "Bình", "Châu", "Dũng", "Giang", "Hà", "Hải", "Hạnh", "Hùng", "Hương", "Khánh", "Lan",
+            "Linh", "Long", "Mai", "Nam", "Phong", "Phúc", "Quân", "Thảo", "Trang", "Tuấn", "Vy", "Yến",
+            "James", "Mary", "Robert", "Linda", "Michael", "Sarah", "David", "Emma", "Daniel", "Olivia"
+    };
+    private static final String[] DOMAINS = {
+            "gmail.com", "yahoo.com", "outlook.com", "fpt.com.vn", "vnpt.vn", "example.com", "company.vn"
+    };
+    
+    private SyntheticUsers() {
+    }
+    
+    public static void main(String[] args) throws IOException {
+        Options options = new Options(args);
+        Path out = Paths.get(options.get("out", "target/loadtest/users.csv"));
+        long count = options.getLong("count", 1_000_000);
+        long seed = options.getLong("seed", 42);
+        // Share of rows repeating an earlier email, to exercise duplicate reporting
+        double duplicateRate = options.getDouble("duplicate-rate", 0.0);
+        
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        SplittableRandom duplicates = new SplittableRandom(seed);
+        long start = System.nanoTime();
+        try (BufferedWriter writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            writer.write("Name,Email,Password\n");
+            for (long i = 0; i < count; i++) {
+                long row = i > 0 && duplicates.nextDouble() < duplicateRate ? duplicates.nextLong(i) : i;
+                writer.write(csvLine(user(seed, row)));
+            }
+        }
+        System.out.printf("Wrote %,d users to %s in %d ms%n", count, out, (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    // {name, email, password} of generated user i
+    static String[] user(long seed, long i) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + i);
+        String family = pick(random, FAMILY_NAMES);
+        String middle = pick(random, MIDDLE_NAMES);
+        String given = pick(random, GIVEN_NAMES);
+        String name = middle.isEmpty() ? family + " " + given : family + " " + middle + " " + given;
+        String email = ascii(given) + "." + ascii(family) + "." + i + "@" + pick(random, DOMAINS);
+        return new String[] {name, email, password(i)};
+    }
+    
+    static String password(long i) {
+        return "loadtest-" + i;
+    }
+    
+    static String randomKeyword(SplittableRandom random) {
+        String[] pool = random.nextBoolean() ? GIVEN_NAMES : FAMILY_NAMES;
+        return pick(random, pool);
+    }
+    
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+    
+    private static String ascii(String value) {
+        String stripped = Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.replace('đ', 'd').replace('Đ', 'D').toLowerCase(Locale.ROOT);
+    }
+    
+    private static String csvLine(String[] fields) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            String field = fields[i];
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0) {
+                line.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(field);
+            }
+        }
+        return line.append('\n').toString();
+    }
+}
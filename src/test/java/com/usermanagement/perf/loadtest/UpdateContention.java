@@ -0,0 +1,135 @@
+package com.usermanagement.perf.loadtest;
+
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write throughput under contention: --workers closed loops edit the same --users users. Each
+ * edit GETs the user and PUTs a new name with the ETag in If-Match, starting over on 412, so the
+ * rate of committed edits, the share of attempts that conflicted and the latency of an edit
+ * including its retries show what optimistic concurrency costs. --if-match=false sends the same
+ * PUTs without the header (last write wins) as the baseline.
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.usermanagement.perf.loadtest.UpdateContention \
+ *     -Dexec.args="--workers=32 --users=4 --duration=60"
+ * </pre>
+ * Every PUT carries a password (the API requires one), so BCrypt sets a ceiling on the rate; run
+ * both modes against the same server to compare.
+ */
+public class UpdateContention {
+    
+    private UpdateContention() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        int workers = options.getInt("workers", 32);
+        int userCount = options.getInt("users", 4);
+        int durationSeconds = options.getInt("duration", 60);
+        int warmupSeconds = options.getInt("warmup", 10);
+        boolean ifMatch = Boolean.parseBoolean(options.get("if-match", "true"));
+        
+        ApiClient client = new ApiClient(options.get("base-url", "http://localhost:8080"),
+                options.get("email", "admin@example.com"), options.get("password", "admin123"), workers);
+        client.authenticate();
+        
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        long[] ids = new long[userCount];
+        String[] emails = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            emails[i] = "contention-" + runId + "-" + i + "@loadtest.example";
+            HttpResponse<String> created = client.send("POST", "/api/users",
+                    body("Contention " + i, emails[i])).join();
+            if (created.statusCode() != 201) {
+                throw new IllegalStateException("Could not create user: " + created.statusCode() + " " + created.body());
+            }
+            ids[i] = client.parse(created.body()).path("id").asLong();
+        }
+        System.out.printf("%d workers on %d users for %ds (+%ds warm-up), If-Match %s%n",
+                workers, userCount, durationSeconds, warmupSeconds, ifMatch ? "on" : "off");
+        
+        try {
+            run(client, ids, emails, workers, warmupSeconds, ifMatch, new LatencyRecorder(), new LongAdder());
+            LatencyRecorder recorder = new LatencyRecorder();
+            LongAdder conflicts = new LongAdder();
+            long committed = run(client, ids, emails, workers, durationSeconds, ifMatch, recorder, conflicts);
+            
+            System.out.printf("%,d edits committed (%.0f/s), %,d conflicts (%.1f%% of PUTs)%n",
+                    committed, committed / (double) durationSeconds, conflicts.sum(),
+                    100.0 * conflicts.sum() / Math.max(1, committed + conflicts.sum()));
+            recorder.printSummary(System.out);
+            recorder.writeHistograms(Paths.get(options.get("out", "target/loadtest/contention")));
+        } finally {
+            for (long id : ids) {
+                client.send("DELETE", "/api/users/" + id, null).join();
+            }
+        }
+        System.exit(0);
+    }
+    
+    private static long run(ApiClient client, long[] ids, String[] emails, int workers, int seconds,
+                            boolean ifMatch, LatencyRecorder recorder, LongAdder conflicts) throws InterruptedException {
+        if (seconds <= 0) {
+            return 0;
+        }
+        LongAdder committed = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>(workers);
+        for (int worker = 0; worker < workers; worker++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    int user = random.nextInt(ids.length);
+                    int status = edit(client, ids[user], emails[user], ifMatch, recorder, conflicts, end);
+                    if (status == 200) {
+                        committed.increment();
+                    }
+                }
+            }, "contention-" + worker);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return committed.sum();
+    }
+    
+    // Read, change, write until the write is not a conflict; the status of the last PUT
+    private static int edit(ApiClient client, long id, String email, boolean ifMatch,
+                            LatencyRecorder recorder, LongAdder conflicts, long end) {
+        long started = System.nanoTime();
+        while (true) {
+            long getStarted = System.nanoTime();
+            HttpResponse<String> current = client.send("GET", "/api/users/" + id, null).join();
+            recorder.record("GET /api/users/{id}", getStarted, current.statusCode());
+            String etag = current.headers().firstValue("ETag").orElse(null);
+            
+            long putStarted = System.nanoTime();
+            Map<String, String> headers = ifMatch && etag != null ? Map.of("If-Match", etag) : Map.of();
+            int status = client.send("PUT", "/api/users/" + id,
+                    body("Contention " + ThreadLocalRandom.current().nextInt(1_000_000), email), headers)
+                    .join().statusCode();
+            recorder.record("PUT /api/users/{id}", putStarted, status);
+            if (status != 412) {
+                recorder.record("edit incl. retries", started, status);
+                return status;
+            }
+            conflicts.increment();
+            if (System.nanoTime() >= end) {
+                return status;
+            }
+        }
+    }
+    
+    private static Map<String, String> body(String name, String email) {
+        return Map.of("name", name, "email", email, "password", "loadtest-password");
+    }
+}
@@ -0,0 +1,181 @@
+package com.usermanagement.perf.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The REST operations a load test is made of. Reads target users that exist before the run;
+ * updates and deletes only touch users this run created, so a run never damages seeded data.
+ */
+final class Workload {
+    
+    enum Operation {
+        LOGIN("POST /api/auth/login", 5),
+        ME("GET /api/auth/me", 20),
+        LIST("GET /api/users", 25),
+        SEARCH("GET /api/users/search", 15),
+        GET("GET /api/users/{id}", 20),
+        CREATE("POST /api/users", 6),
+        UPDATE("PUT /api/users/{id}", 6),
+        DELETE("DELETE /api/users/{id}", 3);
+        
+        private final String endpoint;
+        private final int defaultWeight;
+        
+        Operation(String endpoint, int defaultWeight) {
+            this.endpoint = endpoint;
+            this.defaultWeight = defaultWeight;
+        }
+        
+        String getEndpoint() {
+            return endpoint;
+        }
+        
+        int getDefaultWeight() {
+            return defaultWeight;
+        }
+    }
+    
+    private final ApiClient client;
+    private final long seed;
+    private final long syntheticUsers;
+    private final String listCountMode;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong created = new AtomicLong();
+    
+    private volatile long[] knownIds = new long[0];
+    private final Map<Long, String> createdEmails = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> deletable = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * @param syntheticUsers how many users of {@link SyntheticUsers} with this seed were imported;
+     *                       0 makes every login use the admin account
+     */
+    Workload(ApiClient client, long seed, long syntheticUsers, String listCountMode) {
+        this.client = client;
+        this.seed = seed;
+        this.syntheticUsers = syntheticUsers;
+        this.listCountMode = listCountMode;
+    }
+    
+    // Ids for GET /api/users/{id}, read page by page without counting
+    void loadKnownIds(int max) {
+        List<Long> ids = new ArrayList<>();
+        for (int page = 0; ids.size() < max; page++) {
+            HttpResponse<String> response = client.send("GET", "/api/users?count=none&size=500&page=" + page, null).join();
+            JsonNode body = client.parse(response.body());
+            for (JsonNode user : body.path("users")) {
+                ids.add(user.path("id").asLong());
+            }
+            if (!body.path("hasNext").asBoolean(false)) {
+                break;
+            }
+        }
+        long[] loaded = new long[Math.min(ids.size(), max)];
+        for (int i = 0; i < loaded.length; i++) {
+            loaded[i] = ids.get(i);
+        }
+        knownIds = loaded;
+    }
+    
+    int knownIdCount() {
+        return knownIds.length;
+    }
+    
+    // Completes with the HTTP status; never completes exceptionally for HTTP errors
+    CompletableFuture<Integer> execute(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case LOGIN:
+                if (syntheticUsers > 0) {
+                    String[] user = SyntheticUsers.user(seed, random.nextLong(syntheticUsers));
+                    return status(client.login(user[1], user[2]));
+                }
+                return status(client.loginAsConfiguredUser());
+            case ME:
+                return status(client.send("GET", "/api/auth/me", null));
+            case LIST:
+                return status(client.send("GET", "/api/users?size=10&page=" + random.nextInt(20) + countParam("&"), null));
+            case SEARCH:
+                String keyword = SyntheticUsers.randomKeyword(new SplittableRandom(random.nextLong()));
+                return status(client.send("GET", "/api/users/search?keyword="
+                        + URLEncoder.encode(keyword, StandardCharsets.UTF_8) + "&size=10" + countParam("&"), null));
+            case GET:
+                return status(client.send("GET", "/api/users/" + randomKnownId(random), null));
+            case CREATE:
+                return create();
+            case UPDATE:
+                return update(random);
+            case DELETE:
+                return delete();
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+    
+    // Replays a captured GET as-is, for paths no operation covers
+    CompletableFuture<Integer> replayGet(String pathAndQuery) {
+        return status(client.send("GET", pathAndQuery, null));
+    }
+    
+    long randomKnownId(ThreadLocalRandom random) {
+        long[] ids = knownIds;
+        return ids.length == 0 ? 1 : ids[random.nextInt(ids.length)];
+    }
+    
+    private CompletableFuture<Integer> create() {
+        long n = created.incrementAndGet();
+        String email = "lt-" + runId + "-" + n + "@loadtest.example";
+        return client.send("POST", "/api/users", userBody("Load Test " + n, email)).thenApply(response -> {
+            if (response.statusCode() == 201) {
+                long id = client.parse(response.body()).path("id").asLong();
+                createdEmails.put(id, email);
+                deletable.add(id);
+            }
+            return response.statusCode();
+        }).exceptionally(error -> 0);
+    }
+    
+    // All updates go to the oldest live user of this run: a hot account, like identity-sync bursts
+    private CompletableFuture<Integer> update(ThreadLocalRandom random) {
+        Long id = deletable.peek();
+        String email = id != null ? createdEmails.get(id) : null;
+        if (email == null) {
+            return create();
+        }
+        return status(client.send("PUT", "/api/users/" + id, userBody("Load Test " + random.nextInt(1_000_000), email)));
+    }
+    
+    private CompletableFuture<Integer> delete() {
+        Long id = deletable.poll();
+        if (id == null) {
+            return create();
+        }
+        createdEmails.remove(id);
+        return status(client.send("DELETE", "/api/users/" + id, null));
+    }
+    
+    private String countParam(String separator) {
+        return listCountMode == null ? "" : separator + "count=" + listCountMode;
+    }
+    
+    private static Map<String, String> userBody(String name, String email) {
+        return Map.of("name", name, "email", email, "password", "loadtest-password");
+    }
+    
+    private static CompletableFuture<Integer> status(CompletableFuture<HttpResponse<String>> response) {
+        return response.thenApply(HttpResponse::statusCode).exceptionally(error -> 0);
+    }
+}
@@ -0,0 +1,137 @@
+package com.usermanagement.security;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ArchiveRestoringAuthenticationProviderTest {
+    
+    private static final String EMAIL = "a@example.com";
+    private static final String PASSWORD = "secret123";
+    
+    // Lowest BCrypt cost, to keep the tests fast
+    private static final PasswordEncoder PASSWORD_ENCODER = new BCryptPasswordEncoder(4);
+    private static final String HASH = PASSWORD_ENCODER.encode(PASSWORD);
+    
+    @Mock
+    private UserDetailsService activeUsers;
+    
+    @Mock
+    private UserService userService;
+    
+    private ArchiveRestoringAuthenticationProvider provider;
+    
+    @BeforeEach
+    void setUp() {
+        provider = new ArchiveRestoringAuthenticationProvider(activeUsers, userService, PASSWORD_ENCODER);
+    }
+    
+    @Test
+    void anActiveUserNeverTouchesTheArchive() {
+        when(activeUsers.loadUserByUsername(EMAIL)).thenReturn(AuthenticatedUser.of(user(1L, 3)));
+        
+        Authentication result = provider.authenticate(login(PASSWORD));
+        
+        assertThat(((AuthenticatedUser) result.getPrincipal()).getId()).isEqualTo(1L);
+        verify(userService, never()).findArchivedUser(anyString());
+        verify(userService, never()).restoreArchivedUser(anyString());
+    }
+    
+    @Test
+    void aWrongPasswordLeavesTheUserArchived() {
+        archived(user(1L, 3));
+        
+        assertThatThrownBy(() -> provider.authenticate(login("wrong-password")))
+                .isInstanceOf(BadCredentialsException.class);
+        
+        verify(userService, never()).restoreArchivedUser(anyString());
+    }
+    
+    @Test
+    void theRightPasswordRestoresTheUser() {
+        archived(user(1L, 3));
+        User restored = user(1L, 4);
+        when(userService.restoreArchivedUser(EMAIL)).thenReturn(Optional.of(restored));
+        
+        Authentication result = provider.authenticate(login(PASSWORD));
+        
+        AuthenticatedUser principal = (AuthenticatedUser) result.getPrincipal();
+        assertThat(principal.isArchived()).isFalse();
+        assertThat(principal.getId()).isEqualTo(1L);
+        // Token claims carry the version of the restored row, not the archived one
+        assertThat(principal.getVersion()).isEqualTo(AuthenticatedUser.versionOf(restored));
+        assertThat(result.isAuthenticated()).isTrue();
+    }
+    
+    @Test
+    void aUserRestoredByAConcurrentLoginIsAccepted() {
+        archived(user(1L, 3));
+        when(userService.restoreArchivedUser(EMAIL)).thenReturn(Optional.empty());
+        when(userService.findByEmail(EMAIL)).thenReturn(Optional.of(user(1L, 4)));
+        
+        Authentication result = provider.authenticate(login(PASSWORD));
+        
+        assertThat(((AuthenticatedUser) result.getPrincipal()).getId()).isEqualTo(1L);
+    }
+    
+    @Test
+    void anEmailRegisteredAgainKeepsTheOldAccountArchived() {
+        archived(user(1L, 3));
+        when(userService.restoreArchivedUser(EMAIL)).thenReturn(Optional.empty());
+        when(userService.findByEmail(EMAIL)).thenReturn(Optional.of(user(2L, 0)));
+        
+        assertThatThrownBy(() -> provider.authenticate(login(PASSWORD)))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+    
+    @Test
+    void anUnknownEmailFailsLikeAWrongPassword() {
+        when(activeUsers.loadUserByUsername(EMAIL)).thenThrow(new UsernameNotFoundException(EMAIL));
+        when(userService.findArchivedUser(EMAIL)).thenReturn(Optional.empty());
+        
+        assertThatThrownBy(() -> provider.authenticate(login(PASSWORD)))
+                .isInstanceOf(BadCredentialsException.class);
+        
+        verify(userService, never()).restoreArchivedUser(anyString());
+    }
+    
+    private void archived(User user) {
+        when(activeUsers.loadUserByUsername(EMAIL)).thenThrow(new UsernameNotFoundException(EMAIL));
+        when(userService.findArchivedUser(EMAIL)).thenReturn(Optional.of(user));
+    }
+    
+    private static UsernamePasswordAuthenticationToken login(String password) {
+        return UsernamePasswordAuthenticationToken.unauthenticated(EMAIL, password);
+    }
+    
+    private static User user(Long id, int updates) {
+        User user = new User("Nguyễn Văn A", EMAIL, HASH);
+        user.setId(id);
+        user.setCreatedAt(LocalDateTime.of(2023, 1, 1, 10, 0));
+        user.setUpdatedAt(LocalDateTime.of(2023, 1, 1, 10, 0).plusDays(updates));
+        user.setVersion((long) updates);
+        return user;
+    }
+}
@@ -0,0 +1,151 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.event.UserChangedEvent;
+import com.usermanagement.repository.UserChangeEventRepository;
+import com.usermanagement.repository.UserStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeFeedServiceImplTest {
+    
+    @Mock
+    private UserChangeEventRepository changeEventRepository;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Mock
+    private UserStore userStore;
+    
+    @InjectMocks
+    private ChangeFeedServiceImpl changeFeedService;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(changeFeedService, "maxBatchSize", 1000);
+        ReflectionTestUtils.setField(changeFeedService, "gapTimeoutMs", 60_000L);
+    }
+    
+    @Test
+    void returnsAContiguousBatchWhole() {
+        committed(0, 1, 2, 3);
+        
+        assertThat(sequences(changeFeedService.getChangesAfter(0, 10))).containsExactly(1L, 2L, 3L);
+    }
+    
+    @Test
+    void stopsInFrontOfAGapThatMayStillCommit() {
+        committed(0, 1, 2, 4, 5);
+        
+        assertThat(sequences(changeFeedService.getChangesAfter(0, 10))).containsExactly(1L, 2L);
+        // Polled again within the gap timeout: still waiting for 3
+        assertThat(sequences(changeFeedService.getChangesAfter(0, 10))).containsExactly(1L, 2L);
+    }
+    
+    @Test
+    void returnsNothingWhileTheNextSequenceIsMissing() {
+        committed(2, 4, 5);
+        
+        assertThat(changeFeedService.getChangesAfter(2, 10)).isEmpty();
+    }
+    
+    @Test
+    void continuesOnceTheGapCommits() {
+        committed(2, 4);
+        assertThat(changeFeedService.getChangesAfter(2, 10)).isEmpty();
+        
+        committed(2, 3, 4);
+        
+        assertThat(sequences(changeFeedService.getChangesAfter(2, 10))).containsExactly(3L, 4L);
+    }
+    
+    @Test
+    void skipsAGapOpenForTheGapTimeout() {
+        committed(2, 4, 5);
+        assertThat(changeFeedService.getChangesAfter(2, 10)).isEmpty();
+        
+        openGapsSeenMsAgo(60_001);
+        
+        assertThat(sequences(changeFeedService.getChangesAfter(2, 10))).containsExactly(4L, 5L);
+    }
+    
+    @Test
+    void timesEachGapFromWhenItWasFirstSeen() {
+        committed(0, 1, 3, 5);
+        assertThat(sequences(changeFeedService.getChangesAfter(0, 10))).containsExactly(1L);
+        openGapsSeenMsAgo(60_001);
+        
+        // The gap at 2 has timed out, the one at 4 is seen for the first time now
+        assertThat(sequences(changeFeedService.getChangesAfter(0, 10))).containsExactly(1L, 3L);
+    }
+    
+    @Test
+    void recordSavesTheOutboxRowInTheCallersTransaction() {
+        when(userStore.recordsChanges()).thenReturn(false);
+        when(changeEventRepository.save(any(UserChangeEvent.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        changeFeedService.record(UserChangeEvent.Operation.CREATED, user());
+        
+        verify(changeEventRepository).save(any(UserChangeEvent.class));
+        verify(eventPublisher).publishEvent(any(UserChangedEvent.class));
+    }
+    
+    @Test
+    void recordLeavesTheOutboxRowToAStoreThatWritesItsOwn() {
+        when(userStore.recordsChanges()).thenReturn(true);
+        
+        changeFeedService.record(UserChangeEvent.Operation.UPDATED, user());
+        
+        verify(changeEventRepository, never()).save(any(UserChangeEvent.class));
+        verify(eventPublisher).publishEvent(any(UserChangedEvent.class));
+    }
+    
+    // The rows after cursor that are visible right now
+    private void committed(long cursor, long... sequences) {
+        List<UserChangeEvent> changes = new ArrayList<>();
+        for (long sequence : sequences) {
+            UserChangeEvent change = new UserChangeEvent(UserChangeEvent.Operation.UPDATED, user());
+            change.setSequence(sequence);
+            changes.add(change);
+        }
+        when(changeEventRepository.findBySequenceGreaterThanOrderBySequenceAsc(eq(cursor), any(Pageable.class)))
+                .thenReturn(changes);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void openGapsSeenMsAgo(long ms) {
+        Map<Long, Long> openGaps = (Map<Long, Long>) ReflectionTestUtils.getField(changeFeedService, "openGaps");
+        openGaps.replaceAll((sequence, seenAt) -> seenAt - ms);
+    }
+    
+    private static List<Long> sequences(List<UserChangeEvent> changes) {
+        return changes.stream().map(UserChangeEvent::getSequence).toList();
+    }
+    
+    private static User user() {
+        User user = new User("Nguyễn Văn A", "a@example.com", "hash");
+        user.setId(1L);
+        return user;
+    }
+}
@@ -0,0 +1,133 @@
+package com.usermanagement.service.impl;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Every chunk size must give the records, and record numbers, of one CSVReader over the whole file
+class ChunkedCsvParserTest {
+    
+    private static final String TRICKY = "name,email,password\n"
+            + "\"Nguyễn Văn A\",a@example.com,secret1\n"
+            + "\"Trần\nThị\nB\",b@example.com,secret2\n"
+            + "\"Lê \"\"Bé\"\"\nC\",c@example.com,\"pass\n\"\"word\"\"\"\n"
+            + "\"Phạm \\\"D\\\"\n\",d@example.com,\"back\\\\\"\n"
+            + "\r\n"
+            + "Hoàng E,e@example.com,secret5\r\n"
+            + "\"Vũ\r\nF\",f@example.com,secret6\r\n"
+            + "\n"
+            + "Đỗ G,g@example.com,\"\"\"\n\"\"\"";
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void everyChunkSizeSplitsOnlyBetweenRecords() throws IOException, CsvException {
+        Path file = write(TRICKY);
+        List<String[]> expected = readWhole(TRICKY);
+        int size = TRICKY.getBytes(StandardCharsets.UTF_8).length;
+        
+        for (int threads : new int[] {1, 3}) {
+            for (long chunkBytes = 1; chunkBytes <= size + 1; chunkBytes++) {
+                try (ChunkedCsvParser parser = new ChunkedCsvParser(threads, chunkBytes)) {
+                    List<ChunkedCsvParser.Batch> batches = parser.parse(file);
+                    
+                    assertThat(flatten(batches)).as("threads=%d chunkBytes=%d", threads, chunkBytes)
+                            .containsExactlyElementsOf(expected);
+                    assertNumberedInOrder(batches);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void quotedNewlinesNeverEndARecord() {
+        String csv = "a,\"b\nc\"\n\"d\"\"\ne\",f\n\"g\\\"\nh\"\n";
+        
+        assertThat(boundaries(csv)).containsExactly(csv.indexOf("c\"\n") + 2, csv.indexOf("f\n") + 1, csv.length() - 1);
+    }
+    
+    @Test
+    void aBackslashEscapesTheNextByte() {
+        // The escaped quote does not open a quoted field, an escaped backslash does not escape the quote after it
+        String csv = "a\\\",b\n\"c\\\\\",d\n";
+        
+        assertThat(boundaries(csv)).containsExactly(csv.indexOf("b\n") + 1, csv.length() - 1);
+    }
+    
+    @Test
+    void crlfEndsARecordOnItsNewline() {
+        String csv = "a,b\r\n\"c\r\nd\",e\r\n";
+        
+        assertThat(boundaries(csv)).containsExactly(4, csv.length() - 1);
+    }
+    
+    @Test
+    void anEmptyFileHasNoBatches() throws IOException, CsvException {
+        try (ChunkedCsvParser parser = new ChunkedCsvParser(2, 16)) {
+            assertThat(parser.parse(write(""))).isEmpty();
+        }
+    }
+    
+    @Test
+    void largeChunksKeepTheFileInOneBatch() throws IOException, CsvException {
+        try (ChunkedCsvParser parser = new ChunkedCsvParser(2, 1 << 20)) {
+            List<ChunkedCsvParser.Batch> batches = parser.parse(write(TRICKY));
+            
+            assertThat(batches).hasSize(1);
+            assertThat(batches.get(0).getFirstRecordNumber()).isEqualTo(1);
+            assertThat(batches.get(0).getRecords()).containsExactlyElementsOf(readWhole(TRICKY));
+        }
+    }
+    
+    private Path write(String csv) throws IOException {
+        Path file = Files.createTempFile(tempDir, "import", ".csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        return file;
+    }
+    
+    private static List<String[]> readWhole(String csv) throws IOException, CsvException {
+        try (CSVReader reader = new CSVReader(new StringReader(csv))) {
+            return reader.readAll();
+        }
+    }
+    
+    private static List<String[]> flatten(List<ChunkedCsvParser.Batch> batches) {
+        List<String[]> records = new ArrayList<>();
+        batches.forEach(batch -> records.addAll(batch.getRecords()));
+        return records;
+    }
+    
+    private static void assertNumberedInOrder(List<ChunkedCsvParser.Batch> batches) {
+        int next = 1;
+        for (ChunkedCsvParser.Batch batch : batches) {
+            assertThat(batch.getFirstRecordNumber()).isEqualTo(next);
+            assertThat(batch.getRecords()).isNotEmpty();
+            next += batch.getRecords().size();
+        }
+    }
+    
+    // Byte offsets of the newlines that end a record (the inputs are ASCII)
+    private static List<Integer> boundaries(String csv) {
+        CsvQuoteTracker quotes = new CsvQuoteTracker();
+        List<Integer> ends = new ArrayList<>();
+        byte[] bytes = csv.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < bytes.length; i++) {
+            if (quotes.endsRecord(bytes[i])) {
+                ends.add(i);
+            }
+        }
+        return ends;
+    }
+}
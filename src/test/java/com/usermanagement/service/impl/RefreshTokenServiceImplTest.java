@@ -0,0 +1,199 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.RefreshToken;
+import com.usermanagement.entity.User;
+import com.usermanagement.repository.RefreshTokenRepository;
+import com.usermanagement.security.AuthenticatedUser;
+import com.usermanagement.security.JwtTokenProvider;
+import com.usermanagement.security.ServerSecrets;
+import com.usermanagement.service.TokenPair;
+import com.usermanagement.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+
+// Rotation and reuse detection against an in-memory stand-in for the refresh_tokens table
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceImplTest {
+    
+    private static final String EMAIL = "a@example.com";
+    
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+    
+    @Mock
+    private JwtTokenProvider tokenProvider;
+    
+    @Mock
+    private UserService userService;
+    
+    @Mock
+    private ServerSecrets serverSecrets;
+    
+    @InjectMocks
+    private RefreshTokenServiceImpl refreshTokenService;
+    
+    private final List<RefreshToken> table = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(refreshTokenService, "refreshExpiration", 2_592_000_000L);
+        ReflectionTestUtils.setField(refreshTokenService, "reuseGraceMs", 10_000L);
+        lenient().when(serverSecrets.derive("refresh-token-successor")).thenReturn(new byte[32]);
+        refreshTokenService.init();
+        
+        User user = new User("Nguyễn Văn A", EMAIL, "hash");
+        user.setId(1L);
+        lenient().when(userService.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        lenient().when(tokenProvider.generateToken(any(AuthenticatedUser.class))).thenReturn("access-token");
+        lenient().when(tokenProvider.getExpiration()).thenReturn(900_000L);
+        
+        lenient().when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> {
+            RefreshToken token = invocation.getArgument(0);
+            token.setId((long) table.size() + 1);
+            token.setCreatedAt(LocalDateTime.now());
+            table.add(token);
+            return token;
+        });
+        lenient().when(refreshTokenRepository.findByTokenHash(anyString()))
+                .thenAnswer(invocation -> find(invocation.getArgument(0)));
+        lenient().when(refreshTokenRepository.findForShareByTokenHash(anyString()))
+                .thenAnswer(invocation -> find(invocation.getArgument(0)));
+        lenient().when(refreshTokenRepository.markRevoked(anyLong(), any(LocalDateTime.class))).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            RefreshToken token = table.get(id.intValue() - 1);
+            if (token.isRevoked()) {
+                return 0;
+            }
+            token.setRevokedAt(invocation.getArgument(1));
+            return 1;
+        });
+        lenient().when(refreshTokenRepository.revokeFamily(anyString(), any(LocalDateTime.class))).thenAnswer(invocation -> {
+            int revoked = 0;
+            for (RefreshToken token : table) {
+                if (token.getFamilyId().equals(invocation.getArgument(0)) && !token.isRevoked()) {
+                    token.setRevokedAt(invocation.getArgument(1));
+                    revoked++;
+                }
+            }
+            return revoked;
+        });
+    }
+    
+    @Test
+    void refreshRotatesWithinTheFamily() {
+        TokenPair login = refreshTokenService.issueTokens(authenticatedUser());
+        
+        TokenPair refreshed = refreshTokenService.refresh(login.getRefreshToken());
+        
+        assertThat(refreshed.getRefreshToken()).isNotEqualTo(login.getRefreshToken());
+        assertThat(refreshed.getAccessToken()).isEqualTo("access-token");
+        assertThat(table).hasSize(2);
+        assertThat(table.get(0).isRevoked()).isTrue();
+        assertThat(table.get(1).isRevoked()).isFalse();
+        assertThat(table.get(1).getFamilyId()).isEqualTo(table.get(0).getFamilyId());
+    }
+    
+    @Test
+    void aRetryWithinTheGraceWindowGetsTheSameSuccessor() {
+        TokenPair login = refreshTokenService.issueTokens(authenticatedUser());
+        TokenPair first = refreshTokenService.refresh(login.getRefreshToken());
+        
+        TokenPair retry = refreshTokenService.refresh(login.getRefreshToken());
+        
+        assertThat(retry.getRefreshToken()).isEqualTo(first.getRefreshToken());
+        assertThat(table).hasSize(2);
+        assertThat(table.get(1).isRevoked()).isFalse();
+    }
+    
+    @Test
+    void reuseAfterTheGraceWindowRevokesTheFamily() {
+        TokenPair login = refreshTokenService.issueTokens(authenticatedUser());
+        TokenPair refreshed = refreshTokenService.refresh(login.getRefreshToken());
+        table.get(1).setCreatedAt(LocalDateTime.now().minusSeconds(11));
+        
+        assertThatThrownBy(() -> refreshTokenService.refresh(login.getRefreshToken()))
+                .isInstanceOf(BadCredentialsException.class);
+        
+        assertThat(table).allMatch(RefreshToken::isRevoked);
+        assertThatThrownBy(() -> refreshTokenService.refresh(refreshed.getRefreshToken()))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+    
+    @Test
+    void reuseOfATokenWhoseSuccessorRotatedRevokesTheFamily() {
+        TokenPair login = refreshTokenService.issueTokens(authenticatedUser());
+        TokenPair second = refreshTokenService.refresh(login.getRefreshToken());
+        TokenPair third = refreshTokenService.refresh(second.getRefreshToken());
+        
+        assertThatThrownBy(() -> refreshTokenService.refresh(login.getRefreshToken()))
+                .isInstanceOf(BadCredentialsException.class);
+        
+        assertThat(table).allMatch(RefreshToken::isRevoked);
+        assertThatThrownBy(() -> refreshTokenService.refresh(third.getRefreshToken()))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+    
+    @Test
+    void otherFamiliesSurviveAReuse() {
+        TokenPair stolen = refreshTokenService.issueTokens(authenticatedUser());
+        TokenPair otherDevice = refreshTokenService.issueTokens(authenticatedUser());
+        TokenPair rotated = refreshTokenService.refresh(stolen.getRefreshToken());
+        refreshTokenService.refresh(rotated.getRefreshToken());
+        
+        assertThatThrownBy(() -> refreshTokenService.refresh(stolen.getRefreshToken()))
+                .isInstanceOf(BadCredentialsException.class);
+        
+        assertThat(refreshTokenService.refresh(otherDevice.getRefreshToken()).getRefreshToken()).isNotNull();
+    }
+    
+    @Test
+    void unknownAndExpiredTokensAreRejected() {
+        assertThatThrownBy(() -> refreshTokenService.refresh("never-issued"))
+                .isInstanceOf(BadCredentialsException.class);
+        
+        TokenPair login = refreshTokenService.issueTokens(authenticatedUser());
+        table.get(0).setExpiresAt(LocalDateTime.now().minusSeconds(1));
+        
+        assertThatThrownBy(() -> refreshTokenService.refresh(login.getRefreshToken()))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThat(table).hasSize(1);
+    }
+    
+    @Test
+    void logoutRevokesTheWholeFamily() {
+        TokenPair login = refreshTokenService.issueTokens(authenticatedUser());
+        TokenPair refreshed = refreshTokenService.refresh(login.getRefreshToken());
+        
+        refreshTokenService.revoke(refreshed.getRefreshToken());
+        
+        assertThat(table).allMatch(RefreshToken::isRevoked);
+    }
+    
+    private Optional<RefreshToken> find(String tokenHash) {
+        return table.stream().filter(token -> token.getTokenHash().equals(tokenHash)).findFirst();
+    }
+    
+    private static AuthenticatedUser authenticatedUser() {
+        User user = new User("Nguyễn Văn A", EMAIL, "hash");
+        user.setId(1L);
+        return AuthenticatedUser.of(user);
+    }
+}
@@ -0,0 +1,124 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.UserStore;
+import com.usermanagement.security.LastLoginTracker;
+import com.usermanagement.service.ChangeFeedService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserArchiverTest {
+    
+    @Mock
+    private UserStore userStore;
+    
+    @Mock
+    private LastLoginTracker lastLoginTracker;
+    
+    @Mock
+    private ChangeFeedService changeFeedService;
+    
+    @Mock
+    private UserDirectory userDirectory;
+    
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    
+    @InjectMocks
+    private UserArchiver archiver;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(archiver, "inactiveDays", 365L);
+        ReflectionTestUtils.setField(archiver, "batchSize", 2);
+        ReflectionTestUtils.setField(archiver, "pauseMs", 0L);
+        ReflectionTestUtils.setField(archiver, "maxPerRun", 100_000);
+        ReflectionTestUtils.setField(archiver, "transactionTemplate", new TransactionTemplate(transactionManager));
+    }
+    
+    @Test
+    void archivesInChunksUntilNoInactiveUserIsLeft() {
+        when(userStore.archiveInactive(any(LocalDateTime.class), eq(2)))
+                .thenReturn(users(1, 2), users(3, 4), users(5), List.of());
+        
+        archiver.archiveInactiveUsers();
+        
+        verify(userStore, times(4)).archiveInactive(any(LocalDateTime.class), eq(2));
+        // Readers see archival as a deletion
+        verify(changeFeedService, times(5)).record(eq(UserChangeEvent.Operation.DELETED), any(User.class));
+        for (long id = 1; id <= 5; id++) {
+            verify(userDirectory).deleted(id);
+        }
+    }
+    
+    @Test
+    void flushesPendingLoginsBeforeJudgingInactivity() {
+        when(userStore.archiveInactive(any(LocalDateTime.class), anyInt())).thenReturn(List.of());
+        
+        archiver.archiveInactiveUsers();
+        
+        InOrder order = inOrder(lastLoginTracker, userStore);
+        order.verify(lastLoginTracker).flush();
+        order.verify(userStore).archiveInactive(any(LocalDateTime.class), anyInt());
+    }
+    
+    @Test
+    void archivesUsersInactiveForTheConfiguredDays() {
+        List<LocalDateTime> cutoffs = new ArrayList<>();
+        when(userStore.archiveInactive(any(LocalDateTime.class), anyInt())).thenAnswer(invocation -> {
+            cutoffs.add(invocation.getArgument(0));
+            return List.of();
+        });
+        LocalDateTime before = LocalDateTime.now().minusDays(365);
+        
+        archiver.archiveInactiveUsers();
+        
+        assertThat(cutoffs).singleElement().satisfies(cutoff ->
+                assertThat(cutoff).isAfterOrEqualTo(before).isBeforeOrEqualTo(LocalDateTime.now().minusDays(365)));
+    }
+    
+    @Test
+    void stopsAtMaxPerRun() {
+        ReflectionTestUtils.setField(archiver, "maxPerRun", 3);
+        when(userStore.archiveInactive(any(LocalDateTime.class), eq(2)))
+                .thenReturn(users(1, 2), users(3, 4), users(5, 6));
+        
+        archiver.archiveInactiveUsers();
+        
+        // The chunk that crosses the cap is finished, the next one waits for the next run
+        verify(userStore, times(2)).archiveInactive(any(LocalDateTime.class), eq(2));
+    }
+    
+    private static List<User> users(long... ids) {
+        List<User> users = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            User user = new User("Nguyễn Văn " + id, "user" + id + "@example.com", "hash");
+            user.setId(id);
+            users.add(user);
+        }
+        return users;
+    }
+}
@@ -0,0 +1,68 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.repository.UserStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserPurgerTest {
+    
+    @Mock
+    private UserStore userStore;
+    
+    @InjectMocks
+    private UserPurger purger;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(purger, "batchSize", 200);
+        ReflectionTestUtils.setField(purger, "pauseMs", 0L);
+    }
+    
+    @Test
+    void purgesInBatchesUntilNoDeletedRowIsLeft() {
+        when(userStore.purgeDeleted(200)).thenReturn(200, 200, 37, 0);
+        
+        purger.purgeDeletedUsers();
+        
+        verify(userStore, times(4)).purgeDeleted(200);
+    }
+    
+    @Test
+    void aTableWithoutDeletedRowsTakesOneQuery() {
+        when(userStore.purgeDeleted(200)).thenReturn(0);
+        
+        purger.purgeDeletedUsers();
+        
+        verify(userStore).purgeDeleted(200);
+        verify(userStore, never()).purgeDeleted(anyCollection());
+    }
+    
+    @Test
+    void anInterruptEndsTheRunAfterTheCurrentBatch() {
+        // Long enough to stand out if the pause ignored the interrupt
+        ReflectionTestUtils.setField(purger, "pauseMs", 60_000L);
+        when(userStore.purgeDeleted(200)).thenReturn(200);
+        Thread.currentThread().interrupt();
+        
+        try {
+            purger.purgeDeletedUsers();
+        } finally {
+            Thread.interrupted();
+        }
+        
+        verify(userStore).purgeDeleted(anyInt());
+    }
+}
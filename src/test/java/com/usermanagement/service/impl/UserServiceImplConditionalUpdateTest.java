@@ -0,0 +1,128 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.audit.AuditLog;
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.UserStore;
+import com.usermanagement.service.ChangeFeedService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// updateUser with an If-Match version, against a write-behind coalescer that may hold an edit
+@ExtendWith(MockitoExtension.class)
+class UserServiceImplConditionalUpdateTest {
+    
+    @Mock
+    private UserStore userStore;
+    
+    @Mock
+    private PasswordEncoder passwordEncoder;
+    
+    @Mock
+    private ChangeFeedService changeFeedService;
+    
+    @Mock
+    private UserWriteCoalescer writeCoalescer;
+    
+    @Mock
+    private UserDirectory userDirectory;
+    
+    @Mock
+    private AuditLog auditLog;
+    
+    @InjectMocks
+    private UserServiceImpl userService;
+    
+    @Test
+    void writesWhenTheVersionStillMatches() {
+        when(writeCoalescer.flushPending(1L)).thenReturn(true);
+        when(userStore.updateIfVersion(any(User.class), eq(7L))).thenReturn(true);
+        when(userStore.findById(1L)).thenReturn(Optional.of(stored(8L)));
+        
+        User updated = userService.updateUser(1L, edit(), 7L);
+        
+        assertThat(updated.getVersion()).isEqualTo(8L);
+        verify(changeFeedService).record(eq(UserChangeEvent.Operation.UPDATED), any(User.class));
+        verify(writeCoalescer, never()).discard(anyLong());
+    }
+    
+    @Test
+    void failsThePreconditionWhenTheVersionMoved() {
+        when(writeCoalescer.flushPending(1L)).thenReturn(true);
+        when(userStore.updateIfVersion(any(User.class), eq(7L))).thenReturn(false);
+        when(userStore.findById(1L)).thenReturn(Optional.of(stored(9L)));
+        
+        assertThatThrownBy(() -> userService.updateUser(1L, edit(), 7L))
+                .isInstanceOf(OptimisticLockingFailureException.class)
+                .hasMessageContaining("version 9");
+        verify(changeFeedService, never()).record(any(), any());
+    }
+    
+    @Test
+    void writesAPendingEditBeforeCheckingTheVersion() {
+        when(writeCoalescer.flushPending(1L)).thenReturn(true);
+        // The flushed edit moved the user from 7 to 8
+        when(userStore.updateIfVersion(any(User.class), eq(7L))).thenReturn(false);
+        when(userStore.findById(1L)).thenReturn(Optional.of(stored(8L)));
+        
+        assertThatThrownBy(() -> userService.updateUser(1L, edit(), 7L))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        
+        InOrder order = inOrder(writeCoalescer, userStore);
+        order.verify(writeCoalescer).flushPending(1L);
+        order.verify(userStore).updateIfVersion(any(User.class), eq(7L));
+        verify(writeCoalescer, never()).discard(anyLong());
+    }
+    
+    @Test
+    void neitherDropsNorOverwritesAnEditThatCouldNotBeWritten() {
+        when(writeCoalescer.flushPending(1L)).thenReturn(false);
+        
+        assertThatThrownBy(() -> userService.updateUser(1L, edit(), 7L))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        
+        verify(userStore, never()).updateIfVersion(any(), any());
+        verify(writeCoalescer, never()).discard(anyLong());
+    }
+    
+    @Test
+    void anUnconditionalWriteSupersedesThePendingEdit() {
+        when(userStore.updateIfVersion(any(User.class), isNull())).thenReturn(true);
+        when(userStore.findById(1L)).thenReturn(Optional.of(stored(8L)));
+        
+        userService.updateUser(1L, edit(), null);
+        
+        verify(writeCoalescer).discard(1L);
+        verify(writeCoalescer, never()).flushPending(anyLong());
+    }
+    
+    private static User edit() {
+        return new User("Trần Thị B", "b@example.com", null);
+    }
+    
+    private static User stored(long version) {
+        User user = new User("Trần Thị B", "b@example.com", "hash");
+        user.setId(1L);
+        user.setVersion(version);
+        return user;
+    }
+}
@@ -0,0 +1,140 @@
+package com.usermanagement.service.impl;
+
+import com.usermanagement.audit.AuditLog;
+import com.usermanagement.entity.AuditEvent;
+import com.usermanagement.entity.User;
+import com.usermanagement.entity.UserChangeEvent;
+import com.usermanagement.repository.UserStore;
+import com.usermanagement.service.ChangeFeedService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// deleteUser with app.users.soft-delete.enabled, and the emails soft-deleted rows still hold
+@ExtendWith(MockitoExtension.class)
+class UserServiceImplSoftDeleteTest {
+    
+    @Mock
+    private UserStore userStore;
+    
+    @Mock
+    private PasswordEncoder passwordEncoder;
+    
+    @Mock
+    private ChangeFeedService changeFeedService;
+    
+    @Mock
+    private UserWriteCoalescer writeCoalescer;
+    
+    @Mock
+    private UserDirectory userDirectory;
+    
+    @Mock
+    private AuditLog auditLog;
+    
+    @InjectMocks
+    private UserServiceImpl userService;
+    
+    @Test
+    void deleteMarksTheRowAndPublishesTheTombstone() {
+        softDelete(true);
+        User user = stored();
+        when(userDirectory.findById(1L)).thenReturn(Optional.of(user));
+        when(writeCoalescer.overlay(user)).thenReturn(user);
+        when(userStore.softDelete(eq(1L), any(LocalDateTime.class))).thenReturn(true);
+        
+        userService.deleteUser(1L);
+        
+        InOrder order = inOrder(writeCoalescer, userStore, changeFeedService);
+        order.verify(writeCoalescer).discard(1L);
+        order.verify(userStore).softDelete(eq(1L), any(LocalDateTime.class));
+        order.verify(changeFeedService).record(UserChangeEvent.Operation.DELETED, user);
+        verify(userStore, never()).delete(any(User.class));
+        verify(userDirectory).deleted(1L);
+        verify(auditLog).record(AuditEvent.Action.DELETE, 1L, "b@example.com");
+    }
+    
+    @Test
+    void aRowDeletedMeanwhileIsNotFound() {
+        softDelete(true);
+        User user = stored();
+        when(userDirectory.findById(1L)).thenReturn(Optional.of(user));
+        when(writeCoalescer.overlay(user)).thenReturn(user);
+        when(userStore.softDelete(eq(1L), any(LocalDateTime.class))).thenReturn(false);
+        
+        assertThatThrownBy(() -> userService.deleteUser(1L))
+                .hasMessageContaining("User not found with id: 1");
+        
+        verify(changeFeedService, never()).record(any(), any());
+        verify(userDirectory, never()).deleted(any());
+    }
+    
+    @Test
+    void deleteRemovesTheRowWhenSoftDeleteIsOff() {
+        softDelete(false);
+        User user = stored();
+        when(userStore.findById(1L)).thenReturn(Optional.of(user));
+        
+        userService.deleteUser(1L);
+        
+        verify(userStore).delete(user);
+        verify(userStore, never()).softDelete(any(), any());
+        verify(changeFeedService).record(UserChangeEvent.Operation.DELETED, user);
+    }
+    
+    @Test
+    void createPurgesADeletedRowHoldingTheEmailFirst() {
+        softDelete(true);
+        User user = new User("Trần Thị B", " B@Example.com", "secret");
+        when(passwordEncoder.encode("secret")).thenReturn("hash");
+        when(userStore.save(user)).thenReturn(user);
+        
+        userService.createUser(user);
+        
+        // Both spellings, since MySQL compares emails case-insensitively
+        InOrder order = inOrder(userStore);
+        order.verify(userStore).purgeDeleted(List.of("B@Example.com", "b@example.com"));
+        order.verify(userStore).save(user);
+    }
+    
+    @Test
+    void createLeavesTheTableAloneWhenSoftDeleteIsOff() {
+        softDelete(false);
+        User user = new User("Trần Thị B", "b@example.com", "secret");
+        when(passwordEncoder.encode("secret")).thenReturn("hash");
+        when(userStore.save(user)).thenReturn(user);
+        
+        userService.createUser(user);
+        
+        verify(userStore, never()).purgeDeleted(anyCollection());
+    }
+    
+    private void softDelete(boolean enabled) {
+        ReflectionTestUtils.setField(userService, "softDelete", enabled);
+    }
+    
+    private static User stored() {
+        User user = new User("Trần Thị B", "b@example.com", "hash");
+        user.setId(1L);
+        user.setVersion(3L);
+        return user;
+    }
+}
@@ -0,0 +1,246 @@
+package com.usermanagement.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+
+// Bucket moves between in-memory H2 shards, with no wait between the steps
+@ExtendWith(MockitoExtension.class)
+class ShardRebalancerTest {
+    
+    private static final int BUCKET = 6;
+    
+    @Mock
+    private ShardOutboxRelay outboxRelay;
+    
+    private ShardSet shards;
+    
+    private BucketMap bucketMap;
+    
+    private ShardRebalancer rebalancer;
+    
+    private final List<BucketMap.State> statesWhenRelayed = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        shards = shards(2);
+        bucketMap = bucketMap(shards);
+        rebalancer = new ShardRebalancer();
+        ReflectionTestUtils.setField(rebalancer, "shards", shards);
+        ReflectionTestUtils.setField(rebalancer, "bucketMap", bucketMap);
+        ReflectionTestUtils.setField(rebalancer, "outboxRelay", outboxRelay);
+        // Smaller than a bucket, so the copy and the catch-up take several batches
+        ReflectionTestUtils.setField(rebalancer, "batchSize", 2);
+        ReflectionTestUtils.setField(rebalancer, "settleMs", 0L);
+        lenient().when(outboxRelay.relay(any(Shard.class))).thenAnswer(invocation -> {
+            statesWhenRelayed.add(bucketMap.stateOf(BUCKET));
+            return 0;
+        });
+    }
+    
+    @AfterEach
+    void tearDown() {
+        shards.close();
+    }
+    
+    @Test
+    void moveCopiesLiveRowsSwitchesTheOwnerAndDrainsTheSource() {
+        // Bucket 6 starts on shard 0 (round-robin over two shards)
+        for (int i = 1; i <= 5; i++) {
+            insert(0, i, "user" + i + "@example.com", 0);
+        }
+        insert(0, 6, "deleted@example.com", 0);
+        jdbc(0).update("UPDATE users SET deleted_at = ? WHERE id = ?", LocalDateTime.now(), id(6));
+        
+        rebalancer.moveBucket(BUCKET, 1);
+        
+        assertThat(bucketMap.ownerIndexOf(BUCKET)).isEqualTo(1);
+        assertThat(bucketMap.otherIndexOf(BUCKET)).isEqualTo(-1);
+        assertThat(bucketMap.stateOf(BUCKET)).isEqualTo(BucketMap.State.ACTIVE);
+        assertThat(ids(1)).containsExactly(id(1), id(2), id(3), id(4), id(5));
+        assertThat(ids(0)).isEmpty();
+        assertThat(bucketMap.ownedRowsCondition(0)).isEmpty();
+        assertThat(bucketMap.ownedRowsCondition(1)).isEmpty();
+    }
+    
+    @Test
+    void writesAreFrozenWhileTheSourceOutboxIsRelayed() {
+        insert(0, 1, "a@example.com", 0);
+        
+        rebalancer.moveBucket(BUCKET, 1);
+        
+        verify(outboxRelay).relay(shards.get(0));
+        assertThat(statesWhenRelayed).containsExactly(BucketMap.State.FROZEN);
+    }
+    
+    @Test
+    void catchUpCopiesWritesThatLandedDuringTheBulkCopy() {
+        insert(0, 1, "a@example.com", 0);
+        insert(0, 2, "b@example.com", 0);
+        insert(0, 3, "c@example.com", 0);
+        LocalDateTime lastLogin = LocalDateTime.of(2024, 6, 1, 8, 30);
+        // Committed on the source after the bulk copy read the rows, before the freeze took effect
+        doAnswer(invocation -> {
+            jdbc(0).update("UPDATE users SET last_login_at = ? WHERE id = ?", lastLogin, id(1));
+            jdbc(0).update("UPDATE users SET deleted_at = ? WHERE id = ?", LocalDateTime.now(), id(2));
+            return 1;
+        }).when(outboxRelay).relay(shards.get(0));
+        
+        rebalancer.moveBucket(BUCKET, 1);
+        
+        assertThat(ids(1)).containsExactly(id(1), id(3));
+        assertThat(jdbc(1).queryForObject("SELECT last_login_at FROM users WHERE id = ?", LocalDateTime.class, id(1)))
+                .isEqualTo(lastLogin);
+        assertThat(ids(0)).isEmpty();
+    }
+    
+    @Test
+    void scatterQueriesSkipTheCopyThatIsNotOwned() {
+        bucketMap.update(BUCKET, 0, 1, BucketMap.State.COPYING);
+        
+        assertThat(bucketMap.ownedRowsCondition(0)).isEmpty();
+        assertThat(bucketMap.ownedRowsCondition(1)).isEqualTo(" AND bucket NOT IN (" + BUCKET + ")");
+        
+        bucketMap.update(BUCKET, 1, 0, BucketMap.State.DRAINING);
+        
+        assertThat(bucketMap.ownedRowsCondition(0)).isEqualTo(" AND bucket NOT IN (" + BUCKET + ")");
+        assertThat(bucketMap.ownedRowsCondition(1)).isEmpty();
+    }
+    
+    @Test
+    void resumingAFrozenMoveLeavesTheTargetEqualToTheSource() {
+        // Interrupted after the bulk copy: the target holds a stale row, a user deleted since and an
+        // email another user of the bucket has taken over
+        insert(0, 1, "a@example.com", 2);
+        insert(0, 2, "b@example.com", 0);
+        insert(0, 4, "old-c@example.com", 0);
+        insert(1, 1, "a@example.com", 1);
+        insert(1, 2, "b@example.com", 0);
+        insert(1, 3, "deleted@example.com", 0);
+        insert(1, 5, "old-c@example.com", 0);
+        bucketMap.update(BUCKET, 0, 1, BucketMap.State.FROZEN);
+        
+        rebalancer.resumeInterrupted();
+        
+        assertThat(bucketMap.ownerIndexOf(BUCKET)).isEqualTo(1);
+        assertThat(bucketMap.stateOf(BUCKET)).isEqualTo(BucketMap.State.ACTIVE);
+        assertThat(ids(1)).containsExactly(id(1), id(2), id(4));
+        assertThat(jdbc(1).queryForObject("SELECT version FROM users WHERE id = ?", Long.class, id(1))).isEqualTo(2L);
+        assertThat(jdbc(1).queryForObject("SELECT email FROM users WHERE id = ?", String.class, id(4)))
+                .isEqualTo("old-c@example.com");
+        assertThat(ids(0)).isEmpty();
+    }
+    
+    @Test
+    void resumingADrainFinishesItWithoutCopying() {
+        insert(0, 1, "a@example.com", 0);
+        insert(1, 1, "a@example.com", 0);
+        bucketMap.update(BUCKET, 1, 0, BucketMap.State.DRAINING);
+        
+        rebalancer.resumeInterrupted();
+        
+        assertThat(ids(0)).isEmpty();
+        assertThat(ids(1)).containsExactly(id(1));
+        assertThat(bucketMap.stateOf(BUCKET)).isEqualTo(BucketMap.State.ACTIVE);
+    }
+    
+    @Test
+    void aDrainingBucketCannotBeMovedAgain() {
+        bucketMap.update(BUCKET, 1, 0, BucketMap.State.DRAINING);
+        
+        assertThatThrownBy(() -> rebalancer.moveBucket(BUCKET, 0))
+                .isInstanceOf(IllegalStateException.class);
+    }
+    
+    @Test
+    void rebalanceSpreadsTheBucketsOverAnAddedShard() {
+        insert(0, 1, "a@example.com", 0);
+        // The catalog was filled for two shards; a third is configured now
+        ShardSet grown = new ShardSet(List.of(shards.get(0), shards.get(1), shard(2)), 1);
+        ReflectionTestUtils.setField(bucketMap, "shards", grown);
+        ReflectionTestUtils.setField(rebalancer, "shards", grown);
+        bucketMap.reload();
+        
+        int moves = rebalancer.rebalance();
+        
+        int[] owned = new int[3];
+        for (int bucket = 0; bucket < ShardRouting.BUCKETS; bucket++) {
+            assertThat(bucketMap.stateOf(bucket)).isEqualTo(BucketMap.State.ACTIVE);
+            owned[bucketMap.ownerIndexOf(bucket)]++;
+        }
+        assertThat(owned).containsExactly(341, 342, 341);
+        assertThat(moves).isEqualTo(341);
+        int owner = bucketMap.ownerIndexOf(BUCKET);
+        assertThat(ids(owner)).containsExactly(id(1));
+        for (int shard = 0; shard < 3; shard++) {
+            if (shard != owner) {
+                assertThat(ids(shard)).isEmpty();
+            }
+        }
+        grown.close();
+    }
+    
+    private void insert(int shard, long sequence, String email, long version) {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 10, 0);
+        jdbc(shard).update("INSERT INTO users (" + ShardedUserRepository.COLUMNS + ", bucket) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                id(sequence), "Nguyễn Văn " + sequence, email, "hash", createdAt, createdAt.plusSeconds(version), version,
+                null, BUCKET);
+    }
+    
+    private List<Long> ids(int shard) {
+        return jdbc(shard).queryForList("SELECT id FROM users WHERE bucket = ? ORDER BY id", Long.class, BUCKET);
+    }
+    
+    private JdbcTemplate jdbc(int shard) {
+        return shards.get(shard).getJdbcTemplate();
+    }
+    
+    private static long id(long sequence) {
+        return ShardRouting.composeId(sequence, BUCKET);
+    }
+    
+    private static ShardSet shards(int count) {
+        List<Shard> list = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            list.add(shard(index));
+        }
+        return new ShardSet(list, 1);
+    }
+    
+    private static Shard shard(int index) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:shard" + index + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(2);
+        new ResourceDatabasePopulator(new ClassPathResource("sharding/schema-h2.sql")).execute(dataSource);
+        return new Shard(index, dataSource);
+    }
+    
+    private static BucketMap bucketMap(ShardSet shards) {
+        BucketMap bucketMap = new BucketMap();
+        ReflectionTestUtils.setField(bucketMap, "shards", shards);
+        ReflectionTestUtils.setField(bucketMap, "reloadIntervalMs", 0L);
+        bucketMap.init();
+        return bucketMap;
+    }
+}